@@ -18,6 +18,7 @@
  */
 package com.redhat.lightblue.common.ldap;
 
+import java.util.Collection;
 import java.util.Map;
 
 import com.redhat.lightblue.metadata.DataStore;
@@ -36,10 +37,59 @@ public interface DBResolver {
      * <b>NOTE:</b> A connection pool may be being used behind the scenes, so if
      * this method is called multiple times you might get a different connection instance
      * to the same database.
+     * @deprecated the returned connection is never handed back to the pool,
+     * use {@link #lease(DataStore)} instead.
      */
+    @Deprecated
     LDAPConnection get(DataStore store) throws LDAPException;
-    
-    
+
+    /**
+     * Leases a {@link LDAPConnection} based on the backend definition. The returned
+     * {@link LdapConnectionLease} must be closed once the caller is done with it, which
+     * returns the connection to the pool.
+     */
+    LdapConnectionLease lease(DataStore store) throws LDAPException;
+
+    /**
+     * Leases a {@link LDAPConnection} for work that should not compete with regular requests, such
+     * as searches no index can serve. If no low priority pool is configured for the database, then
+     * the connection is leased as by {@link #lease(DataStore)}.
+     */
+    LdapConnectionLease leaseLowPriority(DataStore store) throws LDAPException;
+
+    /**
+     * Leases a low priority {@link LDAPConnection} as by {@link #leaseLowPriority(DataStore)}, but
+     * only if one is free, rather than waiting for one to be released.
+     * @return the {@link LdapConnectionLease}, or <code>null</code> if every low priority connection
+     * is leased.
+     */
+    LdapConnectionLease tryLeaseLowPriority(DataStore store) throws LDAPException;
+
+    /**
+     * @return all {@link LdapConnectionLease}s that have been acquired but not yet closed.
+     * Useful for detecting leaked connections.
+     */
+    Collection<LdapConnectionLease> getActiveLeases();
+
+    /**
+     * @return the {@link LdapDataSourceSettings} for the database backing the
+     * given {@link DataStore}.
+     */
+    LdapDataSourceSettings getSettings(DataStore store);
+
+    /**
+     * @return the {@link LdapServerCapabilities} advertised by the database backing the
+     * given {@link DataStore}. If the capabilities cannot be determined, then
+     * {@link LdapServerCapabilities#NONE} is returned.
+     */
+    LdapServerCapabilities getCapabilities(DataStore store);
+
+    /**
+     * @return A {@link Map} of LDAP Database name and the {@link LdapServerCapabilities} it
+     *         currently advertises.
+     */
+    Map<String, LdapServerCapabilities> getCapabilitiesByDatabase();
+
     /**
      * @return A {@link Map} of LDAP Database name and corresponding connection
      *         status as true/false. The status may be an object of
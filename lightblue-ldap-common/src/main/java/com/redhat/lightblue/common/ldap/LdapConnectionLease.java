@@ -0,0 +1,76 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.common.ldap;
+
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+
+/**
+ * A scoped lease on a pooled {@link LDAPConnection}. A lease is intended to cover
+ * a single CRUD operation and must be closed when that operation completes, at
+ * which point the connection is handed back to the pool it came from.
+ *
+ * @author dcrissman
+ *
+ * @see DBResolver#lease(com.redhat.lightblue.metadata.DataStore)
+ */
+public interface LdapConnectionLease extends AutoCloseable {
+
+    /**
+     * @return the name of the database the leased connection belongs to.
+     */
+    String getDatabase();
+
+    /**
+     * @return the leased {@link LDAPConnection}.
+     * @throws IllegalStateException if the lease has already been closed.
+     */
+    LDAPConnection getConnection();
+
+    /**
+     * Informs the lease that an {@link LDAPException} was encountered while using
+     * the connection. If the exception indicates that the connection is no longer
+     * usable, then the connection will be released as defunct when the lease is closed.
+     * @param e - {@link LDAPException} that was encountered.
+     */
+    void exceptionCaught(LDAPException e);
+
+    /**
+     * @return time (in millis) at which this lease was acquired.
+     */
+    long getLeasedAt();
+
+    /**
+     * @return how long (in millis) this lease has been held.
+     */
+    long getAge();
+
+    /**
+     * @return name of the thread that acquired this lease.
+     */
+    String getOwnerThreadName();
+
+    /**
+     * Returns the connection to the pool. Calling this method more than once
+     * has no effect.
+     */
+    @Override
+    void close();
+
+}
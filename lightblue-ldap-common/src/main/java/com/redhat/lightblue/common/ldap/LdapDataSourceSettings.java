@@ -0,0 +1,220 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.common.ldap;
+
+import java.io.Serializable;
+
+/**
+ * Tuning options for the CRUD operations run against a single LDAP datasource.
+ *
+ * @author dcrissman
+ */
+public class LdapDataSourceSettings implements Serializable {
+
+    private static final long serialVersionUID = -2468530786451843227L;
+
+    public static final int DEFAULT_STREAM_BUFFER_SIZE = 100;
+    public static final int DEFAULT_EXISTENCE_CHECK_CHUNK_SIZE = 100;
+    public static final int DEFAULT_MAX_OPERATIONS_IN_FLIGHT = 16;
+    public static final int DEFAULT_CAPABILITIES_REFRESH_INTERVAL = 300;
+    public static final int DEFAULT_CLIENT_SORT_BUFFER_SIZE = 10000;
+    public static final int DEFAULT_MAX_FILTER_VALUES = 1000;
+    public static final int DEFAULT_CHUNKED_SEARCH_CONNECTIONS = 4;
+
+    private boolean streamFindResults = false;
+    private int streamBufferSize = DEFAULT_STREAM_BUFFER_SIZE;
+    private int pageSize = 0;
+    private int existenceCheckChunkSize = DEFAULT_EXISTENCE_CHECK_CHUNK_SIZE;
+    private int maxOperationsInFlight = DEFAULT_MAX_OPERATIONS_IN_FLIGHT;
+    private int deleteConnections = 1;
+    private boolean transactionalWrites = false;
+    private LdapMultiUpdateMode multiUpdateMode = null;
+    private int capabilitiesRefreshInterval = DEFAULT_CAPABILITIES_REFRESH_INTERVAL;
+    private int clientSortBufferSize = DEFAULT_CLIENT_SORT_BUFFER_SIZE;
+    private int maxFilterValues = DEFAULT_MAX_FILTER_VALUES;
+    private int chunkedSearchConnections = DEFAULT_CHUNKED_SEARCH_CONNECTIONS;
+
+    /**
+     * @return <code>true</code> if find results should be streamed to the caller as
+     * they are read from LDAP, otherwise <code>false</code> if the full result should
+     * be read into memory first.
+     */
+    public boolean isStreamFindResults() {
+        return streamFindResults;
+    }
+
+    public void setStreamFindResults(boolean streamFindResults) {
+        this.streamFindResults = streamFindResults;
+    }
+
+    /**
+     * @return the maximum number of entries that may be read ahead of the consumer
+     * when streaming find results.
+     */
+    public int getStreamBufferSize() {
+        return streamBufferSize;
+    }
+
+    public void setStreamBufferSize(int streamBufferSize) {
+        this.streamBufferSize = streamBufferSize;
+    }
+
+    /**
+     * @return number of entries to request per page using the Simple Paged Results
+     * control (RFC 2696), or <code>0</code> if searches should not be paged.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @return maximum number of unique attribute values to combine into a single search filter
+     * when checking which of the saved documents already exist. Keeps filters within the size
+     * limits of the server.
+     */
+    public int getExistenceCheckChunkSize() {
+        return existenceCheckChunkSize;
+    }
+
+    public void setExistenceCheckChunkSize(int existenceCheckChunkSize) {
+        this.existenceCheckChunkSize = existenceCheckChunkSize;
+    }
+
+    /**
+     * @return maximum number of asynchronous write operations that may be outstanding on a
+     * single connection. A value of <code>1</code> waits for each response before sending the
+     * next request.
+     */
+    public int getMaxOperationsInFlight() {
+        return maxOperationsInFlight;
+    }
+
+    public void setMaxOperationsInFlight(int maxOperationsInFlight) {
+        this.maxOperationsInFlight = maxOperationsInFlight;
+    }
+
+    /**
+     * @return number of pooled connections a single delete operation may spread its deletes across.
+     */
+    public int getDeleteConnections() {
+        return deleteConnections;
+    }
+
+    public void setDeleteConnections(int deleteConnections) {
+        this.deleteConnections = deleteConnections;
+    }
+
+    /**
+     * @return <code>true</code> if the writes of a single insert or save should be applied as one
+     * LDAP transaction (RFC 5805), provided the server supports it. Otherwise <code>false</code>, and
+     * each write succeeds or fails on its own.
+     */
+    public boolean isTransactionalWrites() {
+        return transactionalWrites;
+    }
+
+    public void setTransactionalWrites(boolean transactionalWrites) {
+        this.transactionalWrites = transactionalWrites;
+    }
+
+    /**
+     * @return how the writes of a single insert, save or delete should be sent as one multi-update
+     * extended operation, provided the server supports it. Otherwise <code>null</code>, and each
+     * write is sent as a request of its own.
+     */
+    public LdapMultiUpdateMode getMultiUpdateMode() {
+        return multiUpdateMode;
+    }
+
+    public void setMultiUpdateMode(LdapMultiUpdateMode multiUpdateMode) {
+        this.multiUpdateMode = multiUpdateMode;
+    }
+
+    /**
+     * @return number of seconds after which the capabilities advertised in the root DSE are read
+     * again, so that a server upgraded or reconfigured in place is noticed. A value of <code>0</code>
+     * only reads them once.
+     */
+    public int getCapabilitiesRefreshInterval() {
+        return capabilitiesRefreshInterval;
+    }
+
+    public void setCapabilitiesRefreshInterval(int capabilitiesRefreshInterval) {
+        this.capabilitiesRefreshInterval = capabilitiesRefreshInterval;
+    }
+
+    /**
+     * @return maximum number of entries a single find may hold in memory while sorting on the client,
+     * which happens when the server cannot sort. Larger results are sorted in runs that are written
+     * to temporary files and then merged.
+     */
+    public int getClientSortBufferSize() {
+        return clientSortBufferSize;
+    }
+
+    public void setClientSortBufferSize(int clientSortBufferSize) {
+        this.clientSortBufferSize = clientSortBufferSize;
+    }
+
+    /**
+     * @return maximum number of values a find or delete may send to the server in a single OR, such as
+     * the one an <code>$in</code> is translated to. Larger ORs are split into chunks of this size, each
+     * searched for separately, and the results merged.
+     */
+    public int getMaxFilterValues() {
+        return maxFilterValues;
+    }
+
+    public void setMaxFilterValues(int maxFilterValues) {
+        this.maxFilterValues = maxFilterValues;
+    }
+
+    /**
+     * @return number of pooled connections the chunks of a split search may be searched for over at
+     * once.
+     */
+    public int getChunkedSearchConnections() {
+        return chunkedSearchConnections;
+    }
+
+    public void setChunkedSearchConnections(int chunkedSearchConnections) {
+        this.chunkedSearchConnections = chunkedSearchConnections;
+    }
+
+    @Override
+    public String toString() {
+        return "LdapDataSourceSettings [streamFindResults=" + streamFindResults
+                + ", streamBufferSize=" + streamBufferSize
+                + ", pageSize=" + pageSize
+                + ", existenceCheckChunkSize=" + existenceCheckChunkSize
+                + ", maxOperationsInFlight=" + maxOperationsInFlight
+                + ", deleteConnections=" + deleteConnections
+                + ", transactionalWrites=" + transactionalWrites
+                + ", multiUpdateMode=" + multiUpdateMode
+                + ", capabilitiesRefreshInterval=" + capabilitiesRefreshInterval
+                + ", clientSortBufferSize=" + clientSortBufferSize
+                + ", maxFilterValues=" + maxFilterValues
+                + ", chunkedSearchConnections=" + chunkedSearchConnections + "]";
+    }
+
+}
@@ -18,6 +18,10 @@
  */
 package com.redhat.lightblue.common.ldap;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 import com.redhat.lightblue.metadata.DataStore;
 
 /**
@@ -29,9 +33,13 @@ public class LdapDataStore implements DataStore {
 
     private static final long serialVersionUID = 7599798419158041647L;
 
+    public static final LdapSearchScope DEFAULT_SCOPE = LdapSearchScope.SUB;
+
     private String database;
     private String baseDN;
     private String uniqueAttr;
+    private LdapSearchScope scope = DEFAULT_SCOPE;
+    private final Set<String> objectClasses = new LinkedHashSet<>();
 
     @Override
     public String getBackend() {
@@ -62,6 +70,30 @@ public class LdapDataStore implements DataStore {
         this.uniqueAttr = uniqueField;
     }
 
+    /**
+     * @return which entries relative to the base DN are searched for entries of the entity.
+     */
+    public LdapSearchScope getScope() {
+        return scope;
+    }
+
+    public void setScope(LdapSearchScope scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * @return object classes every entry of the entity has, which every search for its entries
+     * requires of the entries it returns. Empty if entries of other types are never stored
+     * beneath the base DN.
+     */
+    public Set<String> getObjectClasses() {
+        return Collections.unmodifiableSet(objectClasses);
+    }
+
+    public void addObjectClass(String objectClass) {
+        objectClasses.add(objectClass);
+    }
+
     public LdapDataStore(){}
 
     public LdapDataStore(String database, String baseDN, String uniqueAttr){
@@ -79,6 +111,8 @@ public class LdapDataStore implements DataStore {
                 + ((database == null) ? 0 : database.hashCode());
         result = prime * result
                 + ((uniqueAttr == null) ? 0 : uniqueAttr.hashCode());
+        result = prime * result + ((scope == null) ? 0 : scope.hashCode());
+        result = prime * result + objectClasses.hashCode();
         return result;
     }
 
@@ -118,13 +152,20 @@ public class LdapDataStore implements DataStore {
         else if (!uniqueAttr.equals(other.uniqueAttr)) {
             return false;
         }
+        if (scope != other.scope) {
+            return false;
+        }
+        if (!objectClasses.equals(other.objectClasses)) {
+            return false;
+        }
         return true;
     }
 
     @Override
     public String toString() {
         return "LdapDataStore [database=" + database + ", baseDN=" + baseDN
-                + ", uniqueAttribute=" + uniqueAttr + "]";
+                + ", uniqueAttribute=" + uniqueAttr + ", scope=" + scope
+                + ", objectClasses=" + objectClasses + "]";
     }
 
 }
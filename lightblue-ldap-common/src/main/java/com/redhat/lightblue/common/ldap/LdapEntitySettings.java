@@ -0,0 +1,47 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.common.ldap;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Represents the ldap specific settings of a single entity.
+ *
+ * @author dcrissman
+ */
+public interface LdapEntitySettings {
+
+    /**
+     * @return the {@link LdapSaveStrategy} to use when saving documents of this entity.
+     */
+    public LdapSaveStrategy getSaveStrategy();
+
+    /**
+     * @return the {@link LdapIndexType}s the server maintains, keyed by attribute name. Empty if the
+     * indexes were not declared, in which case searches are not checked against them.
+     */
+    public Map<String, Set<LdapIndexType>> getIndexes();
+
+    /**
+     * @return the {@link LdapUnindexedQueryPolicy} for searches that none of the declared indexes can serve.
+     */
+    public LdapUnindexedQueryPolicy getUnindexedQueryPolicy();
+
+}
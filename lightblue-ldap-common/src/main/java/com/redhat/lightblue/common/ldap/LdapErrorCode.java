@@ -39,6 +39,18 @@ public final class LdapErrorCode {
 
     public static final String ERR_LDAP_SAVE_ERROR_INS_WITH_NO_UPSERT = "ldap:SaveError:InsertionAttemptWithNoUpsert";
 
+    /** The LDAP transaction could not be committed, so none of its writes were applied. */
+    public static final String ERR_LDAP_TRANSACTION_FAILED = "ldap:TransactionFailed";
+
+    /** The results could not be sorted on the client. */
+    public static final String ERR_LDAP_SORT_FAILED = "ldap:SortFailed";
+
+    /** The search could not be served by any of the indexes declared for the entity. */
+    public static final String ERR_LDAP_UNINDEXED_QUERY = "ldap:UnindexedQuery";
+
+    /** A regex in the query is not valid. */
+    public static final String ERR_INVALID_REGEX = "ldap:InvalidRegex";
+
     private LdapErrorCode(){}
 
 }
@@ -0,0 +1,67 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.common.ldap;
+
+/**
+ * Kinds of index a directory server may maintain for an attribute, each serving a different type
+ * of filter.
+ *
+ * @author dcrissman
+ */
+public enum LdapIndexType {
+
+    /** Serves equality filters, such as <code>(uid=jdoe)</code>. */
+    EQUALITY("eq"),
+
+    /** Serves presence filters, such as <code>(uid=*)</code>. */
+    PRESENCE("pres"),
+
+    /** Serves substring filters, such as <code>(uid=jd*)</code>. */
+    SUBSTRING("sub"),
+
+    /** Serves greater or equal and less or equal filters, such as <code>(age&gt;=30)</code>. */
+    ORDERING("ordering");
+
+    private final String name;
+
+    private LdapIndexType(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the name used to represent this index type in metadata.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name - name used to represent the index type in metadata.
+     * @return the matching {@link LdapIndexType}, or <code>null</code> if there is none.
+     */
+    public static LdapIndexType fromName(String name) {
+        for (LdapIndexType type : values()) {
+            if (type.name.equals(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.common.ldap;
+
+/**
+ * How the server should handle a failed write when all of the writes of a single request are sent
+ * together as one multi-update extended operation.
+ *
+ * @author dcrissman
+ */
+public enum LdapMultiUpdateMode {
+
+    /** Either every write is applied, or none of them are. */
+    ATOMIC("atomic", 0),
+
+    /** Writes are applied in order, and the remaining writes are abandoned at the first failure. */
+    ABORT_ON_ERROR("abortOnError", 1),
+
+    /** Every write is attempted, regardless of whether the ones before it failed. */
+    CONTINUE_ON_ERROR("continueOnError", 2);
+
+    private final String name;
+    private final int errorBehavior;
+
+    private LdapMultiUpdateMode(String name, int errorBehavior) {
+        this.name = name;
+        this.errorBehavior = errorBehavior;
+    }
+
+    /**
+     * @return the name used to represent this mode in configuration.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the value of the errorBehavior element the mode is encoded as in the request.
+     */
+    public int getErrorBehavior() {
+        return errorBehavior;
+    }
+
+    /**
+     * @param name - name used to represent the mode in configuration.
+     * @return the matching {@link LdapMultiUpdateMode}, or <code>null</code> if there is none.
+     */
+    public static LdapMultiUpdateMode fromName(String name) {
+        for (LdapMultiUpdateMode mode : values()) {
+            if (mode.name.equals(name)) {
+                return mode;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.common.ldap;
+
+/**
+ * Strategies for deciding whether a saved document should be added as a new entry or
+ * modify an existing one.
+ *
+ * @author dcrissman
+ */
+public enum LdapSaveStrategy {
+
+    /** Looks up which documents already exist before writing anything. */
+    CHECK_EXISTING("checkExisting"),
+
+    /** Tries to add each document, and only modifies it if the entry already exists. Suits insert heavy entities. */
+    INSERT_FIRST("insertFirst"),
+
+    /** Tries to modify each document, and only adds it if the entry does not yet exist. Suits update heavy entities. */
+    MODIFY_FIRST("modifyFirst"),
+
+    /**
+     * Reads the existing entries before writing anything, and only writes the values that changed. Suits
+     * entities with large multi-valued attributes, which would otherwise be rewritten in full on every save.
+     */
+    DIFF_EXISTING("diffExisting");
+
+    private final String name;
+
+    private LdapSaveStrategy(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the name used to represent this strategy in metadata.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name - name used to represent the strategy in metadata.
+     * @return the matching {@link LdapSaveStrategy}, or <code>null</code> if there is none.
+     */
+    public static LdapSaveStrategy fromName(String name) {
+        for (LdapSaveStrategy strategy : values()) {
+            if (strategy.name.equals(name)) {
+                return strategy;
+            }
+        }
+        return null;
+    }
+
+}
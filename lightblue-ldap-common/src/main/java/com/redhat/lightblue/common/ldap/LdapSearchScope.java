@@ -0,0 +1,77 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.common.ldap;
+
+import com.unboundid.ldap.sdk.SearchScope;
+
+/**
+ * Which entries relative to the base DN of an entity are searched for its entries.
+ *
+ * @author dcrissman
+ */
+public enum LdapSearchScope {
+
+    /** Only the base entry itself. */
+    BASE("base", SearchScope.BASE),
+
+    /** Only the entries directly beneath the base entry. */
+    ONE("one", SearchScope.ONE),
+
+    /** The base entry, and every entry beneath it at any depth. */
+    SUB("sub", SearchScope.SUB),
+
+    /** Every entry beneath the base entry at any depth, but not the base entry itself. */
+    SUBORDINATE("subordinate", SearchScope.SUBORDINATE_SUBTREE);
+
+    private final String name;
+    private final SearchScope searchScope;
+
+    private LdapSearchScope(String name, SearchScope searchScope) {
+        this.name = name;
+        this.searchScope = searchScope;
+    }
+
+    /**
+     * @return the name used to represent this scope in metadata.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the {@link SearchScope} to search with.
+     */
+    public SearchScope getSearchScope() {
+        return searchScope;
+    }
+
+    /**
+     * @param name - name used to represent the scope in metadata.
+     * @return the matching {@link LdapSearchScope}, or <code>null</code> if there is none.
+     */
+    public static LdapSearchScope fromName(String name) {
+        for (LdapSearchScope scope : values()) {
+            if (scope.name.equals(name)) {
+                return scope;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.common.ldap;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The controls, extended operations and features an LDAP server has advertised as supported in
+ * its root DSE.
+ *
+ * @author dcrissman
+ */
+public class LdapServerCapabilities implements Serializable {
+
+    private static final long serialVersionUID = 4630457113418373604L;
+
+    /** Capabilities of a server that has not advertised anything. */
+    public static final LdapServerCapabilities NONE = new LdapServerCapabilities(null);
+
+    private final Set<String> supportedControls;
+    private final Set<String> supportedExtendedOperations;
+    private final Set<String> supportedFeatures;
+
+    /**
+     * @param supportedControls - OIDs of the supported controls, may be <code>null</code>.
+     */
+    public LdapServerCapabilities(Collection<String> supportedControls) {
+        this(supportedControls, null);
+    }
+
+    /**
+     * @param supportedControls - OIDs of the supported controls, may be <code>null</code>.
+     * @param supportedExtendedOperations - OIDs of the supported extended operations, may be <code>null</code>.
+     */
+    public LdapServerCapabilities(Collection<String> supportedControls, Collection<String> supportedExtendedOperations) {
+        this(supportedControls, supportedExtendedOperations, null);
+    }
+
+    /**
+     * @param supportedControls - OIDs of the supported controls, may be <code>null</code>.
+     * @param supportedExtendedOperations - OIDs of the supported extended operations, may be <code>null</code>.
+     * @param supportedFeatures - OIDs of the supported features, may be <code>null</code>.
+     */
+    public LdapServerCapabilities(Collection<String> supportedControls, Collection<String> supportedExtendedOperations,
+            Collection<String> supportedFeatures) {
+        this.supportedControls = toUnmodifiableSet(supportedControls);
+        this.supportedExtendedOperations = toUnmodifiableSet(supportedExtendedOperations);
+        this.supportedFeatures = toUnmodifiableSet(supportedFeatures);
+    }
+
+    /**
+     * @return <code>true</code> if the control with the given OID is supported, otherwise <code>false</code>.
+     */
+    public boolean supportsControl(String oid) {
+        return supportedControls.contains(oid);
+    }
+
+    /**
+     * @return unmodifiable set of supported control OIDs.
+     */
+    public Set<String> getSupportedControls() {
+        return supportedControls;
+    }
+
+    /**
+     * @return <code>true</code> if the extended operation with the given OID is supported, otherwise <code>false</code>.
+     */
+    public boolean supportsExtendedOperation(String oid) {
+        return supportedExtendedOperations.contains(oid);
+    }
+
+    /**
+     * @return unmodifiable set of supported extended operation OIDs.
+     */
+    public Set<String> getSupportedExtendedOperations() {
+        return supportedExtendedOperations;
+    }
+
+    /**
+     * @return <code>true</code> if the feature with the given OID is supported, otherwise <code>false</code>.
+     */
+    public boolean supportsFeature(String oid) {
+        return supportedFeatures.contains(oid);
+    }
+
+    /**
+     * @return unmodifiable set of supported feature OIDs.
+     */
+    public Set<String> getSupportedFeatures() {
+        return supportedFeatures;
+    }
+
+    private static Set<String> toUnmodifiableSet(Collection<String> values) {
+        if (values == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(new HashSet<>(values));
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + supportedControls.hashCode();
+        result = prime * result + supportedExtendedOperations.hashCode();
+        result = prime * result + supportedFeatures.hashCode();
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        LdapServerCapabilities other = (LdapServerCapabilities) obj;
+        return supportedControls.equals(other.supportedControls)
+                && supportedExtendedOperations.equals(other.supportedExtendedOperations)
+                && supportedFeatures.equals(other.supportedFeatures);
+    }
+
+    @Override
+    public String toString() {
+        return "LdapServerCapabilities [supportedControls=" + supportedControls
+                + ", supportedExtendedOperations=" + supportedExtendedOperations
+                + ", supportedFeatures=" + supportedFeatures + "]";
+    }
+
+}
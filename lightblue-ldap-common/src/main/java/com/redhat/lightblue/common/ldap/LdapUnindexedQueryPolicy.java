@@ -0,0 +1,64 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.common.ldap;
+
+/**
+ * What to do with a search on an entity that declares its indexes, when none of the declared
+ * indexes can narrow down the entries the server has to read.
+ *
+ * @author dcrissman
+ */
+public enum LdapUnindexedQueryPolicy {
+
+    /** Logs a warning, and runs the search as usual. */
+    WARN("warn"),
+
+    /** Runs the search over a connection from the low priority pool, so it cannot tie up the regular connections. */
+    LOW_PRIORITY("lowPriority"),
+
+    /** Fails the request without sending the search. */
+    REJECT("reject");
+
+    private final String name;
+
+    private LdapUnindexedQueryPolicy(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the name used to represent this policy in metadata.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param name - name used to represent the policy in metadata.
+     * @return the matching {@link LdapUnindexedQueryPolicy}, or <code>null</code> if there is none.
+     */
+    public static LdapUnindexedQueryPolicy fromName(String name) {
+        for (LdapUnindexedQueryPolicy policy : values()) {
+            if (policy.name.equals(name)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+}
@@ -19,6 +19,7 @@
 package com.redhat.lightblue.common.ldap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import org.junit.Test;
 
@@ -29,4 +30,22 @@ public class LdapDataStoreTest {
         assertEquals(LdapConstant.BACKEND, new LdapDataStore().getBackend());
     }
 
+    @Test
+    public void testEquals_ScopeAndObjectClasses(){
+        LdapDataStore store = new LdapDataStore("test", "dc=example,dc=com", "uid");
+        LdapDataStore other = new LdapDataStore("test", "dc=example,dc=com", "uid");
+        assertEquals(store, other);
+
+        other.setScope(LdapSearchScope.ONE);
+        assertFalse(store.equals(other));
+
+        store.setScope(LdapSearchScope.ONE);
+        store.addObjectClass("person");
+        assertFalse(store.equals(other));
+
+        other.addObjectClass("person");
+        assertEquals(store, other);
+        assertEquals(store.hashCode(), other.hashCode());
+    }
+
 }
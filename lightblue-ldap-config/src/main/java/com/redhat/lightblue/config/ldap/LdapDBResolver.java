@@ -18,11 +18,17 @@
  */
 package com.redhat.lightblue.config.ldap;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import com.redhat.lightblue.common.ldap.DBResolver;
+import com.redhat.lightblue.common.ldap.LdapConnectionLease;
+import com.redhat.lightblue.common.ldap.LdapDataSourceSettings;
+import com.redhat.lightblue.common.ldap.LdapServerCapabilities;
 import com.redhat.lightblue.common.ldap.LdapDataStore;
 import com.redhat.lightblue.metadata.DataStore;
 import com.unboundid.ldap.sdk.LDAPConnection;
@@ -41,20 +47,81 @@ public class LdapDBResolver implements DBResolver{
         this.ldapDataSources = ldapDataSources;
     }
 
+    @Override
+    @Deprecated
     public LDAPConnection get(DataStore store) throws LDAPException {
+        return get(getDatabase(store));
+    }
+
+    /**
+     * @deprecated use {@link #lease(String)} instead.
+     */
+    @Deprecated
+    public LDAPConnection get(String database) throws LDAPException{
+        return findRequiredByDatabase(database).getLdapConnection();
+    }
+
+    @Override
+    public LdapConnectionLease lease(DataStore store) throws LDAPException {
+        return lease(getDatabase(store));
+    }
+
+    public LdapConnectionLease lease(String database) throws LDAPException {
+        return findRequiredByDatabase(database).leaseLdapConnection();
+    }
+
+    @Override
+    public LdapConnectionLease leaseLowPriority(DataStore store) throws LDAPException {
+        return findRequiredByDatabase(getDatabase(store)).leaseLowPriorityLdapConnection();
+    }
+
+    @Override
+    public LdapConnectionLease tryLeaseLowPriority(DataStore store) throws LDAPException {
+        return findRequiredByDatabase(getDatabase(store)).tryLeaseLowPriorityLdapConnection();
+    }
+
+    @Override
+    public Collection<LdapConnectionLease> getActiveLeases() {
+        List<LdapConnectionLease> leases = new ArrayList<>();
+        for(LdapDataSourceConfiguration cnf : ldapDataSources){
+            leases.addAll(cnf.getActiveLeases());
+        }
+        return leases;
+    }
+
+    @Override
+    public LdapDataSourceSettings getSettings(DataStore store) {
+        return findRequiredByDatabase(getDatabase(store)).getSettings();
+    }
+
+    @Override
+    public LdapServerCapabilities getCapabilities(DataStore store) {
+        return findRequiredByDatabase(getDatabase(store)).getCapabilities();
+    }
+
+    @Override
+    public Map<String, LdapServerCapabilities> getCapabilitiesByDatabase() {
+        Map<String, LdapServerCapabilities> capabilities = new HashMap<>();
+        for(LdapDataSourceConfiguration cnf : ldapDataSources){
+            capabilities.put(cnf.getDatabaseName(), cnf.getCapabilities());
+        }
+        return capabilities;
+    }
+
+    private String getDatabase(DataStore store){
         if(!(store instanceof LdapDataStore)){
             throw new IllegalArgumentException("DataStore of type " + store.getClass() + " is not supported.");
         }
 
-        return get(((LdapDataStore)store).getDatabase());
+        return ((LdapDataStore)store).getDatabase();
     }
 
-    public LDAPConnection get(String database) throws LDAPException{
+    private LdapDataSourceConfiguration findRequiredByDatabase(String database){
         LdapDataSourceConfiguration cnf = findByDatabase(database);
         if(cnf == null){
             throw new IllegalArgumentException("No database for " + database);
         }
-        return cnf.getLdapConnection();
+        return cnf;
     }
 
     private LdapDataSourceConfiguration findByDatabase(String database){
@@ -74,17 +141,20 @@ public class LdapDBResolver implements DBResolver{
     public Map<String, Object> getLDAPConnectionsStatus() {
         
         Map<String, Object> connectionsStatus = new HashMap<>();
-        LDAPConnection connection = null;
-        
+
         for (LdapDataSourceConfiguration ldapDS : ldapDataSources) {
-            try {
-                connection = ldapDS.getLdapConnection();
-                
-                // If a problem is detected that suggests that the provided
-                // connection is not suitable for use, LDAPException would be
-                // thrown.
-                ldapDS.getLdapConnectionPool().getHealthCheck().ensureConnectionValidForContinuedUse(connection);
-                
+            try (LdapConnectionLease lease = ldapDS.leaseLdapConnection()) {
+                LDAPConnection connection = lease.getConnection();
+                try {
+                    // If a problem is detected that suggests that the provided
+                    // connection is not suitable for use, LDAPException would be
+                    // thrown.
+                    ldapDS.getLdapConnectionPool().getHealthCheck().ensureConnectionValidForContinuedUse(connection);
+                } catch (LDAPException e) {
+                    lease.exceptionCaught(e);
+                    throw e;
+                }
+
                 connectionsStatus.put(ldapDS.getDatabaseName(), connection.isConnected());
             } catch (LDAPException e) {
                 connectionsStatus.put(ldapDS.getDatabaseName(), e);
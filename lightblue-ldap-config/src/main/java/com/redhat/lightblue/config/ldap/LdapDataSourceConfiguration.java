@@ -18,20 +18,31 @@
  */
 package com.redhat.lightblue.config.ldap;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.redhat.lightblue.common.ldap.LdapConnectionLease;
+import com.redhat.lightblue.common.ldap.LdapDataSourceSettings;
+import com.redhat.lightblue.common.ldap.LdapMultiUpdateMode;
+import com.redhat.lightblue.common.ldap.LdapServerCapabilities;
 import com.redhat.lightblue.config.DataSourceConfiguration;
 import com.redhat.lightblue.metadata.ldap.parser.LdapDataStoreParser;
 import com.unboundid.ldap.sdk.BindRequest;
 import com.unboundid.ldap.sdk.LDAPConnection;
 import com.unboundid.ldap.sdk.LDAPConnectionPool;
 import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.RootDSE;
 import com.unboundid.ldap.sdk.RoundRobinServerSet;
 import com.unboundid.ldap.sdk.ServerSet;
 import com.unboundid.ldap.sdk.SimpleBindRequest;
@@ -52,19 +63,46 @@ public class LdapDataSourceConfiguration implements DataSourceConfiguration{
     private static final String LDAP_CONFIG_PASSWORD = "password";
     private static final String LDAP_CONFIG_NUMBER_OF_INITIAL_CONNECTIONS = "numberOfInitialConnections";
     private static final String LDAP_CONFIG_MAX_NUMBER_OF_CONNECTIONS = "maxNumberOfConnections";
+    private static final String LDAP_CONFIG_LOW_PRIORITY_CONNECTIONS = "lowPriorityConnections";
+    private static final String LDAP_CONFIG_STREAM_FIND_RESULTS = "streamFindResults";
+    private static final String LDAP_CONFIG_STREAM_BUFFER_SIZE = "streamBufferSize";
+    private static final String LDAP_CONFIG_PAGE_SIZE = "pageSize";
+    private static final String LDAP_CONFIG_EXISTENCE_CHECK_CHUNK_SIZE = "existenceCheckChunkSize";
+    private static final String LDAP_CONFIG_MAX_OPERATIONS_IN_FLIGHT = "maxOperationsInFlight";
+    private static final String LDAP_CONFIG_DELETE_CONNECTIONS = "deleteConnections";
+    private static final String LDAP_CONFIG_TRANSACTIONAL_WRITES = "transactionalWrites";
+    private static final String LDAP_CONFIG_MULTI_UPDATE = "multiUpdate";
+    private static final String LDAP_CONFIG_CAPABILITIES_REFRESH_INTERVAL = "capabilitiesRefreshInterval";
+    private static final String LDAP_CONFIG_CLIENT_SORT_BUFFER_SIZE = "clientSortBufferSize";
+    private static final String LDAP_CONFIG_MAX_FILTER_VALUES = "maxFilterValues";
+    private static final String LDAP_CONFIG_CHUNKED_SEARCH_CONNECTIONS = "chunkedSearchConnections";
     private static final String LDAP_SERVER_CONFIG_HOST = "host";
     private static final String LDAP_SERVER_CONFIG_PORT = "port";
 
     private static final int DEFAULT_NUMBER_OF_INITIAL_CONNECTIONS = 5;
     private static final int DEFAULT_MAX_NUMBER_OF_CONNECTIONS = 10;
+    /** How long a low priority lease waits for one of the low priority connections to be released. */
+    private static final long LOW_PRIORITY_MAX_WAIT_MILLIS = TimeUnit.SECONDS.toMillis(30);
 
     private String databaseName;
+    private LdapDataSourceSettings settings = new LdapDataSourceSettings();
     private transient LDAPConnectionPool connectionPool;
+    private transient LDAPConnectionPool lowPriorityConnectionPool;
+    private final transient Set<LdapConnectionLease> activeLeases = ConcurrentHashMap.newKeySet();
+    private transient volatile LdapServerCapabilities capabilities;
+    private transient volatile long capabilitiesReadAt;
 
     public String getDatabaseName(){
         return databaseName;
     }
 
+    /**
+     * @return the {@link LdapDataSourceSettings} for this datasource.
+     */
+    public LdapDataSourceSettings getSettings(){
+        return settings;
+    }
+
     @Override
     @SuppressWarnings("rawtypes")
     public Class<LdapDataStoreParser> getMetadataDataStoreParser() {
@@ -77,7 +115,10 @@ public class LdapDataSourceConfiguration implements DataSourceConfiguration{
      * database node if a connection pool is being used.
      * @return a {@link LDAPConnection} instance.
      * @throws LDAPException
+     * @deprecated the returned connection is never handed back to the pool,
+     * use {@link #leaseLdapConnection()} instead.
      */
+    @Deprecated
     public LDAPConnection getLdapConnection() throws LDAPException{
         if(connectionPool == null){
             throw new IllegalStateException("Class has not yet been initialized");
@@ -85,6 +126,120 @@ public class LdapDataSourceConfiguration implements DataSourceConfiguration{
         return connectionPool.getConnection();
     }
     
+    /**
+     * Leases a {@link LDAPConnection} from the underlying connection pool. The returned
+     * {@link LdapConnectionLease} must be closed to return the connection to the pool.
+     * @return a {@link LdapConnectionLease} instance.
+     * @throws LDAPException
+     */
+    public LdapConnectionLease leaseLdapConnection() throws LDAPException{
+        return new PooledLdapConnectionLease(databaseName, getLdapConnectionPool(), activeLeases);
+    }
+
+    /**
+     * Leases a {@link LDAPConnection} from the low priority pool, which holds at most the configured
+     * number of connections so that the work done over them cannot starve regular requests. Waits
+     * for a low priority connection to be released if they are all leased. If no low priority pool
+     * was configured, then the connection is leased from the regular pool instead.
+     * @return a {@link LdapConnectionLease} instance.
+     * @throws LDAPException
+     */
+    public LdapConnectionLease leaseLowPriorityLdapConnection() throws LDAPException{
+        if(lowPriorityConnectionPool == null){
+            return leaseLdapConnection();
+        }
+        return new PooledLdapConnectionLease(databaseName, lowPriorityConnectionPool, activeLeases);
+    }
+
+    /**
+     * Leases a {@link LDAPConnection} from the low priority pool as {@link #leaseLowPriorityLdapConnection()}
+     * does, but only if one is available rather than waiting for one to be released. A connection that
+     * another thread leases first may still have to be waited for.
+     * @return a {@link LdapConnectionLease} instance, or <code>null</code> if every low priority
+     * connection is leased.
+     * @throws LDAPException
+     */
+    public LdapConnectionLease tryLeaseLowPriorityLdapConnection() throws LDAPException{
+        if(lowPriorityConnectionPool == null){
+            return leaseLdapConnection();
+        }
+        if(lowPriorityConnectionPool.getCurrentAvailableConnections() <= 0){
+            return null;
+        }
+        return new PooledLdapConnectionLease(databaseName, lowPriorityConnectionPool, activeLeases);
+    }
+
+    /**
+     * @return a snapshot of the {@link LdapConnectionLease}s that have not yet been closed.
+     */
+    public Collection<LdapConnectionLease> getActiveLeases(){
+        return new ArrayList<>(activeLeases);
+    }
+
+    /**
+     * Returns the {@link LdapServerCapabilities} advertised in the root DSE. The root DSE is read
+     * when the pool is started, and again once the configured refresh interval has passed. If it
+     * cannot be read, then {@link LdapServerCapabilities#NONE} is assumed until the next refresh, so
+     * an unreachable root DSE is not read again on every call.
+     * @return the {@link LdapServerCapabilities} of the server.
+     */
+    public LdapServerCapabilities getCapabilities(){
+        LdapServerCapabilities current = capabilities;
+        if(current == null){
+            current = refreshCapabilities();
+        }
+        else if(isCapabilitiesRefreshDue()){
+            //Until the refresh has finished, other callers keep using what was read before.
+            capabilitiesReadAt = System.currentTimeMillis();
+            current = refreshCapabilities();
+        }
+        return current;
+    }
+
+    private boolean isCapabilitiesRefreshDue(){
+        int interval = settings.getCapabilitiesRefreshInterval();
+        return (interval > 0)
+                && (System.currentTimeMillis() - capabilitiesReadAt >= TimeUnit.SECONDS.toMillis(interval));
+    }
+
+    /**
+     * Reads the root DSE again. If it cannot be read, then the capabilities that were read before
+     * are kept, or {@link LdapServerCapabilities#NONE} if there are none.
+     * @return the current {@link LdapServerCapabilities} of the server.
+     */
+    private LdapServerCapabilities refreshCapabilities(){
+        LdapServerCapabilities previous = capabilities;
+        try{
+            RootDSE rootDSE = getLdapConnectionPool().getRootDSE();
+            if(rootDSE == null){
+                return keepCapabilities(previous);
+            }
+            LdapServerCapabilities current = new LdapServerCapabilities(
+                    Arrays.asList(rootDSE.getSupportedControlOIDs()),
+                    Arrays.asList(rootDSE.getSupportedExtendedOperationOIDs()),
+                    Arrays.asList(rootDSE.getSupportedFeatureOIDs()));
+            capabilities = current;
+            capabilitiesReadAt = System.currentTimeMillis();
+            if((previous != null) && !current.equals(previous)){
+                LOGGER.info("Capabilities of ldap database " + databaseName + " changed to " + current);
+            }
+            return current;
+        }
+        catch(LDAPException e){
+            LOGGER.warn("Unable to read the root DSE for ldap database " + databaseName, e);
+            return keepCapabilities(previous);
+        }
+    }
+
+    private LdapServerCapabilities keepCapabilities(LdapServerCapabilities previous){
+        if(previous != null){
+            return previous;
+        }
+        capabilities = LdapServerCapabilities.NONE;
+        capabilitiesReadAt = System.currentTimeMillis();
+        return LdapServerCapabilities.NONE;
+    }
+
     public LDAPConnectionPool getLdapConnectionPool() throws LDAPException{
         if(connectionPool == null){
             throw new IllegalStateException("Class has not yet been initialized");
@@ -106,6 +261,8 @@ public class LdapDataSourceConfiguration implements DataSourceConfiguration{
                 parseJsonNode(node, LDAP_CONFIG_BINDABLE_DB, true).asText(),
                 parseJsonNode(node, LDAP_CONFIG_PASSWORD, true).asText());
 
+        settings = parseSettings(node);
+
         int initialConnections = parseInitialConnections(node);
         int maxConnections = parseMaxConnections(node);
         Map<String, Integer> hostPortMap = parseServers(node);
@@ -126,12 +283,23 @@ public class LdapDataSourceConfiguration implements DataSourceConfiguration{
             serverSet = new RoundRobinServerSet(hosts, ports);
         }
 
+        int lowPriorityConnections = parseNonNegativeInt(node, LDAP_CONFIG_LOW_PRIORITY_CONNECTIONS, 0);
+
         try{
             connectionPool = new LDAPConnectionPool(serverSet, bindRequest, initialConnections, maxConnections);
+            if(lowPriorityConnections > 0){
+                lowPriorityConnectionPool = new LDAPConnectionPool(serverSet, bindRequest, 1, lowPriorityConnections);
+                //Wait for a connection rather than opening more than allowed.
+                lowPriorityConnectionPool.setCreateIfNecessary(false);
+                lowPriorityConnectionPool.setMaxWaitTimeMillis(LOW_PRIORITY_MAX_WAIT_MILLIS);
+            }
         }
         catch(LDAPException e) {
             throw new LdapConfigException("Unable to connect to ldap server(s).", e);
         }
+
+        //Read upfront, so that the first requests do not have to wait for it.
+        refreshCapabilities();
     }
 
     private Map<String, Integer> parseServers(JsonNode node) {
@@ -176,6 +344,81 @@ public class LdapDataSourceConfiguration implements DataSourceConfiguration{
         return initialConnections;
     }
 
+    private LdapDataSourceSettings parseSettings(JsonNode node) {
+        LdapDataSourceSettings parsedSettings = new LdapDataSourceSettings();
+        parsedSettings.setStreamFindResults(
+                parseBoolean(node, LDAP_CONFIG_STREAM_FIND_RESULTS, parsedSettings.isStreamFindResults()));
+        parsedSettings.setStreamBufferSize(
+                parsePositiveInt(node, LDAP_CONFIG_STREAM_BUFFER_SIZE, LdapDataSourceSettings.DEFAULT_STREAM_BUFFER_SIZE));
+        parsedSettings.setPageSize(
+                parseNonNegativeInt(node, LDAP_CONFIG_PAGE_SIZE, parsedSettings.getPageSize()));
+        parsedSettings.setExistenceCheckChunkSize(
+                parsePositiveInt(node, LDAP_CONFIG_EXISTENCE_CHECK_CHUNK_SIZE, LdapDataSourceSettings.DEFAULT_EXISTENCE_CHECK_CHUNK_SIZE));
+        parsedSettings.setMaxOperationsInFlight(
+                parsePositiveInt(node, LDAP_CONFIG_MAX_OPERATIONS_IN_FLIGHT, LdapDataSourceSettings.DEFAULT_MAX_OPERATIONS_IN_FLIGHT));
+        parsedSettings.setDeleteConnections(
+                parsePositiveInt(node, LDAP_CONFIG_DELETE_CONNECTIONS, parsedSettings.getDeleteConnections()));
+        parsedSettings.setTransactionalWrites(
+                parseBoolean(node, LDAP_CONFIG_TRANSACTIONAL_WRITES, parsedSettings.isTransactionalWrites()));
+        parsedSettings.setMultiUpdateMode(parseMultiUpdateMode(node));
+        parsedSettings.setCapabilitiesRefreshInterval(
+                parseNonNegativeInt(node, LDAP_CONFIG_CAPABILITIES_REFRESH_INTERVAL, parsedSettings.getCapabilitiesRefreshInterval()));
+        parsedSettings.setClientSortBufferSize(
+                parsePositiveInt(node, LDAP_CONFIG_CLIENT_SORT_BUFFER_SIZE, LdapDataSourceSettings.DEFAULT_CLIENT_SORT_BUFFER_SIZE));
+        parsedSettings.setMaxFilterValues(
+                parsePositiveInt(node, LDAP_CONFIG_MAX_FILTER_VALUES, LdapDataSourceSettings.DEFAULT_MAX_FILTER_VALUES));
+        parsedSettings.setChunkedSearchConnections(
+                parsePositiveInt(node, LDAP_CONFIG_CHUNKED_SEARCH_CONNECTIONS, LdapDataSourceSettings.DEFAULT_CHUNKED_SEARCH_CONNECTIONS));
+        return parsedSettings;
+    }
+
+    private LdapMultiUpdateMode parseMultiUpdateMode(JsonNode node) {
+        JsonNode valueNode = parseJsonNode(node, LDAP_CONFIG_MULTI_UPDATE, false);
+        if((valueNode == null) || valueNode.isNull()){
+            return null;
+        }
+        LdapMultiUpdateMode mode = LdapMultiUpdateMode.fromName(valueNode.asText());
+        if(mode == null){
+            throw new IllegalArgumentException("'" + LDAP_CONFIG_MULTI_UPDATE + "' must be one of "
+                    + LdapMultiUpdateMode.ATOMIC.getName() + ", "
+                    + LdapMultiUpdateMode.ABORT_ON_ERROR.getName() + " or "
+                    + LdapMultiUpdateMode.CONTINUE_ON_ERROR.getName() + " for ldap database " + databaseName);
+        }
+        return mode;
+    }
+
+    private boolean parseBoolean(JsonNode node, String key, boolean defaultValue) {
+        JsonNode valueNode = parseJsonNode(node, key, false);
+        if(valueNode == null){
+            return defaultValue;
+        }
+        return valueNode.asBoolean(defaultValue);
+    }
+
+    private int parsePositiveInt(JsonNode node, String key, int defaultValue) {
+        JsonNode valueNode = parseJsonNode(node, key, false);
+        if(valueNode == null){
+            return defaultValue;
+        }
+        int value = valueNode.asInt(defaultValue);
+        if(value <= 0){
+            throw new IllegalArgumentException("'" + key + "' must be greater than 0 for ldap database " + databaseName);
+        }
+        return value;
+    }
+
+    private int parseNonNegativeInt(JsonNode node, String key, int defaultValue) {
+        JsonNode valueNode = parseJsonNode(node, key, false);
+        if(valueNode == null){
+            return defaultValue;
+        }
+        int value = valueNode.asInt(defaultValue);
+        if(value < 0){
+            throw new IllegalArgumentException("'" + key + "' must not be negative for ldap database " + databaseName);
+        }
+        return value;
+    }
+
     private JsonNode parseJsonNode(JsonNode node, String key, boolean required){
         JsonNode parsedNode = node.get(key);
         if(required && (parsedNode == null)){
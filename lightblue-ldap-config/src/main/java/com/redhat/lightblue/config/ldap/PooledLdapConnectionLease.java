@@ -0,0 +1,115 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.config.ldap;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.redhat.lightblue.common.ldap.LdapConnectionLease;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+
+/**
+ * {@link LdapConnectionLease} backed by a {@link LDAPConnectionPool}.
+ *
+ * @author dcrissman
+ */
+class PooledLdapConnectionLease implements LdapConnectionLease {
+
+    private final String database;
+    private final LDAPConnectionPool connectionPool;
+    private final LDAPConnection connection;
+    private final Set<LdapConnectionLease> activeLeases;
+    private final long leasedAt = System.currentTimeMillis();
+    private final String ownerThreadName = Thread.currentThread().getName();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile boolean defunct = false;
+
+    /**
+     * Acquires a connection from the <code>connectionPool</code> and registers this
+     * lease with the <code>activeLeases</code> until it has been closed.
+     */
+    PooledLdapConnectionLease(String database, LDAPConnectionPool connectionPool,
+            Set<LdapConnectionLease> activeLeases) throws LDAPException {
+        this.database = database;
+        this.connectionPool = connectionPool;
+        this.activeLeases = activeLeases;
+        connection = connectionPool.getConnection();
+        activeLeases.add(this);
+    }
+
+    @Override
+    public String getDatabase() {
+        return database;
+    }
+
+    @Override
+    public LDAPConnection getConnection() {
+        if (closed.get()) {
+            throw new IllegalStateException("Lease has already been closed.");
+        }
+        return connection;
+    }
+
+    @Override
+    public void exceptionCaught(LDAPException e) {
+        if (!ResultCode.isConnectionUsable(e.getResultCode())) {
+            defunct = true;
+        }
+    }
+
+    @Override
+    public long getLeasedAt() {
+        return leasedAt;
+    }
+
+    @Override
+    public long getAge() {
+        return System.currentTimeMillis() - leasedAt;
+    }
+
+    @Override
+    public String getOwnerThreadName() {
+        return ownerThreadName;
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        activeLeases.remove(this);
+        if (defunct) {
+            connectionPool.releaseDefunctConnection(connection);
+        }
+        else {
+            connectionPool.releaseConnection(connection);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PooledLdapConnectionLease [database=" + database + ", age=" + getAge()
+                + "ms, ownerThread=" + ownerThreadName + ", defunct=" + defunct + "]";
+    }
+
+}
@@ -18,6 +18,8 @@
  */
 package com.redhat.lightblue.config.ldap;
 
+import static org.junit.Assert.assertTrue;
+
 import java.util.HashSet;
 
 import org.junit.Test;
@@ -33,6 +35,17 @@ public class LdapDBResolverTest {
         resolver.get("Does Not Exist");
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void testLease_UnknownDatabase() throws LDAPException{
+        LdapDBResolver resolver = new LdapDBResolver(new HashSet<LdapDataSourceConfiguration>());
+        resolver.lease("Does Not Exist");
+    }
+
+    @Test
+    public void testGetActiveLeases_NoDataSources(){
+        assertTrue(new LdapDBResolver(new HashSet<LdapDataSourceConfiguration>()).getActiveLeases().isEmpty());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testGet_InvalidStoreType() throws LDAPException{
         new LdapDBResolver(new HashSet<LdapDataSourceConfiguration>()).get(new DataStore(){
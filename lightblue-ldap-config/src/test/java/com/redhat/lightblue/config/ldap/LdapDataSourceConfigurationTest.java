@@ -19,19 +19,31 @@
 package com.redhat.lightblue.config.ldap;
 
 import static com.redhat.lightblue.util.test.AbstractJsonNodeTest.loadJsonNode;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.Test;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.redhat.lightblue.common.ldap.LdapConnectionLease;
+import com.redhat.lightblue.common.ldap.LdapDataSourceSettings;
+import com.redhat.lightblue.common.ldap.LdapMultiUpdateMode;
+import com.redhat.lightblue.common.ldap.LdapServerCapabilities;
 import com.redhat.lightblue.ldap.test.LdapServerExternalResource;
 import com.redhat.lightblue.ldap.test.LdapServerExternalResource.InMemoryLdapServer;
 import com.unboundid.ldap.sdk.LDAPConnection;
 import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.controls.SimplePagedResultsControl;
+import com.unboundid.ldap.sdk.extensions.StartTransactionExtendedRequest;
 import com.unboundid.ldif.LDIFException;
 
 @InMemoryLdapServer
@@ -62,6 +74,134 @@ public class LdapDataSourceConfigurationTest {
         assertNotNull(conn);
     }
 
+    @Test
+    public void testInitializeFromJson_Settings() throws IOException{
+        JsonNode ldapDatasourcesNode = loadJsonNode("./ldap-datasources.json");
+
+        LdapDataSourceConfiguration configuration = new LdapDataSourceConfiguration();
+        configuration.initializeFromJson(ldapDatasourcesNode.get("ldap"));
+
+        LdapDataSourceSettings settings = configuration.getSettings();
+        assertTrue(settings.isStreamFindResults());
+        assertEquals(50, settings.getStreamBufferSize());
+        assertEquals(500, settings.getPageSize());
+        assertEquals(25, settings.getExistenceCheckChunkSize());
+        assertEquals(8, settings.getMaxOperationsInFlight());
+        assertEquals(2, settings.getDeleteConnections());
+        assertTrue(settings.isTransactionalWrites());
+        assertEquals(LdapMultiUpdateMode.CONTINUE_ON_ERROR, settings.getMultiUpdateMode());
+        assertEquals(60, settings.getCapabilitiesRefreshInterval());
+        assertEquals(5000, settings.getClientSortBufferSize());
+        assertEquals(200, settings.getMaxFilterValues());
+        assertEquals(3, settings.getChunkedSearchConnections());
+    }
+
+    @Test
+    public void testGetCapabilities() throws IOException{
+        JsonNode ldapDatasourcesNode = loadJsonNode("./ldap-datasources.json");
+
+        LdapDataSourceConfiguration configuration = new LdapDataSourceConfiguration();
+        configuration.initializeFromJson(ldapDatasourcesNode.get("ldap"));
+
+        LdapServerCapabilities capabilities = configuration.getCapabilities();
+        assertTrue(capabilities.supportsControl(SimplePagedResultsControl.PAGED_RESULTS_OID));
+        assertTrue(capabilities.supportsExtendedOperation(StartTransactionExtendedRequest.START_TRANSACTION_REQUEST_OID));
+
+        //Read when the pool was started, and not again until the refresh interval has passed.
+        assertSame(capabilities, configuration.getCapabilities());
+    }
+
+    @Test
+    public void testLeaseLdapConnection() throws IOException, LDAPException{
+        JsonNode ldapDatasourcesNode = loadJsonNode("./ldap-datasources.json");
+
+        LdapDataSourceConfiguration configuration = new LdapDataSourceConfiguration();
+        configuration.initializeFromJson(ldapDatasourcesNode.get("ldap"));
+
+        int available = configuration.getLdapConnectionPool().getCurrentAvailableConnections();
+
+        LdapConnectionLease lease = configuration.leaseLdapConnection();
+        try{
+            assertNotNull(lease.getConnection());
+            assertEquals(configuration.getDatabaseName(), lease.getDatabase());
+            assertEquals(Thread.currentThread().getName(), lease.getOwnerThreadName());
+            assertTrue(lease.getAge() >= 0);
+            assertEquals(1, configuration.getActiveLeases().size());
+            assertSame(lease, configuration.getActiveLeases().iterator().next());
+        }
+        finally{
+            lease.close();
+        }
+
+        assertTrue(configuration.getActiveLeases().isEmpty());
+        assertEquals(available, configuration.getLdapConnectionPool().getCurrentAvailableConnections());
+    }
+
+    @Test
+    public void testLeaseLowPriorityLdapConnection() throws IOException, LDAPException{
+        JsonNode ldapDatasourcesNode = loadJsonNode("./ldap-datasources.json");
+
+        LdapDataSourceConfiguration configuration = new LdapDataSourceConfiguration();
+        configuration.initializeFromJson(ldapDatasourcesNode.get("ldap"));
+
+        int available = configuration.getLdapConnectionPool().getCurrentAvailableConnections();
+
+        try(LdapConnectionLease lease = configuration.leaseLowPriorityLdapConnection()){
+            assertNotNull(lease.getConnection());
+            assertEquals(1, configuration.getActiveLeases().size());
+            //Not taken from the regular pool.
+            assertEquals(available, configuration.getLdapConnectionPool().getCurrentAvailableConnections());
+        }
+
+        assertTrue(configuration.getActiveLeases().isEmpty());
+    }
+
+    @Test
+    public void testTryLeaseLowPriorityLdapConnection() throws IOException, LDAPException{
+        JsonNode ldapDatasourcesNode = loadJsonNode("./ldap-datasources.json");
+
+        LdapDataSourceConfiguration configuration = new LdapDataSourceConfiguration();
+        configuration.initializeFromJson(ldapDatasourcesNode.get("ldap"));
+
+        //Fewer low priority connections are configured than chunked searches may use.
+        int lowPriorityConnections = 2;
+        assertTrue(configuration.getSettings().getChunkedSearchConnections() > lowPriorityConnections);
+
+        List<LdapConnectionLease> leases = new ArrayList<>();
+        try{
+            leases.add(configuration.leaseLowPriorityLdapConnection());
+            long start = System.currentTimeMillis();
+            for(int i = 1; i < configuration.getSettings().getChunkedSearchConnections(); i++){
+                LdapConnectionLease lease = configuration.tryLeaseLowPriorityLdapConnection();
+                if(lease == null){
+                    break;
+                }
+                leases.add(lease);
+            }
+            //Never waits for a connection to be released.
+            assertTrue(System.currentTimeMillis() - start < 5000);
+            assertTrue(leases.size() <= lowPriorityConnections);
+            assertNull(configuration.tryLeaseLowPriorityLdapConnection());
+        }
+        finally{
+            for(LdapConnectionLease lease : leases){
+                lease.close();
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLeaseLdapConnection_Closed() throws IOException, LDAPException{
+        JsonNode ldapDatasourcesNode = loadJsonNode("./ldap-datasources.json");
+
+        LdapDataSourceConfiguration configuration = new LdapDataSourceConfiguration();
+        configuration.initializeFromJson(ldapDatasourcesNode.get("ldap"));
+
+        LdapConnectionLease lease = configuration.leaseLdapConnection();
+        lease.close();
+        lease.getConnection();
+    }
+
     @Test(expected = IllegalStateException.class)
     public void testInitializeFromJson_NullNode() throws IOException, LDAPException, LDIFException{
         LdapDataSourceConfiguration configuration = new LdapDataSourceConfiguration();
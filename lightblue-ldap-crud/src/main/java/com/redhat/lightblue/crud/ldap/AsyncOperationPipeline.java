@@ -0,0 +1,148 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import com.redhat.lightblue.common.ldap.LdapConnectionLease;
+import com.unboundid.ldap.sdk.AsyncRequestID;
+import com.unboundid.ldap.sdk.AsyncResultListener;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPResult;
+import com.unboundid.ldap.sdk.ResultCode;
+
+/**
+ * Sends asynchronous ldap operations over a single leased connection without waiting for each
+ * response before sending the next, while never allowing more than <code>maxInFlight</code> to be
+ * outstanding. The cost of a batch is then closer to one round trip than one per operation.
+ * <p>
+ * Each operation is submitted with its own {@link ResultHandler}, so results can be attributed back
+ * to whatever caused them. Handlers are always invoked on the thread that calls {@link #submit} or
+ * {@link #awaitCompletion()}, never on the connection's reader thread, so they need not be thread safe.
+ * </p>
+ *
+ * @author dcrissman
+ */
+public class AsyncOperationPipeline {
+
+    /**
+     * Starts a single asynchronous operation.
+     */
+    public interface Operation {
+        AsyncRequestID submit(LDAPConnection connection, AsyncResultListener listener) throws LDAPException;
+    }
+
+    /**
+     * Receives the outcome of a single operation, successful or not.
+     */
+    public interface ResultHandler {
+        void handle(LDAPResult result);
+    }
+
+    private final LdapConnectionLease lease;
+    private final int maxInFlight;
+    private final BlockingQueue<CompletedOperation> completed = new LinkedBlockingQueue<>();
+    private int inFlight = 0;
+
+    /**
+     * @param lease - {@link LdapConnectionLease} to send the operations over.
+     * @param maxInFlight - maximum number of operations that may be outstanding at once.
+     */
+    public AsyncOperationPipeline(LdapConnectionLease lease, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1: " + maxInFlight);
+        }
+        this.lease = lease;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Submits the <code>operation</code>, first waiting for earlier operations to complete if the
+     * pipeline is full. A request that cannot even be sent is passed straight to the <code>handler</code>.
+     * @throws LDAPException if interrupted while waiting.
+     */
+    public void submit(Operation operation, ResultHandler handler) throws LDAPException {
+        while (inFlight >= maxInFlight) {
+            dispatchNext();
+        }
+
+        try {
+            operation.submit(lease.getConnection(),
+                    (AsyncRequestID requestID, LDAPResult result) -> completed.add(new CompletedOperation(handler, result)));
+            inFlight++;
+        } catch (LDAPException e) {
+            lease.exceptionCaught(e);
+            handler.handle(e.toLDAPResult());
+        }
+    }
+
+    /**
+     * Blocks until every submitted operation has completed and been handled.
+     * @throws LDAPException if interrupted while waiting.
+     */
+    public void awaitCompletion() throws LDAPException {
+        while (inFlight > 0) {
+            dispatchNext();
+        }
+    }
+
+    /**
+     * @return number of operations that have been submitted, but not yet handled.
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    private void dispatchNext() throws LDAPException {
+        CompletedOperation operation;
+        try {
+            operation = completed.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            /*
+             * Responses to the outstanding operations may still arrive, so the connection
+             * cannot be trusted for another request.
+             */
+            LDAPException interrupted = new LDAPException(ResultCode.LOCAL_ERROR,
+                    "Interrupted with " + inFlight + " operations outstanding", e);
+            lease.exceptionCaught(interrupted);
+            inFlight = 0;
+            throw interrupted;
+        }
+
+        inFlight--;
+        if (!ResultCode.isConnectionUsable(operation.result.getResultCode())) {
+            lease.exceptionCaught(new LDAPException(operation.result));
+        }
+        operation.handler.handle(operation.result);
+    }
+
+    private static final class CompletedOperation {
+        private final ResultHandler handler;
+        private final LDAPResult result;
+
+        private CompletedOperation(ResultHandler handler, LDAPResult result) {
+            this.handler = handler;
+            this.result = result;
+        }
+    }
+
+}
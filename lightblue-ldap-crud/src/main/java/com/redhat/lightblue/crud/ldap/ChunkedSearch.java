@@ -0,0 +1,211 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.redhat.lightblue.common.ldap.LdapConnectionLease;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.controls.SimplePagedResultsControl;
+
+/**
+ * Searches for each of the filters a {@link FilterSplitter} split a filter into, spreading the searches
+ * across the leased connections so that as many run at once as there are leases, and merges their
+ * results. An entry matching more than one of the filters is only passed on the first time it is returned.
+ * <p>
+ * As with the {@link AsyncOperationPipeline}, the searches are sent asynchronously, but their entries
+ * are only ever passed on from the thread calling {@link #run}, never from a connection's reader
+ * thread, so the consumer need not be thread safe. Each search streams its entries through a
+ * {@link StreamingSearchResultListener}, so whether or not it is paged, no more than a buffer of
+ * entries per lease is ever held; a search that gets that far ahead of the consumer is held up
+ * until it catches up.
+ * </p>
+ *
+ * @author dcrissman
+ */
+public class ChunkedSearch {
+
+    private final List<LdapConnectionLease> leases;
+    private final int pageSize;
+    private final int bufferSize;
+
+    private LDAPException failure = null;
+
+    /**
+     * @param leases - {@link LdapConnectionLease}s to search over, at least one is required.
+     * @param pageSize - if greater than 0, each search is paged with the Simple Paged Results control.
+     * @param bufferSize - maximum number of entries each search may read ahead of the consumer.
+     */
+    public ChunkedSearch(List<LdapConnectionLease> leases, int pageSize, int bufferSize) {
+        if (leases.isEmpty()) {
+            throw new IllegalArgumentException("At least one lease is required");
+        }
+        this.leases = leases;
+        this.pageSize = pageSize;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @param searchRequest - {@link SearchRequest} to search with for each of the <code>filters</code>,
+     * in place of its own.
+     * @param filters - filters whose matches together make up the result.
+     * @param consumer - receives each entry matching any of the <code>filters</code> once.
+     * @throws LDAPException if any of the searches failed, in which case the entries passed on are incomplete.
+     */
+    public void run(SearchRequest searchRequest, List<Filter> filters, Consumer<SearchResultEntry> consumer) throws LDAPException {
+        Deque<Filter> pending = new ArrayDeque<>(filters);
+        Deque<Chunk> running = new ArrayDeque<>();
+        Set<String> returnedDns = new HashSet<>();
+        failure = null;
+
+        for (LdapConnectionLease lease : leases) {
+            if (pending.isEmpty() || (failure != null)) {
+                break;
+            }
+            start(new Chunk(lease, searchRequest, pending.poll()), null, running);
+        }
+
+        //The searches are read in turn, the others are held up once they fill their buffer.
+        while (!running.isEmpty()) {
+            Chunk chunk = running.poll();
+            SearchResult result = drain(chunk, (SearchResultEntry entry) -> {
+                if ((failure == null) && returnedDns.add(entry.getParsedDN().toNormalizedString())) {
+                    consumer.accept(entry);
+                }
+            });
+            if (failure != null) {
+                //Only waiting for the other searches to complete, so that their connections can be reused.
+                continue;
+            }
+            if (!ResultCode.SUCCESS.equals(result.getResultCode())) {
+                failure = new LDAPException(result);
+                continue;
+            }
+
+            ASN1OctetString cookie = getNextPageCookie(result);
+            if (cookie != null) {
+                start(chunk, cookie, running);
+            }
+            else if (!pending.isEmpty()) {
+                start(new Chunk(chunk.lease, searchRequest, pending.poll()), null, running);
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Sends the search for the <code>chunk</code>, or its next page if there is a <code>cookie</code>,
+     * and queues it to be read.
+     */
+    private void start(Chunk chunk, ASN1OctetString cookie, Deque<Chunk> running) {
+        SearchRequest request = chunk.request;
+        if (pageSize > 0) {
+            request.replaceControl(new SimplePagedResultsControl(pageSize, cookie));
+        }
+        chunk.listener.reset();
+
+        try {
+            chunk.lease.getConnection().asyncSearch(request);
+            running.add(chunk);
+        } catch (LDAPException e) {
+            chunk.lease.exceptionCaught(e);
+            failure = e;
+        }
+    }
+
+    /**
+     * Passes each entry returned for the <code>chunk</code> to the <code>consumer</code> until its
+     * search completes.
+     * @return the {@link SearchResult} of the search.
+     */
+    private SearchResult drain(Chunk chunk, Consumer<SearchResultEntry> consumer) throws LDAPException {
+        try {
+            SearchResultEntry entry;
+            while ((entry = chunk.listener.take()) != null) {
+                consumer.accept(entry);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            //Results of the outstanding searches may still arrive, so none of the connections can be trusted.
+            LDAPException interrupted = new LDAPException(ResultCode.LOCAL_ERROR,
+                    "Interrupted with searches outstanding", e);
+            for (LdapConnectionLease lease : leases) {
+                lease.exceptionCaught(interrupted);
+            }
+            throw interrupted;
+        }
+
+        SearchResult result = chunk.listener.getSearchResult();
+        if (!ResultCode.isConnectionUsable(result.getResultCode())) {
+            chunk.lease.exceptionCaught(new LDAPException(result));
+        }
+        return result;
+    }
+
+    /**
+     * @return the cookie to request the next page with, or <code>null</code> if there are no more pages.
+     */
+    private ASN1OctetString getNextPageCookie(SearchResult result) throws LDAPException {
+        if (pageSize <= 0) {
+            return null;
+        }
+        SimplePagedResultsControl pagedResponse = SimplePagedResultsControl.get(result);
+        if ((pagedResponse != null) && pagedResponse.moreResultsToReturn()) {
+            return pagedResponse.getCookie();
+        }
+        return null;
+    }
+
+    /**
+     * The search for a single filter, whose results are streamed from the connection's reader thread.
+     */
+    private final class Chunk {
+
+        private final LdapConnectionLease lease;
+        private final StreamingSearchResultListener listener;
+        private final SearchRequest request;
+
+        /**
+         * @param searchRequest - {@link SearchRequest} to copy, with the <code>filter</code> in place of its own.
+         */
+        private Chunk(LdapConnectionLease lease, SearchRequest searchRequest, Filter filter) {
+            this.lease = lease;
+            listener = new StreamingSearchResultListener(bufferSize);
+            request = new SearchRequest(listener, searchRequest.getControls(), searchRequest.getBaseDN(), searchRequest.getScope(),
+                    searchRequest.getDereferencePolicy(), searchRequest.getSizeLimit(), searchRequest.getTimeLimitSeconds(),
+                    searchRequest.typesOnly(), filter, searchRequest.getAttributes());
+        }
+
+    }
+
+}
@@ -0,0 +1,333 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.redhat.lightblue.util.JsonDoc;
+
+/**
+ * Sorts the documents of a search on the client, for when the server cannot sort them itself.
+ * No more than <code>bufferSize</code> documents are ever held in memory:
+ * <ul>
+ * <li>if only the first <code>limit</code> documents are wanted and they fit in the buffer, only
+ * the best of them seen so far are kept, in a heap</li>
+ * <li>otherwise, every time the buffer fills up it is sorted and written out to a temporary file
+ * as a run, and the runs are merged as the sorted documents are read</li>
+ * </ul>
+ * Documents that compare as equal keep the order they were added in. The sorter must be closed
+ * to delete its temporary files.
+ *
+ * @author dcrissman
+ */
+public class ClientSideSorter implements AutoCloseable {
+
+    private final DocumentComparator comparator;
+    private final Comparator<SortableDocument> sortOrder;
+    private final int bufferSize;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /** Only used when the wanted documents fit in the buffer, otherwise <code>null</code>. */
+    private final PriorityQueue<SortableDocument> heap;
+    private final long limit;
+
+    private final List<SortableDocument> buffer = new ArrayList<>();
+    private final List<File> runs = new ArrayList<>();
+    private final List<RunReader> readers = new ArrayList<>();
+
+    private long size = 0;
+    private IOException failure;
+
+    /**
+     * @param comparator - {@link DocumentComparator} to sort by.
+     * @param limit - number of leading documents that are wanted, or {@link ResultWindow#UNBOUNDED}.
+     * @param bufferSize - maximum number of documents to hold in memory.
+     * @param factory - {@link JsonNodeFactory} to read spilled documents back with.
+     */
+    public ClientSideSorter(DocumentComparator comparator, long limit, int bufferSize, JsonNodeFactory factory) {
+        this.comparator = comparator;
+        this.limit = limit;
+        this.bufferSize = bufferSize;
+        mapper.setNodeFactory(factory);
+
+        sortOrder = (SortableDocument document1, SortableDocument document2) -> {
+            int result = comparator.compareKeys(document1.keys, document2.keys);
+            return (result != 0) ? result : Long.compare(document1.sequence, document2.sequence);
+        };
+
+        if ((limit != ResultWindow.UNBOUNDED) && (limit <= bufferSize)) {
+            //Reversed, so that the head is the first document to give up when a better one arrives.
+            heap = new PriorityQueue<>((int) Math.max(1, limit), sortOrder.reversed());
+        }
+        else {
+            heap = null;
+        }
+    }
+
+    /**
+     * Adds a document to be sorted. Once a temporary file could not be written, further documents
+     * are ignored and the failure is available from {@link #getFailure()}.
+     */
+    public void add(JsonDoc document) {
+        if (failure != null) {
+            return;
+        }
+
+        SortableDocument sortable = new SortableDocument(document, comparator.extractKeys(document), size++);
+        if (heap != null) {
+            if (heap.size() < limit) {
+                heap.offer(sortable);
+            }
+            else if (sortOrder.compare(sortable, heap.peek()) < 0) {
+                heap.poll();
+                heap.offer(sortable);
+            }
+            return;
+        }
+
+        buffer.add(sortable);
+        if (buffer.size() >= bufferSize) {
+            try {
+                spill();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    private void spill() throws IOException {
+        buffer.sort(sortOrder);
+
+        File run = File.createTempFile("lightblue-ldap-sort", ".json");
+        runs.add(run);
+        try (BufferedWriter writer = Files.newBufferedWriter(run.toPath(), StandardCharsets.UTF_8)) {
+            for (SortableDocument sortable : buffer) {
+                //Serialized json never contains a raw line break, so each document is a line.
+                writer.write(mapper.writeValueAsString(sortable.document.getRoot()));
+                writer.newLine();
+            }
+        }
+        buffer.clear();
+    }
+
+    /**
+     * @return number of documents added.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the failure that stopped the sort, or <code>null</code> if there was none.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * May only be called once, after the last document has been added.
+     * @return the documents in sorted order. If a limit was given, only at least that many leading
+     * documents are guaranteed to be included.
+     */
+    public Iterator<JsonDoc> sorted() {
+        if (heap != null) {
+            List<SortableDocument> top = new ArrayList<>(heap);
+            heap.clear();
+            top.sort(sortOrder);
+            return toDocuments(top.iterator());
+        }
+
+        buffer.sort(sortOrder);
+        if (runs.isEmpty()) {
+            return toDocuments(buffer.iterator());
+        }
+
+        try {
+            return new MergingIterator();
+        } catch (IOException e) {
+            failure = e;
+            return Collections.emptyIterator();
+        }
+    }
+
+    private static Iterator<JsonDoc> toDocuments(Iterator<SortableDocument> sortables) {
+        return new Iterator<JsonDoc>() {
+
+            @Override
+            public boolean hasNext() {
+                return sortables.hasNext();
+            }
+
+            @Override
+            public JsonDoc next() {
+                return sortables.next().document;
+            }
+
+        };
+    }
+
+    /**
+     * Deletes the temporary files.
+     */
+    @Override
+    public void close() {
+        for (RunReader reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                //Only being read from, so nothing is lost.
+            }
+        }
+        readers.clear();
+
+        for (File run : runs) {
+            run.delete();
+        }
+        runs.clear();
+        buffer.clear();
+    }
+
+    private static final class SortableDocument {
+
+        private final JsonDoc document;
+        private final Object[] keys;
+        private final long sequence;
+
+        private SortableDocument(JsonDoc document, Object[] keys, long sequence) {
+            this.document = document;
+            this.keys = keys;
+            this.sequence = sequence;
+        }
+
+    }
+
+    private interface Run {
+        /**
+         * @return the next document of the run, or <code>null</code> if it is exhausted.
+         */
+        SortableDocument next() throws IOException;
+    }
+
+    private final class RunReader implements Run {
+
+        private final BufferedReader reader;
+        private final long sequence;
+
+        /**
+         * @param sequence - runs are written in the order their documents were added, so the
+         * index of the run is enough to keep equal documents in order.
+         */
+        private RunReader(File run, long sequence) throws IOException {
+            reader = Files.newBufferedReader(run.toPath(), StandardCharsets.UTF_8);
+            this.sequence = sequence;
+        }
+
+        @Override
+        public SortableDocument next() throws IOException {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            JsonDoc document = new JsonDoc(mapper.readTree(line));
+            return new SortableDocument(document, comparator.extractKeys(document), sequence);
+        }
+
+        private void close() throws IOException {
+            reader.close();
+        }
+
+    }
+
+    /**
+     * k-way merge of the runs written to disk and what is left in the buffer, holding only the
+     * current document of each run in memory.
+     */
+    private final class MergingIterator implements Iterator<JsonDoc> {
+
+        private final PriorityQueue<RunHead> heads = new PriorityQueue<>(
+                (RunHead head1, RunHead head2) -> sortOrder.compare(head1.document, head2.document));
+
+        private MergingIterator() throws IOException {
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(runs.get(i), i);
+                readers.add(reader);
+                advance(reader);
+            }
+
+            //Added after every document on disk, so its own sequence numbers already order it last.
+            Iterator<SortableDocument> remaining = buffer.iterator();
+            advance(() -> remaining.hasNext() ? remaining.next() : null);
+        }
+
+        private void advance(Run run) throws IOException {
+            SortableDocument document = run.next();
+            if (document != null) {
+                heads.offer(new RunHead(document, run));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public JsonDoc next() {
+            RunHead head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            try {
+                advance(head.run);
+            } catch (IOException e) {
+                failure = e;
+                heads.clear();
+            }
+            return head.document.document;
+        }
+
+    }
+
+    private static final class RunHead {
+
+        private final SortableDocument document;
+        private final Run run;
+
+        private RunHead(SortableDocument document, Run run) {
+            this.document = document;
+            this.run = run;
+        }
+
+    }
+
+}
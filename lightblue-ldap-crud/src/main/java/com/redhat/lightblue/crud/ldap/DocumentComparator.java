@@ -0,0 +1,139 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.redhat.lightblue.metadata.ArrayField;
+import com.redhat.lightblue.metadata.EntityMetadata;
+import com.redhat.lightblue.metadata.FieldTreeNode;
+import com.redhat.lightblue.metadata.Type;
+import com.redhat.lightblue.query.CompositeSortKey;
+import com.redhat.lightblue.query.Sort;
+import com.redhat.lightblue.query.SortKey;
+import com.redhat.lightblue.util.JsonDoc;
+import com.redhat.lightblue.util.Path;
+
+/**
+ * Orders documents the way a server side sort (RFC 2891) would, but compares values by the
+ * {@link Type} of their field in the {@link EntityMetadata} rather than as strings, so that
+ * numbers and dates sort correctly. As with a server side sort:
+ * <ul>
+ * <li>a missing value counts as larger than any other, so sorts last, or first if the key is descending</li>
+ * <li>an array sorts by its smallest element, or its largest element when the key is descending</li>
+ * </ul>
+ * The sort key values are parsed once per document by {@link #extractKeys(JsonDoc)}, and
+ * then compared with {@link #compareKeys(Object[], Object[])}.
+ *
+ * @author dcrissman
+ */
+public class DocumentComparator implements Comparator<JsonDoc> {
+
+    private final List<Path> fields = new ArrayList<>();
+    private final List<Type> types = new ArrayList<>();
+    private final List<Boolean> descending = new ArrayList<>();
+
+    public DocumentComparator(EntityMetadata md, Sort sort) {
+        addKeys(md, sort);
+    }
+
+    /*
+     * Recursive method!
+     */
+    private void addKeys(EntityMetadata md, Sort sort) {
+        if (sort instanceof CompositeSortKey) {
+            for (Sort subSort : ((CompositeSortKey) sort).getKeys()) {
+                addKeys(md, subSort);
+            }
+        }
+        else if (sort instanceof SortKey) {
+            SortKey key = (SortKey) sort;
+            FieldTreeNode field = md.resolve(key.getField());
+            fields.add(key.getField());
+            types.add((field instanceof ArrayField) ? ((ArrayField) field).getElement().getType() : field.getType());
+            descending.add(key.isDesc());
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported Sort type: " + sort.getClass().getName());
+        }
+    }
+
+    @Override
+    public int compare(JsonDoc doc1, JsonDoc doc2) {
+        return compareKeys(extractKeys(doc1), extractKeys(doc2));
+    }
+
+    /**
+     * @return the value of each sort key in the <code>doc</code>, <code>null</code> where it has none.
+     */
+    public Object[] extractKeys(JsonDoc doc) {
+        Object[] keys = new Object[fields.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = extractKey(doc.get(fields.get(i)), types.get(i), descending.get(i));
+        }
+        return keys;
+    }
+
+    private static Object extractKey(JsonNode node, Type type, boolean desc) {
+        if ((node == null) || node.isNull()) {
+            return null;
+        }
+        if (!node.isArray()) {
+            return type.fromJson(node);
+        }
+
+        Object key = null;
+        for (Iterator<JsonNode> elements = node.elements(); elements.hasNext();) {
+            Object value = extractKey(elements.next(), type, desc);
+            if ((value != null)
+                    && ((key == null) || ((type.compare(value, key) < 0) != desc))) {
+                key = value;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Compares the keys previously extracted from two documents.
+     */
+    public int compareKeys(Object[] keys1, Object[] keys2) {
+        for (int i = 0; i < keys1.length; i++) {
+            int result;
+            if (keys1[i] == null) {
+                result = (keys2[i] == null) ? 0 : 1;
+            }
+            else if (keys2[i] == null) {
+                result = -1;
+            }
+            else {
+                result = types.get(i).compare(keys1[i], keys2[i]);
+            }
+
+            if (result != 0) {
+                return descending.get(i) ? -result : result;
+            }
+        }
+        return 0;
+    }
+
+}
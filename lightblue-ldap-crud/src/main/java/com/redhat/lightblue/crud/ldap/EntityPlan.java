@@ -0,0 +1,357 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.redhat.lightblue.common.ldap.LdapConstant;
+import com.redhat.lightblue.common.ldap.LdapDataStore;
+import com.redhat.lightblue.common.ldap.LdapFieldNameTranslator;
+import com.redhat.lightblue.common.ldap.LdapSaveStrategy;
+import com.redhat.lightblue.common.ldap.LdapUnindexedQueryPolicy;
+import com.redhat.lightblue.eval.FieldAccessRoleEvaluator;
+import com.redhat.lightblue.eval.Projector;
+import com.redhat.lightblue.metadata.EntityMetadata;
+import com.redhat.lightblue.metadata.Field;
+import com.redhat.lightblue.metadata.FieldCursor;
+import com.redhat.lightblue.metadata.PredefinedFields;
+import com.redhat.lightblue.metadata.SimpleField;
+import com.redhat.lightblue.query.Projection;
+import com.redhat.lightblue.query.QueryExpression;
+import com.redhat.lightblue.query.Sort;
+import com.redhat.lightblue.util.Path;
+import com.unboundid.ldap.sdk.Filter;
+
+/**
+ * Everything about an entity that the {@link LdapCRUDController} would otherwise work out again on
+ * every request: its {@link LdapDataStore}, the mapping between field paths and attribute names, the
+ * paths of the dn and unique fields, and the attributes and {@link Projector}s needed for each shape
+ * of request seen so far.
+ *
+ * @author dcrissman
+ *
+ * @see EntityPlanCache
+ */
+public class EntityPlan {
+
+    /** Maximum number of request shapes remembered per entity, least recently used are dropped first. */
+    static final int MAX_SHAPES = 256;
+
+    /** Keys whose values are literals, which do not change the fields a query needs. */
+    private static final Set<String> LITERAL_KEYS = new HashSet<>(Arrays.asList("rvalue", "values", "regex"));
+
+    private final EntityMetadata md;
+    private final LdapDataStore store;
+    private final LdapFieldNameTranslator fieldNameTranslator;
+    private final LdapSaveStrategy saveStrategy;
+    private final IndexClassifier indexClassifier;
+    private final LdapUnindexedQueryPolicy unindexedQueryPolicy;
+    private final Path dnPath;
+    private final Path uniqueFieldPath;
+    private final Set<String> allAttributes;
+    private final Set<String> singleValuedAttributes;
+    private final List<Filter> objectClassFilters;
+
+    private final Map<String, Set<String>> requiredAttributes = createShapeCache();
+    private final Map<String, Projector> projectors = createShapeCache();
+    private final Map<String, QueryTemplate> queryTemplates = createShapeCache();
+
+    public EntityPlan(EntityMetadata md) {
+        this.md = md;
+        store = LdapCrudUtil.getLdapDataStore(md);
+        fieldNameTranslator = new PrecomputedFieldNameTranslator(md, LdapCrudUtil.getLdapFieldNameTranslator(md));
+        saveStrategy = LdapCrudUtil.getSaveStrategy(md);
+        indexClassifier = LdapCrudUtil.getIndexes(md).isEmpty() ? null : new IndexClassifier(LdapCrudUtil.getIndexes(md));
+        unindexedQueryPolicy = LdapCrudUtil.getUnindexedQueryPolicy(md);
+        dnPath = fieldNameTranslator.translateAttributeName(LdapConstant.ATTRIBUTE_DN);
+        uniqueFieldPath = fieldNameTranslator.translateAttributeName(store.getUniqueAttribute());
+        allAttributes = Collections.unmodifiableSet(gatherAllAttributes());
+        singleValuedAttributes = Collections.unmodifiableSet(gatherSingleValuedAttributes());
+
+        List<Filter> filters = new ArrayList<>();
+        for (String objectClass : store.getObjectClasses()) {
+            filters.add(Filter.createEqualityFilter(LdapConstant.ATTRIBUTE_OBJECT_CLASS, objectClass));
+        }
+        objectClassFilters = Collections.unmodifiableList(filters);
+    }
+
+    public EntityMetadata getEntityMetadata() {
+        return md;
+    }
+
+    public LdapDataStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return a filter for each of the object classes the {@link LdapDataStore} requires of the
+     * entries of the entity, to be ANDed into every search for them.
+     */
+    public List<Filter> getObjectClassFilters() {
+        return objectClassFilters;
+    }
+
+    public LdapFieldNameTranslator getFieldNameTranslator() {
+        return fieldNameTranslator;
+    }
+
+    public LdapSaveStrategy getSaveStrategy() {
+        return saveStrategy;
+    }
+
+    /**
+     * @return the {@link IndexClassifier} for the indexes declared on the entity, or <code>null</code>
+     * if none were declared.
+     */
+    public IndexClassifier getIndexClassifier() {
+        return indexClassifier;
+    }
+
+    public LdapUnindexedQueryPolicy getUnindexedQueryPolicy() {
+        return unindexedQueryPolicy;
+    }
+
+    /**
+     * @return path of the field holding the dn.
+     */
+    public Path getDnPath() {
+        return dnPath;
+    }
+
+    /**
+     * @return path of the field holding the unique attribute the dn is derived from.
+     */
+    public Path getUniqueFieldPath() {
+        return uniqueFieldPath;
+    }
+
+    /**
+     * @return the attribute names of every field of the entity.
+     */
+    public Set<String> getAllAttributes() {
+        return allAttributes;
+    }
+
+    /**
+     * @return the attribute names of the fields that hold a single value.
+     */
+    public Set<String> getSingleValuedAttributes() {
+        return singleValuedAttributes;
+    }
+
+    /**
+     * Returns the attribute names that are needed for the operation to be successful.
+     * @param projection - (optional) {@link Projection}.
+     * @param query - (optional) {@link QueryExpression}.
+     * @param sort - (optional) {@link Sort}.
+     * @return unmodifiable <code>Set</code> of attribute names.
+     */
+    public Set<String> getRequiredAttributes(Projection projection, QueryExpression query, Sort sort) {
+        String shape = keyOf(projection) + '|' + ((query == null) ? "" : toShape(query.toJson()).toString()) + '|' + keyOf(sort);
+        return requiredAttributes.computeIfAbsent(shape,
+                (String key) -> Collections.unmodifiableSet(gatherRequiredAttributes(projection, query, sort)));
+    }
+
+    /**
+     * @return the {@link QueryTemplate} for the shape of the <code>query</code>, compiled from the
+     * <code>query</code> if no other query of its shape has been planned yet.
+     */
+    QueryTemplate getQueryTemplate(QueryExpression query) {
+        return queryTemplates.computeIfAbsent(toShape(query.toJson()).toString(),
+                (String key) -> QueryTemplate.compile(this, query));
+    }
+
+    /**
+     * @return the attributes needed to evaluate the <code>projection</code> of written entries, or
+     * an empty <code>Set</code> if there is no projection.
+     */
+    public Set<String> getProjectedAttributes(Projection projection) {
+        if (projection == null) {
+            return Collections.emptySet();
+        }
+        return getRequiredAttributes(projection, null, null);
+    }
+
+    /**
+     * @return a {@link Projector} for the <code>projection</code>, that also hides the fields the
+     * <code>callerRoles</code> may not access for the <code>operation</code>.
+     */
+    public Projector getProjector(Projection projection, Set<String> callerRoles, FieldAccessRoleEvaluator.Operation operation) {
+        String shape = keyOf(projection) + '|' + operation + '|' + ((callerRoles == null) ? "" : new TreeSet<>(callerRoles));
+        return projectors.computeIfAbsent(shape, (String key) -> Projector.getInstance(
+                Projection.add(
+                        projection,
+                        new FieldAccessRoleEvaluator(md, callerRoles).getExcludedFields(operation)
+                        ),
+                md));
+    }
+
+    private Set<String> gatherRequiredAttributes(Projection projection, QueryExpression query, Sort sort) {
+        Set<String> attributes = new HashSet<>();
+
+        FieldCursor cursor = md.getFieldCursor();
+        while (cursor.next()) {
+            Path node = cursor.getCurrentPath();
+            String fieldName = node.getLast();
+
+            if (((projection != null) && projection.isFieldRequiredToEvaluateProjection(node))
+                    || ((query != null) && query.isRequired(node))
+                    || ((sort != null) && sort.isRequired(node))) {
+                if (PredefinedFields.isFieldAnArrayCount(fieldName, md.getFields())) {
+                    /*
+                     * Handles the case of an array count field, which will not actually exist in
+                     * the ldap entity.
+                     */
+                    node = node.mutableCopy().setLast(PredefinedFields.createArrayFieldNameFromCountField(fieldName)).immutableCopy();
+                }
+                attributes.add(fieldNameTranslator.translateFieldName(node));
+            }
+        }
+
+        return attributes;
+    }
+
+    private Set<String> gatherAllAttributes() {
+        Set<String> attributes = new HashSet<>();
+        Iterator<Field> fields = md.getFields().getFields();
+        while (fields.hasNext()) {
+            Field field = fields.next();
+            if (!PredefinedFields.isFieldAnArrayCount(field.getName(), md.getFields())) {
+                attributes.add(fieldNameTranslator.translateFieldName(field.getFullPath()));
+            }
+        }
+        return attributes;
+    }
+
+    private Set<String> gatherSingleValuedAttributes() {
+        Set<String> attributes = new HashSet<>();
+        FieldCursor cursor = md.getFieldCursor();
+        while (cursor.next()) {
+            Path path = cursor.getCurrentPath();
+            if ((cursor.getCurrentNode() instanceof SimpleField)
+                    && (path.nAnys() == 0)
+                    && !PredefinedFields.isFieldAnArrayCount(path.getLast(), md.getFields())) {
+                attributes.add(fieldNameTranslator.translateFieldName(path));
+            }
+        }
+        //DN is not an attribute.
+        attributes.remove(fieldNameTranslator.translateFieldName(dnPath));
+        return attributes;
+    }
+
+    private static String keyOf(Object expression) {
+        return (expression == null) ? "" : expression.toString();
+    }
+
+    /**
+     * Replaces the literal values of a query with a placeholder, as which fields a query needs only
+     * depends on the fields it refers to.
+     */
+    static JsonNode toShape(JsonNode query) {
+        if (query instanceof ObjectNode) {
+            ObjectNode shape = JsonNodeFactory.instance.objectNode();
+            Iterator<Map.Entry<String, JsonNode>> fields = query.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                shape.set(field.getKey(), LITERAL_KEYS.contains(field.getKey())
+                        ? JsonNodeFactory.instance.textNode("?")
+                        : toShape(field.getValue()));
+            }
+            return shape;
+        }
+        else if (query instanceof ArrayNode) {
+            ArrayNode shape = JsonNodeFactory.instance.arrayNode();
+            for (JsonNode element : query) {
+                shape.add(toShape(element));
+            }
+            return shape;
+        }
+        return query;
+    }
+
+    private static <V> Map<String, V> createShapeCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, V>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > MAX_SHAPES;
+            }
+
+        });
+    }
+
+    /**
+     * Answers from the attribute name of every field of the entity, worked out once, and only asks
+     * the entity's own {@link LdapFieldNameTranslator} about anything else.
+     */
+    private static class PrecomputedFieldNameTranslator implements LdapFieldNameTranslator {
+
+        private final LdapFieldNameTranslator delegate;
+        private final Map<Path, String> fieldsToAttributes = new HashMap<>();
+        private final Map<String, Path> attributesToFields = new HashMap<>();
+
+        PrecomputedFieldNameTranslator(EntityMetadata md, LdapFieldNameTranslator delegate) {
+            this.delegate = delegate;
+
+            FieldCursor cursor = md.getFieldCursor();
+            while (cursor.next()) {
+                Path path = cursor.getCurrentPath();
+                String attributeName = delegate.translateFieldName(path);
+                fieldsToAttributes.put(path, attributeName);
+                attributesToFields.put(attributeName, delegate.translateAttributeName(attributeName));
+            }
+            for (String attributeName : new String[]{
+                    LdapConstant.ATTRIBUTE_DN,
+                    LdapConstant.ATTRIBUTE_OBJECT_CLASS,
+                    LdapCrudUtil.getLdapDataStore(md).getUniqueAttribute()}) {
+                attributesToFields.put(attributeName, delegate.translateAttributeName(attributeName));
+            }
+        }
+
+        @Override
+        public String translateFieldName(Path path) {
+            String attributeName = fieldsToAttributes.get(path);
+            return (attributeName == null) ? delegate.translateFieldName(path) : attributeName;
+        }
+
+        @Override
+        public Path translateAttributeName(String attributeName) {
+            Path path = attributesToFields.get(attributeName);
+            return (path == null) ? delegate.translateAttributeName(attributeName) : path;
+        }
+
+    }
+
+}
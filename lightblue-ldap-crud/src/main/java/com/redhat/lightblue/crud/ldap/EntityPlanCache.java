@@ -0,0 +1,93 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.redhat.lightblue.metadata.EntityInfo;
+import com.redhat.lightblue.metadata.EntityMetadata;
+import com.redhat.lightblue.metadata.EntitySchema;
+
+/**
+ * {@link EntityPlan}s by entity name and version. A version of an entity is not expected to change,
+ * but anything changed through the {@link LdapMetadataListener} is evicted regardless. That only
+ * happens on the node the change was made on, so a plan is also only reused for as long as the
+ * metadata it is looked up with is the same {@link EntityInfo} and {@link EntitySchema} it was
+ * built from. Metadata read anew, as after any change elsewhere, results in a new plan.
+ *
+ * @author dcrissman
+ */
+public class EntityPlanCache {
+
+    private final Map<String, EntityPlan> plans = new ConcurrentHashMap<>();
+
+    /**
+     * @return the {@link EntityPlan} for the <code>md</code>, which is created if there is not one yet
+     * or the cached one was built from other metadata.
+     */
+    public EntityPlan get(EntityMetadata md) {
+        return plans.compute(toKey(md.getName(), versionOf(md)),
+                (String key, EntityPlan plan) -> isBuiltFrom(plan, md) ? plan : new EntityPlan(md));
+    }
+
+    /**
+     * Evicts the plan for the version of the entity described by <code>md</code>.
+     */
+    public void evict(EntityMetadata md) {
+        evict(md.getName(), versionOf(md));
+    }
+
+    /**
+     * Evicts the plan for a single version of an entity.
+     */
+    public void evict(String entityName, String version) {
+        plans.remove(toKey(entityName, version));
+    }
+
+    /**
+     * Evicts the plans for every version of an entity.
+     */
+    public void evict(String entityName) {
+        String prefix = toKey(entityName, "");
+        plans.keySet().removeIf((String key) -> key.startsWith(prefix));
+    }
+
+    public int size() {
+        return plans.size();
+    }
+
+    private static boolean isBuiltFrom(EntityPlan plan, EntityMetadata md) {
+        if (plan == null) {
+            return false;
+        }
+        EntityMetadata planMd = plan.getEntityMetadata();
+        return (planMd == md)
+                || ((planMd.getEntityInfo() == md.getEntityInfo()) && (planMd.getEntitySchema() == md.getEntitySchema()));
+    }
+
+    private static String versionOf(EntityMetadata md) {
+        return (md.getVersion() == null) ? null : md.getVersion().getValue();
+    }
+
+    private static String toKey(String entityName, String version) {
+        return entityName + '|' + version;
+    }
+
+}
@@ -20,6 +20,7 @@ package com.redhat.lightblue.crud.ldap;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
 
 import com.redhat.lightblue.common.ldap.LdapFieldNameTranslator;
 import com.redhat.lightblue.query.AllMatchExpression;
@@ -28,6 +29,7 @@ import com.redhat.lightblue.query.ArrayMatchExpression;
 import com.redhat.lightblue.query.FieldComparisonExpression;
 import com.redhat.lightblue.query.NaryFieldRelationalExpression;
 import com.redhat.lightblue.query.NaryLogicalExpression;
+import com.redhat.lightblue.query.NaryLogicalOperator;
 import com.redhat.lightblue.query.NaryValueRelationalExpression;
 import com.redhat.lightblue.query.QueryExpression;
 import com.redhat.lightblue.query.QueryIteratorSkeleton;
@@ -36,10 +38,16 @@ import com.redhat.lightblue.query.UnaryLogicalExpression;
 import com.redhat.lightblue.query.Value;
 import com.redhat.lightblue.query.ValueComparisonExpression;
 import com.redhat.lightblue.util.Path;
+import com.unboundid.ldap.sdk.Entry;
 import com.unboundid.ldap.sdk.Filter;
 
 /**
  * Builds a UnboundID {@link Filter} from a Lightblue {@link QueryExpression}.
+ * <p>
+ * Regular expressions can only be approximated by substring filters (see {@link RegexFilter}), in which
+ * case the filter matches more entries than the query does (see {@link #isApproximation(QueryExpression)}),
+ * and the entries returned for it must still be checked against the query.
+ * </p>
  *
  * @author dcrissman
  */
@@ -52,127 +60,334 @@ public class FilterBuilder {
     }
 
     public Filter build(QueryExpression query){
-        return new FilterBuildingQueryIterator().iterate(query);
+        return compile(query).bind(query);
     }
 
-    private class FilterBuildingQueryIterator extends QueryIteratorSkeleton<Filter> {
+    /**
+     * Builds a filter for a <code>query</code> that LDAP may not be able to fully express. Expressions
+     * it cannot express are replaced by a filter that matches every entry they might, so the filter
+     * matches at least every entry the <code>query</code> does, and the entries returned for it must
+     * still be evaluated against the <code>query</code> itself.
+     */
+    public Filter buildApproximation(QueryExpression query){
+        return compileApproximation(query).bind(query);
+    }
 
-        @Override
-        protected Filter itrArrayContainsExpression(ArrayContainsExpression query, Path path){
-            String attributeName = fieldNameTranslator.translateFieldName(query.getArray());
+    /**
+     * Compiles the {@link FilterTemplate} that {@link #build(QueryExpression)} binds the <code>query</code>
+     * to, which can then be bound to any query of the same shape.
+     */
+    public FilterTemplate compile(QueryExpression query){
+        return new FilterTemplate(new TemplateCompilingQueryIterator(false).iterate(query));
+    }
+
+    /**
+     * Compiles the {@link FilterTemplate} that {@link #buildApproximation(QueryExpression)} binds the
+     * <code>query</code> to, which can then be bound to any query of the same shape.
+     */
+    public FilterTemplate compileApproximation(QueryExpression query){
+        return new FilterTemplate(new TemplateCompilingQueryIterator(true).iterate(query));
+    }
 
-            List<Filter> filters = new ArrayList<>();
-            for(Value value : query.getValues()){
-                filters.add(Filter.createEqualityFilter(attributeName, value.getValue().toString()));
+    /**
+     * @return <code>true</code> if {@link #build(QueryExpression)} can express every part of the
+     * <code>query</code>, otherwise only {@link #buildApproximation(QueryExpression)} can be used.
+     */
+    public static boolean canBuild(QueryExpression query){
+        if((query instanceof FieldComparisonExpression)
+                || (query instanceof NaryFieldRelationalExpression)
+                || (query instanceof ArrayMatchExpression)){
+            return false;
+        }
+        if(query instanceof NaryLogicalExpression){
+            for(QueryExpression subQuery : ((NaryLogicalExpression) query).getQueries()){
+                if(!canBuild(subQuery)){
+                    return false;
+                }
             }
+        }
+        if(query instanceof UnaryLogicalExpression){
+            return canBuild(((UnaryLogicalExpression) query).getQuery());
+        }
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the filter built for the <code>query</code> only approximates a regex
+     * in it, so that the entries returned for it must still be checked against the <code>query</code>.
+     */
+    public boolean isApproximation(QueryExpression query){
+        return new ApproximationFindingQueryIterator().iterate(query);
+    }
+
+    /**
+     * Builds the check that entries returned for the {@link #build(QueryExpression)} filter of a regex
+     * must also pass, because the filter only approximates it. The check is made against the raw values
+     * of the entry, so it is only built for a regex on its own. Any other comparison combined with an
+     * approximated regex has to be evaluated against the translated document, with the types of its fields.
+     * @return the {@link Predicate}, or <code>null</code> if the filter is exact.
+     */
+    public Predicate<Entry> buildPostFilter(RegexMatchExpression query){
+        RegexFilter regexFilter = RegexFilter.translate(fieldNameTranslator.translateFieldName(query.getField()), query);
+        return regexFilter.isExact() ? null : regexFilter::matches;
+    }
+
+    /**
+     * @return the expressions ANDed together at the top of the <code>query</code>, or just the
+     * <code>query</code> if it is not an AND.
+     */
+    static List<QueryExpression> getConjuncts(QueryExpression query){
+        List<QueryExpression> conjuncts = new ArrayList<>();
+        addConjuncts(query, conjuncts);
+        return conjuncts;
+    }
+
+    private static void addConjuncts(QueryExpression query, List<QueryExpression> conjuncts){
+        if((query instanceof NaryLogicalExpression)
+                && (((NaryLogicalExpression) query).getOp() == NaryLogicalOperator._and)){
+            for(QueryExpression subQuery : ((NaryLogicalExpression) query).getQueries()){
+                addConjuncts(subQuery, conjuncts);
+            }
+        }
+        else{
+            conjuncts.add(query);
+        }
+    }
+
+    private class TemplateCompilingQueryIterator extends QueryIteratorSkeleton<FilterTemplate.Slot> {
+
+        /**
+         * Whether the expression being compiled is beneath an odd number of NOTs, in which case an
+         * approximation must match fewer entries rather than more.
+         */
+        private boolean negated = false;
+
+        private final boolean approximateUnsupported;
+
+        TemplateCompilingQueryIterator(boolean approximateUnsupported){
+            this.approximateUnsupported = approximateUnsupported;
+        }
+
+        /**
+         * Comparisons between fields and matches on array elements need the values of the entry,
+         * which a filter cannot refer to.
+         */
+        private FilterTemplate.Slot unsupported(){
+            if(!approximateUnsupported){
+                throw new UnsupportedOperationException("Operation not yet supported");
+            }
+            Filter filter = negated ? Filter.createORFilter(new ArrayList<Filter>()) : Filter.createANDFilter(new ArrayList<Filter>());
+            return (QueryExpression bound) -> filter;
+        }
+
+        @Override
+        protected FilterTemplate.Slot itrArrayContainsExpression(ArrayContainsExpression query, Path path){
+            String attributeName = fieldNameTranslator.translateFieldName(query.getArray());
 
             switch(query.getOp()){
                 case _all:
-                    return Filter.createANDFilter(filters);
+                    return (QueryExpression bound) -> Filter.createANDFilter(
+                            createEqualityFilters(attributeName, ((ArrayContainsExpression) bound).getValues()));
                 case _any:
-                    return Filter.createORFilter(filters);
+                    return (QueryExpression bound) -> Filter.createORFilter(
+                            createEqualityFilters(attributeName, ((ArrayContainsExpression) bound).getValues()));
                 case _none:
-                    return Filter.createNOTFilter(Filter.createANDFilter(filters));
+                    return (QueryExpression bound) -> Filter.createNOTFilter(Filter.createANDFilter(
+                            createEqualityFilters(attributeName, ((ArrayContainsExpression) bound).getValues())));
                 default:
                     throw new UnsupportedOperationException("Unsupported operation: " + query.getOp());
             }
         }
 
         @Override
-        protected Filter itrArrayMatchExpression(ArrayMatchExpression query, Path path){
-            //TODO: Support
-            throw new UnsupportedOperationException("Operation not yet supported");
+        protected FilterTemplate.Slot itrArrayMatchExpression(ArrayMatchExpression query, Path path){
+            return unsupported();
         }
 
         @Override
-        protected Filter itrFieldComparisonExpression(FieldComparisonExpression query, Path path){
-            //TODO: Support
-            throw new UnsupportedOperationException("Operation not yet supported");
+        protected FilterTemplate.Slot itrFieldComparisonExpression(FieldComparisonExpression query, Path path){
+            return unsupported();
         }
 
         @Override
-        protected Filter itrNaryLogicalExpression(NaryLogicalExpression query, Path path){
-            List<Filter> filters = new ArrayList<>();
+        protected FilterTemplate.Slot itrNaryLogicalExpression(NaryLogicalExpression query, Path path){
+            List<FilterTemplate.Slot> slots = new ArrayList<>();
             for(QueryExpression subQuery : query.getQueries()){
-                filters.add(iterate(subQuery, path));
+                slots.add(iterate(subQuery, path));
             }
             switch (query.getOp()){
                 case _and:
-                    return Filter.createANDFilter(filters);
+                    return (QueryExpression bound) -> Filter.createANDFilter(bindAll(slots, (NaryLogicalExpression) bound));
                 case _or:
-                    return Filter.createORFilter(filters);
+                    return (QueryExpression bound) -> Filter.createORFilter(bindAll(slots, (NaryLogicalExpression) bound));
                 default:
                     throw new UnsupportedOperationException("Unsupported operation: " + query.getOp());
             }
         }
 
         @Override
-        protected Filter itrNaryValueRelationalExpression(NaryValueRelationalExpression query, Path path){
+        protected FilterTemplate.Slot itrNaryValueRelationalExpression(NaryValueRelationalExpression query, Path path){
             String attributeName = fieldNameTranslator.translateFieldName(query.getField());
-            List<Filter> filters = new ArrayList<>();
-            for(Value value : query.getValues()){
-                filters.add(Filter.createEqualityFilter(attributeName, value.getValue().toString()));
-            }
 
             switch (query.getOp()){
                 case _in:
-                    return Filter.createORFilter(filters);
+                    return (QueryExpression bound) -> Filter.createORFilter(
+                            createEqualityFilters(attributeName, ((NaryValueRelationalExpression) bound).getValues()));
                 case _not_in:
-                    return Filter.createNOTFilter(Filter.createORFilter(filters));
+                    return (QueryExpression bound) -> Filter.createNOTFilter(Filter.createORFilter(
+                            createEqualityFilters(attributeName, ((NaryValueRelationalExpression) bound).getValues())));
                 default:
                     throw new UnsupportedOperationException("Unsupported operation: " + query.getOp());
             }
         }
 
         @Override
-        protected Filter itrRegexMatchExpression(RegexMatchExpression query, Path path){
-            //TODO: Support
-            throw new UnsupportedOperationException("Operation not yet supported");
+        protected FilterTemplate.Slot itrRegexMatchExpression(RegexMatchExpression query, Path path){
+            String attributeName = fieldNameTranslator.translateFieldName(query.getField());
+            boolean negatedRegex = negated;
+
+            //How a regex translates depends on the regex itself, so it is only translated once bound.
+            return (QueryExpression bound) -> {
+                RegexFilter regexFilter = RegexFilter.translate(attributeName, (RegexMatchExpression) bound);
+                if(negatedRegex && !regexFilter.isExact()){
+                    //Matches nothing, so that once negated nothing the regex could match is excluded.
+                    return Filter.createORFilter(new ArrayList<Filter>());
+                }
+                return regexFilter.getFilter();
+            };
         }
 
         @Override
-        protected Filter itrUnaryLogicalExpression(UnaryLogicalExpression query, Path path){
+        protected FilterTemplate.Slot itrUnaryLogicalExpression(UnaryLogicalExpression query, Path path){
             switch(query.getOp()){
                 case _not:
-                    return Filter.createNOTFilter(iterate(query.getQuery(), path));
+                    negated = !negated;
+                    try{
+                        FilterTemplate.Slot slot = iterate(query.getQuery(), path);
+                        return (QueryExpression bound) -> Filter.createNOTFilter(slot.bind(((UnaryLogicalExpression) bound).getQuery()));
+                    } finally{
+                        negated = !negated;
+                    }
                 default:
                     throw new UnsupportedOperationException("Unsupported operation: " + query.getOp());
             }
         }
 
         @Override
-        protected Filter itrValueComparisonExpression(ValueComparisonExpression query, Path path){
+        protected FilterTemplate.Slot itrValueComparisonExpression(ValueComparisonExpression query, Path path){
             String attributeName = fieldNameTranslator.translateFieldName(query.getField());
-            String rValue = query.getRvalue().getValue().toString();
 
             switch(query.getOp()){
                 case _eq:
-                    return Filter.createEqualityFilter(attributeName, rValue);
+                    return (QueryExpression bound) -> Filter.createEqualityFilter(attributeName, rValueOf(bound));
                 case _neq:
-                    return Filter.createNOTFilter(Filter.createEqualityFilter(attributeName, rValue));
+                    return (QueryExpression bound) -> Filter.createNOTFilter(Filter.createEqualityFilter(attributeName, rValueOf(bound)));
                 case _gte:
-                    return Filter.createGreaterOrEqualFilter(attributeName, rValue);
+                    return (QueryExpression bound) -> Filter.createGreaterOrEqualFilter(attributeName, rValueOf(bound));
                 case _lte:
-                    return Filter.createLessOrEqualFilter(attributeName, rValue);
+                    return (QueryExpression bound) -> Filter.createLessOrEqualFilter(attributeName, rValueOf(bound));
                 case _gt: //aka. !lte
-                    return Filter.createNOTFilter(Filter.createLessOrEqualFilter(attributeName, rValue));
+                    return (QueryExpression bound) -> Filter.createNOTFilter(Filter.createLessOrEqualFilter(attributeName, rValueOf(bound)));
                 case _lt: //aka. !gte
-                    return Filter.createNOTFilter(Filter.createGreaterOrEqualFilter(attributeName, rValue));
+                    return (QueryExpression bound) -> Filter.createNOTFilter(Filter.createGreaterOrEqualFilter(attributeName, rValueOf(bound)));
                 default:
                     throw new UnsupportedOperationException("Unsupported operation: " + query.getOp());
             }
         }
 
         @Override
-        protected Filter itrAllMatchExpression(AllMatchExpression q, Path context) {
-            //TODO: Support
-            throw new UnsupportedOperationException("Operation not yet supported");
+        protected FilterTemplate.Slot itrAllMatchExpression(AllMatchExpression q, Path context) {
+            //Absolute true (RFC 4526).
+            Filter filter = Filter.createANDFilter(new ArrayList<Filter>());
+            return (QueryExpression bound) -> filter;
+        }
+
+        @Override
+        protected FilterTemplate.Slot itrNaryFieldRelationalExpression(NaryFieldRelationalExpression q, Path context) {
+            return unsupported();
+        }
+
+    }
+
+    private static String rValueOf(QueryExpression query){
+        return ((ValueComparisonExpression) query).getRvalue().getValue().toString();
+    }
+
+    private static List<Filter> createEqualityFilters(String attributeName, List<Value> values){
+        List<Filter> filters = new ArrayList<>(values.size());
+        for(Value value : values){
+            filters.add(Filter.createEqualityFilter(attributeName, value.getValue().toString()));
+        }
+        return filters;
+    }
+
+    private static List<Filter> bindAll(List<FilterTemplate.Slot> slots, NaryLogicalExpression query){
+        List<QueryExpression> subQueries = query.getQueries();
+        List<Filter> filters = new ArrayList<>(slots.size());
+        for(int i = 0; i < slots.size(); i++){
+            filters.add(slots.get(i).bind(subQueries.get(i)));
+        }
+        return filters;
+    }
+
+    /**
+     * Finds whether an expression contains a regex that the filter built for it only approximates.
+     */
+    private class ApproximationFindingQueryIterator extends QueryIteratorSkeleton<Boolean> {
+
+        @Override
+        protected Boolean itrNaryLogicalExpression(NaryLogicalExpression query, Path path){
+            for(QueryExpression subQuery : query.getQueries()){
+                if(iterate(subQuery, path)){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        protected Boolean itrUnaryLogicalExpression(UnaryLogicalExpression query, Path path){
+            return iterate(query.getQuery(), path);
+        }
+
+        @Override
+        protected Boolean itrRegexMatchExpression(RegexMatchExpression query, Path path){
+            return !RegexFilter.translate(fieldNameTranslator.translateFieldName(query.getField()), query).isExact();
+        }
+
+        @Override
+        protected Boolean itrArrayContainsExpression(ArrayContainsExpression query, Path path){
+            return false;
+        }
+
+        @Override
+        protected Boolean itrArrayMatchExpression(ArrayMatchExpression query, Path path){
+            return false;
+        }
+
+        @Override
+        protected Boolean itrFieldComparisonExpression(FieldComparisonExpression query, Path path){
+            return false;
+        }
+
+        @Override
+        protected Boolean itrNaryValueRelationalExpression(NaryValueRelationalExpression query, Path path){
+            return false;
+        }
+
+        @Override
+        protected Boolean itrValueComparisonExpression(ValueComparisonExpression query, Path path){
+            return false;
+        }
+
+        @Override
+        protected Boolean itrAllMatchExpression(AllMatchExpression q, Path context){
+            return false;
         }
 
         @Override
-        protected Filter itrNaryFieldRelationalExpression(NaryFieldRelationalExpression q, Path context) {
-            //TODO: Support
-            throw new UnsupportedOperationException("Operation not yet supported");
+        protected Boolean itrNaryFieldRelationalExpression(NaryFieldRelationalExpression q, Path context){
+            return false;
         }
 
     }
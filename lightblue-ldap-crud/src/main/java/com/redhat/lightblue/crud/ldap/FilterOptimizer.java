@@ -0,0 +1,289 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.redhat.lightblue.common.ldap.LdapConstant;
+import com.unboundid.ldap.sdk.Filter;
+
+/**
+ * Rewrites a {@link Filter} built by the {@link FilterBuilder} into an equivalent one that is
+ * cheaper for a directory server to evaluate:
+ * <ul>
+ * <li>nested ANDs and ORs are flattened, and duplicate components removed</li>
+ * <li>constants are folded, an empty AND being true and an empty OR being false (RFC 4526)</li>
+ * <li>ANDs and ORs with a single component, and double negations, are collapsed</li>
+ * <li>a negated range on a single valued attribute, that another component of the same AND
+ * requires to be present, is turned into a positive range that excludes the bound, so that it can be
+ * served by an index</li>
+ * <li>components of an AND are ordered so that the most selective come first, those served by a
+ * declared index ahead of those that are not</li>
+ * </ul>
+ *
+ * @author dcrissman
+ */
+public class FilterOptimizer {
+
+    /** Supported feature advertised by servers that understand absolute true and false filters. */
+    public static final String ABSOLUTE_FILTERS_FEATURE_OID = "1.3.6.1.4.1.4203.1.5.3";
+
+    private static final Filter TRUE = Filter.createANDFilter(new ArrayList<Filter>());
+    private static final Filter FALSE = Filter.createORFilter(new ArrayList<Filter>());
+    private static final Filter ANY_ENTRY = Filter.createPresenceFilter(LdapConstant.ATTRIBUTE_OBJECT_CLASS);
+
+    private final Set<String> singleValuedAttributes;
+    private final boolean absoluteFiltersSupported;
+
+    /**
+     * Orders the components of an AND from those likely to match the fewest entries to those
+     * likely to match the most, as some servers evaluate them in the order given.
+     */
+    private final Comparator<Filter> selectivity;
+
+    /**
+     * @param singleValuedAttributes - attributes that never hold more than one value.
+     * @param absoluteFiltersSupported - whether the server understands <code>(&amp;)</code> and
+     * <code>(|)</code>. If not, a filter that folds to a constant is expressed with objectClass instead.
+     */
+    public FilterOptimizer(Set<String> singleValuedAttributes, boolean absoluteFiltersSupported) {
+        this(singleValuedAttributes, absoluteFiltersSupported, null);
+    }
+
+    /**
+     * @param indexClassifier - (optional) {@link IndexClassifier} for the indexes declared on the entity.
+     */
+    public FilterOptimizer(Set<String> singleValuedAttributes, boolean absoluteFiltersSupported, IndexClassifier indexClassifier) {
+        this.singleValuedAttributes = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        this.singleValuedAttributes.addAll(singleValuedAttributes);
+        this.absoluteFiltersSupported = absoluteFiltersSupported;
+
+        Comparator<Filter> byType = (Filter filter1, Filter filter2) -> Integer.compare(rank(filter1), rank(filter2));
+        selectivity = (indexClassifier == null)
+                ? byType
+                : Comparator.comparing((Filter filter) -> !indexClassifier.isIndexed(filter)).thenComparing(byType);
+    }
+
+    public Filter optimize(Filter filter) {
+        Filter optimized = rewrite(filter);
+
+        //Constants are folded into their parents, so can only remain at the top.
+        if (!absoluteFiltersSupported) {
+            if (isTrue(optimized)) {
+                return ANY_ENTRY;
+            }
+            if (isFalse(optimized)) {
+                return Filter.createNOTFilter(ANY_ENTRY);
+            }
+        }
+        return optimized;
+    }
+
+    /**
+     * @param optimized - {@link Filter} returned by {@link #optimize(Filter)}.
+     * @return <code>true</code> if the filter matches every entry, so that the server has to read
+     * each entry beneath the base DN.
+     */
+    public boolean matchesEverything(Filter optimized) {
+        return isTrue(optimized) || (!absoluteFiltersSupported && ANY_ENTRY.equals(optimized));
+    }
+
+    private Filter rewrite(Filter filter) {
+        switch (filter.getFilterType()) {
+            case Filter.FILTER_TYPE_AND:
+                return rewriteAnd(filter);
+            case Filter.FILTER_TYPE_OR:
+                return rewriteOr(filter);
+            case Filter.FILTER_TYPE_NOT:
+                return rewriteNot(filter);
+            default:
+                return filter;
+        }
+    }
+
+    private Filter rewriteAnd(Filter filter) {
+        Map<String, Filter> components = new LinkedHashMap<>();
+        for (Filter component : filter.getComponents()) {
+            Filter rewritten = rewrite(component);
+            if (isFalse(rewritten)) {
+                return FALSE;
+            }
+            addFlattened(components, rewritten, Filter.FILTER_TYPE_AND);
+        }
+
+        components = rewriteNegatedRanges(components);
+
+        List<Filter> ordered = new ArrayList<>(components.values());
+        Collections.sort(ordered, selectivity);
+        return combine(ordered, Filter.FILTER_TYPE_AND);
+    }
+
+    private Filter rewriteOr(Filter filter) {
+        Map<String, Filter> components = new LinkedHashMap<>();
+        for (Filter component : filter.getComponents()) {
+            Filter rewritten = rewrite(component);
+            if (isTrue(rewritten)) {
+                return TRUE;
+            }
+            addFlattened(components, rewritten, Filter.FILTER_TYPE_OR);
+        }
+        return combine(new ArrayList<>(components.values()), Filter.FILTER_TYPE_OR);
+    }
+
+    private Filter rewriteNot(Filter filter) {
+        Filter component = rewrite(filter.getNOTComponent());
+        if (isTrue(component)) {
+            return FALSE;
+        }
+        if (isFalse(component)) {
+            return TRUE;
+        }
+        if (component.getFilterType() == Filter.FILTER_TYPE_NOT) {
+            return component.getNOTComponent();
+        }
+        return Filter.createNOTFilter(component);
+    }
+
+    /**
+     * Adds the <code>component</code> to the <code>components</code> of a parent of the same
+     * <code>filterType</code>, merging its own components into the parent if it is of the same
+     * type. True in an AND and false in an OR do not change the outcome, and are dropped as empty.
+     */
+    private static void addFlattened(Map<String, Filter> components, Filter component, byte filterType) {
+        if (component.getFilterType() == filterType) {
+            for (Filter nested : component.getComponents()) {
+                components.put(nested.toString(), nested);
+            }
+        }
+        else {
+            components.put(component.toString(), component);
+        }
+    }
+
+    private static Filter combine(List<Filter> components, byte filterType) {
+        if (components.size() == 1) {
+            return components.get(0);
+        }
+        return (filterType == Filter.FILTER_TYPE_AND)
+                ? Filter.createANDFilter(components)
+                : Filter.createORFilter(components);
+    }
+
+    /**
+     * For a single valued attribute that is known to be present, <code>(!(a&lt;=v))</code> is the
+     * same as <code>(&amp;(a&gt;=v)(!(a=v)))</code>. Without knowing it is present, the rewrite would
+     * no longer match entries that do not have the attribute at all.
+     */
+    private Map<String, Filter> rewriteNegatedRanges(Map<String, Filter> components) {
+        Set<String> presentAttributes = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (Filter component : components.values()) {
+            if (requiresPresence(component)) {
+                presentAttributes.add(component.getAttributeName());
+            }
+        }
+
+        Map<String, Filter> rewritten = new LinkedHashMap<>();
+        for (Filter component : components.values()) {
+            Filter range = (component.getFilterType() == Filter.FILTER_TYPE_NOT) ? component.getNOTComponent() : null;
+            if ((range == null)
+                    || ((range.getFilterType() != Filter.FILTER_TYPE_LESS_OR_EQUAL) && (range.getFilterType() != Filter.FILTER_TYPE_GREATER_OR_EQUAL))
+                    || !singleValuedAttributes.contains(range.getAttributeName())
+                    || !presentAttributes.contains(range.getAttributeName())) {
+                rewritten.put(component.toString(), component);
+                continue;
+            }
+
+            Filter opposite = (range.getFilterType() == Filter.FILTER_TYPE_LESS_OR_EQUAL)
+                    ? Filter.createGreaterOrEqualFilter(range.getAttributeName(), range.getAssertionValueBytes())
+                    : Filter.createLessOrEqualFilter(range.getAttributeName(), range.getAssertionValueBytes());
+            Filter excluded = Filter.createNOTFilter(
+                    Filter.createEqualityFilter(range.getAttributeName(), range.getAssertionValueBytes()));
+            rewritten.put(opposite.toString(), opposite);
+            rewritten.put(excluded.toString(), excluded);
+        }
+
+        //A presence filter adds nothing once another positive component needs the same attribute.
+        Map<String, Integer> positiveCounts = new LinkedHashMap<>();
+        for (Filter component : rewritten.values()) {
+            if (requiresPresence(component)) {
+                positiveCounts.merge(component.getAttributeName().toLowerCase(), 1, Integer::sum);
+            }
+        }
+        rewritten.values().removeIf((Filter component) -> (component.getFilterType() == Filter.FILTER_TYPE_PRESENCE)
+                && (positiveCounts.get(component.getAttributeName().toLowerCase()) > 1));
+
+        return rewritten;
+    }
+
+    /**
+     * @return <code>true</code> if the <code>filter</code> can only match an entry that has its attribute.
+     */
+    private static boolean requiresPresence(Filter filter) {
+        switch (filter.getFilterType()) {
+            case Filter.FILTER_TYPE_EQUALITY:
+            case Filter.FILTER_TYPE_SUBSTRING:
+            case Filter.FILTER_TYPE_GREATER_OR_EQUAL:
+            case Filter.FILTER_TYPE_LESS_OR_EQUAL:
+            case Filter.FILTER_TYPE_APPROXIMATE_MATCH:
+            case Filter.FILTER_TYPE_PRESENCE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isTrue(Filter filter) {
+        return (filter.getFilterType() == Filter.FILTER_TYPE_AND) && (filter.getComponents().length == 0);
+    }
+
+    private static boolean isFalse(Filter filter) {
+        return (filter.getFilterType() == Filter.FILTER_TYPE_OR) && (filter.getComponents().length == 0);
+    }
+
+    private static int rank(Filter filter) {
+        switch (filter.getFilterType()) {
+            case Filter.FILTER_TYPE_EQUALITY:
+                return 0;
+            case Filter.FILTER_TYPE_APPROXIMATE_MATCH:
+                return 1;
+            case Filter.FILTER_TYPE_SUBSTRING:
+                return 2;
+            case Filter.FILTER_TYPE_GREATER_OR_EQUAL:
+            case Filter.FILTER_TYPE_LESS_OR_EQUAL:
+                return 3;
+            case Filter.FILTER_TYPE_AND:
+            case Filter.FILTER_TYPE_OR:
+            case Filter.FILTER_TYPE_EXTENSIBLE_MATCH:
+                return 4;
+            case Filter.FILTER_TYPE_PRESENCE:
+                return 5;
+            default:
+                //NOT cannot be served from an index.
+                return 6;
+        }
+    }
+
+}
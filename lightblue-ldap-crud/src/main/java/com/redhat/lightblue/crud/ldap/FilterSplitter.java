@@ -0,0 +1,98 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.unboundid.ldap.sdk.Filter;
+
+/**
+ * Splits a {@link Filter} containing an OR of more components than a server should be sent at once,
+ * such as the one an <code>$in</code> of thousands of values is translated to, into several filters
+ * that each contain only a chunk of the OR. An entry matches the original filter exactly when it
+ * matches at least one of the chunks, so the results of searching for each chunk only need to be merged.
+ * <p>
+ * Only an OR that is the whole filter, or a component of the AND at its top, can be split that way.
+ * A negated OR, as from a <code>$not_in</code>, would have to be split into chunks whose results are
+ * intersected, each of them matching nearly every entry, and is left whole. If there is more than
+ * one OR that is too large, only the largest is split, so that the number of searches stays linear.
+ * </p>
+ *
+ * @author dcrissman
+ */
+public final class FilterSplitter {
+
+    private FilterSplitter() {}
+
+    /**
+     * @param filter - {@link Filter} returned by the {@link FilterOptimizer}.
+     * @param maxComponents - maximum number of components to leave in the OR that is split.
+     * @return the filters whose matches together are the matches of the <code>filter</code>, which is
+     * just the <code>filter</code> itself if there is nothing to split.
+     */
+    public static List<Filter> split(Filter filter, int maxComponents) {
+        if (maxComponents < 1) {
+            throw new IllegalArgumentException("maxComponents must be at least 1: " + maxComponents);
+        }
+
+        if (isSplittable(filter, maxComponents)) {
+            return chunk(filter.getComponents(), maxComponents);
+        }
+
+        if (filter.getFilterType() == Filter.FILTER_TYPE_AND) {
+            Filter[] components = filter.getComponents();
+            int largest = -1;
+            for (int i = 0; i < components.length; i++) {
+                if (isSplittable(components[i], maxComponents)
+                        && ((largest < 0) || (components[i].getComponents().length > components[largest].getComponents().length))) {
+                    largest = i;
+                }
+            }
+
+            if (largest >= 0) {
+                List<Filter> split = new ArrayList<>();
+                for (Filter chunk : chunk(components[largest].getComponents(), maxComponents)) {
+                    Filter[] chunkComponents = components.clone();
+                    chunkComponents[largest] = chunk;
+                    split.add(Filter.createANDFilter(chunkComponents));
+                }
+                return split;
+            }
+        }
+
+        return Collections.singletonList(filter);
+    }
+
+    private static boolean isSplittable(Filter filter, int maxComponents) {
+        return (filter.getFilterType() == Filter.FILTER_TYPE_OR) && (filter.getComponents().length > maxComponents);
+    }
+
+    private static List<Filter> chunk(Filter[] components, int maxComponents) {
+        List<Filter> chunks = new ArrayList<>();
+        for (int i = 0; i < components.length; i += maxComponents) {
+            Filter[] chunk = Arrays.copyOfRange(components, i, Math.min(i + maxComponents, components.length));
+            chunks.add((chunk.length == 1) ? chunk[0] : Filter.createORFilter(chunk));
+        }
+        return chunks;
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import com.redhat.lightblue.query.QueryExpression;
+import com.unboundid.ldap.sdk.Filter;
+
+/**
+ * A {@link Filter} compiled by the {@link FilterBuilder} for the shape of a {@link QueryExpression}.
+ * Field names have already been translated into attribute names and the operators resolved, leaving
+ * slots for the values. Binding a query of the same shape only fills the slots with its values, without
+ * walking it with a {@link com.redhat.lightblue.query.QueryIteratorSkeleton} or translating anything.
+ * <p>
+ * Values are bound as the assertion values of the {@link Filter}, which escapes them itself when the
+ * filter is encoded, so that no value can change the structure of the filter.
+ * </p>
+ * <p>
+ * A template is immutable, and may be bound by any number of threads at once.
+ * </p>
+ *
+ * @author dcrissman
+ */
+public class FilterTemplate {
+
+    /**
+     * Builds the filter for a single expression of a query, given that expression.
+     */
+    @FunctionalInterface
+    interface Slot {
+
+        Filter bind(QueryExpression query);
+
+    }
+
+    private final Slot root;
+
+    FilterTemplate(Slot root) {
+        this.root = root;
+    }
+
+    /**
+     * @param query - {@link QueryExpression} of the same shape as the one the template was compiled from.
+     * @return the {@link Filter} for the <code>query</code>.
+     */
+    public Filter bind(QueryExpression query) {
+        return root.bind(query);
+    }
+
+}
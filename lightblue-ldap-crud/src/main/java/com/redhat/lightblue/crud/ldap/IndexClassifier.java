@@ -0,0 +1,91 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.redhat.lightblue.common.ldap.LdapConstant;
+import com.redhat.lightblue.common.ldap.LdapIndexType;
+import com.unboundid.ldap.sdk.Filter;
+
+/**
+ * Works out whether a directory server can serve a {@link Filter} from the indexes declared for an
+ * entity, or has to read every entry beneath the base DN to evaluate it.
+ * <ul>
+ * <li>a comparison is indexed if its attribute has the matching {@link LdapIndexType}</li>
+ * <li>an AND is indexed if any of its components is, as the server only checks the remaining
+ * components against the entries that one narrows down to</li>
+ * <li>an OR is indexed only if all of its components are</li>
+ * <li>a NOT, an approximate or an extensible match, and the absolute true filter are never indexed</li>
+ * </ul>
+ *
+ * @author dcrissman
+ */
+public class IndexClassifier {
+
+    private final Map<String, Set<LdapIndexType>> indexes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    /**
+     * @param indexes - {@link LdapIndexType}s the server maintains, keyed by attribute name.
+     */
+    public IndexClassifier(Map<String, Set<LdapIndexType>> indexes) {
+        this.indexes.putAll(indexes);
+    }
+
+    public boolean isIndexed(Filter filter) {
+        switch (filter.getFilterType()) {
+            case Filter.FILTER_TYPE_EQUALITY:
+                return hasIndex(filter, LdapIndexType.EQUALITY);
+            case Filter.FILTER_TYPE_PRESENCE:
+                //Every entry has an objectClass, so no index of it narrows anything down.
+                return !LdapConstant.ATTRIBUTE_OBJECT_CLASS.equalsIgnoreCase(filter.getAttributeName())
+                        && hasIndex(filter, LdapIndexType.PRESENCE);
+            case Filter.FILTER_TYPE_SUBSTRING:
+                return hasIndex(filter, LdapIndexType.SUBSTRING);
+            case Filter.FILTER_TYPE_GREATER_OR_EQUAL:
+            case Filter.FILTER_TYPE_LESS_OR_EQUAL:
+                return hasIndex(filter, LdapIndexType.ORDERING);
+            case Filter.FILTER_TYPE_AND:
+                for (Filter component : filter.getComponents()) {
+                    if (isIndexed(component)) {
+                        return true;
+                    }
+                }
+                return false;
+            case Filter.FILTER_TYPE_OR:
+                //An empty OR matches nothing, which needs no index either.
+                for (Filter component : filter.getComponents()) {
+                    if (!isIndexed(component)) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private boolean hasIndex(Filter filter, LdapIndexType type) {
+        Set<LdapIndexType> types = indexes.get(filter.getAttributeName());
+        return (types != null) && types.contains(type);
+    }
+
+}
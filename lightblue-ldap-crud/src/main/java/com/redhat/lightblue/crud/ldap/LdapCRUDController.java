@@ -14,23 +14,40 @@
  */
 package com.redhat.lightblue.crud.ldap;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.redhat.lightblue.common.ldap.DBResolver;
+import com.redhat.lightblue.common.ldap.LdapConnectionLease;
 import com.redhat.lightblue.common.ldap.LdapConstant;
+import com.redhat.lightblue.common.ldap.LdapDataSourceSettings;
 import com.redhat.lightblue.common.ldap.LdapDataStore;
 import com.redhat.lightblue.common.ldap.LdapErrorCode;
 import com.redhat.lightblue.common.ldap.LdapFieldNameTranslator;
+import com.redhat.lightblue.common.ldap.LdapMultiUpdateMode;
+import com.redhat.lightblue.common.ldap.LdapSaveStrategy;
+import com.redhat.lightblue.common.ldap.LdapServerCapabilities;
+import com.redhat.lightblue.common.ldap.LdapUnindexedQueryPolicy;
 import com.redhat.lightblue.crud.CRUDController;
 import com.redhat.lightblue.crud.CRUDDeleteResponse;
 import com.redhat.lightblue.crud.CRUDFindResponse;
@@ -41,6 +58,7 @@ import com.redhat.lightblue.crud.CRUDSaveResponse;
 import com.redhat.lightblue.crud.CRUDUpdateResponse;
 import com.redhat.lightblue.crud.CrudConstants;
 import com.redhat.lightblue.crud.DocCtx;
+import com.redhat.lightblue.crud.DocumentStream;
 import com.redhat.lightblue.crud.ListDocumentStream;
 import com.redhat.lightblue.crud.ldap.translator.EntryTranslatorFromJson;
 import com.redhat.lightblue.crud.ldap.translator.ModificationTranslatorFromJson;
@@ -48,30 +66,51 @@ import com.redhat.lightblue.crud.ldap.translator.ResultTranslatorToJson;
 import com.redhat.lightblue.crud.ldap.translator.SortTranslator;
 import com.redhat.lightblue.eval.FieldAccessRoleEvaluator;
 import com.redhat.lightblue.eval.Projector;
+import com.redhat.lightblue.eval.Updater;
 import com.redhat.lightblue.metadata.EntityMetadata;
-import com.redhat.lightblue.metadata.FieldCursor;
 import com.redhat.lightblue.metadata.MetadataConstants;
 import com.redhat.lightblue.metadata.MetadataListener;
-import com.redhat.lightblue.metadata.PredefinedFields;
 import com.redhat.lightblue.metadata.types.StringType;
+import com.redhat.lightblue.query.ArrayAddExpression;
+import com.redhat.lightblue.query.FieldAndRValue;
+import com.redhat.lightblue.query.ForEachExpression;
+import com.redhat.lightblue.query.PartialUpdateExpression;
 import com.redhat.lightblue.query.Projection;
 import com.redhat.lightblue.query.QueryExpression;
+import com.redhat.lightblue.query.SetExpression;
 import com.redhat.lightblue.query.Sort;
+import com.redhat.lightblue.query.UnsetExpression;
 import com.redhat.lightblue.query.UpdateExpression;
+import com.redhat.lightblue.query.UpdateExpressionList;
 import com.redhat.lightblue.util.Error;
 import com.redhat.lightblue.util.JsonDoc;
 import com.redhat.lightblue.util.Path;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.ldap.sdk.AddRequest;
+import com.unboundid.ldap.sdk.AsyncRequestID;
+import com.unboundid.ldap.sdk.AsyncResultListener;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.DeleteRequest;
+import com.unboundid.ldap.sdk.Filter;
 import com.unboundid.ldap.sdk.LDAPConnection;
 import com.unboundid.ldap.sdk.LDAPException;
 import com.unboundid.ldap.sdk.LDAPResult;
+import com.unboundid.ldap.sdk.LDAPSearchException;
+import com.unboundid.ldap.sdk.Modification;
 import com.unboundid.ldap.sdk.ModifyRequest;
 import com.unboundid.ldap.sdk.ResultCode;
 import com.unboundid.ldap.sdk.SearchRequest;
 import com.unboundid.ldap.sdk.SearchResult;
 import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultListener;
 import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.ldap.sdk.controls.PermissiveModifyRequestControl;
+import com.unboundid.ldap.sdk.controls.PostReadRequestControl;
 import com.unboundid.ldap.sdk.controls.ServerSideSortRequestControl;
+import com.unboundid.ldap.sdk.controls.ServerSideSortResponseControl;
+import com.unboundid.ldap.sdk.controls.SimplePagedResultsControl;
 import com.unboundid.ldap.sdk.controls.VirtualListViewRequestControl;
+import com.unboundid.ldap.sdk.extensions.StartTransactionExtendedRequest;
 
 /**
  * {@link CRUDController} implementation for LDAP.
@@ -80,7 +119,15 @@ import com.unboundid.ldap.sdk.controls.VirtualListViewRequestControl;
  */
 public class LdapCRUDController implements CRUDController {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(LdapCRUDController.class);
+
+    static final String HEALTH_ACTIVE_LEASES = "activeLeases";
+    static final String HEALTH_SAVE_OUTCOMES = "saveOutcomes";
+    static final String HEALTH_CAPABILITIES = "capabilities";
+
     private final DBResolver dbResolver;
+    private final SaveStatistics saveStatistics = new SaveStatistics();
+    private final EntityPlanCache entityPlans = new EntityPlanCache();
 
     public LdapCRUDController(DBResolver dbResolver) {
         this.dbResolver = dbResolver;
@@ -93,26 +140,72 @@ public class LdapCRUDController implements CRUDController {
         response.setNumInserted(0);
 
         EntityMetadata md = ctx.getEntityMetadata(ctx.getEntityName());
-        LdapDataStore store = LdapCrudUtil.getLdapDataStore(md);
-        LdapFieldNameTranslator fieldNameTranslator = LdapCrudUtil.getLdapFieldNameTranslator(md);
+        EntityPlan plan = entityPlans.get(md);
+        LdapDataStore store = plan.getStore();
+        LdapFieldNameTranslator fieldNameTranslator = plan.getFieldNameTranslator();
 
         EntryTranslatorFromJson entryTranslatorFromJson = new EntryTranslatorFromJson(md, fieldNameTranslator);
 
         //Create Entry instances for each document.
         Map<String, DocCtx> documentToDnMap = new HashMap<>();
-        List<com.unboundid.ldap.sdk.Entry> entries = parseDocuments(ctx, fieldNameTranslator, (DocCtx document, String dn) -> {
+        List<Entry<DocCtx, com.unboundid.ldap.sdk.Entry>> entries = parseDocuments(ctx, plan, (DocCtx document, String dn) -> {
             com.unboundid.ldap.sdk.Entry entry = entryTranslatorFromJson.translate(document, dn);
             documentToDnMap.put(dn, document);
-            return entry;
+            return new AbstractMap.SimpleImmutableEntry<>(document, entry);
         });
 
-        //Persist each Entry.
-        LDAPConnection connection = getLdapConnection(store);
-        for (com.unboundid.ldap.sdk.Entry entry : entries) {
-            runInsert(connection, ctx, entry, (LDAPResult) -> response.setNumInserted(response.getNumInserted() + 1));
+        PostReadEntries postReads = createPostReadEntries(store, plan.getProjectedAttributes(projection));
+        MultiUpdateBatch batch = createMultiUpdateBatch(store);
+
+        //Persist each Entry, without waiting for each response before sending the next.
+        int errorCount = ctx.getErrors().size();
+        try (LdapConnectionLease lease = leaseLdapConnection(store);
+                LdapTransaction transaction = (batch == null) ? beginTransaction(lease, store) : null) {
+            AsyncOperationPipeline pipeline = new AsyncOperationPipeline(lease, dbResolver.getSettings(store).getMaxOperationsInFlight());
+            try {
+                for (Entry<DocCtx, com.unboundid.ldap.sdk.Entry> documentToEntry : entries) {
+                    DocCtx document = documentToEntry.getKey();
+                    AddRequest addRequest = new AddRequest(documentToEntry.getValue());
+                    if (transaction != null) {
+                        transaction.attachTo(addRequest);
+                    }
+                    postReads.attachTo(addRequest);
+                    AsyncOperationPipeline.ResultHandler handler = (LDAPResult result) ->
+                            processWriteResult(document, result, (LDAPResult insertResult) -> {
+                                response.setNumInserted(response.getNumInserted() + 1);
+                                postReads.collect(addRequest.getDN(), insertResult);
+                            });
+
+                    if (batch != null) {
+                        batch.add(addRequest, handler);
+                    }
+                    else {
+                        pipeline.submit(
+                                (LDAPConnection connection, AsyncResultListener listener) -> connection.asyncAdd(addRequest, listener),
+                                handler);
+                    }
+                }
+
+                if (batch != null) {
+                    batch.execute(lease);
+                }
+                else {
+                    pipeline.awaitCompletion();
+                }
+            } catch (LDAPException e) {
+                ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+            }
+
+            if (!endTransaction(ctx, transaction, documentToDnMap.values(), errorCount)) {
+                response.setNumInserted(0);
+            }
+        } catch (LDAPException e) {
+            //Transaction could not be started.
+            ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+            return response;
         }
 
-        projectChanges(projection, ctx, documentToDnMap);
+        projectChanges(projection, ctx, documentToDnMap, postReads, FieldAccessRoleEvaluator.Operation.insert);
 
         return response;
     }
@@ -124,68 +217,602 @@ public class LdapCRUDController implements CRUDController {
         response.setNumSaved(0);
 
         EntityMetadata md = ctx.getEntityMetadata(ctx.getEntityName());
-        LdapDataStore store = LdapCrudUtil.getLdapDataStore(md);
-        LdapFieldNameTranslator fieldNameTranslator = LdapCrudUtil.getLdapFieldNameTranslator(md);
-        LDAPConnection connection = getLdapConnection(store);
+        EntityPlan plan = entityPlans.get(md);
+        LdapDataStore store = plan.getStore();
+        LdapFieldNameTranslator fieldNameTranslator = plan.getFieldNameTranslator();
 
         ModificationTranslatorFromJson modificationTranslator = new ModificationTranslatorFromJson(md, fieldNameTranslator);
         EntryTranslatorFromJson entryTranslator = new EntryTranslatorFromJson(md, fieldNameTranslator);
 
-        //Create Entry instances for each document.
+        LdapDataSourceSettings settings = dbResolver.getSettings(store);
+        Path uniqueFieldPath = plan.getUniqueFieldPath();
+
         Map<String, DocCtx> documentToDnMap = new HashMap<>();
-        List<com.unboundid.ldap.sdk.Entry> entries = new ArrayList<>();
-        List<ModifyRequest> modifications = parseDocuments(ctx, fieldNameTranslator, (DocCtx document, String dn) -> {
+        Map<String, String> dnToUniqueValueMap = new LinkedHashMap<>();
+        List<Entry<String, DocCtx>> documents = parseDocuments(ctx, plan, (DocCtx document, String dn) -> {
             documentToDnMap.put(dn, document);
+            dnToUniqueValueMap.put(dn, document.get(uniqueFieldPath).asText());
+            return new AbstractMap.SimpleImmutableEntry<>(dn, document);
+        });
+
+        PostReadEntries postReads = createPostReadEntries(store, plan.getProjectedAttributes(projection));
+
+        LdapSaveStrategy saveStrategy = plan.getSaveStrategy();
+        if (!upsert && (saveStrategy == LdapSaveStrategy.INSERT_FIRST)) {
+            //Nothing may be added, so try modifying and let the missing entries fail.
+            saveStrategy = LdapSaveStrategy.MODIFY_FIRST;
+        }
 
-            SearchResultEntry entity = connection.getEntry(dn);
+        MultiUpdateBatch batch = createMultiUpdateBatch(store);
 
-            if(entity != null){
-                return modificationTranslator.translate(document, dn);
+        int errorCount = ctx.getErrors().size();
+        try (LdapConnectionLease lease = leaseLdapConnection(store);
+                LdapTransaction transaction = (batch == null) ? beginTransaction(lease, store) : null) {
+            if (((transaction != null) || (batch != null))
+                    && ((saveStrategy == LdapSaveStrategy.INSERT_FIRST) || (saveStrategy == LdapSaveStrategy.MODIFY_FIRST))) {
+                //The outcome of a transactional or batched write is only known once all of them are done, too late to fall back on.
+                saveStrategy = LdapSaveStrategy.CHECK_EXISTING;
             }
-            else if(upsert){
-                //DNs that do not already exist, need to be created.
-                entries.add(entryTranslator.translate(document, dn));
+
+            if ((saveStrategy == LdapSaveStrategy.CHECK_EXISTING) || (saveStrategy == LdapSaveStrategy.DIFF_EXISTING)) {
+                //Diffing needs the current values, otherwise it is enough to know the entry exists.
+                boolean diff = saveStrategy == LdapSaveStrategy.DIFF_EXISTING;
+                Map<String, SearchResultEntry> existingEntries = findExistingEntries(ctx, lease, store, dnToUniqueValueMap,
+                        settings.getExistenceCheckChunkSize(),
+                        diff ? plan.getAllAttributes().toArray(new String[0]) : new String[]{SearchRequest.NO_ATTRIBUTES});
+                if (existingEntries == null) {
+                    //Without knowing what exists, inserts cannot be told apart from modifications.
+                    return response;
+                }
+
+                //Split the documents into modifications of existing entries and new entries.
+                List<AddRequest> entries = new ArrayList<>();
+                List<ModifyRequest> modifications = new ArrayList<>();
+                for (Entry<String, DocCtx> dnToDocument : documents) {
+                    String dn = dnToDocument.getKey();
+                    DocCtx document = dnToDocument.getValue();
+                    try {
+                        SearchResultEntry existingEntry = existingEntries.get(DN.normalize(dn));
+                        if ((existingEntry != null) && diff) {
+                            ModifyRequest modifyRequest = modificationTranslator.translateDelta(document, dn, existingEntry);
+                            if (modifyRequest != null) {
+                                modifications.add(modifyRequest);
+                            }
+                            else {
+                                //Entry already matches, there is nothing to write.
+                                response.setNumSaved(response.getNumSaved() + 1);
+                                saveStatistics.record(SaveStatistics.Outcome.UNCHANGED);
+                                postReads.put(dn, existingEntry);
+                            }
+                        }
+                        else if (existingEntry != null) {
+                            modifications.add(modificationTranslator.translate(document, dn));
+                        }
+                        else if (upsert) {
+                            //DNs that do not already exist, need to be created.
+                            entries.add(new AddRequest(entryTranslator.translate(document, dn)));
+                        }
+                        else {
+                            document.addError(Error.get(LdapErrorCode.ERR_LDAP_SAVE_ERROR_INS_WITH_NO_UPSERT, "New document, but upsert=false"));
+                        }
+                    } catch (Error e) {
+                        document.addError(e);
+                    } catch (Exception e) {
+                        document.addError(Error.get(e));
+                    }
+                }
+
+                //Persist each change as either an insert or a modify.
+                for (ModifyRequest modifyRequest : modifications) {
+                    if (transaction != null) {
+                        transaction.attachTo(modifyRequest);
+                    }
+                    postReads.attachTo(modifyRequest);
+                    LDAPResultProcessor processor = (LDAPResult result) -> {
+                        response.setNumSaved(response.getNumSaved() + 1);
+                        saveStatistics.record(SaveStatistics.Outcome.CHECKED_MODIFY);
+                        postReads.collect(modifyRequest.getDN(), result);
+                    };
+
+                    if (batch != null) {
+                        DocCtx document = documentToDnMap.get(modifyRequest.getDN());
+                        batch.add(modifyRequest, (LDAPResult result) -> processWriteResult(document, result, processor));
+                    }
+                    else {
+                        runModify(lease, ctx, modifyRequest, processor);
+                    }
+                }
+
+                for (AddRequest addRequest : entries) {
+                    if (transaction != null) {
+                        transaction.attachTo(addRequest);
+                    }
+                    postReads.attachTo(addRequest);
+                    LDAPResultProcessor processor = (LDAPResult result) -> {
+                        response.setNumSaved(response.getNumSaved() + 1);
+                        saveStatistics.record(SaveStatistics.Outcome.CHECKED_INSERT);
+                        postReads.collect(addRequest.getDN(), result);
+                    };
+
+                    if (batch != null) {
+                        DocCtx document = documentToDnMap.get(addRequest.getDN());
+                        batch.add(addRequest, (LDAPResult result) -> processWriteResult(document, result, processor));
+                    }
+                    else {
+                        runInsert(lease, ctx, addRequest, processor);
+                    }
+                }
+
+                if (batch != null) {
+                    try {
+                        batch.execute(lease);
+                    } catch (LDAPException e) {
+                        ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+                    }
+                }
             }
             else {
-                document.addError(Error.get(LdapErrorCode.ERR_LDAP_SAVE_ERROR_INS_WITH_NO_UPSERT, "New document, but upsert=false"));
+                for (Entry<String, DocCtx> dnToDocument : documents) {
+                    saveOptimistically(lease, ctx, saveStrategy, upsert, dnToDocument.getKey(), dnToDocument.getValue(),
+                            modificationTranslator, entryTranslator, postReads, response);
+                }
             }
 
+            if (!endTransaction(ctx, transaction, documentToDnMap.values(), errorCount)) {
+                response.setNumSaved(0);
+            }
+        } catch (LDAPException e) {
+            //Transaction could not be started.
+            ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+            return response;
+        }
+
+        projectChanges(projection, ctx, documentToDnMap, postReads, FieldAccessRoleEvaluator.Operation.insert);
+
+        return response;
+    }
+
+    /**
+     * Starts a transaction for the writes of a single request, if the datasource is configured to
+     * use them and the server supports them.
+     * @return the {@link LdapTransaction}, or <code>null</code> if the writes are not transactional.
+     * @throws LDAPException if the server refused to start the transaction.
+     */
+    private LdapTransaction beginTransaction(LdapConnectionLease lease, LdapDataStore store) throws LDAPException {
+        if (!dbResolver.getSettings(store).isTransactionalWrites()
+                || !dbResolver.getCapabilities(store).supportsExtendedOperation(StartTransactionExtendedRequest.START_TRANSACTION_REQUEST_OID)) {
             return null;
-        });
+        }
+        return LdapTransaction.begin(lease);
+    }
+
+    /**
+     * Creates a batch to send all of the writes of a single request in, if the datasource is configured
+     * to use one and the server supports it. A batch is sent as a single request, so it is never also
+     * made part of a transaction; {@link LdapMultiUpdateMode#ATOMIC} offers the same guarantee.
+     * @return the {@link MultiUpdateBatch}, or <code>null</code> if each write should be sent on its own.
+     */
+    private MultiUpdateBatch createMultiUpdateBatch(LdapDataStore store) {
+        LdapMultiUpdateMode mode = dbResolver.getSettings(store).getMultiUpdateMode();
+        if ((mode == null)
+                || !dbResolver.getCapabilities(store).supportsExtendedOperation(MultiUpdateBatch.MULTI_UPDATE_REQUEST_OID)) {
+            return null;
+        }
+        return new MultiUpdateBatch(mode);
+    }
+
+    /**
+     * Passes a successful write <code>result</code> on to the <code>processor</code>, otherwise records
+     * the failure on the <code>document</code>.
+     */
+    private static void processWriteResult(DocCtx document, LDAPResult result, LDAPResultProcessor processor) {
+        if (ResultCode.SUCCESS.equals(result.getResultCode())) {
+            processor.process(result);
+        }
+        else {
+            document.addError(Error.get(
+                    LdapErrorCode.ERR_LDAP_UNSUCCESSFUL_RESPONSE,
+                    result.getResultCode().toString()));
+        }
+    }
+
+    /**
+     * Ends the <code>transaction</code>, only committing it if every write was accepted. The writes
+     * are all or nothing, so if any of them failed, or the commit itself fails, none of the
+     * <code>documents</code> were written and each is marked as such.
+     * @param transaction - (optional) {@link LdapTransaction} to end.
+     * @param errorCount - number of errors on the <code>ctx</code> before the writes were made.
+     * @return <code>true</code> if the writes were applied, otherwise <code>false</code>.
+     */
+    private boolean endTransaction(CRUDOperationContext ctx, LdapTransaction transaction, Collection<DocCtx> documents, int errorCount) {
+        if (transaction == null) {
+            return true;
+        }
+
+        boolean failed = ctx.getErrors().size() > errorCount;
+        for (DocCtx document : documents) {
+            failed |= document.hasErrors();
+        }
+
+        try {
+            if (failed) {
+                transaction.abort();
+            }
+            else {
+                transaction.commit();
+            }
+        } catch (LDAPException e) {
+            ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_TRANSACTION_FAILED, e));
+            failed = true;
+        }
+
+        if (failed) {
+            for (DocCtx document : documents) {
+                if (!document.hasErrors()) {
+                    document.addError(Error.get(LdapErrorCode.ERR_LDAP_TRANSACTION_FAILED, "Rolled back"));
+                }
+            }
+        }
+        return !failed;
+    }
+
+    /**
+     * Saves a single document without first checking if it exists. The write the
+     * <code>saveStrategy</code> expects to succeed is attempted first, and only if the
+     * entry turns out to be missing (or already present) is the other write attempted.
+     */
+    private void saveOptimistically(LdapConnectionLease lease, CRUDOperationContext ctx, LdapSaveStrategy saveStrategy,
+            boolean upsert, String dn, DocCtx document, ModificationTranslatorFromJson modificationTranslator,
+            EntryTranslatorFromJson entryTranslator, PostReadEntries postReads, CRUDSaveResponse response) {
+        AddRequest addRequest;
+        ModifyRequest modifyRequest;
+        try {
+            addRequest = upsert ? new AddRequest(entryTranslator.translate(document, dn)) : null;
+            modifyRequest = modificationTranslator.translate(document, dn);
+        } catch (Error e) {
+            document.addError(e);
+            return;
+        } catch (Exception e) {
+            document.addError(Error.get(e));
+            return;
+        }
 
-        //Persist each change as either an insert or a modify.
-        for (ModifyRequest modifyRequest : modifications) {
-            execute(ctx, new ExecutionHandler() {
+        if (addRequest != null) {
+            postReads.attachTo(addRequest);
+        }
+        postReads.attachTo(modifyRequest);
+
+        if (saveStrategy == LdapSaveStrategy.INSERT_FIRST) {
+            execute(ctx, lease, new ExecutionHandler() {
+
+                @Override
+                LDAPResult execute() throws LDAPException {
+                    return lease.getConnection().add(addRequest);
+                }
+
+                @Override
+                boolean isSuccess(ResultCode resultCode) {
+                    return super.isSuccess(resultCode) || ResultCode.ENTRY_ALREADY_EXISTS.equals(resultCode);
+                }
 
                 @Override
                 void onSuccess(LDAPResult result) {
-                    response.setNumSaved(response.getNumSaved() + 1);
+                    if (ResultCode.ENTRY_ALREADY_EXISTS.equals(result.getResultCode())) {
+                        runModify(lease, ctx, modifyRequest, (LDAPResult modifyResult) -> {
+                            response.setNumSaved(response.getNumSaved() + 1);
+                            saveStatistics.record(SaveStatistics.Outcome.INSERT_FIRST_MODIFIED);
+                            postReads.collect(dn, modifyResult);
+                        });
+                    }
+                    else {
+                        response.setNumSaved(response.getNumSaved() + 1);
+                        saveStatistics.record(SaveStatistics.Outcome.INSERT_FIRST_INSERTED);
+                        postReads.collect(dn, result);
+                    }
                 }
+            });
+        }
+        else {
+            execute(ctx, lease, new ExecutionHandler() {
 
                 @Override
                 LDAPResult execute() throws LDAPException {
-                    return connection.modify(modifyRequest);
+                    return lease.getConnection().modify(modifyRequest);
+                }
+
+                @Override
+                boolean isSuccess(ResultCode resultCode) {
+                    return super.isSuccess(resultCode) || ResultCode.NO_SUCH_OBJECT.equals(resultCode);
+                }
+
+                @Override
+                void onSuccess(LDAPResult result) {
+                    if (ResultCode.SUCCESS.equals(result.getResultCode())) {
+                        response.setNumSaved(response.getNumSaved() + 1);
+                        saveStatistics.record(SaveStatistics.Outcome.MODIFY_FIRST_MODIFIED);
+                        postReads.collect(dn, result);
+                    }
+                    else if (upsert) {
+                        runInsert(lease, ctx, addRequest, (LDAPResult insertResult) -> {
+                            response.setNumSaved(response.getNumSaved() + 1);
+                            saveStatistics.record(SaveStatistics.Outcome.MODIFY_FIRST_INSERTED);
+                            postReads.collect(dn, insertResult);
+                        });
+                    }
+                    else {
+                        document.addError(Error.get(LdapErrorCode.ERR_LDAP_SAVE_ERROR_INS_WITH_NO_UPSERT, "New document, but upsert=false"));
+                    }
                 }
             });
         }
+    }
+
+    @Override
+    public CRUDUpdateResponse update(CRUDOperationContext ctx,
+            QueryExpression query, UpdateExpression update,
+            Projection projection) {
+
+        if (query == null) {
+            throw new IllegalArgumentException("No query was provided.");
+        }
+        if (update == null) {
+            throw new IllegalArgumentException("No update was provided.");
+        }
+
+        CRUDUpdateResponse response = new CRUDUpdateResponse();
+        response.setNumMatched(0);
+        response.setNumUpdated(0);
+        response.setNumFailed(0);
+
+        EntityMetadata md = ctx.getEntityMetadata(ctx.getEntityName());
+        EntityPlan plan = entityPlans.get(md);
+        LdapDataStore store = plan.getStore();
+        LdapFieldNameTranslator fieldNameTranslator = plan.getFieldNameTranslator();
+
+        FieldAccessRoleEvaluator roles = new FieldAccessRoleEvaluator(md, ctx.getCallerRoles());
+        boolean accessible = true;
+        for (Path path : getUpdatedFields(update)) {
+            if (!roles.hasAccess(path, FieldAccessRoleEvaluator.Operation.update)) {
+                ctx.addError(Error.get(CrudConstants.ERR_NO_FIELD_UPDATE_ACCESS, path.toString()));
+                accessible = false;
+            }
+        }
+        if (!accessible) {
+            return response;
+        }
+
+        List<Modification> modifications = new ModificationBuilder(md, fieldNameTranslator).build(update);
+        PostReadEntries postReads = createPostReadEntries(store, plan.getProjectedAttributes(projection));
+        Map<String, DocCtx> documentToDnMap = new LinkedHashMap<>();
 
-        if (upsert && !entries.isEmpty()) {
-            for(com.unboundid.ldap.sdk.Entry entry : entries){
-                runInsert(connection, ctx, entry, (LDAPResult) -> response.setNumSaved(response.getNumSaved() + 1));
+        try (LdapConnectionLease lease = leaseLdapConnection(store)) {
+            if (modifications != null) {
+                List<String> unappliedDns = applyModifications(ctx, lease, md, store, query, modifications, postReads, documentToDnMap, response);
+                if (!unappliedDns.isEmpty()) {
+                    //The server could not apply the modifications as is, so evaluate them against the entries instead.
+                    updateByEvaluation(ctx, lease, md, store, query, update, unappliedDns, postReads, documentToDnMap, response);
+                }
+            }
+            else {
+                updateByEvaluation(ctx, lease, md, store, query, update, null, postReads, documentToDnMap, response);
             }
         }
 
-        projectChanges(projection, ctx, documentToDnMap);
+        projectChanges(projection, ctx, documentToDnMap, postReads, FieldAccessRoleEvaluator.Operation.update);
 
         return response;
     }
 
-    @Override
-    public CRUDUpdateResponse update(CRUDOperationContext ctx,
-            QueryExpression query, UpdateExpression update,
-            Projection projection) {
-        // TODO Auto-generated method stub
-        return null;
+    /**
+     * @return the fields the <code>update</code> writes to, as they appear in it.
+     */
+    private static Set<Path> getUpdatedFields(UpdateExpression update) {
+        Set<Path> paths = new LinkedHashSet<>();
+        if (update instanceof UpdateExpressionList) {
+            for (PartialUpdateExpression partial : ((UpdateExpressionList) update).getList()) {
+                paths.addAll(getUpdatedFields(partial));
+            }
+        }
+        else if (update instanceof SetExpression) {
+            for (FieldAndRValue fieldAndValue : ((SetExpression) update).getFields()) {
+                paths.add(fieldAndValue.getField());
+            }
+        }
+        else if (update instanceof UnsetExpression) {
+            paths.addAll(((UnsetExpression) update).getFields());
+        }
+        else if (update instanceof ArrayAddExpression) {
+            paths.add(((ArrayAddExpression) update).getField());
+        }
+        else if (update instanceof ForEachExpression) {
+            paths.add(((ForEachExpression) update).getField());
+        }
+        return paths;
+    }
+
+    /**
+     * Applies the <code>modifications</code> to every entry matching the <code>query</code> without
+     * reading the entries, only their DNs are requested from the server. The modifications are
+     * pipelined, rather than waiting for each response before sending the next.
+     * @return DNs of matched entries the modifications could not be applied to as is, because an
+     * attribute being deleted did not exist or a value being added was already present.
+     */
+    private List<String> applyModifications(CRUDOperationContext ctx, LdapConnectionLease lease, EntityMetadata md,
+            LdapDataStore store, QueryExpression query, List<Modification> modifications, PostReadEntries postReads,
+            Map<String, DocCtx> documentToDnMap, CRUDUpdateResponse response) {
+        EntityPlan plan = entityPlans.get(md);
+        LdapFieldNameTranslator fieldNameTranslator = plan.getFieldNameTranslator();
+        LdapDataSourceSettings settings = dbResolver.getSettings(store);
+        JsonNodeFactory factory = ctx.getFactory().getNodeFactory();
+        Path dnFieldPath = plan.getDnPath();
+
+        List<String> dns = new ArrayList<>();
+        UniqueAttributeLookup lookup = UniqueAttributeLookup.analyze(store, fieldNameTranslator, query);
+        if ((lookup != null) && lookup.isExactMatch()) {
+            //Every existing DN is a match, DNs that do not exist are reported as such by the modify.
+            dns.addAll(lookup.getDNs());
+        }
+        else {
+            int errorCount = ctx.getErrors().size();
+            QueryPlan queryPlan = planQuery(md, query);
+            SearchRequest searchRequest = buildSearchRequest(store, queryPlan, SearchRequest.NO_ATTRIBUTES);
+            SearchResultProcessor processor = postFiltered(queryPlan.createPostFilter(factory), (SearchResultEntry entry) -> dns.add(entry.getDN()));
+            if (lookup != null) {
+                runBaseLookups(lease, searchRequest, lookup.getDNs(), ctx, processor);
+            }
+            else if (enforceIndexPolicy(md, queryPlan)) {
+                //The DNs are all collected before any are modified, so the search need not share the lease.
+                try (LdapConnectionLease searchLease = leaseLdapConnection(store, true)) {
+                    runSearch(searchLease, searchRequest, getPageSize(store), ctx, processor);
+                }
+            }
+            else {
+                runSearch(lease, searchRequest, getPageSize(store), ctx, processor);
+            }
+            if (ctx.getErrors().size() > errorCount) {
+                return new ArrayList<>();
+            }
+        }
+
+        /*
+         * Unlike lightblue, ldap refuses to delete an attribute that does not exist or to add a value
+         * that is already present. Servers supporting permissive modify can be asked to ignore that.
+         */
+        boolean permissive = dbResolver.getCapabilities(store).supportsControl(PermissiveModifyRequestControl.PERMISSIVE_MODIFY_REQUEST_OID);
+
+        List<String> unappliedDns = new ArrayList<>();
+        AsyncOperationPipeline pipeline = new AsyncOperationPipeline(lease, settings.getMaxOperationsInFlight());
+        try {
+            for (String dn : dns) {
+                ModifyRequest modifyRequest = new ModifyRequest(dn, modifications);
+                if (permissive) {
+                    modifyRequest.addControl(new PermissiveModifyRequestControl());
+                }
+                postReads.attachTo(modifyRequest);
+
+                pipeline.submit(
+                        (LDAPConnection connection, AsyncResultListener listener) -> connection.asyncModify(modifyRequest, listener),
+                        (LDAPResult result) -> {
+                            ResultCode resultCode = result.getResultCode();
+                            if (ResultCode.NO_SUCH_OBJECT.equals(resultCode)) {
+                                //Entry does not exist, so it did not match.
+                                return;
+                            }
+                            if (ResultCode.NO_SUCH_ATTRIBUTE.equals(resultCode)
+                                    || ResultCode.ATTRIBUTE_OR_VALUE_EXISTS.equals(resultCode)) {
+                                unappliedDns.add(dn);
+                                return;
+                            }
+
+                            JsonDoc jdoc = new JsonDoc(factory.objectNode());
+                            jdoc.modify(dnFieldPath, StringType.TYPE.toJson(factory, dn), true);
+                            DocCtx document = ctx.addDocument(jdoc);
+                            documentToDnMap.put(dn, document);
+                            response.setNumMatched(response.getNumMatched() + 1);
+
+                            if (ResultCode.SUCCESS.equals(resultCode)) {
+                                response.setNumUpdated(response.getNumUpdated() + 1);
+                                postReads.collect(dn, result);
+                            }
+                            else {
+                                response.setNumFailed(response.getNumFailed() + 1);
+                                document.addError(Error.get(LdapErrorCode.ERR_LDAP_UNSUCCESSFUL_RESPONSE, resultCode.toString()));
+                            }
+                        });
+            }
+            pipeline.awaitCompletion();
+        } catch (LDAPException e) {
+            ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+        }
+
+        return unappliedDns;
+    }
+
+    /**
+     * Reads each entry matching the <code>query</code>, evaluates the <code>update</code> against it,
+     * and writes back the changes. This is only needed for updates that depend on the current state
+     * of the entry.
+     * @param dns - (optional) only these DNs will be updated if provided.
+     */
+    private void updateByEvaluation(CRUDOperationContext ctx, LdapConnectionLease lease, EntityMetadata md,
+            LdapDataStore store, QueryExpression query, UpdateExpression update, Collection<String> dns,
+            PostReadEntries postReads, Map<String, DocCtx> documentToDnMap, CRUDUpdateResponse response) {
+        EntityPlan plan = entityPlans.get(md);
+        LdapFieldNameTranslator fieldNameTranslator = plan.getFieldNameTranslator();
+        JsonNodeFactory factory = ctx.getFactory().getNodeFactory();
+        Path dnFieldPath = plan.getDnPath();
+
+        ModificationTranslatorFromJson modificationTranslator = new ModificationTranslatorFromJson(md, fieldNameTranslator);
+        Updater updater = Updater.getInstance(factory, md, update);
+        FieldAccessRoleEvaluator roles = new FieldAccessRoleEvaluator(md, ctx.getCallerRoles());
+
+        QueryPlan queryPlan = planQuery(md, query);
+        PostFilter postFilter = queryPlan.createPostFilter(factory);
+        SearchResultProcessor processor = postFiltered(postFilter, (SearchResultEntry entry) -> {
+            String dn = entry.getDN();
+            JsonDoc original = postFilter.translate(entry);
+            DocCtx document = ctx.addDocument(original.copy());
+            documentToDnMap.put(dn, document);
+            response.setNumMatched(response.getNumMatched() + 1);
+
+            JsonDoc updated = original.copy();
+            if (!updater.update(updated, md.getFieldTreeRoot(), Path.EMPTY)) {
+                //Nothing changed.
+                return;
+            }
+
+            Set<Path> inaccessiblePaths = roles.getInaccessibleFields_Update(updated, original);
+            if ((inaccessiblePaths != null) && !inaccessiblePaths.isEmpty()) {
+                response.setNumFailed(response.getNumFailed() + 1);
+                for (Path path : inaccessiblePaths) {
+                    document.addError(Error.get(CrudConstants.ERR_NO_FIELD_UPDATE_ACCESS, path.toString()));
+                }
+                return;
+            }
+
+            //DN is derived from the unique attribute, it is not modified directly.
+            original.modify(dnFieldPath, null, false);
+            updated.modify(dnFieldPath, null, false);
+
+            ModifyRequest modifyRequest;
+            try {
+                modifyRequest = modificationTranslator.translateChanges(original, updated, dn);
+            } catch (Error e) {
+                response.setNumFailed(response.getNumFailed() + 1);
+                document.addError(e);
+                return;
+            }
+            if (modifyRequest == null) {
+                return;
+            }
+            postReads.attachTo(modifyRequest);
+
+            int errorCount = ctx.getErrors().size();
+            runModify(lease, ctx, modifyRequest, (LDAPResult result) -> {
+                response.setNumUpdated(response.getNumUpdated() + 1);
+                postReads.collect(dn, result);
+            });
+            if (ctx.getErrors().size() > errorCount) {
+                response.setNumFailed(response.getNumFailed() + 1);
+            }
+        });
+
+        SearchRequest searchRequest = buildSearchRequest(store, queryPlan,
+                plan.getAllAttributes().toArray(new String[0]));
+        if (dns != null) {
+            runBaseLookups(lease, searchRequest, dns, ctx, processor);
+            return;
+        }
+
+        UniqueAttributeLookup lookup = UniqueAttributeLookup.analyze(store, fieldNameTranslator, query);
+        if (lookup != null) {
+            runBaseLookups(lease, searchRequest, lookup.getDNs(), ctx, processor);
+        }
+        else {
+            //Entries are modified as they are read, over the same lease.
+            enforceIndexPolicy(md, queryPlan);
+            runSearch(lease, searchRequest, getPageSize(store), ctx, processor);
+        }
     }
 
     @Override
@@ -200,30 +827,201 @@ public class LdapCRUDController implements CRUDController {
         deleteResponse.setNumDeleted(0);
 
         EntityMetadata md = ctx.getEntityMetadata(ctx.getEntityName());
-        LdapDataStore store = LdapCrudUtil.getLdapDataStore(md);
+        EntityPlan plan = entityPlans.get(md);
+        LdapDataStore store = plan.getStore();
+
+        UniqueAttributeLookup lookup = UniqueAttributeLookup.analyze(store, plan.getFieldNameTranslator(), query);
+        QueryPlan queryPlan = planQuery(md, query);
+        PostFilter postFilter = queryPlan.createPostFilter(ctx.getFactory().getNodeFactory());
+        LdapDataSourceSettings settings = dbResolver.getSettings(store);
+
+        MultiUpdateBatch batch = createMultiUpdateBatch(store);
+        List<Filter> chunks = Collections.singletonList(queryPlan.getFilter());
+        boolean lowPriority = false;
+        if ((batch != null) || (lookup == null)) {
+            //A batch always searches. Only the searching is ever held back, the deletes never are.
+            lowPriority = enforceIndexPolicy(md, queryPlan);
+            chunks = splitFilter(store, queryPlan);
+        }
+        if (batch != null) {
+            deleteInBatch(ctx, store, queryPlan, chunks, lowPriority, getPageSize(store), batch, deleteResponse);
+            return deleteResponse;
+        }
 
-        SearchRequest searchRequest = buildSearchRequest(store.getBaseDN(), md, query, null, SearchRequest.NO_ATTRIBUTES);
+        List<String> dns = null;
+        if ((lookup == null) && (queryPlan.needsPostFilter() || (chunks.size() > 1))) {
+            /*
+             * Entries rejected by the post filter are never deleted, so restarting the search after
+             * each page, as a streaming delete does, could keep returning them. Nor can the chunks of
+             * a split search be restarted without merging them again. The matches are collected first
+             * instead, before any connection is leased for the deletes.
+             */
+            List<String> matches = new ArrayList<>();
+            int errorCount = ctx.getErrors().size();
+            SearchRequest searchRequest = buildSearchRequest(store, queryPlan, SearchRequest.NO_ATTRIBUTES);
+            SearchResultProcessor processor = postFiltered(postFilter, (SearchResultEntry entry) -> matches.add(entry.getDN()));
+            if (chunks.size() > 1) {
+                runChunkedSearch(ctx, store, lowPriority, searchRequest, chunks, processor);
+            }
+            else {
+                try (LdapConnectionLease lease = leaseLdapConnection(store, lowPriority)) {
+                    runSearch(lease, searchRequest, getPageSize(store), ctx, processor);
+                }
+            }
+            if (ctx.getErrors().size() > errorCount) {
+                //Not every match is known, so delete none of them.
+                return deleteResponse;
+            }
+            dns = matches;
+        }
 
-        LDAPConnection connection = getLdapConnection(store);
+        List<LdapConnectionLease> leases = new ArrayList<>();
+        LdapConnectionLease searchLease = null;
+        try {
+            for (int i = 0; i < settings.getDeleteConnections(); i++) {
+                leases.add(leaseLdapConnection(store));
+            }
+            if ((dns == null) && ((lookup == null) || !lookup.isExactMatch())) {
+                /*
+                 * Searches get a lease of their own that no delete is ever sent over. Otherwise a reader
+                 * thread blocked handing over a search result could not also read the delete responses
+                 * the deleter is waiting on to free up room for the next delete.
+                 */
+                searchLease = leaseLdapConnection(store, lowPriority);
+            }
+            PipelinedDeleter deleter = new PipelinedDeleter(ctx, leases, settings.getMaxOperationsInFlight(), deleteResponse);
 
-        runSearch(connection, searchRequest, ctx,
-                (SearchResultEntry entry) -> {
-                    //LDAP only supports performing 1 delete at a time.
-                    execute(ctx, new ExecutionHandler() {
+            if (dns != null) {
+                for (String dn : dns) {
+                    deleter.delete(dn);
+                }
+            }
+            else if ((lookup != null) && lookup.isExactMatch()) {
+                //Every existing DN is a match, so there is nothing to search for.
+                for (String dn : lookup.getDNs()) {
+                    deleter.delete(dn);
+                }
+            }
+            else if (lookup != null) {
+                runBaseLookups(searchLease, buildSearchRequest(store, queryPlan, SearchRequest.NO_ATTRIBUTES),
+                        lookup.getDNs(), ctx, postFiltered(postFilter, (SearchResultEntry entry) -> deleter.delete(entry.getDN())));
+            }
+            else {
+                StreamingSearchResultListener listener = new StreamingSearchResultListener(settings.getStreamBufferSize());
+                runStreamingDelete(searchLease,
+                        buildSearchRequest(listener, store, queryPlan, SearchRequest.NO_ATTRIBUTES),
+                        listener, getPageSize(store), ctx, deleter);
+            }
 
-                        @Override
-                        void onSuccess(LDAPResult deleteResult) {
-                            deleteResponse.setNumDeleted(deleteResponse.getNumDeleted() + 1);
-                        }
+            deleter.awaitCompletion();
+        } finally {
+            if (searchLease != null) {
+                searchLease.close();
+            }
+            for (LdapConnectionLease lease : leases) {
+                lease.close();
+            }
+        }
 
-                        @Override
-                        LDAPResult execute() throws LDAPException {
-                            return connection.delete(entry.getDN());
-                        }
-                    });
+        return deleteResponse;
+    }
+
+    /**
+     * Deletes every entry matching the <code>query</code> with a single multi-update request. The matching
+     * DNs are always searched for first, even if the query names them, so that no delete of a missing
+     * entry is queued that could stop the deletes after it.
+     */
+    private void deleteInBatch(CRUDOperationContext ctx, LdapDataStore store, QueryPlan queryPlan, List<Filter> chunks,
+            boolean lowPriority, int pageSize, MultiUpdateBatch batch, CRUDDeleteResponse response) {
+        int errorCount = ctx.getErrors().size();
+        SearchRequest searchRequest = buildSearchRequest(store, queryPlan, SearchRequest.NO_ATTRIBUTES);
+        SearchResultProcessor processor = postFiltered(queryPlan.createPostFilter(ctx.getFactory().getNodeFactory()),
+                (SearchResultEntry entry) -> batch.add(new DeleteRequest(entry.getDN()), (LDAPResult result) -> {
+                    if (ResultCode.SUCCESS.equals(result.getResultCode())) {
+                        response.setNumDeleted(response.getNumDeleted() + 1);
+                    }
+                    else if (!ResultCode.NO_SUCH_OBJECT.equals(result.getResultCode())) {
+                        ctx.addError(Error.get(
+                                LdapErrorCode.ERR_LDAP_UNSUCCESSFUL_RESPONSE,
+                                result.getResultCode().toString()));
+                    }
+                }));
+        if (chunks.size() > 1) {
+            runChunkedSearch(ctx, store, lowPriority, searchRequest, chunks, processor);
+        }
+        else {
+            try (LdapConnectionLease lease = leaseLdapConnection(store, lowPriority)) {
+                runSearch(lease, searchRequest, pageSize, ctx, processor);
+            }
+        }
+        if (ctx.getErrors().size() > errorCount) {
+            //Not every match is known, so delete none of them.
+            return;
+        }
+
+        //Leased only once the search is done, and never a low priority one, as only the search is held back.
+        try (LdapConnectionLease lease = leaseLdapConnection(store)) {
+            batch.execute(lease);
+        } catch (LDAPException e) {
+            ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+        }
+    }
+
+    /**
+     * Determines which of the <code>dns</code> already exist with as few round trips as possible. Rather
+     * than reading each entry, the unique attribute values are combined into OR filters of at most
+     * <code>chunkSize</code> values.
+     * @param dnToUniqueValueMap - DNs to check, mapped to the unique attribute value they were built from.
+     * @param attributes - attributes to read from the existing entries, {@link SearchRequest#NO_ATTRIBUTES}
+     * if only their existence is of interest.
+     * @return the entries that exist keyed by normalized DN, or <code>null</code> if the check failed.
+     */
+    private Map<String, SearchResultEntry> findExistingEntries(CRUDOperationContext ctx, LdapConnectionLease lease, LdapDataStore store,
+            Map<String, String> dnToUniqueValueMap, int chunkSize, String[] attributes) {
+        Map<String, SearchResultEntry> existingEntries = new HashMap<>();
+        boolean success = searchByUniqueValues(ctx, lease, store, dnToUniqueValueMap.values(), chunkSize,
+                attributes, (SearchResultEntry entry) -> {
+                    try {
+                        existingEntries.put(entry.getParsedDN().toNormalizedString(), entry);
+                    } catch (LDAPException e) {
+                        ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+                    }
                 });
 
-        return deleteResponse;
+        return success ? existingEntries : null;
+    }
+
+    /**
+     * Reads the entries whose unique attribute has one of the <code>uniqueValues</code>, combining the
+     * values into OR filters of at most <code>chunkSize</code> values so that only one search is needed
+     * per chunk.
+     * @return <code>true</code> if all searches succeeded, otherwise <code>false</code>.
+     */
+    private boolean searchByUniqueValues(CRUDOperationContext ctx, LdapConnectionLease lease, LdapDataStore store,
+            Collection<String> uniqueValues, int chunkSize, String[] attributes, SearchResultProcessor processor) {
+        List<String> values = new ArrayList<>(new LinkedHashSet<>(uniqueValues));
+
+        for (int i = 0; i < values.size(); i += chunkSize) {
+            List<Filter> filters = new ArrayList<>();
+            for (String uniqueValue : values.subList(i, Math.min(i + chunkSize, values.size()))) {
+                filters.add(Filter.createEqualityFilter(store.getUniqueAttribute(), uniqueValue));
+            }
+
+            //Entries are only ever created directly beneath the base DN.
+            SearchRequest searchRequest = new SearchRequest(
+                    store.getBaseDN(),
+                    SearchScope.ONE,
+                    Filter.createORFilter(filters),
+                    attributes);
+
+            int errorCount = ctx.getErrors().size();
+            runSearch(lease, searchRequest, 0, ctx, processor);
+            if (ctx.getErrors().size() > errorCount) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     @Override
@@ -239,46 +1037,122 @@ public class LdapCRUDController implements CRUDController {
         }
 
         EntityMetadata md = ctx.getEntityMetadata(ctx.getEntityName());
-        LdapDataStore store = LdapCrudUtil.getLdapDataStore(md);
+        EntityPlan plan = entityPlans.get(md);
+        LdapDataStore store = plan.getStore();
 
         CRUDFindResponse response = new CRUDFindResponse();
         response.setSize(0);
 
-        LDAPConnection connection = getLdapConnection(store);
+        ResultWindow window = ResultWindow.fromRange(from, to);
+        if (window.isEmpty()) {
+            //The range cannot match anything, so there is no reason to ask ldap.
+            ctx.setDocumentStream(new ListDocumentStream<>(new ArrayList<DocCtx>()));
+            return response;
+        }
 
-        LdapFieldNameTranslator fieldNameTranslator = LdapCrudUtil.getLdapFieldNameTranslator(md);
+        LdapFieldNameTranslator fieldNameTranslator = plan.getFieldNameTranslator();
+        LdapDataSourceSettings settings = dbResolver.getSettings(store);
+        JsonNodeFactory factory = ctx.getFactory().getNodeFactory();
 
-        SearchRequest searchRequest = buildSearchRequest(
-                store.getBaseDN(),
-                md,
-                query,
-                translateFieldNames(fieldNameTranslator, gatherRequiredFields(md, projection, query, sort)).toArray(new String[0]));
-        if (sort != null) {
-            searchRequest.addControl(new ServerSideSortRequestControl(false, new SortTranslator(fieldNameTranslator).translate(sort)));
+        /*
+         * Separate base lookups cannot be sorted by the server, so when there is more than one
+         * of them, they are sorted by the client. As are searches, if the server cannot sort.
+         */
+        UniqueAttributeLookup lookup = UniqueAttributeLookup.analyze(store, fieldNameTranslator, query);
+        boolean lookupByDn = lookup != null;
+        QueryPlan queryPlan = planQuery(md, query);
+        //The entries of a split search arrive in no particular order, so neither can the server sort them.
+        List<Filter> chunks = lookupByDn ? Collections.singletonList(queryPlan.getFilter()) : splitFilter(store, queryPlan);
+        boolean chunked = chunks.size() > 1;
+        boolean serverSort = (sort != null) && !lookupByDn && !chunked
+                && dbResolver.getCapabilities(store).supportsControl(ServerSideSortRequestControl.SERVER_SIDE_SORT_REQUEST_OID);
+        boolean clientSort = (sort != null) && !serverSort && (!lookupByDn || (lookup.getDNs().size() > 1));
+
+        String[] attributes = plan.getRequiredAttributes(projection, query, sort).toArray(new String[0]);
+        PostFilter postFilter = queryPlan.createPostFilter(factory);
+        boolean lowPriority = !lookupByDn && enforceIndexPolicy(md, queryPlan);
+
+        Projector projector = plan.getProjector(projection, ctx.getCallerRoles(), FieldAccessRoleEvaluator.Operation.find);
+
+        if (clientSort) {
+            findSortedByClient(ctx, store, md, queryPlan, chunks, attributes, sort, lookup, lowPriority, to, window, projector, response);
+            return response;
         }
-        if ((from != null) && (from > 0)) {
-            int endPos = to.intValue() - from.intValue();
-            searchRequest.addControl(new VirtualListViewRequestControl(from.intValue(), 0, endPos, 0, null, false));
+
+        StreamingSearchResultListener streamingListener = (!lookupByDn && !chunked && settings.isStreamFindResults())
+                ? new StreamingSearchResultListener(settings.getStreamBufferSize())
+                : null;
+        if ((streamingListener != null) && !postFilter.isEmpty()) {
+            streamingListener.setEntryFilter(postFilter);
         }
 
-        ResultTranslatorToJson resultTranslator = new ResultTranslatorToJson(ctx.getFactory().getNodeFactory(), md, fieldNameTranslator);
+        SearchRequest searchRequest = buildSearchRequest(
+                streamingListener,
+                store,
+                queryPlan,
+                attributes);
+        /*
+         * Direct lookups return at most a handful of entries, so the range is simply applied by the client.
+         * As it is when the client still has to filter or merge the entries, the server cannot know which are in range.
+         */
+        if (!lookupByDn && !chunked) {
+            if (serverSort) {
+                searchRequest.addControl(new ServerSideSortRequestControl(false, new SortTranslator(fieldNameTranslator).translate(sort)));
+            }
+            if (!queryPlan.needsPostFilter() && applyVirtualListView(searchRequest, store, sort, from, to)) {
+                //The server is returning exactly the requested range.
+                window = new ResultWindow(0, ResultWindow.UNBOUNDED);
+            }
+            else if (!queryPlan.needsPostFilter() && (to != null) && (to < Integer.MAX_VALUE)) {
+                //Nothing past 'to' is ever needed, so the server can stop there.
+                searchRequest.setSizeLimit(to.intValue() + 1);
+            }
+        }
+        ResultWindow resultWindow = window;
+
+        if (streamingListener != null) {
+            ctx.setDocumentStream(streamSearch(ctx, store, lowPriority, searchRequest, getPageSize(store), resultWindow, streamingListener, (SearchResultEntry entry) -> {
+                DocCtx document = new DocCtx(postFilter.translate(entry));
+                document.setOutputDocument(projector.project(document, factory));
+                response.setSize(response.getSize() + 1);
+                return document;
+            }));
+            return response;
+        }
 
         List<DocCtx> translatedDocs = new ArrayList<>();
-        runSearch(connection, searchRequest, ctx, (SearchResultEntry entry) -> {
-            translatedDocs.add(new DocCtx(resultTranslator.translate(entry)));
-            response.setSize(response.getSize() + 1);
+        boolean serverSortFailed = false;
+        SearchResultProcessor processor = postFiltered(postFilter, (SearchResultEntry entry) -> {
+            if (resultWindow.accept()) {
+                translatedDocs.add(new DocCtx(postFilter.translate(entry)));
+                response.setSize(response.getSize() + 1);
+            }
         });
+        if (chunked) {
+            runChunkedSearch(ctx, store, lowPriority, searchRequest, chunks, processor);
+        }
+        else {
+            try (LdapConnectionLease lease = leaseLdapConnection(store, lowPriority)) {
+                if (lookupByDn) {
+                    runBaseLookups(lease, searchRequest, lookup.getDNs(), ctx, processor);
+                }
+                else {
+                    SearchResult searchResult = runSearch(lease, searchRequest, getPageSize(store), ctx, processor);
+                    serverSortFailed = serverSort && !isServerSorted(searchResult);
+                }
+            }
+        }
+
+        if (serverSortFailed) {
+            //Typically because the sort key has no ordering index, so the entries came back unsorted.
+            response.setSize(0);
+            findSortedByClient(ctx, store, md, queryPlan, chunks, attributes, sort, null, lowPriority, to, ResultWindow.fromRange(from, to),
+                    projector, response);
+            return response;
+        }
 
-        Projector projector = Projector.getInstance(
-                Projection.add(
-                        projection,
-                        new FieldAccessRoleEvaluator(
-                                md,
-                                ctx.getCallerRoles()).getExcludedFields(FieldAccessRoleEvaluator.Operation.find)
-                        ),
-                md);
         for (DocCtx document : translatedDocs) {
-            document.setOutputDocument(projector.project(document, ctx.getFactory().getNodeFactory()));
+            document.setOutputDocument(projector.project(document, factory));
         }
 
         ctx.setDocumentStream(new ListDocumentStream<>(translatedDocs));
@@ -286,164 +1160,684 @@ public class LdapCRUDController implements CRUDController {
         return response;
     }
 
-    @Override
-    public void updatePredefinedFields(CRUDOperationContext ctx, JsonDoc doc) {
-        //Do Nothing!!
+    /**
+     * Reads every entry matching the <code>queryPlan</code>, and sorts them on the client. The sorted
+     * documents are only projected as the consumer reads them.
+     * @param chunks - filters to search for in place of the <code>queryPlan</code>'s own, see {@link #splitFilter(LdapDataStore, QueryPlan)}.
+     * @param lookup - (optional) {@link UniqueAttributeLookup} to read the entries with, rather than searching.
+     * @param lowPriority - whether to search over a low priority connection.
+     * @param to - (optional) index of the last document wanted, no document sorting after it is kept.
+     */
+    private void findSortedByClient(CRUDOperationContext ctx, LdapDataStore store, EntityMetadata md, QueryPlan queryPlan,
+            List<Filter> chunks, String[] attributes, Sort sort, UniqueAttributeLookup lookup, boolean lowPriority, Long to, ResultWindow window,
+            Projector projector, CRUDFindResponse response) {
+        JsonNodeFactory factory = ctx.getFactory().getNodeFactory();
+        ClientSideSorter sorter = new ClientSideSorter(
+                new DocumentComparator(md, sort),
+                ((to == null) || (to >= Integer.MAX_VALUE)) ? ResultWindow.UNBOUNDED : to + 1,
+                dbResolver.getSettings(store).getClientSortBufferSize(),
+                factory);
+
+        SearchRequest searchRequest = buildSearchRequest(store, queryPlan, attributes);
+        PostFilter postFilter = queryPlan.createPostFilter(factory);
+        SearchResultProcessor processor = postFiltered(postFilter, (SearchResultEntry entry) -> sorter.add(postFilter.translate(entry)));
+        if ((lookup == null) && (chunks.size() > 1)) {
+            runChunkedSearch(ctx, store, lowPriority, searchRequest, chunks, processor);
+        }
+        else {
+            try (LdapConnectionLease lease = leaseLdapConnection(store, lowPriority)) {
+                if (lookup != null) {
+                    runBaseLookups(lease, searchRequest, lookup.getDNs(), ctx, processor);
+                }
+                else {
+                    runSearch(lease, searchRequest, getPageSize(store), ctx, processor);
+                }
+            }
+        }
+
+        if (sorter.getFailure() != null) {
+            ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_SORT_FAILED, sorter.getFailure()));
+            sorter.close();
+            ctx.setDocumentStream(new ListDocumentStream<>(new ArrayList<DocCtx>()));
+            return;
+        }
+
+        response.setSize(window.countWithin(sorter.getSize()));
+        ctx.setDocumentStream(new SortedDocumentStream(sorter, window, (JsonDoc document) -> {
+            DocCtx docCtx = new DocCtx(document);
+            docCtx.setOutputDocument(projector.project(docCtx, factory));
+            return docCtx;
+        }, () -> {
+            if (sorter.getFailure() != null) {
+                ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_SORT_FAILED, sorter.getFailure()));
+            }
+        }));
     }
 
-    @Override
-    public MetadataListener getMetadataListener() {
-        return new LdapMetadataListener();
+    /**
+     * A server that cannot sort, ignores a non-critical sort control and returns the entries unsorted,
+     * along with a sort response control explaining why.
+     * @return <code>false</code> if the server reported the sort as failed, otherwise <code>true</code>.
+     */
+    private static boolean isServerSorted(SearchResult searchResult) {
+        if (searchResult == null) {
+            //The search failed, which has already been reported.
+            return true;
+        }
+        try {
+            ServerSideSortResponseControl sortResponse = ServerSideSortResponseControl.get(searchResult);
+            return (sortResponse == null) || ResultCode.SUCCESS.equals(sortResponse.getResultCode());
+        } catch (LDAPException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Pushes the requested range down to the server as a Virtual List View. This is only possible
+     * when there is an offset to skip, the range is bounded, the results are sorted (a VLV always
+     * requires a server side sort) and the server has advertised support for the control.
+     * @return <code>true</code> if the VLV control was added, otherwise <code>false</code> and the
+     * range will need to be applied by the client.
+     */
+    private boolean applyVirtualListView(SearchRequest searchRequest, LdapDataStore store, Sort sort, Long from, Long to) {
+        long first = ResultWindow.getFirstIndex(from);
+        if ((first == 0) || (to == null) || (sort == null) || (to >= Integer.MAX_VALUE)
+                || !searchRequest.hasControl(ServerSideSortRequestControl.SERVER_SIDE_SORT_REQUEST_OID)
+                || !dbResolver.getCapabilities(store).supportsControl(VirtualListViewRequestControl.VIRTUAL_LIST_VIEW_REQUEST_OID)) {
+            return false;
+        }
+
+        //VLV offsets are 1-based, lightblue ranges are 0-based and inclusive.
+        int targetOffset = (int) first + 1;
+        int afterCount = (int) (to - first);
+        searchRequest.addControl(new VirtualListViewRequestControl(targetOffset, 0, afterCount, 0, null, false));
+        return true;
     }
 
     /**
-     * Returns a list of the field names that are needed for the operation to be
-     * successful.
-     * @param md - {@link EntityMetadata}.
-     * @param projection - (optional) {@link Projection}.
-     * @param query - (optional) {@link QueryExpression}.
-     * @param sort - (optional) {@link Sort}.
-     * @return list of field names.
+     * Deletes every entry matching the <code>searchRequest</code>. The search runs asynchronously, and
+     * each DN is handed to the <code>deleter</code> as soon as it arrives, so no more than the listener's
+     * buffer of DNs are ever held in memory and the deletes overlap with the search.
+     * <p>
+     * If paging, deleting entries can shift the server's position in the paged results, so rather than
+     * continuing with the cookie, the search is restarted after each page until nothing is left to delete.
+     * </p>
+     * @param lease - lease to search over. It must not be one the <code>deleter</code> sends deletes over,
+     * as a full listener holds up reading the responses on that connection.
+     * @param searchRequest - {@link SearchRequest} built with the <code>listener</code>.
      */
-    private Set<Path> gatherRequiredFields(EntityMetadata md,
-            Projection projection, QueryExpression query, Sort sort) {
-        Set<Path> paths = new HashSet<>();
+    private void runStreamingDelete(LdapConnectionLease lease, SearchRequest searchRequest, StreamingSearchResultListener listener,
+            int pageSize, CRUDOperationContext ctx, PipelinedDeleter deleter) {
+        boolean paged = isPageable(searchRequest, pageSize);
+        while (true) {
+            if (paged) {
+                searchRequest.replaceControl(new SimplePagedResultsControl(pageSize, null));
+            }
+            listener.reset();
 
-        FieldCursor cursor = md.getFieldCursor();
-        while (cursor.next()) {
-            Path node = cursor.getCurrentPath();
-            String fieldName = node.getLast();
+            AsyncRequestID requestId;
+            try {
+                requestId = lease.getConnection().asyncSearch(searchRequest);
+            } catch (LDAPException e) {
+                lease.exceptionCaught(e);
+                ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+                return;
+            }
 
-            if (((projection != null) && projection.isFieldRequiredToEvaluateProjection(node))
-                    || ((query != null) && query.isRequired(node))
-                    || ((sort != null) && sort.isRequired(node))) {
-                if (PredefinedFields.isFieldAnArrayCount(fieldName, md.getFields())) {
-                    /*
-                     * Handles the case of an array count field, which will not actually exist in
-                     * the ldap entity.
-                     */
-                    paths.add(node.mutableCopy().setLast(PredefinedFields.createArrayFieldNameFromCountField(fieldName)).immutableCopy());
+            int deletedBeforePage = deleter.getDeleted();
+            try {
+                SearchResultEntry entry;
+                while (((entry = listener.take()) != null) && !deleter.hasFailed()) {
+                    deleter.delete(entry.getDN());
                 }
-                else {
-                    paths.add(node);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+            }
+
+            SearchResult result = listener.getSearchResult();
+            if (result == null) {
+                //Stopped before the search completed.
+                try {
+                    lease.getConnection().abandon(requestId);
+                } catch (LDAPException e) {
+                    lease.exceptionCaught(e);
                 }
+                return;
+            }
+            if (!ResultCode.SUCCESS.equals(result.getResultCode())) {
+                ctx.addError(Error.get(
+                        LdapErrorCode.ERR_LDAP_UNSUCCESSFUL_RESPONSE,
+                        result.getResultCode().toString()));
+                return;
+            }
+
+            ASN1OctetString cookie = paged ? getNextPageCookie(ctx, result) : null;
+            if (cookie == null) {
+                return;
+            }
+            cancelPagedSearch(lease, searchRequest, cookie);
+
+            //The page must be gone before searching again, or it would simply be returned again.
+            deleter.awaitCompletion();
+            if (deleter.getDeleted() == deletedBeforePage) {
+                //Nothing on this page could be deleted, so restarting would only return the same page.
+                return;
             }
         }
+    }
 
-        return paths;
+    /**
+     * Starts the <code>searchRequest</code> asynchronously and returns a {@link DocumentStream} that
+     * converts each entry as the consumer pulls it. The connection lease is held until the stream
+     * has been exhausted or closed. Because the search completes after this method has returned, the
+     * response size is only final once the stream has been fully consumed.
+     * @param ctx - {@link CRUDOperationContext}
+     * @param store - {@link LdapDataStore} to search.
+     * @param lowPriority - whether to search over a low priority connection.
+     * @param searchRequest - {@link SearchRequest} built with the <code>listener</code>.
+     * @param pageSize - if greater than 0, the next page is requested once the consumer has read
+     * the current one, so no more than one page is ever outstanding.
+     * @param window - {@link ResultWindow} to apply, the search is abandoned once it is full.
+     * @param listener - {@link StreamingSearchResultListener} receiving the results.
+     * @param converter - converts each {@link SearchResultEntry} into a {@link DocCtx}.
+     * @return lazy {@link DocumentStream} of the search results.
+     */
+    private DocumentStream<DocCtx> streamSearch(CRUDOperationContext ctx, LdapDataStore store, boolean lowPriority, SearchRequest searchRequest,
+            int pageSize, ResultWindow window, StreamingSearchResultListener listener, Function<SearchResultEntry, DocCtx> converter) {
+        boolean paged = isPageable(searchRequest, pageSize);
+        if (paged) {
+            searchRequest.replaceControl(new SimplePagedResultsControl(pageSize, null));
+        }
+
+        LdapConnectionLease lease = leaseLdapConnection(store, lowPriority);
+
+        AtomicReference<AsyncRequestID> requestId = new AtomicReference<>();
+        try {
+            requestId.set(lease.getConnection().asyncSearch(searchRequest));
+        } catch (LDAPException e) {
+            lease.exceptionCaught(e);
+            lease.close();
+            ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+            return new ListDocumentStream<>(new ArrayList<DocCtx>());
+        }
+
+        BooleanSupplier nextPageFetcher = () -> {
+            SearchResult result = listener.getSearchResult();
+            if (!paged || (result == null) || !ResultCode.SUCCESS.equals(result.getResultCode())) {
+                return false;
+            }
+            ASN1OctetString cookie = getNextPageCookie(ctx, result);
+            if (cookie == null) {
+                return false;
+            }
+
+            searchRequest.replaceControl(new SimplePagedResultsControl(pageSize, cookie));
+            listener.reset();
+            try {
+                requestId.set(lease.getConnection().asyncSearch(searchRequest));
+                return true;
+            } catch (LDAPException e) {
+                lease.exceptionCaught(e);
+                ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+                return false;
+            }
+        };
+
+        SearchResultDocumentStream stream = new SearchResultDocumentStream(listener, converter, nextPageFetcher, () -> {
+            try {
+                SearchResult result = listener.getSearchResult();
+                if (result == null) {
+                    //Consumer stopped early, no need for the server to keep sending results.
+                    lease.getConnection().abandon(requestId.get());
+                }
+                else if (isSizeLimitReached(searchRequest, result.getResultCode())) {
+                    //Expected, the size limit was set to the end of the requested range.
+                }
+                else if (!ResultCode.SUCCESS.equals(result.getResultCode())) {
+                    ctx.addError(Error.get(
+                            LdapErrorCode.ERR_LDAP_UNSUCCESSFUL_RESPONSE,
+                            result.getResultCode().toString()));
+                }
+                else if (paged) {
+                    ASN1OctetString cookie = getNextPageCookie(ctx, result);
+                    if (cookie != null) {
+                        //Consumer stopped between pages.
+                        cancelPagedSearch(lease, searchRequest, cookie);
+                    }
+                }
+            } catch (LDAPException e) {
+                lease.exceptionCaught(e);
+            } finally {
+                lease.close();
+            }
+        });
+        stream.setWindow(window);
+        return stream;
+    }
+
+    @Override
+    public void updatePredefinedFields(CRUDOperationContext ctx, JsonDoc doc) {
+        //Do Nothing!!
+    }
+
+    @Override
+    public MetadataListener getMetadataListener() {
+        return new LdapMetadataListener(entityPlans);
+    }
+
+    private static boolean isOnlyDnRequired(Set<String> attributeNames) {
+        return (attributeNames.size() == 1) && attributeNames.contains(LdapConstant.ATTRIBUTE_DN);
+    }
+
+    /**
+     * Creates the {@link PostReadEntries} for a write. The Post-Read control is only requested if the
+     * written entries need to be projected back, more than the dn is needed to do so, and the server
+     * has advertised support for the control.
+     * @param store - {@link LdapDataStore} being written to.
+     * @param projectedAttributes - attributes needed to project the written entries.
+     */
+    private PostReadEntries createPostReadEntries(LdapDataStore store, Set<String> projectedAttributes) {
+        if (projectedAttributes.isEmpty()
+                || isOnlyDnRequired(projectedAttributes)
+                || !dbResolver.getCapabilities(store).supportsControl(PostReadRequestControl.POST_READ_REQUEST_OID)) {
+            return new PostReadEntries(null);
+        }
+        return new PostReadEntries(new PostReadRequestControl(projectedAttributes.toArray(new String[0])));
     }
 
     /**
-     * Translates a <code>Collection</code> of fieldNames into a <code>Set</code> of
-     * attributeNames
-     * @param property - {@link LdapFieldNameTranslator}.
-     * @param fieldNames - <code>Collection</code> of fieldNames to translated
-     * @return <code>Set</code> of translated attributeNames.
+     * Reads back the written entries that were not returned by the Post-Read control. Rather than
+     * looking up each entry individually, they are read with as few searches as possible.
+     * @param documentToDnMap - Map linking {@link DocCtx} to the DN that represents it.
+     * @param postReads - {@link PostReadEntries} to add the read entries to.
      */
-    private Set<String> translateFieldNames(LdapFieldNameTranslator property, Collection<Path> fieldNames) {
-        Set<String> attributes = new HashSet<>();
-        for (Path path : fieldNames) {
-            attributes.add(property.translateFieldName(path));
+    private void readBackEntries(CRUDOperationContext ctx, LdapDataStore store, Set<String> attributes,
+            Map<String, DocCtx> documentToDnMap, PostReadEntries postReads) {
+        Map<String, String> normalizedToDnMap = new HashMap<>();
+        List<String> uniqueValues = new ArrayList<>();
+        for (Entry<String, DocCtx> dnToDocument : documentToDnMap.entrySet()) {
+            String dn = dnToDocument.getKey();
+            if (postReads.contains(dn) || dnToDocument.getValue().hasErrors()) {
+                continue;
+            }
+            try {
+                DN parsedDn = new DN(dn);
+                normalizedToDnMap.put(parsedDn.toNormalizedString(), dn);
+                uniqueValues.add(parsedDn.getRDN().getAttributeValues()[0]);
+            } catch (LDAPException e) {
+                ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+                return;
+            }
+        }
+
+        if (uniqueValues.isEmpty()) {
+            return;
         }
 
-        return attributes;
+        try (LdapConnectionLease lease = leaseLdapConnection(store)) {
+            searchByUniqueValues(ctx, lease, store, uniqueValues, dbResolver.getSettings(store).getExistenceCheckChunkSize(),
+                    attributes.toArray(new String[0]), (SearchResultEntry entry) -> {
+                        try {
+                            String dn = normalizedToDnMap.get(entry.getParsedDN().toNormalizedString());
+                            if (dn != null) {
+                                postReads.put(dn, entry);
+                            }
+                        } catch (LDAPException e) {
+                            ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+                        }
+                    });
+        }
     }
 
     /**
-     * For Insert and Save (and possibly Update), this method will project the results back
+     * For Insert, Save and Update, this method will project the results back
      * onto the documents.
      * @param projection - {@link Projection} If null, then nothing will happen.
      * @param ctx - {@link CRUDOperationContext}
      * @param documentToDnMap - Map linking {@link DocCtx} to the DN that represents it.
+     * @param postReads - {@link PostReadEntries} already returned by the server for the written DNs.
+     * @param operation - {@link FieldAccessRoleEvaluator.Operation} the caller's access to the fields is checked for.
      */
-    private void projectChanges(Projection projection, CRUDOperationContext ctx, Map<String, DocCtx> documentToDnMap) {
+    private void projectChanges(Projection projection, CRUDOperationContext ctx, Map<String, DocCtx> documentToDnMap,
+            PostReadEntries postReads, FieldAccessRoleEvaluator.Operation operation) {
         if (projection == null) {
             return;
         }
 
         EntityMetadata md = ctx.getEntityMetadata(ctx.getEntityName());
+        EntityPlan plan = entityPlans.get(md);
+        LdapDataStore store = plan.getStore();
         JsonNodeFactory factory = ctx.getFactory().getNodeFactory();
-        LdapFieldNameTranslator fieldNameTranslator = LdapCrudUtil.getLdapFieldNameTranslator(md);
+        LdapFieldNameTranslator fieldNameTranslator = plan.getFieldNameTranslator();
+
+        Set<String> requiredAttributeNames = plan.getProjectedAttributes(projection);
+        boolean onlyDnRequired = isOnlyDnRequired(requiredAttributeNames);
+        if (!onlyDnRequired) {
+            readBackEntries(ctx, store, requiredAttributeNames, documentToDnMap, postReads);
+        }
+        ResultTranslatorToJson resultTranslator = new ResultTranslatorToJson(factory, md, fieldNameTranslator);
 
-        Set<String> requiredAttributeNames = translateFieldNames(fieldNameTranslator, gatherRequiredFields(md, projection, null, null));
-        Projector projector = Projector.getInstance(
-                Projection.add(
-                        projection,
-                        new FieldAccessRoleEvaluator(
-                                md,
-                                ctx.getCallerRoles()).getExcludedFields(FieldAccessRoleEvaluator.Operation.insert)
-                        ),
-                md);
+        Projector projector = plan.getProjector(projection, ctx.getCallerRoles(), operation);
 
-        Path dnFieldPath = fieldNameTranslator.translateAttributeName(LdapConstant.ATTRIBUTE_DN);
+        Path dnFieldPath = plan.getDnPath();
 
         for (Entry<String, DocCtx> insertedDn : documentToDnMap.entrySet()) {
             String dn = insertedDn.getKey();
             DocCtx document = insertedDn.getValue();
-            DocCtx projectionResponseJson = null;
+            DocCtx projectionResponseJson;
 
             // If only dn is in the projection, then no need to query LDAP.
-            if ((requiredAttributeNames.size() == 1) && requiredAttributeNames.contains(LdapConstant.ATTRIBUTE_DN)) {
+            if (onlyDnRequired) {
                 JsonDoc jdoc = new JsonDoc(factory.objectNode());
                 jdoc.modify(dnFieldPath, StringType.TYPE.toJson(factory, dn), true);
                 projectionResponseJson = new DocCtx(jdoc);
             }
-            //TODO: else fetch entity from LDAP and project results.
-            //TODO: Probably want to batch fetch as opposed to individual fetches.
+            else if (postReads.contains(dn)) {
+                projectionResponseJson = new DocCtx(resultTranslator.translate(postReads.get(dn)));
+            }
+            else {
+                //Entry could not be read back, most likely because it was not written.
+                continue;
+            }
 
             document.setOutputDocument(projector.project(projectionResponseJson, factory));
         }
     }
 
     /**
-     * Returns a connection to ldap.
+     * Leases a connection to ldap. The returned {@link LdapConnectionLease} must be closed
+     * once the operation is complete so that the connection is returned to the pool.
      * @param store - {@link LdapDataStore} to connect too.
-     * @return a connection to ldap
+     * @return a lease on a connection to ldap
      * @throws RuntimeException when unable to connect to ldap.
      */
-    private LDAPConnection getLdapConnection(LdapDataStore store) {
-        LDAPConnection connection = null;
+    private LdapConnectionLease leaseLdapConnection(LdapDataStore store) {
+        return leaseLdapConnection(store, false);
+    }
+
+    /**
+     * @param lowPriority - whether to lease from the low priority pool, see
+     * {@link DBResolver#leaseLowPriority(com.redhat.lightblue.metadata.DataStore)}.
+     */
+    private LdapConnectionLease leaseLdapConnection(LdapDataStore store, boolean lowPriority) {
         try {
-            connection = dbResolver.get(store);
+            return lowPriority ? dbResolver.leaseLowPriority(store) : dbResolver.lease(store);
         } catch (LDAPException e) {
             //TODO: throw more relevant exception.
             throw new RuntimeException("Unable to establish connection to LDAP", e);
         }
-        return connection;
     }
 
-    private static SearchRequest buildSearchRequest(String baseDn, EntityMetadata md, QueryExpression query, String... attributes) {
-        //TODO: Support scopes other than SUB
+    private SearchRequest buildSearchRequest(LdapDataStore store, QueryPlan queryPlan, String... attributes) {
+        return buildSearchRequest(null, store, queryPlan, attributes);
+    }
+
+    /**
+     * Searches beneath the base DN of the <code>store</code>, in its {@link LdapDataStore#getScope()}.
+     * @param listener - (optional) {@link SearchResultListener} to deliver results to as they
+     * arrive. If <code>null</code>, results will be collected into the {@link SearchResult}.
+     */
+    private SearchRequest buildSearchRequest(SearchResultListener listener, LdapDataStore store,
+            QueryPlan queryPlan, String... attributes) {
+        String[] requestedAttributes = attributes;
+        if (queryPlan.needsPostFilter()) {
+            //The post filter checks the attributes the query refers to, so they are always needed.
+            Set<String> attributeNames = new LinkedHashSet<>(Arrays.asList(attributes));
+            attributeNames.remove(SearchRequest.NO_ATTRIBUTES);
+            attributeNames.addAll(queryPlan.getRequiredAttributes());
+            requestedAttributes = attributeNames.toArray(new String[0]);
+        }
+
         return new SearchRequest(
-                baseDn,
-                SearchScope.SUB,
-                new FilterBuilder(LdapCrudUtil.getLdapFieldNameTranslator(md)).build(query),
-                attributes);
+                listener,
+                store.getBaseDN(),
+                store.getScope().getSearchScope(),
+                queryPlan.getFilter(),
+                requestedAttributes);
     }
 
-    private void runSearch(LDAPConnection connection, SearchRequest searchRequest, CRUDOperationContext ctx, SearchResultProcessor searchRunner) {
-        execute(ctx, new ExecutionHandler() {
+    /**
+     * Splits the <code>query</code> between the server and the client. Queries the server cannot fully
+     * evaluate are reported, as they may have to read far more entries than they return.
+     */
+    private QueryPlan planQuery(EntityMetadata md, QueryExpression query) {
+        EntityPlan plan = entityPlans.get(md);
+        FilterOptimizer optimizer = new FilterOptimizer(plan.getSingleValuedAttributes(),
+                dbResolver.getCapabilities(plan.getStore()).supportsFeature(FilterOptimizer.ABSOLUTE_FILTERS_FEATURE_OID),
+                plan.getIndexClassifier());
+        QueryPlan queryPlan = QueryPlan.create(plan, optimizer, query);
+
+        if (!queryPlan.isFullyPushedDown()) {
+            if (queryPlan.isScan()) {
+                LOGGER.warn("Query on " + md.getName() + " reads every entry beneath " + plan.getStore().getBaseDN() + ", " + queryPlan);
+            }
+            else {
+                LOGGER.info("Query on " + md.getName() + " " + queryPlan);
+            }
+        }
+        return queryPlan;
+    }
 
-            @Override
-            void onSuccess(LDAPResult searchResult) {
-                for (SearchResultEntry entry : ((SearchResult) searchResult).getSearchEntries()) {
-                    searchRunner.process(entry);
+    /**
+     * Applies the entity's {@link LdapUnindexedQueryPolicy} to a search that none of its declared
+     * indexes can serve. Not needed for base lookups, which only read the entries they name.
+     * @return <code>true</code> if the search should be sent over a low priority connection.
+     * @throws Error if the policy is to reject the search.
+     */
+    private boolean enforceIndexPolicy(EntityMetadata md, QueryPlan queryPlan) {
+        if (!queryPlan.isUnindexed()) {
+            return false;
+        }
+
+        LdapUnindexedQueryPolicy policy = entityPlans.get(md).getUnindexedQueryPolicy();
+        if (policy == LdapUnindexedQueryPolicy.REJECT) {
+            throw Error.get(LdapErrorCode.ERR_LDAP_UNINDEXED_QUERY, md.getName() + ": " + queryPlan);
+        }
+        LOGGER.warn("Unindexed query on " + md.getName() + " (" + policy.getName() + "), " + queryPlan);
+        return policy == LdapUnindexedQueryPolicy.LOW_PRIORITY;
+    }
+
+    private static SearchResultProcessor postFiltered(PostFilter postFilter, SearchResultProcessor processor) {
+        if (postFilter.isEmpty()) {
+            return processor;
+        }
+        return (SearchResultEntry entry) -> {
+            if (postFilter.test(entry)) {
+                processor.process(entry);
+            }
+        };
+    }
+
+    /**
+     * Runs the <code>searchRequest</code> and passes each returned entry to the <code>searchRunner</code>.
+     * @param pageSize - if greater than 0, the results are fetched in pages of this size using the
+     * Simple Paged Results control, walking the cookie until the server has no more results.
+     * @return the {@link SearchResult} of the last page, or <code>null</code> if the search failed.
+     */
+    private SearchResult runSearch(LdapConnectionLease lease, SearchRequest searchRequest, int pageSize, CRUDOperationContext ctx, SearchResultProcessor searchRunner) {
+        boolean paged = isPageable(searchRequest, pageSize);
+        AtomicReference<ASN1OctetString> cookie = new AtomicReference<>();
+        AtomicReference<SearchResult> lastResult = new AtomicReference<>();
+        do {
+            if (paged) {
+                searchRequest.replaceControl(new SimplePagedResultsControl(pageSize, cookie.get()));
+            }
+            cookie.set(null);
+            lastResult.set(null);
+
+            execute(ctx, lease, new ExecutionHandler() {
+
+                @Override
+                void onSuccess(LDAPResult searchResult) {
+                    lastResult.set((SearchResult) searchResult);
+                    for (SearchResultEntry entry : ((SearchResult) searchResult).getSearchEntries()) {
+                        searchRunner.process(entry);
+                    }
+                    if (paged && ResultCode.SUCCESS.equals(searchResult.getResultCode())) {
+                        cookie.set(getNextPageCookie(ctx, (SearchResult) searchResult));
+                    }
+                }
+
+                @Override
+                boolean isSuccess(ResultCode resultCode) {
+                    return super.isSuccess(resultCode) || isSizeLimitReached(searchRequest, resultCode);
+                }
+
+                @Override
+                SearchResult execute() throws LDAPException {
+                    return lease.getConnection().search(searchRequest);
+                }
+            });
+        } while (cookie.get() != null);
+
+        return lastResult.get();
+    }
+
+    /**
+     * Runs the <code>searchRequest</code> as a base scoped lookup against each of the <code>dns</code>,
+     * rather than searching the subtree. DNs that do not exist are skipped.
+     */
+    private void runBaseLookups(LdapConnectionLease lease, SearchRequest searchRequest, Collection<String> dns,
+            CRUDOperationContext ctx, SearchResultProcessor searchRunner) {
+        for (String dn : dns) {
+            SearchRequest lookupRequest = searchRequest.duplicate();
+            lookupRequest.setBaseDN(dn);
+            lookupRequest.setScope(SearchScope.BASE);
+
+            execute(ctx, lease, new ExecutionHandler() {
+
+                @Override
+                void onSuccess(LDAPResult searchResult) {
+                    for (SearchResultEntry entry : ((SearchResult) searchResult).getSearchEntries()) {
+                        searchRunner.process(entry);
+                    }
+                }
+
+                @Override
+                boolean isSuccess(ResultCode resultCode) {
+                    return super.isSuccess(resultCode) || ResultCode.NO_SUCH_OBJECT.equals(resultCode);
+                }
+
+                @Override
+                SearchResult execute() throws LDAPException {
+                    return lease.getConnection().search(lookupRequest);
+                }
+            });
+        }
+    }
+
+    /**
+     * Splits the <code>queryPlan</code>'s filter if it has an OR of more values than the datasource allows
+     * in a single filter, see {@link FilterSplitter}.
+     * @return the filters to search for, just the <code>queryPlan</code>'s own if there is nothing to split.
+     */
+    private List<Filter> splitFilter(LdapDataStore store, QueryPlan queryPlan) {
+        List<Filter> chunks = FilterSplitter.split(queryPlan.getFilter(), dbResolver.getSettings(store).getMaxFilterValues());
+        if (chunks.size() > 1) {
+            LOGGER.info("Query split into " + chunks.size() + " searches, " + queryPlan);
+        }
+        return chunks;
+    }
+
+    /**
+     * Searches for each of the <code>chunks</code> with a {@link ChunkedSearch}, over as many connections
+     * as the datasource allows, and passes each matching entry to the <code>searchRunner</code> once.
+     * <p>
+     * The low priority pool may hold fewer connections than that, and other requests may be using some
+     * of them, so only the first low priority connection is waited for. The search then runs over
+     * however many more happen to be free.
+     * </p>
+     * @param searchRequest - {@link SearchRequest} to search with for each of the <code>chunks</code>.
+     */
+    private void runChunkedSearch(CRUDOperationContext ctx, LdapDataStore store, boolean lowPriority, SearchRequest searchRequest,
+            List<Filter> chunks, SearchResultProcessor searchRunner) {
+        int connections = Math.min(chunks.size(), dbResolver.getSettings(store).getChunkedSearchConnections());
+        List<LdapConnectionLease> leases = new ArrayList<>();
+        try {
+            //Leased directly so that a pool that times out is reported like any other failed request
+            leases.add(lowPriority ? dbResolver.leaseLowPriority(store) : dbResolver.lease(store));
+            for (int i = 1; i < connections; i++) {
+                LdapConnectionLease lease = lowPriority ? dbResolver.tryLeaseLowPriority(store) : dbResolver.lease(store);
+                if (lease == null) {
+                    break;
                 }
+                leases.add(lease);
+            }
+            new ChunkedSearch(leases, getPageSize(store), dbResolver.getSettings(store).getStreamBufferSize())
+                    .run(searchRequest, chunks, searchRunner::process);
+        } catch (LDAPException e) {
+            ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+        } finally {
+            for (LdapConnectionLease lease : leases) {
+                lease.close();
             }
+        }
+    }
 
-            @Override
-            SearchResult execute() throws LDAPException {
-                return connection.search(searchRequest);
+    /**
+     * @return <code>true</code> if the <code>resultCode</code> only indicates that the size limit
+     * set on the <code>searchRequest</code> was reached, in which case the entries returned are
+     * still complete up to that limit.
+     */
+    private static boolean isSizeLimitReached(SearchRequest searchRequest, ResultCode resultCode) {
+        return (searchRequest.getSizeLimit() > 0) && ResultCode.SIZE_LIMIT_EXCEEDED.equals(resultCode);
+    }
+
+    /**
+     * @return the configured page size, or <code>0</code> if the server has not advertised support for
+     * the Simple Paged Results control, in which case searches are not paged.
+     */
+    private int getPageSize(LdapDataStore store) {
+        if (!dbResolver.getCapabilities(store).supportsControl(SimplePagedResultsControl.PAGED_RESULTS_OID)) {
+            return 0;
+        }
+        return dbResolver.getSettings(store).getPageSize();
+    }
+
+    /**
+     * Simple Paged Results cannot be combined with a Virtual List View.
+     */
+    private static boolean isPageable(SearchRequest searchRequest, int pageSize) {
+        return (pageSize > 0)
+                && !searchRequest.hasControl(VirtualListViewRequestControl.VIRTUAL_LIST_VIEW_REQUEST_OID);
+    }
+
+    /**
+     * @return the cookie to request the next page with, or <code>null</code> if there are no more pages.
+     */
+    private static ASN1OctetString getNextPageCookie(CRUDOperationContext ctx, SearchResult searchResult) {
+        try {
+            SimplePagedResultsControl pagedResponse = SimplePagedResultsControl.get(searchResult);
+            if ((pagedResponse != null) && pagedResponse.moreResultsToReturn()) {
+                return pagedResponse.getCookie();
             }
-        });
+        } catch (LDAPException e) {
+            ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+        }
+        return null;
+    }
+
+    /**
+     * Tells the server that no further pages will be requested with this <code>cookie</code>,
+     * so that it may release any state held for the paged search.
+     */
+    private static void cancelPagedSearch(LdapConnectionLease lease, SearchRequest searchRequest, ASN1OctetString cookie) {
+        SearchRequest cancelRequest = searchRequest.duplicate();
+        cancelRequest.replaceControl(new SimplePagedResultsControl(0, cookie));
+        try {
+            lease.getConnection().search(cancelRequest);
+        } catch (LDAPException e) {
+            lease.exceptionCaught(e);
+        }
     }
 
     private interface SearchResultProcessor {
         void process(SearchResultEntry searchResultEntry);
     }
 
-    private void runInsert(LDAPConnection connection, CRUDOperationContext ctx, com.unboundid.ldap.sdk.Entry entry, InsertResultProcessor processor) {
-        execute(ctx, new ExecutionHandler() {
+    private void runInsert(LdapConnectionLease lease, CRUDOperationContext ctx, AddRequest addRequest, LDAPResultProcessor processor) {
+        execute(ctx, lease, new ExecutionHandler() {
 
             @Override
             void onSuccess(LDAPResult insertResult) {
@@ -452,23 +1846,38 @@ public class LdapCRUDController implements CRUDController {
 
             @Override
             LDAPResult execute() throws LDAPException {
-                return connection.add(entry);
+                return lease.getConnection().add(addRequest);
             }
         });
     }
 
-    private interface InsertResultProcessor {
+    private interface LDAPResultProcessor {
         void process(LDAPResult result);
     }
 
-    private <T> List<T> parseDocuments(CRUDOperationContext ctx, LdapFieldNameTranslator fieldNameTranslator, DocumentProcessor<T> processor) {
+    private void runModify(LdapConnectionLease lease, CRUDOperationContext ctx, ModifyRequest modifyRequest, LDAPResultProcessor processor) {
+        execute(ctx, lease, new ExecutionHandler() {
+
+            @Override
+            void onSuccess(LDAPResult modifyResult) {
+                processor.process(modifyResult);
+            }
+
+            @Override
+            LDAPResult execute() throws LDAPException {
+                return lease.getConnection().modify(modifyRequest);
+            }
+        });
+    }
+
+    private <T> List<T> parseDocuments(CRUDOperationContext ctx, EntityPlan plan, DocumentProcessor<T> processor) {
         List<DocCtx> documents = ctx.getInputDocumentsWithoutErrors();
         if (documents == null || documents.isEmpty()) {
             return new ArrayList<>();
         }
 
-        EntityMetadata md = ctx.getEntityMetadata(ctx.getEntityName());
-        LdapDataStore store = LdapCrudUtil.getLdapDataStore(md);
+        EntityMetadata md = plan.getEntityMetadata();
+        LdapDataStore store = plan.getStore();
         FieldAccessRoleEvaluator roles = new FieldAccessRoleEvaluator(md, ctx.getCallerRoles());
 
         List<T> items = new ArrayList<>();
@@ -480,8 +1889,7 @@ public class LdapCRUDController implements CRUDController {
                 }
             }
 
-            Path uniqueFieldPath = fieldNameTranslator.translateAttributeName(store.getUniqueAttribute());
-            JsonNode uniqueNode = document.get(uniqueFieldPath);
+            JsonNode uniqueNode = document.get(plan.getUniqueFieldPath());
             if (uniqueNode == null) {
                 document.addError(Error.get(MetadataConstants.ERR_PARSE_MISSING_ELEMENT, store.getUniqueAttribute()));
             }
@@ -509,10 +1917,10 @@ public class LdapCRUDController implements CRUDController {
         T process(DocCtx document, String dn) throws Exception;
     }
 
-    private void execute(CRUDOperationContext ctx, ExecutionHandler handler){
+    private void execute(CRUDOperationContext ctx, LdapConnectionLease lease, ExecutionHandler handler){
         try {
             LDAPResult result = handler.execute();
-            if (ResultCode.SUCCESS.equals(result.getResultCode())) {
+            if (handler.isSuccess(result.getResultCode())) {
                 handler.onSuccess(result);
             } else {
                 ctx.addError(Error.get(
@@ -520,7 +1928,16 @@ public class LdapCRUDController implements CRUDController {
                         result.getResultCode().toString()));
             }
         } catch (LDAPException e) {
-            ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+            if (handler.isSuccess(e.getResultCode())) {
+                //The SDK throws for any result other than SUCCESS, even those the handler expects.
+                handler.onSuccess((e instanceof LDAPSearchException)
+                        ? ((LDAPSearchException) e).getSearchResult()
+                        : e.toLDAPResult());
+            }
+            else {
+                lease.exceptionCaught(e);
+                ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+            }
         }
     }
 
@@ -530,6 +1947,13 @@ public class LdapCRUDController implements CRUDController {
 
         abstract void onSuccess(LDAPResult result);
 
+        /**
+         * @return <code>true</code> if the result should be passed to {@link #onSuccess(LDAPResult)}.
+         */
+        boolean isSuccess(ResultCode resultCode) {
+            return ResultCode.SUCCESS.equals(resultCode);
+        }
+
     }
 
     @Override
@@ -547,6 +1971,42 @@ public class LdapCRUDController implements CRUDController {
                 details.put(connectionStatus.getKey(), connectionStatus.getValue());
             }
         }
+
+        details.put(HEALTH_ACTIVE_LEASES, describeActiveLeases());
+        details.put(HEALTH_SAVE_OUTCOMES, saveStatistics.toMap());
+        details.put(HEALTH_CAPABILITIES, describeCapabilities());
+
         return new CRUDHealth(isHealthy, details);
     }
+
+    /**
+     * Describes the controls, extended operations and features each database currently advertises,
+     * which determine the strategies chosen for its operations.
+     */
+    private Map<String, Object> describeCapabilities() {
+        Map<String, Object> capabilities = new TreeMap<>();
+        for (Map.Entry<String, LdapServerCapabilities> databaseCapabilities : dbResolver.getCapabilitiesByDatabase().entrySet()) {
+            LdapServerCapabilities serverCapabilities = databaseCapabilities.getValue();
+            Map<String, Object> description = new LinkedHashMap<>();
+            description.put("supportedControls", new TreeSet<>(serverCapabilities.getSupportedControls()));
+            description.put("supportedExtendedOperations", new TreeSet<>(serverCapabilities.getSupportedExtendedOperations()));
+            description.put("supportedFeatures", new TreeSet<>(serverCapabilities.getSupportedFeatures()));
+            capabilities.put(databaseCapabilities.getKey(), description);
+        }
+        return capabilities;
+    }
+
+    /**
+     * Describes each currently active {@link LdapConnectionLease} by database, age and owning thread.
+     * Leases that live much longer than a single operation are likely leaked connections.
+     */
+    private List<String> describeActiveLeases() {
+        List<String> leases = new ArrayList<>();
+        for (LdapConnectionLease lease : dbResolver.getActiveLeases()) {
+            leases.add("database=" + lease.getDatabase()
+                    + ", age=" + lease.getAge() + "ms"
+                    + ", thread=" + lease.getOwnerThreadName());
+        }
+        return leases;
+    }
 }
@@ -18,9 +18,17 @@
  */
 package com.redhat.lightblue.crud.ldap;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
 import com.redhat.lightblue.common.ldap.LdapConstant;
 import com.redhat.lightblue.common.ldap.LdapDataStore;
+import com.redhat.lightblue.common.ldap.LdapEntitySettings;
 import com.redhat.lightblue.common.ldap.LdapFieldNameTranslator;
+import com.redhat.lightblue.common.ldap.LdapIndexType;
+import com.redhat.lightblue.common.ldap.LdapSaveStrategy;
+import com.redhat.lightblue.common.ldap.LdapUnindexedQueryPolicy;
 import com.redhat.lightblue.crud.ldap.model.TrivialLdapFieldNameTranslator;
 import com.redhat.lightblue.metadata.DataStore;
 import com.redhat.lightblue.metadata.EntityMetadata;
@@ -32,6 +40,8 @@ import com.redhat.lightblue.metadata.EntityMetadata;
  */
 public final class LdapCrudUtil {
 
+    private static final LdapFieldNameTranslator TRIVIAL_FIELD_NAME_TRANSLATOR = new TrivialLdapFieldNameTranslator();
+
     /**
      * Shortcut method to get and return the {@link LdapFieldNameTranslator} on the passed
      * in {@link EntityMetadata}.
@@ -43,7 +53,7 @@ public final class LdapCrudUtil {
         Object o = md.getEntityInfo().getProperties().get(LdapConstant.BACKEND);
 
         if(o == null){
-            return new TrivialLdapFieldNameTranslator();
+            return TRIVIAL_FIELD_NAME_TRANSLATOR;
         }
 
         if(!(o instanceof LdapFieldNameTranslator)){
@@ -52,6 +62,50 @@ public final class LdapCrudUtil {
         return (LdapFieldNameTranslator) o;
     }
 
+    /**
+     * Shortcut method to get the {@link LdapSaveStrategy} from the passed in {@link EntityMetadata}.
+     * @param md - {@link EntityMetadata}.
+     * @return the {@link LdapSaveStrategy} for the entity, or {@link LdapSaveStrategy#CHECK_EXISTING}
+     * if none was specified.
+     */
+    public static LdapSaveStrategy getSaveStrategy(EntityMetadata md){
+        Object o = md.getEntityInfo().getProperties().get(LdapConstant.BACKEND);
+
+        if((o instanceof LdapEntitySettings) && (((LdapEntitySettings) o).getSaveStrategy() != null)){
+            return ((LdapEntitySettings) o).getSaveStrategy();
+        }
+        return LdapSaveStrategy.CHECK_EXISTING;
+    }
+
+    /**
+     * Shortcut method to get the indexes declared on the passed in {@link EntityMetadata}.
+     * @param md - {@link EntityMetadata}.
+     * @return the {@link LdapIndexType}s keyed by attribute name, empty if none were declared.
+     */
+    public static Map<String, Set<LdapIndexType>> getIndexes(EntityMetadata md){
+        Object o = md.getEntityInfo().getProperties().get(LdapConstant.BACKEND);
+
+        if((o instanceof LdapEntitySettings) && (((LdapEntitySettings) o).getIndexes() != null)){
+            return ((LdapEntitySettings) o).getIndexes();
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Shortcut method to get the {@link LdapUnindexedQueryPolicy} from the passed in {@link EntityMetadata}.
+     * @param md - {@link EntityMetadata}.
+     * @return the {@link LdapUnindexedQueryPolicy} for the entity, or {@link LdapUnindexedQueryPolicy#WARN}
+     * if none was specified.
+     */
+    public static LdapUnindexedQueryPolicy getUnindexedQueryPolicy(EntityMetadata md){
+        Object o = md.getEntityInfo().getProperties().get(LdapConstant.BACKEND);
+
+        if((o instanceof LdapEntitySettings) && (((LdapEntitySettings) o).getUnindexedQueryPolicy() != null)){
+            return ((LdapEntitySettings) o).getUnindexedQueryPolicy();
+        }
+        return LdapUnindexedQueryPolicy.WARN;
+    }
+
     /**
      * Shortcut method to get and return the {@link LdapDataStore} on the passed in
      * {@link EntityMetadata}.
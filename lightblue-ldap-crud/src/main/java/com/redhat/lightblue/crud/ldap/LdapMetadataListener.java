@@ -46,6 +46,19 @@ import com.redhat.lightblue.util.Path;
  */
 public class LdapMetadataListener implements MetadataListener{
 
+    private final EntityPlanCache entityPlans;
+
+    public LdapMetadataListener(){
+        this(null);
+    }
+
+    /**
+     * @param entityPlans - (optional) {@link EntityPlanCache} to evict changed entities from.
+     */
+    public LdapMetadataListener(EntityPlanCache entityPlans){
+        this.entityPlans = entityPlans;
+    }
+
     @Override
     public void beforeUpdateEntityInfo(Metadata m, EntityInfo ei, boolean newEntity) {
         //Do Nothing!!
@@ -53,12 +66,17 @@ public class LdapMetadataListener implements MetadataListener{
 
     @Override
     public void afterUpdateEntityInfo(Metadata m, EntityInfo ei, boolean newEntity) {
-        //Do Nothing!!
+        //The datastore and ldap properties are shared by every version of the entity.
+        if(entityPlans != null){
+            entityPlans.evict(ei.getName());
+        }
     }
 
     @Override
     public void afterCreateNewSchema(Metadata m, EntityMetadata md) {
-        //Do Nothing!!
+        if(entityPlans != null){
+            entityPlans.evict(md);
+        }
     }
 
     /**
@@ -0,0 +1,125 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import com.redhat.lightblue.common.ldap.LdapConnectionLease;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.ldap.sdk.ExtendedRequest;
+import com.unboundid.ldap.sdk.ExtendedResult;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.UpdatableLDAPRequest;
+import com.unboundid.ldap.sdk.controls.TransactionSpecificationRequestControl;
+import com.unboundid.ldap.sdk.extensions.EndTransactionExtendedRequest;
+import com.unboundid.ldap.sdk.extensions.StartTransactionExtendedRequest;
+import com.unboundid.ldap.sdk.extensions.StartTransactionExtendedResult;
+
+/**
+ * An LDAP transaction (RFC 5805). Writes the transaction is attached to are only queued by the
+ * server, and are then either all applied or all discarded once the transaction ends. All of the
+ * writes must be sent over the connection that started the transaction.
+ *
+ * @author dcrissman
+ */
+public class LdapTransaction implements AutoCloseable {
+
+    private final LdapConnectionLease lease;
+    private final TransactionSpecificationRequestControl control;
+    private boolean ended = false;
+
+    private LdapTransaction(LdapConnectionLease lease, ASN1OctetString transactionId) {
+        this.lease = lease;
+        control = new TransactionSpecificationRequestControl(transactionId);
+    }
+
+    /**
+     * Starts a new transaction on the leased connection.
+     * @throws LDAPException if the server refused to start the transaction.
+     */
+    public static LdapTransaction begin(LdapConnectionLease lease) throws LDAPException {
+        StartTransactionExtendedResult result = (StartTransactionExtendedResult) process(
+                lease, new StartTransactionExtendedRequest());
+        return new LdapTransaction(lease, result.getTransactionID());
+    }
+
+    /**
+     * Makes the <code>request</code> part of this transaction.
+     */
+    public void attachTo(UpdatableLDAPRequest request) {
+        request.addControl(control);
+    }
+
+    /**
+     * Applies all of the writes in this transaction.
+     * @throws LDAPException if the transaction could not be committed, in which case none of the
+     * writes have been applied.
+     */
+    public void commit() throws LDAPException {
+        end(true);
+    }
+
+    /**
+     * Discards all of the writes in this transaction. Does nothing if the transaction has already ended.
+     */
+    public void abort() throws LDAPException {
+        if (!ended) {
+            end(false);
+        }
+    }
+
+    public boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * Aborts the transaction if it was never ended, so that the connection is not returned to the
+     * pool with the transaction still open.
+     */
+    @Override
+    public void close() {
+        try {
+            abort();
+        } catch (LDAPException e) {
+            //Already reported to the lease, and the writes are discarded either way.
+        }
+    }
+
+    private void end(boolean commit) throws LDAPException {
+        ended = true;
+        process(lease, new EndTransactionExtendedRequest(control.getTransactionID(), commit));
+    }
+
+    /**
+     * Unlike other operations, extended operations report failure in their result rather than by throwing.
+     */
+    private static ExtendedResult process(LdapConnectionLease lease, ExtendedRequest request) throws LDAPException {
+        ExtendedResult result;
+        try {
+            result = lease.getConnection().processExtendedOperation(request);
+        } catch (LDAPException e) {
+            lease.exceptionCaught(e);
+            throw e;
+        }
+        if (!ResultCode.SUCCESS.equals(result.getResultCode())) {
+            throw new LDAPException(result);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,227 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.redhat.lightblue.common.ldap.LdapConstant;
+import com.redhat.lightblue.common.ldap.LdapFieldNameTranslator;
+import com.redhat.lightblue.metadata.ArrayField;
+import com.redhat.lightblue.metadata.EntityMetadata;
+import com.redhat.lightblue.metadata.FieldTreeNode;
+import com.redhat.lightblue.metadata.PredefinedFields;
+import com.redhat.lightblue.metadata.SimpleArrayElement;
+import com.redhat.lightblue.metadata.SimpleField;
+import com.redhat.lightblue.metadata.Type;
+import com.redhat.lightblue.metadata.types.BinaryType;
+import com.redhat.lightblue.query.ArrayAddExpression;
+import com.redhat.lightblue.query.FieldAndRValue;
+import com.redhat.lightblue.query.PartialUpdateExpression;
+import com.redhat.lightblue.query.RValueExpression;
+import com.redhat.lightblue.query.SetExpression;
+import com.redhat.lightblue.query.UnsetExpression;
+import com.redhat.lightblue.query.UpdateExpression;
+import com.redhat.lightblue.query.UpdateExpressionList;
+import com.redhat.lightblue.query.UpdateOperator;
+import com.redhat.lightblue.util.Path;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.util.StaticUtils;
+
+/**
+ * Builds UnboundID {@link Modification}s from a Lightblue {@link UpdateExpression}, so that the
+ * update can be applied by the server without first reading the entries. Only expressions whose
+ * outcome does not depend on the current state of the entry can be translated:
+ * <ul>
+ * <li><code>$set</code> of a value becomes a REPLACE, or a DELETE when setting <code>null</code></li>
+ * <li><code>$unset</code> becomes a DELETE</li>
+ * <li><code>$append</code> to an array of simple values becomes an ADD</li>
+ * </ul>
+ *
+ * @author dcrissman
+ */
+public class ModificationBuilder {
+
+    private final EntityMetadata md;
+    private final LdapFieldNameTranslator fieldNameTranslator;
+
+    public ModificationBuilder(EntityMetadata md, LdapFieldNameTranslator fieldNameTranslator){
+        this.md = md;
+        this.fieldNameTranslator = fieldNameTranslator;
+    }
+
+    /**
+     * @return the {@link Modification}s equivalent to the <code>update</code>, or <code>null</code>
+     * if the update needs to be evaluated against the current state of each entry.
+     */
+    public List<Modification> build(UpdateExpression update){
+        List<Modification> modifications = new ArrayList<>();
+        if(!build(update, modifications)){
+            return null;
+        }
+        return modifications;
+    }
+
+    private boolean build(UpdateExpression update, List<Modification> modifications){
+        if(update instanceof UpdateExpressionList){
+            for(PartialUpdateExpression partial : ((UpdateExpressionList) update).getList()){
+                if(!build(partial, modifications)){
+                    return false;
+                }
+            }
+            return true;
+        }
+        else if(update instanceof SetExpression){
+            return buildSet((SetExpression) update, modifications);
+        }
+        else if(update instanceof UnsetExpression){
+            return buildUnset((UnsetExpression) update, modifications);
+        }
+        else if(update instanceof ArrayAddExpression){
+            return buildAppend((ArrayAddExpression) update, modifications);
+        }
+        return false;
+    }
+
+    private boolean buildSet(SetExpression set, List<Modification> modifications){
+        if(set.getOp() != UpdateOperator._set){
+            //$add is relative to the current value.
+            return false;
+        }
+
+        for(FieldAndRValue fieldAndValue : set.getFields()){
+            SimpleField field = resolveSimpleField(fieldAndValue.getField());
+            if((field == null) || !isLiteral(fieldAndValue.getRValue())){
+                return false;
+            }
+            String attributeName = fieldNameTranslator.translateFieldName(field.getFullPath());
+
+            Object value = fieldAndValue.getRValue().getValue().getValue();
+            if(value == null){
+                modifications.add(new Modification(ModificationType.DELETE, attributeName));
+            }
+            else{
+                String ldapValue = toLdapValue(field.getType(), value);
+                if(ldapValue == null){
+                    return false;
+                }
+                modifications.add(new Modification(ModificationType.REPLACE, attributeName, ldapValue));
+            }
+        }
+        return true;
+    }
+
+    private boolean buildUnset(UnsetExpression unset, List<Modification> modifications){
+        for(Path path : unset.getFields()){
+            FieldTreeNode field = resolve(path);
+            if(!(field instanceof SimpleField) && !(field instanceof ArrayField)){
+                return false;
+            }
+            modifications.add(new Modification(ModificationType.DELETE, fieldNameTranslator.translateFieldName(field.getFullPath())));
+        }
+        return true;
+    }
+
+    private boolean buildAppend(ArrayAddExpression append, List<Modification> modifications){
+        if(append.getOp() != UpdateOperator._append){
+            //ldap values are unordered, so there is no position to $insert at.
+            return false;
+        }
+
+        FieldTreeNode field = resolve(append.getField());
+        if(!(field instanceof ArrayField) || !(((ArrayField) field).getElement() instanceof SimpleArrayElement)){
+            return false;
+        }
+        Type elementType = ((ArrayField) field).getElement().getType();
+
+        List<String> values = new ArrayList<>();
+        for(RValueExpression rvalue : append.getValues()){
+            if(!isLiteral(rvalue) || (rvalue.getValue().getValue() == null)){
+                return false;
+            }
+            String ldapValue = toLdapValue(elementType, rvalue.getValue().getValue());
+            if(ldapValue == null){
+                return false;
+            }
+            values.add(ldapValue);
+        }
+
+        modifications.add(new Modification(ModificationType.ADD,
+                fieldNameTranslator.translateFieldName(field.getFullPath()), values.toArray(new String[0])));
+        return true;
+    }
+
+    private SimpleField resolveSimpleField(Path path){
+        FieldTreeNode field = resolve(path);
+        if(!(field instanceof SimpleField)
+                || PredefinedFields.isFieldAnArrayCount(field.getName(), md.getFields())){
+            return null;
+        }
+        return (SimpleField) field;
+    }
+
+    /**
+     * @return the field at <code>path</code>, or <code>null</code> if it cannot be written to as an
+     * ldap attribute.
+     */
+    private FieldTreeNode resolve(Path path){
+        if(path.nAnys() > 0){
+            return null;
+        }
+
+        FieldTreeNode field;
+        try{
+            field = md.resolve(path);
+        }
+        catch(RuntimeException e){
+            return null;
+        }
+
+        if(LdapConstant.ATTRIBUTE_DN.equalsIgnoreCase(fieldNameTranslator.translateFieldName(field.getFullPath()))){
+            //DN is derived from the unique attribute and cannot be modified.
+            return null;
+        }
+        return field;
+    }
+
+    private static boolean isLiteral(RValueExpression rvalue){
+        return (rvalue != null)
+                && (rvalue.getType() == RValueExpression.RValueType._value)
+                && (rvalue.getValue() != null);
+    }
+
+    /**
+     * @return the value as it is stored in ldap, or <code>null</code> if it cannot be represented
+     * as a string.
+     */
+    private static String toLdapValue(Type type, Object value){
+        if(type instanceof BinaryType){
+            return null;
+        }
+
+        Object cast = type.cast(value);
+        if(cast instanceof Date){
+            return StaticUtils.encodeGeneralizedTime((Date) cast);
+        }
+        return (cast == null) ? null : cast.toString();
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.redhat.lightblue.common.ldap.LdapConnectionLease;
+import com.redhat.lightblue.common.ldap.LdapMultiUpdateMode;
+import com.redhat.lightblue.crud.ldap.AsyncOperationPipeline.ResultHandler;
+import com.unboundid.asn1.ASN1Element;
+import com.unboundid.asn1.ASN1Enumerated;
+import com.unboundid.asn1.ASN1Exception;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.asn1.ASN1Sequence;
+import com.unboundid.ldap.sdk.AddRequest;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Control;
+import com.unboundid.ldap.sdk.DeleteRequest;
+import com.unboundid.ldap.sdk.ExtendedRequest;
+import com.unboundid.ldap.sdk.ExtendedResult;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPResult;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModifyRequest;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.UpdatableLDAPRequest;
+
+/**
+ * Queues adds, modifies and deletes, and then sends all of them to the server in a single multi-update
+ * extended operation, rather than as one request (and one round trip) per write. Each write still gets
+ * a result of its own, which is passed to the {@link ResultHandler} it was queued with.
+ * <p>
+ * The extended operation is not part of the LDAP standard, so the server must list
+ * {@link #MULTI_UPDATE_REQUEST_OID} among its supported extensions. Request controls, such as the
+ * post-read control, may be attached to the individual writes.
+ * </p>
+ *
+ * @author dcrissman
+ */
+public class MultiUpdateBatch {
+
+    /** OID of the multi-update extended request. */
+    public static final String MULTI_UPDATE_REQUEST_OID = "1.3.6.1.4.1.30221.2.6.17";
+
+    private static final byte TYPE_ADD_REQUEST = 0x68;
+    private static final byte TYPE_MODIFY_REQUEST = 0x66;
+    private static final byte TYPE_DELETE_REQUEST = 0x4A;
+
+    /** Value of the changesApplied element when the server did not apply any of the writes. */
+    private static final int CHANGES_APPLIED_NONE = 0;
+
+    private final LdapMultiUpdateMode mode;
+    private final List<ASN1Element> requests = new ArrayList<>();
+    private final List<ResultHandler> handlers = new ArrayList<>();
+
+    /**
+     * @param mode - {@link LdapMultiUpdateMode} the server should apply the writes with.
+     */
+    public MultiUpdateBatch(LdapMultiUpdateMode mode) {
+        this.mode = mode;
+    }
+
+    public void add(AddRequest request, ResultHandler handler) {
+        List<ASN1Element> attributes = new ArrayList<>();
+        for (Attribute attribute : request.getAttributes()) {
+            attributes.add(attribute.encode());
+        }
+        queue(new ASN1Sequence(TYPE_ADD_REQUEST,
+                new ASN1OctetString(request.getDN()),
+                new ASN1Sequence(attributes)), request, handler);
+    }
+
+    public void add(ModifyRequest request, ResultHandler handler) {
+        List<ASN1Element> changes = new ArrayList<>();
+        for (Modification modification : request.getModifications()) {
+            changes.add(modification.encode());
+        }
+        queue(new ASN1Sequence(TYPE_MODIFY_REQUEST,
+                new ASN1OctetString(request.getDN()),
+                new ASN1Sequence(changes)), request, handler);
+    }
+
+    public void add(DeleteRequest request, ResultHandler handler) {
+        queue(new ASN1OctetString(TYPE_DELETE_REQUEST, request.getDN()), request, handler);
+    }
+
+    private void queue(ASN1Element operation, UpdatableLDAPRequest request, ResultHandler handler) {
+        Control[] controls = request.getControls();
+        if (controls.length == 0) {
+            requests.add(new ASN1Sequence(operation));
+        }
+        else {
+            requests.add(new ASN1Sequence(operation, Control.encodeControls(controls)));
+        }
+        handlers.add(handler);
+    }
+
+    /**
+     * @return number of writes queued.
+     */
+    public int size() {
+        return requests.size();
+    }
+
+    public boolean isEmpty() {
+        return requests.isEmpty();
+    }
+
+    /**
+     * Sends every queued write in a single request, and then passes the result of each write to its
+     * {@link ResultHandler}, in the order the writes were queued. A write the server did not apply,
+     * because it was abandoned or rolled back after another write failed, is reported as
+     * {@link ResultCode#CANCELED}.
+     * @throws LDAPException if the request as a whole failed, in which case no handler is called.
+     */
+    public void execute(LdapConnectionLease lease) throws LDAPException {
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        ExtendedResult result;
+        try {
+            result = lease.getConnection().processExtendedOperation(toExtendedRequest());
+        } catch (LDAPException e) {
+            lease.exceptionCaught(e);
+            throw e;
+        }
+
+        List<LDAPResult> results = parseResults(result);
+        for (int i = 0; i < handlers.size(); i++) {
+            handlers.get(i).handle(results.get(i));
+        }
+    }
+
+    ExtendedRequest toExtendedRequest() {
+        return new ExtendedRequest(MULTI_UPDATE_REQUEST_OID, new ASN1OctetString(new ASN1Sequence(
+                new ASN1Enumerated(mode.getErrorBehavior()),
+                new ASN1Sequence(requests)).encode()));
+    }
+
+    /**
+     * @return exactly one {@link LDAPResult} for every queued write.
+     * @throws LDAPException if the <code>result</code> carries no per write results.
+     */
+    List<LDAPResult> parseResults(ExtendedResult result) throws LDAPException {
+        if (result.getValue() == null) {
+            if (ResultCode.SUCCESS.equals(result.getResultCode())) {
+                throw new LDAPException(ResultCode.DECODING_ERROR, "Multi-update response is missing its value");
+            }
+            throw new LDAPException(result);
+        }
+
+        try {
+            ASN1Element[] valueElements = ASN1Sequence.decodeAsSequence(result.getValue().getValue()).elements();
+            boolean noneApplied = ASN1Enumerated.decodeAsEnumerated(valueElements[0]).intValue() == CHANGES_APPLIED_NONE;
+            ASN1Element[] responses = ASN1Sequence.decodeAsSequence(valueElements[1]).elements();
+
+            List<LDAPResult> results = new ArrayList<>(handlers.size());
+            for (int i = 0; i < handlers.size(); i++) {
+                if (i >= responses.length) {
+                    //The server stops at the first failure unless told to continue.
+                    results.add(new LDAPResult(result.getMessageID(), ResultCode.CANCELED,
+                            "Not attempted, an earlier write in the batch failed", null, null, null));
+                    continue;
+                }
+
+                LDAPResult response = decodeResponse(result.getMessageID(), responses[i]);
+                if (noneApplied && ResultCode.SUCCESS.equals(response.getResultCode())) {
+                    results.add(new LDAPResult(result.getMessageID(), ResultCode.CANCELED,
+                            "Not applied, another write in the batch failed", null, null, null));
+                }
+                else {
+                    results.add(response);
+                }
+            }
+            return results;
+        } catch (ASN1Exception | ArrayIndexOutOfBoundsException e) {
+            throw new LDAPException(ResultCode.DECODING_ERROR, "Unable to decode the multi-update response", e);
+        }
+    }
+
+    /**
+     * Each response is the LDAPResult of the matching write, optionally followed by its response controls.
+     */
+    private static LDAPResult decodeResponse(int messageId, ASN1Element response) throws ASN1Exception, LDAPException {
+        ASN1Element[] responseElements = ASN1Sequence.decodeAsSequence(response).elements();
+        ASN1Element[] resultElements = ASN1Sequence.decodeAsSequence(responseElements[0]).elements();
+
+        ResultCode resultCode = ResultCode.valueOf(ASN1Enumerated.decodeAsEnumerated(resultElements[0]).intValue());
+        String matchedDN = ASN1OctetString.decodeAsOctetString(resultElements[1]).stringValue();
+        String diagnosticMessage = ASN1OctetString.decodeAsOctetString(resultElements[2]).stringValue();
+        Control[] controls = (responseElements.length > 1)
+                ? Control.decodeControls(ASN1Sequence.decodeAsSequence(responseElements[1]))
+                : new Control[0];
+
+        return new LDAPResult(messageId, resultCode,
+                diagnosticMessage.isEmpty() ? null : diagnosticMessage,
+                matchedDN.isEmpty() ? null : matchedDN,
+                null, controls);
+    }
+
+}
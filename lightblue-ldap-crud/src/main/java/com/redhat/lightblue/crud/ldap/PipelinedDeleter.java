@@ -0,0 +1,139 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.redhat.lightblue.common.ldap.LdapConnectionLease;
+import com.redhat.lightblue.common.ldap.LdapErrorCode;
+import com.redhat.lightblue.crud.CRUDDeleteResponse;
+import com.redhat.lightblue.crud.CRUDOperationContext;
+import com.redhat.lightblue.util.Error;
+import com.unboundid.ldap.sdk.AsyncResultListener;
+import com.unboundid.ldap.sdk.DeleteRequest;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPResult;
+import com.unboundid.ldap.sdk.ResultCode;
+
+/**
+ * Deletes entries by DN, spreading the requests round robin across one {@link AsyncOperationPipeline}
+ * per leased connection. The number of deletes outstanding at once is therefore bounded by the number
+ * of leases times the window of each pipeline.
+ * <p>
+ * An entry that no longer exists is silently skipped, as it may have been removed by someone else
+ * since it was found. Any other failure is recorded on the {@link CRUDOperationContext}.
+ * </p>
+ *
+ * @author dcrissman
+ */
+public class PipelinedDeleter {
+
+    private final CRUDOperationContext ctx;
+    private final CRUDDeleteResponse response;
+    private final List<AsyncOperationPipeline> pipelines = new ArrayList<>();
+
+    private int next = 0;
+    private boolean failed = false;
+
+    /**
+     * @param ctx - {@link CRUDOperationContext} to record errors on.
+     * @param leases - {@link LdapConnectionLease}s to send the deletes over, at least one is required.
+     * @param maxInFlight - maximum number of deletes outstanding on each lease.
+     * @param response - {@link CRUDDeleteResponse} to count the deleted entries on.
+     */
+    public PipelinedDeleter(CRUDOperationContext ctx, List<LdapConnectionLease> leases, int maxInFlight, CRUDDeleteResponse response) {
+        if (leases.isEmpty()) {
+            throw new IllegalArgumentException("At least one lease is required");
+        }
+        this.ctx = ctx;
+        this.response = response;
+        for (LdapConnectionLease lease : leases) {
+            pipelines.add(new AsyncOperationPipeline(lease, maxInFlight));
+        }
+    }
+
+    /**
+     * Submits a delete for the <code>dn</code>. Blocks only if the next pipeline is full.
+     */
+    public void delete(String dn) {
+        if (failed) {
+            return;
+        }
+
+        DeleteRequest deleteRequest = new DeleteRequest(dn);
+        AsyncOperationPipeline pipeline = pipelines.get(next);
+        next = (next + 1) % pipelines.size();
+
+        try {
+            pipeline.submit(
+                    (LDAPConnection connection, AsyncResultListener listener) -> connection.asyncDelete(deleteRequest, listener),
+                    (LDAPResult result) -> handleResult(result));
+        } catch (LDAPException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Blocks until every submitted delete has completed.
+     */
+    public void awaitCompletion() {
+        for (AsyncOperationPipeline pipeline : pipelines) {
+            try {
+                pipeline.awaitCompletion();
+            } catch (LDAPException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * @return number of entries deleted so far.
+     */
+    public int getDeleted() {
+        return response.getNumDeleted();
+    }
+
+    /**
+     * @return <code>true</code> if deleting had to be abandoned, otherwise <code>false</code>.
+     */
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    private void handleResult(LDAPResult result) {
+        if (ResultCode.SUCCESS.equals(result.getResultCode())) {
+            response.setNumDeleted(response.getNumDeleted() + 1);
+        }
+        else if (!ResultCode.NO_SUCH_OBJECT.equals(result.getResultCode())) {
+            ctx.addError(Error.get(
+                    LdapErrorCode.ERR_LDAP_UNSUCCESSFUL_RESPONSE,
+                    result.getResultCode().toString()));
+        }
+    }
+
+    private void fail(LDAPException e) {
+        if (!failed) {
+            failed = true;
+            ctx.addError(Error.get(LdapErrorCode.ERR_LDAP_REQUEST_FAILED, e));
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.function.Predicate;
+
+import com.redhat.lightblue.crud.ldap.translator.ResultTranslatorToJson;
+import com.redhat.lightblue.eval.QueryEvaluator;
+import com.redhat.lightblue.util.JsonDoc;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+
+/**
+ * Checks the entries returned for the filter of a {@link QueryPlan} against the parts of the query
+ * the filter could only approximate. Entries are only translated if there is a remainder of the query
+ * to evaluate, in which case the document an entry was translated into is handed back by
+ * {@link #translate(SearchResultEntry)}, rather than translating the entry again.
+ * <p>
+ * Entries must be tested and translated on the same thread.
+ * </p>
+ *
+ * @author dcrissman
+ */
+public class PostFilter implements Predicate<SearchResultEntry> {
+
+    private final Predicate<? super Entry> approximations;
+    private final QueryEvaluator remainder;
+    private final ResultTranslatorToJson resultTranslator;
+
+    private SearchResultEntry lastEntry;
+    private JsonDoc lastDocument;
+
+    /**
+     * @param approximations - (optional) exact checks of the approximated regexes.
+     * @param remainder - (optional) evaluates the part of the query that was not sent to the server, or
+     * was only approximated along with other comparisons.
+     * @param resultTranslator - translates the entries for the <code>remainder</code>.
+     */
+    public PostFilter(Predicate<? super Entry> approximations, QueryEvaluator remainder, ResultTranslatorToJson resultTranslator) {
+        this.approximations = approximations;
+        this.remainder = remainder;
+        this.resultTranslator = resultTranslator;
+    }
+
+    /**
+     * @return <code>true</code> if every entry passes, as the filter was exact.
+     */
+    public boolean isEmpty() {
+        return (approximations == null) && (remainder == null);
+    }
+
+    @Override
+    public boolean test(SearchResultEntry entry) {
+        if ((approximations != null) && !approximations.test(entry)) {
+            return false;
+        }
+        if (remainder == null) {
+            return true;
+        }
+
+        JsonDoc document = resultTranslator.translate(entry);
+        if (!remainder.evaluate(document).getResult()) {
+            return false;
+        }
+        lastEntry = entry;
+        lastDocument = document;
+        return true;
+    }
+
+    /**
+     * @return the document the <code>entry</code> translates into, which is the one it was tested
+     * with if it was the last entry to pass.
+     */
+    public JsonDoc translate(SearchResultEntry entry) {
+        if (entry == lastEntry) {
+            JsonDoc document = lastDocument;
+            lastEntry = null;
+            lastDocument = null;
+            return document;
+        }
+        return resultTranslator.translate(entry);
+    }
+
+}
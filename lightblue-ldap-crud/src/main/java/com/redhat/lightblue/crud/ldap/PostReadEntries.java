@@ -0,0 +1,94 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.UpdatableLDAPRequest;
+import com.unboundid.ldap.sdk.controls.PostReadRequestControl;
+import com.unboundid.ldap.sdk.controls.PostReadResponseControl;
+
+/**
+ * Holds the state of written entries, keyed by the DN they were written with. Where possible the
+ * state is returned by the server in the same round trip as the write itself, using the Post-Read
+ * control (RFC 4527).
+ *
+ * @author dcrissman
+ */
+public class PostReadEntries {
+
+    private final PostReadRequestControl control;
+    private final Map<String, SearchResultEntry> entries = new HashMap<>();
+
+    /**
+     * @param control - {@link PostReadRequestControl} to attach to each write, or <code>null</code>
+     * if the server should not be asked to return the written entries.
+     */
+    public PostReadEntries(PostReadRequestControl control) {
+        this.control = control;
+    }
+
+    /**
+     * Asks the server to return the entry once the <code>request</code> has been applied.
+     * Does nothing if post-read is not in use.
+     */
+    public void attachTo(UpdatableLDAPRequest request) {
+        if (control != null) {
+            request.addControl(control);
+        }
+    }
+
+    /**
+     * Collects the entry returned in the <code>result</code> of the write to <code>dn</code>, if any.
+     */
+    public void collect(String dn, LDAPResult result) {
+        if (control == null) {
+            return;
+        }
+
+        try {
+            PostReadResponseControl response = PostReadResponseControl.get(result);
+            if (response != null) {
+                entries.put(dn, new SearchResultEntry(response.getEntry()));
+            }
+        } catch (LDAPException e) {
+            //Unreadable response, so the entry will need to be read back instead.
+        }
+    }
+
+    public void put(String dn, SearchResultEntry entry) {
+        entries.put(dn, entry);
+    }
+
+    /**
+     * @return the {@link SearchResultEntry} written to <code>dn</code>, or <code>null</code> if not known.
+     */
+    public SearchResultEntry get(String dn) {
+        return entries.get(dn);
+    }
+
+    public boolean contains(String dn) {
+        return entries.containsKey(dn);
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.redhat.lightblue.crud.ldap.translator.ResultTranslatorToJson;
+import com.redhat.lightblue.eval.QueryEvaluator;
+import com.redhat.lightblue.query.NaryLogicalExpression;
+import com.redhat.lightblue.query.NaryLogicalOperator;
+import com.redhat.lightblue.query.QueryExpression;
+import com.redhat.lightblue.query.RegexMatchExpression;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.Filter;
+
+/**
+ * Splits a {@link QueryExpression} into the part that is pushed down to the server as a {@link Filter},
+ * and the remainder that LDAP cannot express, which is evaluated by the client. The query is split at
+ * its top level AND: each expression ANDed there that the {@link FilterBuilder} can express is pushed
+ * down as is. The others are pushed down as an approximation that matches at least every entry they
+ * do, and are then evaluated against each returned entry by lightblue's {@link QueryEvaluator}. So
+ * are expressions that combine an approximated regex with other comparisons, as those comparisons
+ * must then be matched with the types of their fields rather than as the server's strings. The
+ * object classes the entity requires are ANDed into the filter as well.
+ *
+ * @author dcrissman
+ */
+public class QueryPlan {
+
+    private final EntityPlan entityPlan;
+    private final QueryTemplate template;
+    private final QueryExpression query;
+    private final Filter filter;
+    private final boolean scan;
+    private final Boolean indexed;
+    private final Predicate<Entry> approximations;
+    private final QueryExpression remainder;
+    private final QueryExpression evaluated;
+
+    private QueryPlan(EntityPlan entityPlan, QueryTemplate template, QueryExpression query, Filter filter, boolean scan,
+            Boolean indexed, Predicate<Entry> approximations, QueryExpression remainder, QueryExpression evaluated) {
+        this.entityPlan = entityPlan;
+        this.template = template;
+        this.query = query;
+        this.filter = filter;
+        this.scan = scan;
+        this.indexed = indexed;
+        this.approximations = approximations;
+        this.remainder = remainder;
+        this.evaluated = evaluated;
+    }
+
+    /**
+     * The filter and the attributes needed are taken from the {@link QueryTemplate} for the shape of the
+     * <code>query</code>, which only has to be bound to the values of this <code>query</code>.
+     * @param entityPlan - {@link EntityPlan} of the entity being queried.
+     * @param optimizer - {@link FilterOptimizer} for the server being queried.
+     * @param query - {@link QueryExpression} to plan.
+     */
+    public static QueryPlan create(EntityPlan entityPlan, FilterOptimizer optimizer, QueryExpression query) {
+        QueryTemplate template = entityPlan.getQueryTemplate(query);
+        FilterBuilder filterBuilder = null;
+
+        List<QueryExpression> conjuncts = FilterBuilder.getConjuncts(query);
+        List<Filter> filters = new ArrayList<>(conjuncts.size());
+        List<QueryExpression> remainders = new ArrayList<>();
+        List<QueryExpression> rechecked = new ArrayList<>();
+        Predicate<Entry> approximations = null;
+        for (int i = 0; i < conjuncts.size(); i++) {
+            QueryExpression conjunct = conjuncts.get(i);
+            filters.add(template.bind(i, conjunct));
+
+            if (!template.isPushedDown(i)) {
+                remainders.add(conjunct);
+            }
+            else if (template.containsRegex(i)) {
+                if (filterBuilder == null) {
+                    filterBuilder = new FilterBuilder(entityPlan.getFieldNameTranslator());
+                }
+                if (conjunct instanceof RegexMatchExpression) {
+                    Predicate<Entry> check = filterBuilder.buildPostFilter((RegexMatchExpression) conjunct);
+                    if (check != null) {
+                        approximations = (approximations == null) ? check : approximations.and(check);
+                    }
+                }
+                else if (filterBuilder.isApproximation(conjunct)) {
+                    rechecked.add(conjunct);
+                }
+            }
+        }
+
+        //Entries of other types stored beneath the same base DN are never matched.
+        filters.addAll(entityPlan.getObjectClassFilters());
+
+        Filter filter = optimizer.optimize((filters.size() == 1) ? filters.get(0) : Filter.createANDFilter(filters));
+
+        QueryExpression remainder = and(remainders);
+        rechecked.addAll(remainders);
+        QueryExpression evaluated = and(rechecked);
+
+        IndexClassifier indexClassifier = entityPlan.getIndexClassifier();
+        Boolean indexed = (indexClassifier == null) ? null : indexClassifier.isIndexed(filter);
+
+        return new QueryPlan(entityPlan, template, query, filter, optimizer.matchesEverything(filter), indexed,
+                approximations, remainder, evaluated);
+    }
+
+    /**
+     * @return the <code>queries</code> ANDed together, or <code>null</code> if there are none.
+     */
+    private static QueryExpression and(List<QueryExpression> queries) {
+        if (queries.isEmpty()) {
+            return null;
+        }
+        return (queries.size() == 1) ? queries.get(0) : new NaryLogicalExpression(NaryLogicalOperator._and, queries);
+    }
+
+    public QueryExpression getQuery() {
+        return query;
+    }
+
+    /**
+     * @return the attributes a {@link PostFilter} needs to check an entry.
+     */
+    public Set<String> getRequiredAttributes() {
+        return template.getRequiredAttributes();
+    }
+
+    /**
+     * @return the optimized {@link Filter} to send to the server.
+     */
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return the part of the query the client has to evaluate, or <code>null</code> if it was all
+     * pushed down.
+     */
+    public QueryExpression getRemainder() {
+        return remainder;
+    }
+
+    public boolean isFullyPushedDown() {
+        return remainder == null;
+    }
+
+    /**
+     * @return <code>true</code> if the filter matches every entry, so that the server will read each
+     * entry beneath the base DN.
+     */
+    public boolean isScan() {
+        return scan;
+    }
+
+    /**
+     * @return <code>true</code> if the entity declares its indexes, and none of them can serve the filter.
+     */
+    public boolean isUnindexed() {
+        return Boolean.FALSE.equals(indexed);
+    }
+
+    /**
+     * @return <code>true</code> if entries returned for the filter must also pass a {@link PostFilter}.
+     */
+    public boolean needsPostFilter() {
+        return (approximations != null) || (evaluated != null);
+    }
+
+    /**
+     * @return number of comparisons in the query, counting each one beneath an AND, OR or NOT.
+     */
+    public int getExpressionCount() {
+        return template.getExpressionCount();
+    }
+
+    /**
+     * @return number of comparisons in the query that were pushed down to the server exactly, or
+     * approximated only by a regex translation.
+     */
+    public int getPushedDownCount() {
+        return template.getPushedDownCount();
+    }
+
+    /**
+     * @param factory - {@link JsonNodeFactory} to translate entries with, if there is a remainder.
+     * @return the {@link PostFilter} that entries returned for the filter must also pass.
+     */
+    public PostFilter createPostFilter(JsonNodeFactory factory) {
+        return new PostFilter(
+                approximations,
+                (evaluated == null) ? null : QueryEvaluator.getInstance(evaluated, entityPlan.getEntityMetadata().getFieldTreeRoot()),
+                new ResultTranslatorToJson(factory, entityPlan.getEntityMetadata(), entityPlan.getFieldNameTranslator()));
+    }
+
+    @Override
+    public String toString() {
+        return "pushed down " + template.getPushedDownCount() + " of " + template.getExpressionCount() + " expressions as " + filter
+                + ((remainder == null) ? "" : ", remainder evaluated by the client: " + remainder)
+                + (scan ? ", scans every entry" : "")
+                + ((indexed == null) ? "" : (indexed ? ", indexed" : ", unindexed"));
+    }
+
+}
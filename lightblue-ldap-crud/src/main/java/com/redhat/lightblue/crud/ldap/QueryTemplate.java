@@ -0,0 +1,163 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import com.redhat.lightblue.query.NaryLogicalExpression;
+import com.redhat.lightblue.query.QueryExpression;
+import com.redhat.lightblue.query.RegexMatchExpression;
+import com.redhat.lightblue.query.UnaryLogicalExpression;
+import com.unboundid.ldap.sdk.Filter;
+
+/**
+ * Everything a {@link QueryPlan} needs that depends only on the shape of its {@link QueryExpression},
+ * and not on the values in it: which of the expressions ANDed at the top of the query are pushed down,
+ * the {@link FilterTemplate} for each of them, and the attributes needed to evaluate the query. It is
+ * compiled once for each shape of query an entity sees, and bound to the values of each query of that
+ * shape by {@link QueryPlan#create(EntityPlan, FilterOptimizer, QueryExpression)}.
+ *
+ * @see EntityPlan#getQueryTemplate(QueryExpression)
+ *
+ * @author dcrissman
+ */
+class QueryTemplate {
+
+    private final List<Conjunct> conjuncts;
+    private final int expressionCount;
+    private final int pushedDownCount;
+    private final Set<String> requiredAttributes;
+
+    private QueryTemplate(List<Conjunct> conjuncts, int expressionCount, int pushedDownCount, Set<String> requiredAttributes) {
+        this.conjuncts = conjuncts;
+        this.expressionCount = expressionCount;
+        this.pushedDownCount = pushedDownCount;
+        this.requiredAttributes = requiredAttributes;
+    }
+
+    /**
+     * @param entityPlan - {@link EntityPlan} of the entity being queried.
+     * @param query - {@link QueryExpression} of the shape to compile.
+     */
+    static QueryTemplate compile(EntityPlan entityPlan, QueryExpression query) {
+        FilterBuilder filterBuilder = new FilterBuilder(entityPlan.getFieldNameTranslator());
+
+        List<Conjunct> conjuncts = new ArrayList<>();
+        int pushedDownCount = 0;
+        for (QueryExpression conjunct : FilterBuilder.getConjuncts(query)) {
+            if (FilterBuilder.canBuild(conjunct)) {
+                conjuncts.add(new Conjunct(filterBuilder.compile(conjunct), true, containsRegex(conjunct)));
+                pushedDownCount += countExpressions(conjunct);
+            }
+            else {
+                conjuncts.add(new Conjunct(filterBuilder.compileApproximation(conjunct), false, false));
+            }
+        }
+
+        return new QueryTemplate(conjuncts, countExpressions(query), pushedDownCount,
+                entityPlan.getRequiredAttributes(null, query, null));
+    }
+
+    private static int countExpressions(QueryExpression query) {
+        if (query instanceof NaryLogicalExpression) {
+            int count = 0;
+            for (QueryExpression subQuery : ((NaryLogicalExpression) query).getQueries()) {
+                count += countExpressions(subQuery);
+            }
+            return count;
+        }
+        if (query instanceof UnaryLogicalExpression) {
+            return countExpressions(((UnaryLogicalExpression) query).getQuery());
+        }
+        return 1;
+    }
+
+    /**
+     * Only a regex can be approximated by a filter that is pushed down, so a conjunct without one never
+     * needs to be checked again once the server has returned an entry for it.
+     */
+    private static boolean containsRegex(QueryExpression query) {
+        if (query instanceof NaryLogicalExpression) {
+            for (QueryExpression subQuery : ((NaryLogicalExpression) query).getQueries()) {
+                if (containsRegex(subQuery)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (query instanceof UnaryLogicalExpression) {
+            return containsRegex(((UnaryLogicalExpression) query).getQuery());
+        }
+        return query instanceof RegexMatchExpression;
+    }
+
+    /**
+     * @param index - position of the <code>conjunct</code> among the expressions ANDed at the top of the query.
+     * @param conjunct - the expression at that position.
+     * @return the {@link Filter} to push down for the <code>conjunct</code>.
+     */
+    Filter bind(int index, QueryExpression conjunct) {
+        return conjuncts.get(index).template.bind(conjunct);
+    }
+
+    /**
+     * @return <code>true</code> if the conjunct at <code>index</code> is pushed down, otherwise it is
+     * only approximated and has to be evaluated by the client.
+     */
+    boolean isPushedDown(int index) {
+        return conjuncts.get(index).pushedDown;
+    }
+
+    /**
+     * @return <code>true</code> if the conjunct at <code>index</code> contains a regex, which may have
+     * been approximated.
+     */
+    boolean containsRegex(int index) {
+        return conjuncts.get(index).containsRegex;
+    }
+
+    int getExpressionCount() {
+        return expressionCount;
+    }
+
+    int getPushedDownCount() {
+        return pushedDownCount;
+    }
+
+    Set<String> getRequiredAttributes() {
+        return requiredAttributes;
+    }
+
+    private static final class Conjunct {
+
+        private final FilterTemplate template;
+        private final boolean pushedDown;
+        private final boolean containsRegex;
+
+        private Conjunct(FilterTemplate template, boolean pushedDown, boolean containsRegex) {
+            this.template = template;
+            this.pushedDown = pushedDown;
+            this.containsRegex = containsRegex;
+        }
+
+    }
+
+}
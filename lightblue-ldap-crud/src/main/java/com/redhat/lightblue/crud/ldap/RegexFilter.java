@@ -0,0 +1,408 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.redhat.lightblue.common.ldap.LdapErrorCode;
+import com.redhat.lightblue.query.RegexMatchExpression;
+import com.redhat.lightblue.util.Error;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.Filter;
+
+/**
+ * Translates a {@link RegexMatchExpression} into the LDAP filter that servers can answer from a
+ * substring index. Anchored prefixes, suffixes and literal runs become the initial, final and any
+ * components of a substring filter, for example <code>^abc</code> becomes <code>(attr=abc*)</code>.
+ * Only <code>\z</code> anchors the end of the value, as <code>$</code> also matches before a final
+ * line terminator.
+ * <p>
+ * A regex that cannot be expressed exactly gets the widest substring filter that still matches at
+ * least every value the regex does, falling back to a presence filter. Entries returned for such a
+ * filter must then be checked with {@link #matches(Entry)}. As the matching rules of the attribute
+ * are not known, any literal the server may fold (letters and whitespace) is also only trusted to
+ * narrow the search, and literals with letters are dropped altogether for case insensitive regexes,
+ * as a case exact attribute would otherwise miss values.
+ * </p>
+ *
+ * @author dcrissman
+ */
+public class RegexFilter {
+
+    private final String attributeName;
+    private final Pattern pattern;
+    private final Filter filter;
+    private final boolean exact;
+
+    private RegexFilter(String attributeName, Pattern pattern, Filter filter, boolean exact) {
+        this.attributeName = attributeName;
+        this.pattern = pattern;
+        this.filter = filter;
+        this.exact = exact;
+    }
+
+    /**
+     * @param attributeName - name of the attribute the <code>query</code> field translates to.
+     * @param query - {@link RegexMatchExpression} to translate.
+     * @throws Error if the regex is not valid.
+     */
+    public static RegexFilter translate(String attributeName, RegexMatchExpression query) {
+        Pattern pattern = compile(query);
+        Parser parser = new Parser(query);
+        parser.parse();
+        Filter filter = parser.toFilter(attributeName);
+        return new RegexFilter(attributeName, pattern, filter, parser.isExact());
+    }
+
+    /**
+     * @return the filter, which matches at least every entry the regex does.
+     */
+    public Filter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return <code>true</code> if the filter matches exactly the entries the regex does, otherwise
+     * entries returned for it must also be checked with {@link #matches(Entry)}.
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * @return <code>true</code> if any value of the attribute in the <code>entry</code> matches the regex.
+     */
+    public boolean matches(Entry entry) {
+        Attribute attribute = entry.getAttribute(attributeName);
+        if (attribute == null) {
+            return false;
+        }
+        for (String value : attribute.getValues()) {
+            if (pattern.matcher(value).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Pattern compile(RegexMatchExpression query) {
+        int flags = 0;
+        if (query.isCaseInsensitive()) {
+            flags |= Pattern.CASE_INSENSITIVE;
+        }
+        if (query.isMultiline()) {
+            flags |= Pattern.MULTILINE;
+        }
+        if (query.isExtended()) {
+            flags |= Pattern.COMMENTS;
+        }
+        if (query.isDotAll()) {
+            flags |= Pattern.DOTALL;
+        }
+        try {
+            return Pattern.compile(query.getRegex(), flags);
+        } catch (PatternSyntaxException e) {
+            throw Error.get(LdapErrorCode.ERR_INVALID_REGEX, e.getMessage());
+        }
+    }
+
+    /**
+     * Splits a regex into the literal runs every match must contain, in order. Anything that is not a
+     * plain literal becomes a gap between runs, and any construct that may make a preceding literal
+     * optional removes it, so the runs never require more than the regex does.
+     */
+    private static class Parser {
+
+        private final String regex;
+        private final boolean caseInsensitive;
+        private final boolean multiline;
+        private final boolean dotAll;
+
+        private final List<String> segments = new ArrayList<>();
+        private final StringBuilder current = new StringBuilder();
+        private boolean anchoredStart = false;
+        private boolean anchoredEnd = false;
+        private boolean leadingGap = false;
+        private boolean trailingGap = false;
+        private boolean anyGap = false;
+        private boolean opaque;
+        private boolean exact = true;
+
+        Parser(RegexMatchExpression query) {
+            regex = query.getRegex();
+            caseInsensitive = query.isCaseInsensitive();
+            multiline = query.isMultiline();
+            dotAll = query.isDotAll();
+            //Whitespace and comments are not literal in extended mode, so nothing can be relied on.
+            opaque = query.isExtended();
+        }
+
+        void parse() {
+            int length = regex.length();
+            for (int i = 0; (i < length) && !opaque; i++) {
+                char c = regex.charAt(i);
+                switch (c) {
+                    case '\\':
+                        i = parseEscape(i);
+                        break;
+                    case '^':
+                        if ((i == 0) && !multiline) {
+                            anchoredStart = true;
+                        }
+                        else {
+                            gap(false);
+                        }
+                        break;
+                    case '$':
+                        //Even at the end, a line terminator may follow.
+                        gap(false);
+                        break;
+                    case '.':
+                        if ((i + 1 < length) && (regex.charAt(i + 1) == '*')) {
+                            //Without DOTALL, '.' does not match line terminators, but '*' in a substring filter does.
+                            gap(dotAll);
+                            i++;
+                            if ((i + 1 < length) && ((regex.charAt(i + 1) == '?') || (regex.charAt(i + 1) == '+'))) {
+                                i++;
+                            }
+                        }
+                        else {
+                            gap(false);
+                        }
+                        break;
+                    case '*':
+                    case '?':
+                        dropLast();
+                        gap(false);
+                        break;
+                    case '{':
+                        dropLast();
+                        gap(false);
+                        i = skipTo(i, '}');
+                        break;
+                    case '+':
+                        gap(false);
+                        break;
+                    case '[':
+                        gap(false);
+                        i = skipClass(i);
+                        break;
+                    case '(':
+                        if (isInlineFlags(i)) {
+                            //Flags such as (?i) change how every literal after them matches.
+                            opaque = true;
+                            break;
+                        }
+                        gap(false);
+                        i = skipGroup(i);
+                        break;
+                    case '|':
+                        //Alternatives are not required by every match.
+                        opaque = true;
+                        break;
+                    default:
+                        literal(c);
+                }
+            }
+            flush();
+        }
+
+        boolean isExact() {
+            return exact && !opaque
+                    && !(anchoredStart && anchoredEnd && !anyGap && segments.isEmpty());
+        }
+
+        Filter toFilter(String attributeName) {
+            if (opaque) {
+                return Filter.createPresenceFilter(attributeName);
+            }
+
+            List<String> any = new ArrayList<>(segments);
+            if (anchoredStart && anchoredEnd && !anyGap && (any.size() == 1)) {
+                checkFoldable(any.get(0));
+                return Filter.createEqualityFilter(attributeName, any.get(0));
+            }
+
+            String subInitial = (anchoredStart && !leadingGap && !any.isEmpty()) ? any.remove(0) : null;
+            String subFinal = (anchoredEnd && !trailingGap && !any.isEmpty()) ? any.remove(any.size() - 1) : null;
+            if ((subInitial == null) && (subFinal == null) && any.isEmpty()) {
+                return Filter.createPresenceFilter(attributeName);
+            }
+
+            for (String segment : segments) {
+                checkFoldable(segment);
+            }
+            return Filter.createSubstringFilter(attributeName, subInitial, any.toArray(new String[0]), subFinal);
+        }
+
+        /**
+         * Matching rules may ignore case and collapse whitespace, in which case the filter matches
+         * more than the regex does.
+         */
+        private void checkFoldable(String segment) {
+            for (int i = 0; i < segment.length(); i++) {
+                if (isFoldable(segment.charAt(i))) {
+                    exact = false;
+                    return;
+                }
+            }
+        }
+
+        private static boolean isFoldable(char c) {
+            return Character.isWhitespace(c) || (Character.toUpperCase(c) != Character.toLowerCase(c));
+        }
+
+        private int parseEscape(int i) {
+            if (i + 1 >= regex.length()) {
+                return i;
+            }
+            char next = regex.charAt(i + 1);
+            if ((next == 'z') && (i + 2 == regex.length())) {
+                anchoredEnd = true;
+                return i + 1;
+            }
+            if (next == 'Q') {
+                int end = regex.indexOf("\\E", i + 2);
+                String quoted = (end < 0) ? regex.substring(i + 2) : regex.substring(i + 2, end);
+                for (int j = 0; j < quoted.length(); j++) {
+                    literal(quoted.charAt(j));
+                }
+                return (end < 0) ? regex.length() : end + 1;
+            }
+            if (!Character.isLetterOrDigit(next)) {
+                literal(next);
+                return i + 1;
+            }
+
+            //Character classes, assertions, back references and escaped characters are all gaps.
+            gap(false);
+            int j = i + 1;
+            switch (next) {
+                case 'x':
+                    return ((j + 1 < regex.length()) && (regex.charAt(j + 1) == '{')) ? skipTo(j, '}') : Math.min(j + 2, regex.length() - 1);
+                case 'u':
+                    return Math.min(j + 4, regex.length() - 1);
+                case 'c':
+                    return Math.min(j + 1, regex.length() - 1);
+                case 'p':
+                case 'P':
+                case 'N':
+                    return ((j + 1 < regex.length()) && (regex.charAt(j + 1) == '{')) ? skipTo(j, '}') : Math.min(j + 1, regex.length() - 1);
+                case 'k':
+                    return skipTo(j, '>');
+                default:
+                    //Octal escapes and back references, which may be followed by more digits.
+                    while ((j + 1 < regex.length()) && Character.isDigit(next) && Character.isDigit(regex.charAt(j + 1))) {
+                        j++;
+                    }
+                    return j;
+            }
+        }
+
+        private boolean isInlineFlags(int i) {
+            return (i + 2 < regex.length()) && (regex.charAt(i + 1) == '?')
+                    && ((regex.charAt(i + 2) == '-') || ("idmsuxU".indexOf(regex.charAt(i + 2)) >= 0));
+        }
+
+        private int skipTo(int i, char end) {
+            int j = regex.indexOf(end, i + 1);
+            return (j < 0) ? regex.length() - 1 : j;
+        }
+
+        private int skipClass(int i) {
+            int depth = 0;
+            for (int j = i; j < regex.length(); j++) {
+                char c = regex.charAt(j);
+                if (c == '\\') {
+                    j++;
+                }
+                else if (c == '[') {
+                    depth++;
+                }
+                else if ((c == ']') && (--depth == 0)) {
+                    return j;
+                }
+            }
+            return regex.length() - 1;
+        }
+
+        private int skipGroup(int i) {
+            int depth = 0;
+            for (int j = i; j < regex.length(); j++) {
+                char c = regex.charAt(j);
+                if (c == '\\') {
+                    j++;
+                }
+                else if (c == '[') {
+                    j = skipClass(j);
+                }
+                else if (c == '(') {
+                    depth++;
+                }
+                else if ((c == ')') && (--depth == 0)) {
+                    return j;
+                }
+            }
+            return regex.length() - 1;
+        }
+
+        private void literal(char c) {
+            if (caseInsensitive && (Character.toUpperCase(c) != Character.toLowerCase(c))) {
+                gap(false);
+                return;
+            }
+            current.append(c);
+            trailingGap = false;
+        }
+
+        /**
+         * The preceding literal is made optional by a quantifier.
+         */
+        private void dropLast() {
+            if (current.length() > 0) {
+                current.setLength(current.length() - 1);
+            }
+        }
+
+        private void gap(boolean exactGap) {
+            if (segments.isEmpty() && (current.length() == 0)) {
+                leadingGap = true;
+            }
+            flush();
+            trailingGap = true;
+            anyGap = true;
+            if (!exactGap) {
+                exact = false;
+            }
+        }
+
+        private void flush() {
+            if (current.length() > 0) {
+                segments.add(current.toString());
+                current.setLength(0);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+/**
+ * Applies a lightblue <code>from</code>/<code>to</code> range on the client side by skipping
+ * the leading entries and refusing anything past the end of the range. A new instance is
+ * needed for each search, as it tracks how many entries it has seen.
+ *
+ * @author dcrissman
+ */
+class ResultWindow {
+
+    /** Indicates that the window has no upper bound. */
+    static final long UNBOUNDED = -1;
+
+    private final long skip;
+    private final long limit;
+
+    private long seen = 0;
+    private long accepted = 0;
+
+    /**
+     * @param skip - number of leading entries to discard.
+     * @param limit - maximum number of entries to accept, or {@link #UNBOUNDED}.
+     */
+    ResultWindow(long skip, long limit) {
+        this.skip = skip;
+        this.limit = limit;
+    }
+
+    /**
+     * Creates a window from a lightblue range, where both <code>from</code> and <code>to</code>
+     * are 0-based and inclusive.
+     * @param from - (optional) index of the first entry to return.
+     * @param to - (optional) index of the last entry to return.
+     */
+    static ResultWindow fromRange(Long from, Long to) {
+        long first = getFirstIndex(from);
+        if (to == null) {
+            return new ResultWindow(first, UNBOUNDED);
+        }
+        return new ResultWindow(first, Math.max(0, to - first + 1));
+    }
+
+    /**
+     * @return the 0-based index of the first entry in the range.
+     */
+    static long getFirstIndex(Long from) {
+        return (from == null) ? 0 : Math.max(0, from);
+    }
+
+    /**
+     * Registers the next entry read from ldap.
+     * @return <code>true</code> if the entry falls inside the window, otherwise <code>false</code>.
+     */
+    boolean accept() {
+        if (isFull()) {
+            return false;
+        }
+        seen++;
+        if (seen <= skip) {
+            return false;
+        }
+        accepted++;
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if no further entries will be accepted, so the search may be stopped.
+     */
+    boolean isFull() {
+        return (limit != UNBOUNDED) && (accepted >= limit);
+    }
+
+    /**
+     * @return how many of <code>total</code> entries fall inside the window.
+     */
+    long countWithin(long total) {
+        long count = Math.max(0, total - skip);
+        return (limit == UNBOUNDED) ? count : Math.min(count, limit);
+    }
+
+    boolean isEmpty() {
+        return limit == 0;
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how each saved document ended up being written, so that the {@link com.redhat.lightblue.common.ldap.LdapSaveStrategy}
+ * chosen for an entity can be checked against its actual workload. A strategy that keeps falling back
+ * is costing an extra round trip per document.
+ *
+ * @author dcrissman
+ */
+public class SaveStatistics {
+
+    /**
+     * The branches a save may take.
+     */
+    public enum Outcome {
+        /** Existence was checked upfront, and the document was added. */
+        CHECKED_INSERT,
+        /** Existence was checked upfront, and the document was modified. */
+        CHECKED_MODIFY,
+        /** Existing entry was read upfront and already matched the document, so nothing was written. */
+        UNCHANGED,
+        /** Optimistically added. */
+        INSERT_FIRST_INSERTED,
+        /** Optimistic add found an existing entry, so it was modified instead. */
+        INSERT_FIRST_MODIFIED,
+        /** Optimistically modified. */
+        MODIFY_FIRST_MODIFIED,
+        /** Optimistic modify found no entry, so it was added instead. */
+        MODIFY_FIRST_INSERTED
+    }
+
+    private final Map<Outcome, LongAdder> counters = new EnumMap<>(Outcome.class);
+
+    public SaveStatistics() {
+        for (Outcome outcome : Outcome.values()) {
+            counters.put(outcome, new LongAdder());
+        }
+    }
+
+    public void record(Outcome outcome) {
+        counters.get(outcome).increment();
+    }
+
+    public long get(Outcome outcome) {
+        return counters.get(outcome).sum();
+    }
+
+    /**
+     * @return snapshot of all the counters.
+     */
+    public Map<String, Long> toMap() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        for (Outcome outcome : Outcome.values()) {
+            snapshot.put(outcome.name(), get(outcome));
+        }
+        return snapshot;
+    }
+
+}
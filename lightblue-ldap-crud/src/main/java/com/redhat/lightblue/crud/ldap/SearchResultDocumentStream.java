@@ -0,0 +1,158 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.redhat.lightblue.crud.DocCtx;
+import com.redhat.lightblue.crud.DocumentStream;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+
+/**
+ * Lazy {@link DocumentStream} over the entries delivered to a {@link StreamingSearchResultListener}.
+ * Each entry is only converted into a {@link DocCtx} when the consumer asks for it.
+ * The stream closes itself once the last entry has been read.
+ *
+ * @author dcrissman
+ */
+public class SearchResultDocumentStream implements DocumentStream<DocCtx> {
+
+    private final StreamingSearchResultListener listener;
+    private final Function<SearchResultEntry, DocCtx> converter;
+    private final BooleanSupplier nextPageFetcher;
+    private final Runnable closeHandler;
+    private final List<Consumer<DocCtx>> tees = new ArrayList<>();
+
+    private ResultWindow window = new ResultWindow(0, ResultWindow.UNBOUNDED);
+    private SearchResultEntry nextEntry;
+    private boolean closed = false;
+
+    /**
+     * @param listener - {@link StreamingSearchResultListener} the search is feeding.
+     * @param converter - converts each {@link SearchResultEntry} into a {@link DocCtx}.
+     * @param closeHandler - called exactly once, when the stream is closed or exhausted.
+     */
+    public SearchResultDocumentStream(StreamingSearchResultListener listener,
+            Function<SearchResultEntry, DocCtx> converter, Runnable closeHandler) {
+        this(listener, converter, () -> false, closeHandler);
+    }
+
+    /**
+     * @param listener - {@link StreamingSearchResultListener} the search is feeding.
+     * @param converter - converts each {@link SearchResultEntry} into a {@link DocCtx}.
+     * @param nextPageFetcher - called when the current search has been fully read. Returns <code>true</code>
+     * if a follow-up search (such as the next page) was started against the same <code>listener</code>.
+     * @param closeHandler - called exactly once, when the stream is closed or exhausted.
+     */
+    public SearchResultDocumentStream(StreamingSearchResultListener listener,
+            Function<SearchResultEntry, DocCtx> converter, BooleanSupplier nextPageFetcher, Runnable closeHandler) {
+        this.listener = listener;
+        this.converter = converter;
+        this.nextPageFetcher = nextPageFetcher;
+        this.closeHandler = closeHandler;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (nextEntry != null) {
+            return true;
+        }
+
+        if (window.isFull()) {
+            //Nothing more is wanted, so stop reading from ldap.
+            close();
+            return false;
+        }
+
+        try {
+            do {
+                nextEntry = takeNextEntry();
+            } while ((nextEntry != null) && !window.accept());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            nextEntry = null;
+        }
+
+        if (nextEntry == null) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    private SearchResultEntry takeNextEntry() throws InterruptedException {
+        SearchResultEntry entry = listener.take();
+        while ((entry == null) && nextPageFetcher.getAsBoolean()) {
+            entry = listener.take();
+        }
+        return entry;
+    }
+
+    /**
+     * Restricts the stream to the entries inside the {@link ResultWindow}. Skipped entries are
+     * never converted, and the stream closes as soon as the window is full.
+     */
+    void setWindow(ResultWindow window) {
+        this.window = window;
+    }
+
+    @Override
+    public DocCtx next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        SearchResultEntry entry = nextEntry;
+        nextEntry = null;
+
+        DocCtx document = converter.apply(entry);
+        for (Consumer<DocCtx> tee : tees) {
+            tee.accept(document);
+        }
+        return document;
+    }
+
+    /**
+     * Registers a {@link Consumer} that will also receive each document returned by {@link #next()}.
+     */
+    public void tee(Consumer<DocCtx> dest) {
+        tees.add(dest);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        nextEntry = null;
+
+        listener.close();
+        closeHandler.run();
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.redhat.lightblue.crud.DocCtx;
+import com.redhat.lightblue.crud.DocumentStream;
+import com.redhat.lightblue.util.JsonDoc;
+
+/**
+ * Lazy {@link DocumentStream} over the output of a {@link ClientSideSorter}. Each document is only
+ * converted into a {@link DocCtx} when the consumer asks for it, and the sorter is closed once the
+ * last document has been read or the stream is closed.
+ *
+ * @author dcrissman
+ */
+public class SortedDocumentStream implements DocumentStream<DocCtx> {
+
+    private final ClientSideSorter sorter;
+    private final Iterator<JsonDoc> documents;
+    private final ResultWindow window;
+    private final Function<JsonDoc, DocCtx> converter;
+    private final Runnable closeHandler;
+    private final List<Consumer<DocCtx>> tees = new ArrayList<>();
+
+    private JsonDoc nextDocument;
+    private boolean closed = false;
+
+    /**
+     * @param sorter - {@link ClientSideSorter} every document has already been added to.
+     * @param window - {@link ResultWindow} to apply to the sorted documents.
+     * @param converter - converts each {@link JsonDoc} into a {@link DocCtx}.
+     * @param closeHandler - called exactly once, when the stream is closed or exhausted.
+     */
+    public SortedDocumentStream(ClientSideSorter sorter, ResultWindow window,
+            Function<JsonDoc, DocCtx> converter, Runnable closeHandler) {
+        this.sorter = sorter;
+        this.window = window;
+        this.converter = converter;
+        this.closeHandler = closeHandler;
+        documents = sorter.sorted();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (nextDocument != null) {
+            return true;
+        }
+
+        if (!window.isFull()) {
+            do {
+                nextDocument = documents.hasNext() ? documents.next() : null;
+            } while ((nextDocument != null) && !window.accept());
+        }
+
+        if (nextDocument == null) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public DocCtx next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        JsonDoc document = nextDocument;
+        nextDocument = null;
+
+        DocCtx docCtx = converter.apply(document);
+        for (Consumer<DocCtx> tee : tees) {
+            tee.accept(docCtx);
+        }
+        return docCtx;
+    }
+
+    /**
+     * Registers a {@link Consumer} that will also receive each document returned by {@link #next()}.
+     */
+    public void tee(Consumer<DocCtx> dest) {
+        tees.add(dest);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        nextDocument = null;
+
+        closeHandler.run();
+        sorter.close();
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import com.unboundid.ldap.sdk.AsyncRequestID;
+import com.unboundid.ldap.sdk.AsyncSearchResultListener;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultReference;
+
+/**
+ * {@link AsyncSearchResultListener} that hands entries off to a consumer thread through a
+ * bounded queue. When the queue is full the LDAP connection reader blocks, which in turn
+ * slows the server down to the pace of the consumer.
+ *
+ * @author dcrissman
+ */
+public class StreamingSearchResultListener implements AsyncSearchResultListener {
+
+    private static final long serialVersionUID = -6219483102447726015L;
+
+    /** How long the reader waits on a full queue before checking if the consumer has gone away. */
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    /** Marks the end of the search results in the queue. */
+    private static final Object END_OF_RESULTS = new Object();
+
+    private final transient BlockingQueue<Object> queue;
+    private transient Predicate<? super SearchResultEntry> entryFilter;
+    private volatile boolean closed = false;
+    private volatile SearchResult searchResult;
+    private boolean exhausted = false;
+
+    /**
+     * @param bufferSize - maximum number of entries that may be read ahead of the consumer.
+     */
+    public StreamingSearchResultListener(int bufferSize) {
+        queue = new ArrayBlockingQueue<>(bufferSize);
+    }
+
+    /**
+     * @param entryFilter - (optional) entries that do not pass are skipped by {@link #take()}, checked
+     * on the consumer thread so as not to hold up the connection reader.
+     */
+    public void setEntryFilter(Predicate<? super SearchResultEntry> entryFilter) {
+        this.entryFilter = entryFilter;
+    }
+
+    @Override
+    public void searchEntryReturned(SearchResultEntry searchEntry) {
+        enqueue(searchEntry);
+    }
+
+    @Override
+    public void searchReferenceReturned(SearchResultReference searchReference) {
+        //Do Nothing!! References are not followed.
+    }
+
+    @Override
+    public void searchResultReceived(AsyncRequestID requestID, SearchResult searchResult) {
+        this.searchResult = searchResult;
+        enqueue(END_OF_RESULTS);
+    }
+
+    /**
+     * Blocks until the next entry is available.
+     * @return the next {@link SearchResultEntry}, or <code>null</code> once the search has completed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public SearchResultEntry take() throws InterruptedException {
+        if (exhausted || closed) {
+            return null;
+        }
+
+        while (true) {
+            Object item = queue.take();
+            if (item == END_OF_RESULTS) {
+                exhausted = true;
+                return null;
+            }
+            if ((entryFilter == null) || entryFilter.test((SearchResultEntry) item)) {
+                return (SearchResultEntry) item;
+            }
+        }
+    }
+
+    /**
+     * @return the final {@link SearchResult}, or <code>null</code> if the search has not yet completed.
+     */
+    public SearchResult getSearchResult() {
+        return searchResult;
+    }
+
+    /**
+     * Prepares this listener to receive the results of a follow-up search, such as the next page
+     * of a paged search. Should only be called once the previous search has been fully read.
+     */
+    public void reset() {
+        searchResult = null;
+        exhausted = false;
+    }
+
+    /**
+     * Stops accepting entries and discards anything that has already been buffered.
+     */
+    public void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    private void enqueue(Object item) {
+        try {
+            while (!closed && !queue.offer(item, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                //Consumer is behind, keep waiting.
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
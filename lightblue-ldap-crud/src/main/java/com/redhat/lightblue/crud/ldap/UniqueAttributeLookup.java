@@ -0,0 +1,157 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.redhat.lightblue.common.ldap.LdapDataStore;
+import com.redhat.lightblue.common.ldap.LdapFieldNameTranslator;
+import com.redhat.lightblue.common.ldap.LdapSearchScope;
+import com.redhat.lightblue.query.BinaryComparisonOperator;
+import com.redhat.lightblue.query.NaryLogicalExpression;
+import com.redhat.lightblue.query.NaryLogicalOperator;
+import com.redhat.lightblue.query.NaryRelationalOperator;
+import com.redhat.lightblue.query.NaryValueRelationalExpression;
+import com.redhat.lightblue.query.QueryExpression;
+import com.redhat.lightblue.query.Value;
+import com.redhat.lightblue.query.ValueComparisonExpression;
+import com.redhat.lightblue.util.Path;
+import com.unboundid.ldap.sdk.RDN;
+
+/**
+ * Recognizes queries that can only match entries with a known DN, which is the case when the
+ * query requires the unique attribute to equal one (<code>$eq</code>) or one of several
+ * (<code>$in</code>) values. Such entries can be read with base scoped lookups rather than a
+ * subtree search.
+ *
+ * @author dcrissman
+ */
+public final class UniqueAttributeLookup {
+
+    private final List<String> dns;
+    private final boolean exactMatch;
+
+    private UniqueAttributeLookup(List<String> dns, boolean exactMatch) {
+        this.dns = dns;
+        this.exactMatch = exactMatch;
+    }
+
+    /**
+     * @return the DNs of the only entries the query can possibly match.
+     */
+    public List<String> getDNs() {
+        return dns;
+    }
+
+    /**
+     * @return <code>true</code> if the query does nothing but restrict the unique attribute, and the
+     * store requires no object classes, in which case every existing entry in {@link #getDNs()} is a
+     * match. Otherwise <code>false</code> and the query still needs to be evaluated against each entry.
+     */
+    public boolean isExactMatch() {
+        return exactMatch;
+    }
+
+    /**
+     * Analyzes the <code>query</code>.
+     * @param store - {@link LdapDataStore} the entity is stored in.
+     * @param fieldNameTranslator - {@link LdapFieldNameTranslator} for the entity.
+     * @param query - {@link QueryExpression} to analyze.
+     * @return a {@link UniqueAttributeLookup}, or <code>null</code> if the query could match entries
+     * whose DNs are not known upfront.
+     */
+    public static UniqueAttributeLookup analyze(LdapDataStore store, LdapFieldNameTranslator fieldNameTranslator, QueryExpression query) {
+        if ((store.getUniqueAttribute() == null) || (query == null)) {
+            return null;
+        }
+        if (store.getScope() == LdapSearchScope.BASE) {
+            //Entries are created directly beneath the base DN, which a base scoped store never searches.
+            return null;
+        }
+
+        List<Value> values = findUniqueValues(store, fieldNameTranslator, query);
+        if (values != null) {
+            return createLookup(store, values, store.getObjectClasses().isEmpty());
+        }
+
+        if ((query instanceof NaryLogicalExpression)
+                && (((NaryLogicalExpression) query).getOp() == NaryLogicalOperator._and)) {
+            //Only one of the conjuncts needs to pin down the DNs, the rest narrow the result further.
+            for (QueryExpression subQuery : ((NaryLogicalExpression) query).getQueries()) {
+                values = findUniqueValues(store, fieldNameTranslator, subQuery);
+                if (values != null) {
+                    return createLookup(store, values, false);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static List<Value> findUniqueValues(LdapDataStore store, LdapFieldNameTranslator fieldNameTranslator, QueryExpression query) {
+        if (query instanceof ValueComparisonExpression) {
+            ValueComparisonExpression comparison = (ValueComparisonExpression) query;
+            if ((comparison.getOp() == BinaryComparisonOperator._eq)
+                    && isUniqueAttribute(store, fieldNameTranslator, comparison.getField())) {
+                return Collections.singletonList(comparison.getRvalue());
+            }
+        }
+        else if (query instanceof NaryValueRelationalExpression) {
+            NaryValueRelationalExpression in = (NaryValueRelationalExpression) query;
+            if ((in.getOp() == NaryRelationalOperator._in)
+                    && isUniqueAttribute(store, fieldNameTranslator, in.getField())) {
+                return in.getValues();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isUniqueAttribute(LdapDataStore store, LdapFieldNameTranslator fieldNameTranslator, Path field) {
+        return store.getUniqueAttribute().equalsIgnoreCase(fieldNameTranslator.translateFieldName(field));
+    }
+
+    private static UniqueAttributeLookup createLookup(LdapDataStore store, List<Value> values, boolean exactMatch) {
+        Set<String> dns = new LinkedHashSet<>();
+        for (Value value : values) {
+            if ((value == null) || (value.getValue() == null)) {
+                continue;
+            }
+            String uniqueValue = value.getValue().toString();
+            if (!isSafeRdnValue(store.getUniqueAttribute(), uniqueValue)) {
+                /*
+                 * The DN would need escaping, which LdapCrudUtil.createDN does not do, so the
+                 * entry could not have been created with it. Let the server search for it instead.
+                 */
+                return null;
+            }
+            dns.add(LdapCrudUtil.createDN(store, uniqueValue));
+        }
+        return new UniqueAttributeLookup(new ArrayList<>(dns), exactMatch);
+    }
+
+    private static boolean isSafeRdnValue(String attributeName, String value) {
+        return !value.isEmpty()
+                && new RDN(attributeName, value).toString().equals(attributeName + "=" + value);
+    }
+
+}
@@ -18,6 +18,9 @@
  */
 package com.redhat.lightblue.crud.ldap.model;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import com.redhat.lightblue.common.ldap.LdapFieldNameTranslator;
 import com.redhat.lightblue.util.Path;
 
@@ -29,6 +32,11 @@ import com.redhat.lightblue.util.Path;
  */
 public class TrivialLdapFieldNameTranslator implements LdapFieldNameTranslator{
 
+    /** Upper bound on the number of attribute names to hold a {@link Path} for. */
+    private static final int MAX_PATHS = 1024;
+
+    private final Map<String, Path> paths = new ConcurrentHashMap<>();
+
     @Override
     public String translateFieldName(Path path) {
         return path.getLast();
@@ -36,7 +44,14 @@ public class TrivialLdapFieldNameTranslator implements LdapFieldNameTranslator{
 
     @Override
     public Path translateAttributeName(String attributeName) {
-        return new Path(attributeName);
+        Path path = paths.get(attributeName);
+        if(path == null){
+            path = new Path(attributeName);
+            if(paths.size() < MAX_PATHS){
+                paths.put(attributeName, path);
+            }
+        }
+        return path;
     }
 
 }
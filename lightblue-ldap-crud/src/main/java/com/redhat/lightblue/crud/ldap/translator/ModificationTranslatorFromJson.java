@@ -1,8 +1,12 @@
 package com.redhat.lightblue.crud.ldap.translator;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -17,6 +21,9 @@ import com.redhat.lightblue.metadata.types.BinaryType;
 import com.redhat.lightblue.util.Error;
 import com.redhat.lightblue.util.JsonDoc;
 import com.redhat.lightblue.util.Path;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
 import com.unboundid.ldap.sdk.Modification;
 import com.unboundid.ldap.sdk.ModificationType;
 import com.unboundid.ldap.sdk.ModifyRequest;
@@ -40,6 +47,107 @@ public class ModificationTranslatorFromJson extends LdapTranslatorFromJson<List<
         }
     }
 
+    /**
+     * Translates the changes made to an entry. Every attribute present in the <code>updated</code>
+     * document is replaced, and any attribute only present in the <code>original</code> document is deleted.
+     * @return the {@link ModifyRequest}, or <code>null</code> if there is nothing to modify.
+     */
+    public ModifyRequest translateChanges(JsonDoc original, JsonDoc updated, String dn) {
+        Error.push(LdapConstant.ATTRIBUTE_DN + "=" + dn);
+        try {
+            List<Modification> modifications = translate(updated);
+
+            Set<String> updatedAttributes = new HashSet<>();
+            for (Modification modification : modifications) {
+                updatedAttributes.add(modification.getAttributeName().toLowerCase());
+            }
+            for (Modification modification : translate(original)) {
+                if (!updatedAttributes.contains(modification.getAttributeName().toLowerCase())) {
+                    modifications.add(new Modification(ModificationType.DELETE, modification.getAttributeName()));
+                }
+            }
+
+            if (modifications.isEmpty()) {
+                return null;
+            }
+            return new ModifyRequest(dn, modifications);
+        } finally {
+            Error.pop();
+        }
+    }
+
+    /**
+     * Translates only the values of the <code>document</code> that differ from the <code>existing</code>
+     * entry, as ADDs and DELETEs of individual values. As with {@link #translate(JsonDoc, String)}, attributes
+     * the document does not mention are left as they are.
+     * @return the {@link ModifyRequest}, or <code>null</code> if the entry already matches the document.
+     */
+    public ModifyRequest translateDelta(JsonDoc document, String dn, Entry existing) {
+        Error.push(LdapConstant.ATTRIBUTE_DN + "=" + dn);
+        try {
+            List<Modification> delta = new ArrayList<>();
+            for (Modification replacement : translate(document)) {
+                delta.addAll(diff(replacement, existing.getAttribute(replacement.getAttributeName())));
+            }
+
+            if (delta.isEmpty()) {
+                return null;
+            }
+            return new ModifyRequest(dn, delta);
+        } finally {
+            Error.pop();
+        }
+    }
+
+    /**
+     * Values are compared byte for byte, so that a change in case is still written.
+     */
+    private static List<Modification> diff(Modification replacement, Attribute current) {
+        Map<ByteBuffer, ASN1OctetString> wanted = toValueMap(replacement.getRawValues());
+        Map<ByteBuffer, ASN1OctetString> existing = (current == null)
+                ? new LinkedHashMap<ByteBuffer, ASN1OctetString>()
+                : toValueMap(current.getRawValues());
+
+        List<ASN1OctetString> added = new ArrayList<>();
+        for (Map.Entry<ByteBuffer, ASN1OctetString> value : wanted.entrySet()) {
+            if (!existing.containsKey(value.getKey())) {
+                added.add(value.getValue());
+            }
+        }
+        List<ASN1OctetString> removed = new ArrayList<>();
+        for (Map.Entry<ByteBuffer, ASN1OctetString> value : existing.entrySet()) {
+            if (!wanted.containsKey(value.getKey())) {
+                removed.add(value.getValue());
+            }
+        }
+
+        if (added.isEmpty() && removed.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (removed.size() == existing.size()) {
+            //None of the current values are kept, so replacing is no larger.
+            return Collections.singletonList(replacement);
+        }
+
+        List<Modification> modifications = new ArrayList<>();
+        String attributeName = replacement.getAttributeName();
+        if (!removed.isEmpty()) {
+            modifications.add(new Modification(ModificationType.DELETE, attributeName, removed.toArray(new ASN1OctetString[0])));
+        }
+        if (!added.isEmpty()) {
+            modifications.add(new Modification(ModificationType.ADD, attributeName, added.toArray(new ASN1OctetString[0])));
+        }
+        return modifications;
+    }
+
+    private static Map<ByteBuffer, ASN1OctetString> toValueMap(ASN1OctetString[] values) {
+        Map<ByteBuffer, ASN1OctetString> valueMap = new LinkedHashMap<>();
+        for (ASN1OctetString value : values) {
+            valueMap.put(ByteBuffer.wrap(value.getValue()), value);
+        }
+        return valueMap;
+    }
+
     private List<Modification> translate(JsonDoc document) {
         List<Modification> modifications = new ArrayList<>();
         translate(document, modifications);
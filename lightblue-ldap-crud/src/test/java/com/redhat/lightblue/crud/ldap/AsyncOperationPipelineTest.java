@@ -0,0 +1,92 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.redhat.lightblue.common.ldap.LdapConnectionLease;
+import com.redhat.lightblue.ldap.test.LdapServerExternalResource;
+import com.redhat.lightblue.ldap.test.LdapServerExternalResource.InMemoryLdapServer;
+import com.unboundid.ldap.sdk.AddRequest;
+import com.unboundid.ldap.sdk.AsyncResultListener;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPResult;
+import com.unboundid.ldap.sdk.ResultCode;
+
+@InMemoryLdapServer
+public class AsyncOperationPipelineTest {
+
+    @Rule
+    public LdapServerExternalResource ldapServer = LdapServerExternalResource.createDefaultInstance();
+
+    private static AddRequest createAddRequest(String uid){
+        return new AddRequest("uid=" + uid + ",dc=example,dc=com",
+                new Attribute("objectClass", "top", "person", "organizationalPerson", "inetOrgPerson"),
+                new Attribute("uid", uid),
+                new Attribute("cn", uid),
+                new Attribute("sn", uid));
+    }
+
+    @Test
+    public void testSubmit_ResultsAttributedToTheirOperation() throws Exception{
+        List<String> uids = new ArrayList<>();
+        uids.add("john.doe");
+        uids.add("jane.doe");
+        uids.add("john.doe");
+        uids.add("junior.doe");
+        uids.add("jack.buck");
+
+        ResultCode[] results = new ResultCode[uids.size()];
+
+        try (LdapConnectionLease lease = new FakeLdapConnectionLease(ldapServer.getLDAPConnection())) {
+            AsyncOperationPipeline pipeline = new AsyncOperationPipeline(lease, 2);
+            for (int i = 0; i < uids.size(); i++) {
+                int index = i;
+                AddRequest addRequest = createAddRequest(uids.get(i));
+                pipeline.submit(
+                        (LDAPConnection connection, AsyncResultListener listener) -> connection.asyncAdd(addRequest, listener),
+                        (LDAPResult result) -> results[index] = result.getResultCode());
+
+                assertTrue(pipeline.getInFlight() <= 2);
+            }
+            pipeline.awaitCompletion();
+            assertEquals(0, pipeline.getInFlight());
+        }
+
+        assertEquals(ResultCode.SUCCESS, results[0]);
+        assertEquals(ResultCode.SUCCESS, results[1]);
+        assertEquals(ResultCode.ENTRY_ALREADY_EXISTS, results[2]);
+        assertEquals(ResultCode.SUCCESS, results[3]);
+        assertEquals(ResultCode.SUCCESS, results[4]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_InvalidMaxInFlight(){
+        new AsyncOperationPipeline(null, 0);
+    }
+
+}
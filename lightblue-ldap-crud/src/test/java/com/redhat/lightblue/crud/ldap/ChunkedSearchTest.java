@@ -0,0 +1,125 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.redhat.lightblue.common.ldap.LdapConnectionLease;
+import com.redhat.lightblue.ldap.test.LdapServerExternalResource;
+import com.redhat.lightblue.ldap.test.LdapServerExternalResource.InMemoryLdapServer;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchScope;
+
+@InMemoryLdapServer
+public class ChunkedSearchTest {
+
+    @Rule
+    public LdapServerExternalResource ldapServer = LdapServerExternalResource.createDefaultInstance();
+
+    private List<LdapConnectionLease> leases;
+
+    @Before
+    public void before() throws Exception{
+        for (String uid : Arrays.asList("a", "b", "c", "d", "e")){
+            ldapServer.add("uid=" + uid + ",dc=example,dc=com",
+                    new Attribute("objectClass", "top", "person", "organizationalPerson", "inetOrgPerson"),
+                    new Attribute("uid", uid),
+                    new Attribute("cn", uid),
+                    new Attribute("sn", uid));
+        }
+
+        leases = Arrays.<LdapConnectionLease>asList(
+                new FakeLdapConnectionLease(ldapServer.getLDAPConnection()),
+                new FakeLdapConnectionLease(ldapServer.getLDAPConnection()));
+    }
+
+    private List<String> run(String baseDn, int pageSize, String... filters) throws Exception{
+        return run(baseDn, pageSize, 10, filters);
+    }
+
+    private List<String> run(String baseDn, int pageSize, int bufferSize, String... filters) throws Exception{
+        List<Filter> chunks = new ArrayList<>();
+        for (String filter : filters){
+            chunks.add(Filter.create(filter));
+        }
+
+        List<String> uids = new ArrayList<>();
+        try{
+            new ChunkedSearch(leases, pageSize, bufferSize).run(
+                    new SearchRequest(baseDn, SearchScope.SUB, Filter.createPresenceFilter("objectClass"), "uid"),
+                    chunks,
+                    (SearchResultEntry entry) -> uids.add(entry.getAttributeValue("uid")));
+        } finally{
+            for (LdapConnectionLease lease : leases){
+                lease.close();
+            }
+        }
+        Collections.sort(uids);
+        return uids;
+    }
+
+    @Test
+    public void testRun_MergedWithoutDuplicates() throws Exception{
+        assertEquals(Arrays.asList("a", "b", "c", "d"),
+                run("dc=example,dc=com", 0, "(|(uid=a)(uid=b))", "(|(uid=b)(uid=c))", "(uid=d)"));
+    }
+
+    @Test
+    public void testRun_Paged() throws Exception{
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"),
+                run("dc=example,dc=com", 1, "(|(uid=a)(uid=b)(uid=c))", "(|(uid=c)(uid=d))", "(uid=e)"));
+    }
+
+    @Test
+    public void testRun_MoreEntriesThanBuffered() throws Exception{
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"),
+                run("dc=example,dc=com", 0, 1, "(|(uid=a)(uid=b)(uid=c))", "(|(uid=c)(uid=d)(uid=e))", "(uid=e)"));
+    }
+
+    @Test
+    public void testRun_Failure() throws Exception{
+        try{
+            run("dc=missing,dc=com", 0, "(uid=a)", "(uid=b)", "(uid=c)");
+        } catch (LDAPException e){
+            assertEquals(ResultCode.NO_SUCH_OBJECT, e.getResultCode());
+            return;
+        }
+        throw new AssertionError("Expected the search to fail");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_NoLeases(){
+        new ChunkedSearch(new ArrayList<LdapConnectionLease>(), 0, 10);
+    }
+
+}
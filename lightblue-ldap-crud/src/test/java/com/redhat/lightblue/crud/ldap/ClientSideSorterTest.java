@@ -0,0 +1,139 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static com.redhat.lightblue.crud.ldap.DocumentComparatorTest.comparator;
+import static com.redhat.lightblue.crud.ldap.DocumentComparatorTest.doc;
+import static com.redhat.lightblue.util.JsonUtils.json;
+import static com.redhat.lightblue.util.test.AbstractJsonNodeTest.loadResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.redhat.lightblue.common.ldap.LdapConstant;
+import com.redhat.lightblue.metadata.EntityMetadata;
+import com.redhat.lightblue.test.MetadataUtil;
+import com.redhat.lightblue.util.JsonDoc;
+import com.redhat.lightblue.util.Path;
+
+public class ClientSideSorterTest {
+
+    private static final int[] AGES = {7, 3, 9, 1, 8, 2, 6, 0, 5, 4};
+
+    private static EntityMetadata md;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception{
+        md = MetadataUtil.createEntityMetadata(LdapConstant.BACKEND,
+                json(loadResource("./metadata/documentComparatorTest-metadata.json"), true), null, null);
+    }
+
+    private static ClientSideSorter createSorter(long limit, int bufferSize) throws Exception{
+        return new ClientSideSorter(comparator(md, "{'age': '$asc'}"), limit, bufferSize, JsonNodeFactory.instance);
+    }
+
+    private static List<String> readAll(Iterator<JsonDoc> documents){
+        List<String> values = new ArrayList<>();
+        while(documents.hasNext()){
+            JsonDoc document = documents.next();
+            values.add(document.get(new Path("age")).asText() + document.get(new Path("uid")).asText());
+        }
+        return values;
+    }
+
+    @Test
+    public void testSorted_InMemory() throws Exception{
+        try(ClientSideSorter sorter = createSorter(ResultWindow.UNBOUNDED, 100)){
+            for(int age : AGES){
+                sorter.add(doc("{'uid': 'a', 'age': " + age + "}"));
+            }
+
+            assertEquals(10, sorter.getSize());
+            assertEquals(
+                    Arrays.asList("0a", "1a", "2a", "3a", "4a", "5a", "6a", "7a", "8a", "9a"),
+                    readAll(sorter.sorted()));
+            assertNull(sorter.getFailure());
+        }
+    }
+
+    @Test
+    public void testSorted_TopK() throws Exception{
+        try(ClientSideSorter sorter = createSorter(3, 100)){
+            for(int age : AGES){
+                sorter.add(doc("{'uid': 'a', 'age': " + age + "}"));
+            }
+
+            assertEquals(10, sorter.getSize());
+            assertEquals(Arrays.asList("0a", "1a", "2a"), readAll(sorter.sorted()));
+        }
+    }
+
+    @Test
+    public void testSorted_SpillsAndMerges() throws Exception{
+        try(ClientSideSorter sorter = createSorter(ResultWindow.UNBOUNDED, 3)){
+            for(int age : AGES){
+                sorter.add(doc("{'uid': 'a', 'age': " + age + "}"));
+            }
+
+            assertEquals(
+                    Arrays.asList("0a", "1a", "2a", "3a", "4a", "5a", "6a", "7a", "8a", "9a"),
+                    readAll(sorter.sorted()));
+            assertNull(sorter.getFailure());
+        }
+    }
+
+    @Test
+    public void testSorted_LimitLargerThanBufferSpills() throws Exception{
+        try(ClientSideSorter sorter = createSorter(5, 2)){
+            for(int age : AGES){
+                sorter.add(doc("{'uid': 'a', 'age': " + age + "}"));
+            }
+
+            assertEquals(
+                    Arrays.asList("0a", "1a", "2a", "3a", "4a"),
+                    readAll(sorter.sorted()).subList(0, 5));
+        }
+    }
+
+    @Test
+    public void testSorted_EqualDocumentsKeepTheirOrder() throws Exception{
+        for(long limit : new long[]{ResultWindow.UNBOUNDED, 4}){
+            try(ClientSideSorter sorter = createSorter(limit, 2)){
+                sorter.add(doc("{'uid': 'a', 'age': 2}"));
+                sorter.add(doc("{'uid': 'b', 'age': 1}"));
+                sorter.add(doc("{'uid': 'c', 'age': 2}"));
+                sorter.add(doc("{'uid': 'd', 'age': 1}"));
+                sorter.add(doc("{'uid': 'e', 'age': 2}"));
+
+                assertEquals(
+                        Arrays.asList("1b", "1d", "2a", "2c"),
+                        readAll(sorter.sorted()).subList(0, 4));
+            }
+        }
+    }
+
+}
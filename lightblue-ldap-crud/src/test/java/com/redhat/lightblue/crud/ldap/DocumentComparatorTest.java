@@ -0,0 +1,103 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static com.redhat.lightblue.util.JsonUtils.json;
+import static com.redhat.lightblue.util.test.AbstractJsonNodeTest.loadResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.redhat.lightblue.common.ldap.LdapConstant;
+import com.redhat.lightblue.metadata.EntityMetadata;
+import com.redhat.lightblue.query.Sort;
+import com.redhat.lightblue.test.MetadataUtil;
+import com.redhat.lightblue.util.JsonDoc;
+
+public class DocumentComparatorTest {
+
+    private static EntityMetadata md;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception{
+        md = MetadataUtil.createEntityMetadata(LdapConstant.BACKEND,
+                json(loadResource("./metadata/documentComparatorTest-metadata.json"), true), null, null);
+    }
+
+    static JsonDoc doc(String json) throws Exception{
+        return new JsonDoc(json(json.replace('\'', '"')));
+    }
+
+    static DocumentComparator comparator(EntityMetadata md, String sort) throws Exception{
+        return new DocumentComparator(md, Sort.fromJson(json(sort.replace('\'', '"'))));
+    }
+
+    @Test
+    public void testCompare_Integer() throws Exception{
+        DocumentComparator comparator = comparator(md, "{'age': '$asc'}");
+
+        //As strings, 10 would sort before 9.
+        assertTrue(comparator.compare(doc("{'age': 9}"), doc("{'age': 10}")) < 0);
+        assertTrue(comparator.compare(doc("{'age': 10}"), doc("{'age': 9}")) > 0);
+        assertEquals(0, comparator.compare(doc("{'age': 10}"), doc("{'age': 10}")));
+    }
+
+    @Test
+    public void testCompare_Date() throws Exception{
+        DocumentComparator comparator = comparator(md, "{'created': '$asc'}");
+
+        assertTrue(comparator.compare(
+                doc("{'created': '20151231T23:59:59.000+0000'}"),
+                doc("{'created': '20160101T01:00:00.000+0200'}")) > 0);
+    }
+
+    @Test
+    public void testCompare_Descending() throws Exception{
+        DocumentComparator comparator = comparator(md, "{'age': '$desc'}");
+
+        assertTrue(comparator.compare(doc("{'age': 9}"), doc("{'age': 10}")) > 0);
+    }
+
+    @Test
+    public void testCompare_MissingValue() throws Exception{
+        assertTrue(comparator(md, "{'age': '$asc'}").compare(doc("{'uid': 'a'}"), doc("{'age': 10}")) > 0);
+        assertTrue(comparator(md, "{'age': '$desc'}").compare(doc("{'uid': 'a'}"), doc("{'age': 10}")) < 0);
+    }
+
+    @Test
+    public void testCompare_Composite() throws Exception{
+        DocumentComparator comparator = comparator(md, "[{'age': '$desc'}, {'uid': '$asc'}]");
+
+        assertTrue(comparator.compare(doc("{'uid': 'b', 'age': 10}"), doc("{'uid': 'a', 'age': 9}")) < 0);
+        assertTrue(comparator.compare(doc("{'uid': 'b', 'age': 10}"), doc("{'uid': 'a', 'age': 10}")) > 0);
+    }
+
+    @Test
+    public void testCompare_Array() throws Exception{
+        JsonDoc doc1 = doc("{'scores': [5, 50]}");
+        JsonDoc doc2 = doc("{'scores': [10, 20]}");
+
+        //Ascending compares the smallest elements, descending the largest.
+        assertTrue(comparator(md, "{'scores': '$asc'}").compare(doc1, doc2) < 0);
+        assertTrue(comparator(md, "{'scores': '$desc'}").compare(doc1, doc2) < 0);
+    }
+
+}
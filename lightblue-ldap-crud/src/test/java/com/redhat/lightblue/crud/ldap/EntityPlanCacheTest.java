@@ -0,0 +1,107 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static com.redhat.lightblue.util.JsonUtils.json;
+import static com.redhat.lightblue.util.test.AbstractJsonNodeTest.loadResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.lightblue.common.ldap.LdapConstant;
+import com.redhat.lightblue.metadata.EntityMetadata;
+import com.redhat.lightblue.metadata.EntityInfo;
+import com.redhat.lightblue.test.MetadataUtil;
+
+public class EntityPlanCacheTest {
+
+    private EntityMetadata md;
+    private final EntityPlanCache cache = new EntityPlanCache();
+
+    @Before
+    public void before() throws Exception{
+        md = MetadataUtil.createEntityMetadata(LdapConstant.BACKEND,
+                json(loadResource("./metadata/documentComparatorTest-metadata.json"), true), null, null);
+    }
+
+    @Test
+    public void testGet(){
+        EntityPlan plan = cache.get(md);
+
+        assertSame(md, plan.getEntityMetadata());
+        assertSame(plan, cache.get(md));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testGet_EntityInfoChangedWithoutVersion() throws Exception{
+        EntityPlan plan = cache.get(md);
+
+        //As if changed on another node, so the listener never evicted it.
+        EntityMetadata changed = MetadataUtil.createEntityMetadata(LdapConstant.BACKEND,
+                json(loadResource("./metadata/documentComparatorTest-metadata.json")
+                        .replaceFirst("dc=example,dc=com", "ou=Other,dc=example,dc=com"), true), null, null);
+        assertEquals(md.getVersion().getValue(), changed.getVersion().getValue());
+
+        EntityPlan changedPlan = cache.get(changed);
+        assertNotSame(plan, changedPlan);
+        assertEquals("ou=Other,dc=example,dc=com", changedPlan.getStore().getBaseDN());
+        assertSame(changedPlan, cache.get(changed));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testEvict_Version(){
+        EntityPlan plan = cache.get(md);
+
+        cache.evict(md.getName(), "0.0.1");
+        assertSame(plan, cache.get(md));
+
+        cache.evict(md.getName(), md.getVersion().getValue());
+        assertNotSame(plan, cache.get(md));
+    }
+
+    @Test
+    public void testEvict_Entity(){
+        EntityPlan plan = cache.get(md);
+
+        cache.evict("documentComparator");
+        assertSame(plan, cache.get(md));
+
+        cache.evict(md.getName());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testMetadataListener_Evicts(){
+        LdapMetadataListener listener = new LdapMetadataListener(cache);
+
+        EntityPlan plan = cache.get(md);
+        listener.afterCreateNewSchema(null, md);
+        assertNotSame(plan, cache.get(md));
+
+        plan = cache.get(md);
+        listener.afterUpdateEntityInfo(null, new EntityInfo(md.getName()), false);
+        assertNotSame(plan, cache.get(md));
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static com.redhat.lightblue.util.JsonUtils.json;
+import static com.redhat.lightblue.util.test.AbstractJsonNodeTest.loadResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.lightblue.common.ldap.LdapConstant;
+import com.redhat.lightblue.eval.FieldAccessRoleEvaluator;
+import com.redhat.lightblue.metadata.EntityMetadata;
+import com.redhat.lightblue.query.Projection;
+import com.redhat.lightblue.query.QueryExpression;
+import com.redhat.lightblue.query.Sort;
+import com.redhat.lightblue.test.MetadataUtil;
+import com.redhat.lightblue.util.Path;
+
+public class EntityPlanTest {
+
+    private EntityPlan plan;
+
+    @Before
+    public void before() throws Exception{
+        EntityMetadata md = MetadataUtil.createEntityMetadata(LdapConstant.BACKEND,
+                json(loadResource("./metadata/documentComparatorTest-metadata.json"), true), null, null);
+        plan = new EntityPlan(md);
+    }
+
+    private static QueryExpression query(String json) throws Exception{
+        return QueryExpression.fromJson(json(json.replace('\'', '"')));
+    }
+
+    private static Projection projection(String json) throws Exception{
+        return Projection.fromJson(json(json.replace('\'', '"')));
+    }
+
+    @Test
+    public void testPaths(){
+        assertEquals(new Path("uid"), plan.getUniqueFieldPath());
+        assertEquals(new Path(LdapConstant.ATTRIBUTE_DN), plan.getDnPath());
+        assertEquals("age", plan.getFieldNameTranslator().translateFieldName(new Path("age")));
+    }
+
+    @Test
+    public void testGetAllAttributes(){
+        assertTrue(plan.getAllAttributes().containsAll(Arrays.asList("uid", "age", "created", "scores")));
+        assertFalse(plan.getAllAttributes().contains("scores#"));
+    }
+
+    @Test
+    public void testGetSingleValuedAttributes(){
+        assertTrue(plan.getSingleValuedAttributes().containsAll(Arrays.asList("uid", "age", "created")));
+        assertFalse(plan.getSingleValuedAttributes().contains("scores"));
+        assertFalse(plan.getSingleValuedAttributes().contains(LdapConstant.ATTRIBUTE_DN));
+    }
+
+    @Test
+    public void testGetRequiredAttributes() throws Exception{
+        Set<String> attributes = plan.getRequiredAttributes(
+                projection("{'field': 'uid'}"),
+                query("{'field': 'age', 'op': '>', 'rvalue': 30}"),
+                Sort.fromJson(json("{\"created\": \"$asc\"}")));
+
+        assertEquals(new HashSet<>(Arrays.asList("uid", "age", "created")), attributes);
+    }
+
+    @Test
+    public void testGetRequiredAttributes_SameShapeIsReused() throws Exception{
+        Projection projection = projection("{'field': 'uid'}");
+
+        Set<String> attributes = plan.getRequiredAttributes(projection, query("{'field': 'age', 'op': '=', 'rvalue': 30}"), null);
+        assertSame(attributes, plan.getRequiredAttributes(projection, query("{'field': 'age', 'op': '=', 'rvalue': 40}"), null));
+        assertSame(attributes, plan.getRequiredAttributes(projection("{'field': 'uid'}"), query("{'field': 'age', 'op': '=', 'rvalue': 40}"), null));
+
+        Set<String> otherAttributes = plan.getRequiredAttributes(projection, query("{'field': 'created', 'op': '=', 'rvalue': 30}"), null);
+        assertNotSame(attributes, otherAttributes);
+        assertTrue(otherAttributes.contains("created"));
+    }
+
+    @Test
+    public void testGetQueryTemplate_SameShapeIsReused() throws Exception{
+        QueryTemplate template = plan.getQueryTemplate(query("{'$and': [{'field': 'uid', 'op': '=', 'rvalue': 'john'}, {'field': 'age', 'op': '$in', 'values': [30]}]}"));
+        assertSame(template, plan.getQueryTemplate(query("{'$and': [{'field': 'uid', 'op': '=', 'rvalue': 'jane'}, {'field': 'age', 'op': '$in', 'values': [40, 50]}]}")));
+        assertNotSame(template, plan.getQueryTemplate(query("{'$and': [{'field': 'uid', 'op': '!=', 'rvalue': 'jane'}, {'field': 'age', 'op': '$in', 'values': [40, 50]}]}")));
+
+        assertEquals(2, template.getExpressionCount());
+        assertEquals(2, template.getPushedDownCount());
+        assertTrue(template.isPushedDown(0));
+        assertFalse(template.containsRegex(0));
+        assertTrue(template.getRequiredAttributes().containsAll(Arrays.asList("uid", "age")));
+    }
+
+    @Test
+    public void testToShape() throws Exception{
+        assertEquals(
+                json("{'field': 'scores', 'op': '$in', 'values': '?'}".replace('\'', '"')),
+                EntityPlan.toShape(json("{'field': 'scores', 'op': '$in', 'values': [1, 2]}".replace('\'', '"'))));
+        assertEquals(
+                json("{'$and': [{'field': 'uid', 'regex': '?'}, {'field': 'age', 'op': '=', 'rfield': 'scores'}]}".replace('\'', '"')),
+                EntityPlan.toShape(json("{'$and': [{'field': 'uid', 'regex': 'j.*'}, {'field': 'age', 'op': '=', 'rfield': 'scores'}]}".replace('\'', '"'))));
+    }
+
+    @Test
+    public void testGetProjector() throws Exception{
+        Projection projection = projection("{'field': '*', 'recursive': true}");
+
+        assertSame(
+                plan.getProjector(projection, new HashSet<>(Arrays.asList("a", "b")), FieldAccessRoleEvaluator.Operation.find),
+                plan.getProjector(projection, new HashSet<>(Arrays.asList("b", "a")), FieldAccessRoleEvaluator.Operation.find));
+        assertNotSame(
+                plan.getProjector(projection, new HashSet<>(Arrays.asList("a", "b")), FieldAccessRoleEvaluator.Operation.find),
+                plan.getProjector(projection, new HashSet<>(Arrays.asList("a")), FieldAccessRoleEvaluator.Operation.find));
+        assertNotSame(
+                plan.getProjector(projection, new HashSet<>(Arrays.asList("a")), FieldAccessRoleEvaluator.Operation.find),
+                plan.getProjector(projection, new HashSet<>(Arrays.asList("a")), FieldAccessRoleEvaluator.Operation.insert));
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import com.redhat.lightblue.common.ldap.LdapConnectionLease;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+
+/**
+ * Leases a single connection, without any pool behind it.
+ */
+class FakeLdapConnectionLease implements LdapConnectionLease {
+
+    private final LDAPConnection connection;
+
+    FakeLdapConnectionLease(LDAPConnection connection){
+        this.connection = connection;
+    }
+
+    @Override
+    public String getDatabase() {
+        return "test";
+    }
+
+    @Override
+    public LDAPConnection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public void exceptionCaught(LDAPException e) {
+        //Do Nothing!!
+    }
+
+    @Override
+    public long getLeasedAt() {
+        return 0;
+    }
+
+    @Override
+    public long getAge() {
+        return 0;
+    }
+
+    @Override
+    public String getOwnerThreadName() {
+        return Thread.currentThread().getName();
+    }
+
+    @Override
+    public void close() {
+        connection.close();
+    }
+
+}
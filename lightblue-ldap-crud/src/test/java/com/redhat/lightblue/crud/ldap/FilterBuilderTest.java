@@ -19,9 +19,13 @@
 package com.redhat.lightblue.crud.ldap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.function.Predicate;
 
 import org.junit.Test;
 
@@ -45,6 +49,8 @@ import com.redhat.lightblue.query.UnaryLogicalOperator;
 import com.redhat.lightblue.query.Value;
 import com.redhat.lightblue.query.ValueComparisonExpression;
 import com.redhat.lightblue.util.Path;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
 import com.unboundid.ldap.sdk.Filter;
 
 public class FilterBuilderTest {
@@ -217,11 +223,56 @@ public class FilterBuilderTest {
         new FilterBuilder(new TrivialLdapFieldNameTranslator()).build(query);
     }
 
-    @Test(expected = UnsupportedOperationException.class)
+    @Test
     public void testbuild_RegexMatchExpression(){
-        QueryExpression query = new RegexMatchExpression(null, null, false, false, false, false);
+        RegexMatchExpression query = new RegexMatchExpression(new Path("somekey"), "^123", false, false, false, false);
 
-        new FilterBuilder(new TrivialLdapFieldNameTranslator()).build(query);
+        FilterBuilder builder = new FilterBuilder(new TrivialLdapFieldNameTranslator());
+        assertEquals("(somekey=123*)", builder.build(query).toString());
+        assertFalse(builder.isApproximation(query));
+        assertNull(builder.buildPostFilter(query));
+    }
+
+    @Test
+    public void testbuild_RegexMatchExpression_Approximated(){
+        RegexMatchExpression query = new RegexMatchExpression(new Path("somekey"), "^some", false, false, false, false);
+
+        FilterBuilder builder = new FilterBuilder(new TrivialLdapFieldNameTranslator());
+        assertEquals("(somekey=some*)", builder.build(query).toString());
+        assertTrue(builder.isApproximation(query));
+
+        Predicate<Entry> postFilter = builder.buildPostFilter(query);
+        assertTrue(postFilter.test(new Entry("uid=1,dc=com", new Attribute("somekey", "somevalue"))));
+        assertFalse(postFilter.test(new Entry("uid=1,dc=com", new Attribute("somekey", "SOMEVALUE"))));
+    }
+
+    @Test
+    public void testbuild_RegexMatchExpression_Negated(){
+        QueryExpression query = new UnaryLogicalExpression(
+                UnaryLogicalOperator._not,
+                new RegexMatchExpression(new Path("somekey"), "^some", false, false, false, false));
+
+        FilterBuilder builder = new FilterBuilder(new TrivialLdapFieldNameTranslator());
+        //Approximation must not exclude anything the negated regex would match.
+        assertEquals("(!(|))", builder.build(query).toString());
+        assertTrue(builder.isApproximation(query));
+    }
+
+    @Test
+    public void testisApproximation_Or(){
+        QueryExpression query = new NaryLogicalExpression(
+                NaryLogicalOperator._or, new ArrayList<QueryExpression>(Arrays.asList(
+                        new ValueComparisonExpression(new Path("someotherkey"), BinaryComparisonOperator._eq, new Value("someothervalue")),
+                        new RegexMatchExpression(new Path("somekey"), "^some", false, false, false, false))));
+
+        assertTrue(new FilterBuilder(new TrivialLdapFieldNameTranslator()).isApproximation(query));
+    }
+
+    @Test
+    public void testisApproximation_NoRegex(){
+        QueryExpression query = new ValueComparisonExpression(new Path("somekey"), BinaryComparisonOperator._eq, new Value("somevalue"));
+
+        assertFalse(new FilterBuilder(new TrivialLdapFieldNameTranslator()).isApproximation(query));
     }
 
     @Test(expected = UnsupportedOperationException.class)
@@ -231,11 +282,74 @@ public class FilterBuilderTest {
         new FilterBuilder(new TrivialLdapFieldNameTranslator()).build(query);
     }
 
-    @Test(expected = UnsupportedOperationException.class)
+    @Test
     public void testbuild_AllMatchExpression(){
         QueryExpression query = new AllMatchExpression();
 
-        new FilterBuilder(new TrivialLdapFieldNameTranslator()).build(query);
+        Filter filter = new FilterBuilder(new TrivialLdapFieldNameTranslator()).build(query);
+        assertEquals("(&)", filter.toString());
+    }
+
+    @Test
+    public void testbuildApproximation(){
+        QueryExpression query = new NaryLogicalExpression(
+                NaryLogicalOperator._and, new ArrayList<QueryExpression>(Arrays.asList(
+                        new ValueComparisonExpression(new Path("somekey"), BinaryComparisonOperator._eq, new Value("somevalue")),
+                        new FieldComparisonExpression(new Path("somekey"), BinaryComparisonOperator._eq, new Path("someotherkey")))));
+
+        Filter filter = new FilterBuilder(new TrivialLdapFieldNameTranslator()).buildApproximation(query);
+        assertEquals("(&(somekey=somevalue)(&))", filter.toString());
+    }
+
+    @Test
+    public void testbuildApproximation_Negated(){
+        QueryExpression query = new UnaryLogicalExpression(
+                UnaryLogicalOperator._not,
+                new FieldComparisonExpression(new Path("somekey"), BinaryComparisonOperator._eq, new Path("someotherkey")));
+
+        Filter filter = new FilterBuilder(new TrivialLdapFieldNameTranslator()).buildApproximation(query);
+        //Approximation must not exclude anything the negated comparison would match.
+        assertEquals("(!(|))", filter.toString());
+    }
+
+    @Test
+    public void testcanBuild(){
+        QueryExpression comparison = new FieldComparisonExpression(new Path("somekey"), BinaryComparisonOperator._eq, new Path("someotherkey"));
+
+        assertTrue(FilterBuilder.canBuild(
+                new ValueComparisonExpression(new Path("somekey"), BinaryComparisonOperator._eq, new Value("somevalue"))));
+        assertFalse(FilterBuilder.canBuild(comparison));
+        assertFalse(FilterBuilder.canBuild(new UnaryLogicalExpression(UnaryLogicalOperator._not, comparison)));
+        assertFalse(FilterBuilder.canBuild(new NaryLogicalExpression(
+                NaryLogicalOperator._or, new ArrayList<QueryExpression>(Arrays.asList(new AllMatchExpression(), comparison)))));
+    }
+
+    @Test
+    public void testcompile_BindsValuesOfSameShape(){
+        FilterTemplate template = new FilterBuilder(new TrivialLdapFieldNameTranslator()).compile(new NaryLogicalExpression(
+                NaryLogicalOperator._and, new ArrayList<QueryExpression>(Arrays.asList(
+                        new ValueComparisonExpression(new Path("somekey"), BinaryComparisonOperator._eq, new Value("somevalue")),
+                        new NaryValueRelationalExpression(new Path("someotherkey"), NaryRelationalOperator._in,
+                                Arrays.asList(new Value("value1")))))));
+
+        Filter filter = template.bind(new NaryLogicalExpression(
+                NaryLogicalOperator._and, new ArrayList<QueryExpression>(Arrays.asList(
+                        new ValueComparisonExpression(new Path("somekey"), BinaryComparisonOperator._eq, new Value("othervalue")),
+                        new NaryValueRelationalExpression(new Path("someotherkey"), NaryRelationalOperator._in,
+                                Arrays.asList(new Value("value2"), new Value("value3")))))));
+        assertEquals("(&(somekey=othervalue)(|(someotherkey=value2)(someotherkey=value3)))", filter.toString());
+    }
+
+    @Test
+    public void testcompile_ValuesAreEscaped(){
+        FilterTemplate template = new FilterBuilder(new TrivialLdapFieldNameTranslator()).compile(
+                new ValueComparisonExpression(new Path("somekey"), BinaryComparisonOperator._eq, new Value("somevalue")));
+
+        Filter filter = template.bind(
+                new ValueComparisonExpression(new Path("somekey"), BinaryComparisonOperator._eq, new Value("*)(uid=*")));
+        assertEquals(Filter.FILTER_TYPE_EQUALITY, filter.getFilterType());
+        assertEquals("*)(uid=*", filter.getAssertionValue());
+        assertEquals("(somekey=\\2a\\29\\28uid=\\2a)", filter.toString());
     }
 
 }
@@ -0,0 +1,179 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.redhat.lightblue.common.ldap.LdapIndexType;
+import com.redhat.lightblue.ldap.test.LdapServerExternalResource;
+import com.redhat.lightblue.ldap.test.LdapServerExternalResource.InMemoryLdapServer;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchScope;
+
+@InMemoryLdapServer
+public class FilterOptimizerTest {
+
+    private static final Set<String> SINGLE_VALUED = new HashSet<>(Arrays.asList("uid", "age"));
+
+    /** Filters as the FilterBuilder would build them. */
+    private static final String[] FILTERS = {
+        "(&(uid=p1)(&(cn=one)(age>=1)))",
+        "(|(uid=p1)(|(uid=p2)(uid=p1)))",
+        "(!(!(cn=two)))",
+        "(&(uid=p1)(|))",
+        "(|(uid=p1)(&))",
+        "(!(|))",
+        "(!(&(cn=one)(|)))",
+        "(|(uid=p3))",
+        "(&(age=*)(!(age<=3)))",
+        "(&(age=*)(!(age>=3)))",
+        "(&(cn=*)(!(age<=3)))",
+        "(!(age<=3))",
+        "(&(cn=*)(!(cn<=one)))",
+        "(&(!(cn=one))(age=*)(uid>=p2)(cn=two))",
+        "(&(age>=2)(!(age<=2))(!(age>=5)))"
+    };
+
+    @Rule
+    public LdapServerExternalResource ldapServer = LdapServerExternalResource.createDefaultInstance();
+
+    @Before
+    public void before() throws Exception{
+        LDAPConnection connection = ldapServer.getLDAPConnection();
+        for(int i = 1; i <= 6; i++){
+            List<Attribute> attributes = new ArrayList<>(Arrays.asList(
+                    new Attribute("objectClass", "top", "person", "organizationalPerson", "inetOrgPerson"),
+                    new Attribute("uid", "p" + i),
+                    new Attribute("sn", "p" + i),
+                    (i % 2 == 0) ? new Attribute("cn", "two") : new Attribute("cn", "one", "two")));
+            //p6 has no age at all.
+            if(i != 6){
+                attributes.add(new Attribute("age", String.valueOf(i)));
+            }
+            connection.add("uid=p" + i + ",dc=example,dc=com", attributes);
+        }
+    }
+
+    private static String optimize(String filter) throws Exception{
+        return new FilterOptimizer(SINGLE_VALUED, true).optimize(Filter.create(filter)).toString();
+    }
+
+    private Set<String> search(Filter filter) throws Exception{
+        Set<String> dns = new HashSet<>();
+        for(SearchResultEntry entry : ldapServer.getLDAPConnection().search("dc=com", SearchScope.SUB, filter).getSearchEntries()){
+            dns.add(entry.getDN());
+        }
+        return dns;
+    }
+
+    @Test
+    public void testOptimize_Flattens() throws Exception{
+        assertEquals("(&(uid=p1)(cn=one)(age>=1))", optimize("(&(uid=p1)(&(cn=one)(age>=1)))"));
+    }
+
+    @Test
+    public void testOptimize_RemovesDuplicates() throws Exception{
+        assertEquals("(|(uid=p1)(uid=p2))", optimize("(|(uid=p1)(|(uid=p2)(uid=p1)))"));
+    }
+
+    @Test
+    public void testOptimize_CollapsesSingleComponents() throws Exception{
+        assertEquals("(uid=p3)", optimize("(|(uid=p3))"));
+        assertEquals("(cn=two)", optimize("(!(!(cn=two)))"));
+    }
+
+    @Test
+    public void testOptimize_FoldsConstants() throws Exception{
+        assertEquals("(|)", optimize("(&(uid=p1)(|))"));
+        assertEquals("(&)", optimize("(|(uid=p1)(&))"));
+        assertEquals("(&)", optimize("(!(|))"));
+        assertEquals("(&)", optimize("(!(&(cn=one)(|)))"));
+    }
+
+    @Test
+    public void testOptimize_FoldsConstants_AbsoluteFiltersNotSupported() throws Exception{
+        FilterOptimizer optimizer = new FilterOptimizer(SINGLE_VALUED, false);
+
+        assertEquals("(!(objectClass=*))", optimizer.optimize(Filter.create("(&(uid=p1)(|))")).toString());
+        assertEquals("(objectClass=*)", optimizer.optimize(Filter.create("(|(uid=p1)(&))")).toString());
+    }
+
+    @Test
+    public void testOptimize_NegatedRange() throws Exception{
+        assertEquals("(&(age>=3)(!(age=3)))", optimize("(&(age=*)(!(age<=3)))"));
+        assertEquals("(&(age<=3)(!(age=3)))", optimize("(&(age=*)(!(age>=3)))"));
+    }
+
+    @Test
+    public void testOptimize_NegatedRange_PresenceNotKnown() throws Exception{
+        assertEquals("(!(age<=3))", optimize("(!(age<=3))"));
+        assertEquals("(&(cn=*)(!(age<=3)))", optimize("(&(cn=*)(!(age<=3)))"));
+    }
+
+    @Test
+    public void testOptimize_NegatedRange_MultiValued() throws Exception{
+        assertEquals("(&(cn=*)(!(cn<=one)))", optimize("(&(cn=*)(!(cn<=one)))"));
+    }
+
+    @Test
+    public void testOptimize_OrdersBySelectivity() throws Exception{
+        assertEquals("(&(cn=two)(uid>=p2)(age=*)(!(cn=one)))", optimize("(&(!(cn=one))(age=*)(uid>=p2)(cn=two))"));
+    }
+
+    @Test
+    public void testOptimize_OrdersIndexedFirst() throws Exception{
+        FilterOptimizer optimizer = new FilterOptimizer(SINGLE_VALUED, true,
+                new IndexClassifier(Collections.singletonMap("uid", EnumSet.of(LdapIndexType.ORDERING))));
+
+        assertEquals("(&(uid>=p2)(cn=two)(age=*)(!(cn=one)))",
+                optimizer.optimize(Filter.create("(&(!(cn=one))(age=*)(uid>=p2)(cn=two))")).toString());
+    }
+
+    /**
+     * The optimized filters must match exactly the same entries as the filters they replace.
+     */
+    @Test
+    public void testOptimize_MatchesSameEntries() throws Exception{
+        for(boolean absoluteFiltersSupported : new boolean[]{true, false}){
+            FilterOptimizer optimizer = new FilterOptimizer(SINGLE_VALUED, absoluteFiltersSupported);
+            for(String filter : FILTERS){
+                Filter original = Filter.create(filter);
+                Filter optimized = optimizer.optimize(original);
+
+                assertEquals(filter + " -> " + optimized, search(original), search(optimized));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.unboundid.ldap.sdk.Filter;
+
+public class FilterSplitterTest {
+
+    private static List<String> split(String filter, int maxComponents) throws Exception{
+        List<String> split = new ArrayList<>();
+        for (Filter chunk : FilterSplitter.split(Filter.create(filter), maxComponents)){
+            split.add(chunk.toString());
+        }
+        return split;
+    }
+
+    @Test
+    public void testSplit_Or() throws Exception{
+        assertEquals(
+                Arrays.asList("(|(uid=a)(uid=b))", "(|(uid=c)(uid=d))", "(uid=e)"),
+                split("(|(uid=a)(uid=b)(uid=c)(uid=d)(uid=e))", 2));
+    }
+
+    @Test
+    public void testSplit_OrInAnd_LargestIsSplit() throws Exception{
+        assertEquals(
+                Arrays.asList(
+                        "(&(cn=x)(|(age=1)(age=2))(|(uid=a)(uid=b)))",
+                        "(&(cn=x)(|(age=1)(age=2))(uid=c))"),
+                split("(&(cn=x)(|(age=1)(age=2))(|(uid=a)(uid=b)(uid=c)))", 2));
+    }
+
+    @Test
+    public void testSplit_WithinLimit() throws Exception{
+        assertEquals(
+                Arrays.asList("(|(uid=a)(uid=b))"),
+                split("(|(uid=a)(uid=b))", 2));
+    }
+
+    @Test
+    public void testSplit_NegatedOrIsNotSplit() throws Exception{
+        assertEquals(
+                Arrays.asList("(!(|(uid=a)(uid=b)(uid=c)))"),
+                split("(!(|(uid=a)(uid=b)(uid=c)))", 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSplit_InvalidMaxComponents() throws Exception{
+        split("(uid=a)", 0);
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.redhat.lightblue.common.ldap.LdapIndexType;
+import com.unboundid.ldap.sdk.Filter;
+
+public class IndexClassifierTest {
+
+    private static final IndexClassifier CLASSIFIER;
+    static{
+        Map<String, Set<LdapIndexType>> indexes = new HashMap<>();
+        indexes.put("uid", EnumSet.of(LdapIndexType.EQUALITY, LdapIndexType.PRESENCE));
+        indexes.put("cn", EnumSet.of(LdapIndexType.SUBSTRING));
+        indexes.put("age", EnumSet.of(LdapIndexType.ORDERING));
+        indexes.put("objectClass", EnumSet.of(LdapIndexType.EQUALITY, LdapIndexType.PRESENCE));
+        CLASSIFIER = new IndexClassifier(indexes);
+    }
+
+    private static boolean isIndexed(String filter) throws Exception{
+        return CLASSIFIER.isIndexed(Filter.create(filter));
+    }
+
+    @Test
+    public void testIsIndexed_Comparisons() throws Exception{
+        assertTrue(isIndexed("(uid=jdoe)"));
+        assertTrue(isIndexed("(UID=jdoe)"));
+        assertTrue(isIndexed("(uid=*)"));
+        assertTrue(isIndexed("(cn=j*)"));
+        assertTrue(isIndexed("(age>=30)"));
+        assertTrue(isIndexed("(age<=30)"));
+
+        assertFalse(isIndexed("(uid=j*)"));
+        assertFalse(isIndexed("(cn=john)"));
+        assertFalse(isIndexed("(sn=doe)"));
+        assertFalse(isIndexed("(uid~=jdoe)"));
+        assertFalse(isIndexed("(!(uid=jdoe))"));
+    }
+
+    @Test
+    public void testIsIndexed_ObjectClassPresence() throws Exception{
+        assertFalse(isIndexed("(objectClass=*)"));
+        assertTrue(isIndexed("(objectClass=person)"));
+    }
+
+    @Test
+    public void testIsIndexed_And() throws Exception{
+        assertTrue(isIndexed("(&(sn=doe)(uid=jdoe))"));
+        assertFalse(isIndexed("(&(sn=doe)(!(uid=jdoe)))"));
+        assertFalse(isIndexed("(&)"));
+    }
+
+    @Test
+    public void testIsIndexed_Or() throws Exception{
+        assertTrue(isIndexed("(|(uid=jdoe)(cn=j*))"));
+        assertFalse(isIndexed("(|(uid=jdoe)(sn=doe))"));
+        assertTrue(isIndexed("(|)"));
+    }
+
+}
@@ -22,11 +22,20 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 import org.junit.Test;
 
 import com.redhat.lightblue.common.ldap.LdapConstant;
 import com.redhat.lightblue.common.ldap.LdapDataStore;
+import com.redhat.lightblue.common.ldap.LdapEntitySettings;
 import com.redhat.lightblue.common.ldap.LdapFieldNameTranslator;
+import com.redhat.lightblue.common.ldap.LdapIndexType;
+import com.redhat.lightblue.common.ldap.LdapSaveStrategy;
+import com.redhat.lightblue.common.ldap.LdapUnindexedQueryPolicy;
 import com.redhat.lightblue.crud.ldap.model.TrivialLdapFieldNameTranslator;
 import com.redhat.lightblue.metadata.EntityMetadata;
 import com.redhat.lightblue.test.metadata.FakeDataStore;
@@ -73,6 +82,63 @@ public class LdapCrudUtilTest {
         LdapCrudUtil.getLdapFieldNameTranslator(md);
     }
 
+    @Test
+    public void testGetSaveStrategy_NoProperties(){
+        assertEquals(LdapSaveStrategy.CHECK_EXISTING, LdapCrudUtil.getSaveStrategy(new EntityMetadata("fake")));
+    }
+
+    @Test
+    public void testGetSaveStrategy(){
+        EntityMetadata md = createTestEntityMetadataWithLdapProperty(new LdapEntitySettings() {
+
+            @Override
+            public LdapSaveStrategy getSaveStrategy() {
+                return LdapSaveStrategy.INSERT_FIRST;
+            }
+
+            @Override
+            public Map<String, Set<LdapIndexType>> getIndexes() {
+                return null;
+            }
+
+            @Override
+            public LdapUnindexedQueryPolicy getUnindexedQueryPolicy() {
+                return null;
+            }
+
+        });
+
+        assertEquals(LdapSaveStrategy.INSERT_FIRST, LdapCrudUtil.getSaveStrategy(md));
+        assertTrue(LdapCrudUtil.getIndexes(md).isEmpty());
+        assertEquals(LdapUnindexedQueryPolicy.WARN, LdapCrudUtil.getUnindexedQueryPolicy(md));
+    }
+
+    @Test
+    public void testGetIndexes(){
+        Map<String, Set<LdapIndexType>> indexes = Collections.singletonMap("uid", EnumSet.of(LdapIndexType.EQUALITY));
+        EntityMetadata md = createTestEntityMetadataWithLdapProperty(new LdapEntitySettings() {
+
+            @Override
+            public LdapSaveStrategy getSaveStrategy() {
+                return null;
+            }
+
+            @Override
+            public Map<String, Set<LdapIndexType>> getIndexes() {
+                return indexes;
+            }
+
+            @Override
+            public LdapUnindexedQueryPolicy getUnindexedQueryPolicy() {
+                return LdapUnindexedQueryPolicy.REJECT;
+            }
+
+        });
+
+        assertEquals(indexes, LdapCrudUtil.getIndexes(md));
+        assertEquals(LdapUnindexedQueryPolicy.REJECT, LdapCrudUtil.getUnindexedQueryPolicy(md));
+    }
+
     @Test
     public void testGetLdapDataStore(){
         EntityMetadata md = new EntityMetadata("fake");
@@ -0,0 +1,107 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.redhat.lightblue.common.ldap.LdapConnectionLease;
+import com.redhat.lightblue.ldap.test.LdapServerExternalResource;
+import com.redhat.lightblue.ldap.test.LdapServerExternalResource.InMemoryLdapServer;
+import com.unboundid.ldap.sdk.AddRequest;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.LDAPException;
+
+@InMemoryLdapServer
+public class LdapTransactionTest {
+
+    @Rule
+    public LdapServerExternalResource ldapServer = LdapServerExternalResource.createDefaultInstance();
+
+    private static AddRequest createAddRequest(String uid){
+        return new AddRequest("uid=" + uid + ",dc=example,dc=com",
+                new Attribute("objectClass", "top", "person", "organizationalPerson", "inetOrgPerson"),
+                new Attribute("uid", uid),
+                new Attribute("cn", uid),
+                new Attribute("sn", uid));
+    }
+
+    @Test
+    public void testCommit() throws Exception{
+        try (LdapConnectionLease lease = new FakeLdapConnectionLease(ldapServer.getLDAPConnection())) {
+            LdapTransaction transaction = LdapTransaction.begin(lease);
+            for (String uid : new String[]{"john.doe", "jane.doe"}) {
+                AddRequest addRequest = createAddRequest(uid);
+                transaction.attachTo(addRequest);
+                lease.getConnection().add(addRequest);
+            }
+
+            //Nothing is applied until the transaction is committed.
+            assertNull(lease.getConnection().getEntry("uid=john.doe,dc=example,dc=com"));
+
+            transaction.commit();
+            assertTrue(transaction.isEnded());
+
+            assertNotNull(lease.getConnection().getEntry("uid=john.doe,dc=example,dc=com"));
+            assertNotNull(lease.getConnection().getEntry("uid=jane.doe,dc=example,dc=com"));
+        }
+    }
+
+    @Test
+    public void testClose_AbortsOpenTransaction() throws Exception{
+        try (LdapConnectionLease lease = new FakeLdapConnectionLease(ldapServer.getLDAPConnection())) {
+            try (LdapTransaction transaction = LdapTransaction.begin(lease)) {
+                AddRequest addRequest = createAddRequest("john.doe");
+                transaction.attachTo(addRequest);
+                lease.getConnection().add(addRequest);
+            }
+
+            assertNull(lease.getConnection().getEntry("uid=john.doe,dc=example,dc=com"));
+        }
+    }
+
+    @Test
+    public void testCommit_AllOrNothing() throws Exception{
+        try (LdapConnectionLease lease = new FakeLdapConnectionLease(ldapServer.getLDAPConnection())) {
+            LdapTransaction transaction = LdapTransaction.begin(lease);
+            for (String uid : new String[]{"john.doe", "john.doe"}) {
+                AddRequest addRequest = createAddRequest(uid);
+                transaction.attachTo(addRequest);
+                lease.getConnection().add(addRequest);
+            }
+
+            try {
+                transaction.commit();
+                fail("Expected duplicate entry to fail the transaction.");
+            } catch (LDAPException e) {
+                //Expected
+            }
+
+            assertTrue(transaction.isEnded());
+            //The first add was rolled back along with the duplicate.
+            assertNull(lease.getConnection().getEntry("uid=john.doe,dc=example,dc=com"));
+        }
+    }
+
+}
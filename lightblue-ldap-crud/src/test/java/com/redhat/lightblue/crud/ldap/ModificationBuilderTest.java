@@ -0,0 +1,108 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static com.redhat.lightblue.util.JsonUtils.json;
+import static com.redhat.lightblue.util.test.AbstractJsonNodeTest.loadResource;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.lightblue.common.ldap.LdapConstant;
+import com.redhat.lightblue.crud.ldap.model.TrivialLdapFieldNameTranslator;
+import com.redhat.lightblue.metadata.EntityMetadata;
+import com.redhat.lightblue.query.UpdateExpression;
+import com.redhat.lightblue.test.MetadataUtil;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+
+public class ModificationBuilderTest {
+
+    private ModificationBuilder builder;
+
+    @Before
+    public void before() throws Exception{
+        EntityMetadata md = MetadataUtil.createEntityMetadata(LdapConstant.BACKEND,
+                json(loadResource("./metadata/modificationBuilderTest-metadata.json"), true), null, null);
+        builder = new ModificationBuilder(md, new TrivialLdapFieldNameTranslator());
+    }
+
+    private List<Modification> build(String update) throws Exception{
+        return builder.build(UpdateExpression.fromJson(json(update.replace('\'', '"'))));
+    }
+
+    @Test
+    public void testSet() throws Exception{
+        List<Modification> modifications = build("{'$set': {'cn': 'John Doe'}}");
+
+        assertEquals(1, modifications.size());
+        assertEquals(ModificationType.REPLACE, modifications.get(0).getModificationType());
+        assertEquals("cn", modifications.get(0).getAttributeName());
+        assertArrayEquals(new String[]{"John Doe"}, modifications.get(0).getValues());
+    }
+
+    @Test
+    public void testUnset() throws Exception{
+        List<Modification> modifications = build("{'$unset': 'description'}");
+
+        assertEquals(1, modifications.size());
+        assertEquals(ModificationType.DELETE, modifications.get(0).getModificationType());
+        assertEquals("description", modifications.get(0).getAttributeName());
+        assertEquals(0, modifications.get(0).getValues().length);
+    }
+
+    @Test
+    public void testAppend() throws Exception{
+        List<Modification> modifications = build("{'$append': {'objectClass': ['top', 'person']}}");
+
+        assertEquals(1, modifications.size());
+        assertEquals(ModificationType.ADD, modifications.get(0).getModificationType());
+        assertEquals("objectClass", modifications.get(0).getAttributeName());
+        assertArrayEquals(new String[]{"top", "person"}, modifications.get(0).getValues());
+    }
+
+    @Test
+    public void testList() throws Exception{
+        List<Modification> modifications = build("[{'$set': {'cn': 'John Doe'}}, {'$unset': 'description'}]");
+
+        assertEquals(2, modifications.size());
+        assertEquals(ModificationType.REPLACE, modifications.get(0).getModificationType());
+        assertEquals(ModificationType.DELETE, modifications.get(1).getModificationType());
+    }
+
+    @Test
+    public void testNotApplicable() throws Exception{
+        //Depends on the current position of values.
+        assertNull(build("{'$insert': {'objectClass.0': 'top'}}"));
+        //Depends on the current value of another field.
+        assertNull(build("{'$set': {'cn': {'$valueof': 'uid'}}}"));
+        //Binary values cannot be sent as strings.
+        assertNull(build("{'$set': {'photo': 'aGVsbG8='}}"));
+        //Unknown field.
+        assertNull(build("{'$set': {'fake': 'value'}}"));
+        //A single unsupported expression prevents the whole update from being pushed down.
+        assertNull(build("[{'$set': {'cn': 'John Doe'}}, {'$insert': {'objectClass.0': 'top'}}]"));
+    }
+
+}
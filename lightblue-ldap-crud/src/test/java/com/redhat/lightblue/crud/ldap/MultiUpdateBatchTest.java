@@ -0,0 +1,201 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.redhat.lightblue.common.ldap.LdapMultiUpdateMode;
+import com.unboundid.asn1.ASN1Element;
+import com.unboundid.asn1.ASN1Enumerated;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.asn1.ASN1Sequence;
+import com.unboundid.ldap.sdk.AddRequest;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Control;
+import com.unboundid.ldap.sdk.DeleteRequest;
+import com.unboundid.ldap.sdk.ExtendedRequest;
+import com.unboundid.ldap.sdk.ExtendedResult;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPResult;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.ModifyRequest;
+import com.unboundid.ldap.sdk.ReadOnlyEntry;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.controls.PostReadRequestControl;
+import com.unboundid.ldap.sdk.controls.PostReadResponseControl;
+
+public class MultiUpdateBatchTest {
+
+    private static final String DN = "uid=john.doe,dc=example,dc=com";
+
+    private static final byte TYPE_ADD_RESPONSE = 0x69;
+    private static final byte TYPE_MODIFY_RESPONSE = 0x67;
+    private static final byte TYPE_DELETE_RESPONSE = 0x6B;
+
+    private static final int CHANGES_APPLIED_NONE = 0;
+    private static final int CHANGES_APPLIED_ALL = 1;
+    private static final int CHANGES_APPLIED_PARTIAL = 2;
+
+    private static MultiUpdateBatch createBatch(LdapMultiUpdateMode mode){
+        MultiUpdateBatch batch = new MultiUpdateBatch(mode);
+        batch.add(new AddRequest(DN, new Attribute("cn", "John Doe")), (LDAPResult result) -> {});
+        batch.add(new ModifyRequest(DN, new Modification(ModificationType.REPLACE, "cn", "Johnny Doe")), (LDAPResult result) -> {});
+        batch.add(new DeleteRequest(DN), (LDAPResult result) -> {});
+        return batch;
+    }
+
+    private static ASN1Element createResponse(byte type, ResultCode resultCode, Control... controls){
+        ASN1Sequence result = new ASN1Sequence(type,
+                new ASN1Enumerated(resultCode.intValue()),
+                new ASN1OctetString(),
+                new ASN1OctetString());
+        if(controls.length == 0){
+            return new ASN1Sequence(result);
+        }
+        return new ASN1Sequence(result, Control.encodeControls(controls));
+    }
+
+    private static ExtendedResult createResult(ResultCode resultCode, int changesApplied, ASN1Element... responses){
+        return new ExtendedResult(1, resultCode, null, null, null, null,
+                new ASN1OctetString(new ASN1Sequence(
+                        new ASN1Enumerated(changesApplied),
+                        new ASN1Sequence(responses)).encode()),
+                null);
+    }
+
+    @Test
+    public void testToExtendedRequest() throws Exception{
+        MultiUpdateBatch batch = createBatch(LdapMultiUpdateMode.ABORT_ON_ERROR);
+
+        ExtendedRequest request = batch.toExtendedRequest();
+        assertEquals(MultiUpdateBatch.MULTI_UPDATE_REQUEST_OID, request.getOID());
+
+        ASN1Element[] valueElements = ASN1Sequence.decodeAsSequence(request.getValue().getValue()).elements();
+        assertEquals(LdapMultiUpdateMode.ABORT_ON_ERROR.getErrorBehavior(),
+                ASN1Enumerated.decodeAsEnumerated(valueElements[0]).intValue());
+
+        ASN1Element[] requests = ASN1Sequence.decodeAsSequence(valueElements[1]).elements();
+        assertEquals(3, requests.length);
+        assertEquals(0x68, ASN1Sequence.decodeAsSequence(requests[0]).elements()[0].getType());
+        assertEquals(0x66, ASN1Sequence.decodeAsSequence(requests[1]).elements()[0].getType());
+
+        ASN1Element delete = ASN1Sequence.decodeAsSequence(requests[2]).elements()[0];
+        assertEquals(0x4A, delete.getType());
+        assertEquals(DN, ASN1OctetString.decodeAsOctetString(delete).stringValue());
+    }
+
+    @Test
+    public void testToExtendedRequest_WithControls() throws Exception{
+        MultiUpdateBatch batch = new MultiUpdateBatch(LdapMultiUpdateMode.ATOMIC);
+        AddRequest addRequest = new AddRequest(DN, new Attribute("cn", "John Doe"));
+        addRequest.addControl(new PostReadRequestControl("cn"));
+        batch.add(addRequest, (LDAPResult result) -> {});
+
+        ASN1Element[] valueElements = ASN1Sequence.decodeAsSequence(batch.toExtendedRequest().getValue().getValue()).elements();
+        ASN1Element[] requestElements = ASN1Sequence.decodeAsSequence(
+                ASN1Sequence.decodeAsSequence(valueElements[1]).elements()[0]).elements();
+
+        assertEquals(2, requestElements.length);
+        Control[] controls = Control.decodeControls(ASN1Sequence.decodeAsSequence(requestElements[1]));
+        assertEquals(PostReadRequestControl.POST_READ_REQUEST_OID, controls[0].getOID());
+    }
+
+    @Test
+    public void testParseResults_AllApplied() throws Exception{
+        MultiUpdateBatch batch = createBatch(LdapMultiUpdateMode.ATOMIC);
+
+        List<LDAPResult> results = batch.parseResults(createResult(ResultCode.SUCCESS, CHANGES_APPLIED_ALL,
+                createResponse(TYPE_ADD_RESPONSE, ResultCode.SUCCESS),
+                createResponse(TYPE_MODIFY_RESPONSE, ResultCode.SUCCESS),
+                createResponse(TYPE_DELETE_RESPONSE, ResultCode.SUCCESS)));
+
+        assertEquals(3, results.size());
+        for(LDAPResult result : results){
+            assertEquals(ResultCode.SUCCESS, result.getResultCode());
+            assertNull(result.getDiagnosticMessage());
+        }
+    }
+
+    @Test
+    public void testParseResults_ContinueOnError() throws Exception{
+        MultiUpdateBatch batch = createBatch(LdapMultiUpdateMode.CONTINUE_ON_ERROR);
+
+        List<LDAPResult> results = batch.parseResults(createResult(ResultCode.SUCCESS, CHANGES_APPLIED_PARTIAL,
+                createResponse(TYPE_ADD_RESPONSE, ResultCode.ENTRY_ALREADY_EXISTS),
+                createResponse(TYPE_MODIFY_RESPONSE, ResultCode.SUCCESS),
+                createResponse(TYPE_DELETE_RESPONSE, ResultCode.SUCCESS)));
+
+        assertEquals(ResultCode.ENTRY_ALREADY_EXISTS, results.get(0).getResultCode());
+        assertEquals(ResultCode.SUCCESS, results.get(1).getResultCode());
+        assertEquals(ResultCode.SUCCESS, results.get(2).getResultCode());
+    }
+
+    @Test
+    public void testParseResults_AbortOnError_RemainingWritesNotAttempted() throws Exception{
+        MultiUpdateBatch batch = createBatch(LdapMultiUpdateMode.ABORT_ON_ERROR);
+
+        List<LDAPResult> results = batch.parseResults(createResult(ResultCode.SUCCESS, CHANGES_APPLIED_NONE,
+                createResponse(TYPE_ADD_RESPONSE, ResultCode.ENTRY_ALREADY_EXISTS)));
+
+        assertEquals(3, results.size());
+        assertEquals(ResultCode.ENTRY_ALREADY_EXISTS, results.get(0).getResultCode());
+        assertEquals(ResultCode.CANCELED, results.get(1).getResultCode());
+        assertEquals(ResultCode.CANCELED, results.get(2).getResultCode());
+    }
+
+    @Test
+    public void testParseResults_Atomic_SuccessesRolledBack() throws Exception{
+        MultiUpdateBatch batch = createBatch(LdapMultiUpdateMode.ATOMIC);
+
+        List<LDAPResult> results = batch.parseResults(createResult(ResultCode.SUCCESS, CHANGES_APPLIED_NONE,
+                createResponse(TYPE_ADD_RESPONSE, ResultCode.SUCCESS),
+                createResponse(TYPE_MODIFY_RESPONSE, ResultCode.NO_SUCH_OBJECT)));
+
+        assertEquals(ResultCode.CANCELED, results.get(0).getResultCode());
+        assertEquals(ResultCode.NO_SUCH_OBJECT, results.get(1).getResultCode());
+        assertEquals(ResultCode.CANCELED, results.get(2).getResultCode());
+    }
+
+    @Test
+    public void testParseResults_ResponseControls() throws Exception{
+        MultiUpdateBatch batch = new MultiUpdateBatch(LdapMultiUpdateMode.ATOMIC);
+        batch.add(new AddRequest(DN, new Attribute("cn", "John Doe")), (LDAPResult result) -> {});
+
+        List<LDAPResult> results = batch.parseResults(createResult(ResultCode.SUCCESS, CHANGES_APPLIED_ALL,
+                createResponse(TYPE_ADD_RESPONSE, ResultCode.SUCCESS,
+                        new PostReadResponseControl(new ReadOnlyEntry(DN, new Attribute("cn", "John Doe"))))));
+
+        PostReadResponseControl control = PostReadResponseControl.get(results.get(0));
+        assertEquals("John Doe", control.getEntry().getAttributeValue("cn"));
+    }
+
+    @Test(expected = LDAPException.class)
+    public void testParseResults_FailedWithoutValue() throws Exception{
+        MultiUpdateBatch batch = createBatch(LdapMultiUpdateMode.ATOMIC);
+
+        batch.parseResults(new ExtendedResult(1, ResultCode.UNWILLING_TO_PERFORM, null, null, null, null, null, null));
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.unboundid.ldap.sdk.AddRequest;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Control;
+import com.unboundid.ldap.sdk.LDAPResult;
+import com.unboundid.ldap.sdk.ReadOnlyEntry;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.controls.PostReadRequestControl;
+import com.unboundid.ldap.sdk.controls.PostReadResponseControl;
+
+public class PostReadEntriesTest {
+
+    private static final String DN = "uid=john.doe,dc=example,dc=com";
+
+    private static LDAPResult createResult(Control... controls){
+        return new LDAPResult(1, ResultCode.SUCCESS, null, null, null, controls);
+    }
+
+    @Test
+    public void testCollect(){
+        PostReadEntries postReads = new PostReadEntries(new PostReadRequestControl("uid", "cn"));
+
+        AddRequest addRequest = new AddRequest(DN, new Attribute("uid", "john.doe"));
+        postReads.attachTo(addRequest);
+        assertTrue(addRequest.hasControl(PostReadRequestControl.POST_READ_REQUEST_OID));
+
+        postReads.collect(DN, createResult(new PostReadResponseControl(
+                new ReadOnlyEntry(DN, new Attribute("uid", "john.doe"), new Attribute("cn", "John Doe")))));
+
+        assertTrue(postReads.contains(DN));
+        assertEquals("John Doe", postReads.get(DN).getAttributeValue("cn"));
+    }
+
+    @Test
+    public void testCollect_NoResponseControl(){
+        PostReadEntries postReads = new PostReadEntries(new PostReadRequestControl("uid"));
+
+        postReads.collect(DN, createResult());
+
+        assertFalse(postReads.contains(DN));
+    }
+
+    @Test
+    public void testDisabled(){
+        PostReadEntries postReads = new PostReadEntries(null);
+
+        AddRequest addRequest = new AddRequest(DN, new Attribute("uid", "john.doe"));
+        postReads.attachTo(addRequest);
+        assertFalse(addRequest.hasControl(PostReadRequestControl.POST_READ_REQUEST_OID));
+
+        postReads.collect(DN, createResult(new PostReadResponseControl(
+                new ReadOnlyEntry(DN, new Attribute("uid", "john.doe")))));
+
+        assertFalse(postReads.contains(DN));
+    }
+
+}
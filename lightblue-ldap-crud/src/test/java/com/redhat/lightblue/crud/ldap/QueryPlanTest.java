@@ -0,0 +1,154 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static com.redhat.lightblue.util.JsonUtils.json;
+import static com.redhat.lightblue.util.test.AbstractJsonNodeTest.loadResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.redhat.lightblue.common.ldap.LdapConstant;
+import com.redhat.lightblue.common.ldap.LdapDataStore;
+import com.redhat.lightblue.metadata.EntityMetadata;
+import com.redhat.lightblue.query.QueryExpression;
+import com.redhat.lightblue.test.MetadataUtil;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+
+public class QueryPlanTest {
+
+    private EntityPlan entityPlan;
+    private FilterOptimizer optimizer;
+
+    @Before
+    public void before() throws Exception{
+        EntityMetadata md = MetadataUtil.createEntityMetadata(LdapConstant.BACKEND,
+                json(loadResource("./metadata/documentComparatorTest-metadata.json"), true), null, null);
+        entityPlan = new EntityPlan(md);
+        optimizer = new FilterOptimizer(entityPlan.getSingleValuedAttributes(), true);
+    }
+
+    private static QueryExpression query(String json) throws Exception{
+        return QueryExpression.fromJson(json(json.replace('\'', '"')));
+    }
+
+    private static SearchResultEntry entry(String uid, String age, String... scores){
+        return new SearchResultEntry(-1, "uid=" + uid + ",dc=example,dc=com", new Attribute[]{
+                new Attribute("uid", uid),
+                new Attribute("age", age),
+                new Attribute("scores", scores)
+        });
+    }
+
+    @Test
+    public void testCreate_FullyPushedDown() throws Exception{
+        QueryPlan plan = QueryPlan.create(entityPlan, optimizer,
+                query("{'$and': [{'field': 'uid', 'op': '=', 'rvalue': 'john'}, {'field': 'age', 'op': '>', 'rvalue': 30}]}"));
+
+        assertTrue(plan.isFullyPushedDown());
+        assertFalse(plan.needsPostFilter());
+        assertFalse(plan.isScan());
+        assertNull(plan.getRemainder());
+        assertEquals(2, plan.getExpressionCount());
+        assertEquals(2, plan.getPushedDownCount());
+        assertEquals("(&(uid=john)(!(age<=30)))", plan.getFilter().toString());
+        assertTrue(plan.createPostFilter(JsonNodeFactory.instance).isEmpty());
+    }
+
+    @Test
+    public void testCreate_SameShapeBindsItsOwnValues() throws Exception{
+        QueryPlan.create(entityPlan, optimizer,
+                query("{'$and': [{'field': 'uid', 'op': '=', 'rvalue': 'john'}, {'field': 'age', 'op': '>', 'rvalue': 30}]}"));
+        QueryPlan plan = QueryPlan.create(entityPlan, optimizer,
+                query("{'$and': [{'field': 'uid', 'op': '=', 'rvalue': 'jane'}, {'field': 'age', 'op': '>', 'rvalue': 40}]}"));
+
+        assertEquals("(&(uid=jane)(!(age<=40)))", plan.getFilter().toString());
+    }
+
+    @Test
+    public void testCreate_RequiredObjectClasses() throws Exception{
+        EntityMetadata md = MetadataUtil.createEntityMetadata(LdapConstant.BACKEND,
+                json(loadResource("./metadata/documentComparatorTest-metadata.json"), true), null, null);
+        ((LdapDataStore) md.getDataStore()).addObjectClass("inetOrgPerson");
+
+        QueryPlan plan = QueryPlan.create(new EntityPlan(md), optimizer, query("{'field': 'uid', 'op': '=', 'rvalue': 'john'}"));
+
+        assertEquals("(&(uid=john)(objectClass=inetOrgPerson))", plan.getFilter().toString());
+        assertEquals(1, plan.getExpressionCount());
+        assertFalse(plan.isScan());
+    }
+
+    @Test
+    public void testCreate_Remainder() throws Exception{
+        QueryPlan plan = QueryPlan.create(entityPlan, optimizer,
+                query("{'$and': [{'field': 'uid', 'op': '=', 'rvalue': 'john'}, {'field': 'age', 'op': '$in', 'rfield': 'scores'}]}"));
+
+        assertFalse(plan.isFullyPushedDown());
+        assertTrue(plan.needsPostFilter());
+        assertFalse(plan.isScan());
+        assertEquals(2, plan.getExpressionCount());
+        assertEquals(1, plan.getPushedDownCount());
+        assertEquals("(uid=john)", plan.getFilter().toString());
+        assertTrue(plan.getRequiredAttributes().containsAll(Arrays.asList("uid", "age", "scores")));
+
+        PostFilter postFilter = plan.createPostFilter(JsonNodeFactory.instance);
+        assertFalse(postFilter.isEmpty());
+
+        SearchResultEntry matching = entry("john", "5", "5", "6");
+        assertTrue(postFilter.test(matching));
+        assertFalse(postFilter.test(entry("john", "7", "5", "6")));
+        assertEquals("john", postFilter.translate(matching).get(entityPlan.getUniqueFieldPath()).asText());
+    }
+
+    @Test
+    public void testCreate_ApproximatedRegexWithSiblings() throws Exception{
+        QueryPlan plan = QueryPlan.create(entityPlan, optimizer,
+                query("{'$or': [{'field': 'uid', 'regex': '^jo'}, {'field': 'age', 'op': '>=', 'rvalue': 100}]}"));
+
+        assertTrue(plan.isFullyPushedDown());
+        assertTrue(plan.needsPostFilter());
+
+        PostFilter postFilter = plan.createPostFilter(JsonNodeFactory.instance);
+        assertTrue(postFilter.test(entry("john", "9", "1")));
+        assertTrue(postFilter.test(entry("sam", "100", "1")));
+        assertFalse(postFilter.test(entry("JOHN", "9", "1")));
+        //Compared as an integer, not as a string the way the server would.
+        assertFalse(postFilter.test(entry("sam", "9", "1")));
+    }
+
+    @Test
+    public void testCreate_Scan() throws Exception{
+        QueryPlan plan = QueryPlan.create(entityPlan, optimizer,
+                query("{'field': 'age', 'op': '$in', 'rfield': 'scores'}"));
+
+        assertTrue(plan.isScan());
+        assertEquals(0, plan.getPushedDownCount());
+        assertEquals("(&)", plan.getFilter().toString());
+        assertTrue(plan.toString().contains("scans every entry"));
+    }
+
+}
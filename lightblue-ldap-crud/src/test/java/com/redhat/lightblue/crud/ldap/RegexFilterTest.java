@@ -0,0 +1,169 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.redhat.lightblue.common.ldap.LdapErrorCode;
+import com.redhat.lightblue.query.RegexMatchExpression;
+import com.redhat.lightblue.util.Error;
+import com.redhat.lightblue.util.Path;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+
+public class RegexFilterTest {
+
+    private static RegexFilter translate(String regex){
+        return translate(regex, false, false);
+    }
+
+    private static RegexFilter translate(String regex, boolean caseInsensitive, boolean dotAll){
+        return RegexFilter.translate("cn", new RegexMatchExpression(new Path("cn"), regex, caseInsensitive, false, false, dotAll));
+    }
+
+    private static void assertExact(String expectedFilter, RegexFilter regexFilter){
+        assertEquals(expectedFilter, regexFilter.getFilter().toString());
+        assertTrue(regexFilter.isExact());
+    }
+
+    private static void assertApproximated(String expectedFilter, RegexFilter regexFilter){
+        assertEquals(expectedFilter, regexFilter.getFilter().toString());
+        assertFalse(regexFilter.isExact());
+    }
+
+    @Test
+    public void testTranslate_Prefix(){
+        assertExact("(cn=123*)", translate("^123"));
+    }
+
+    @Test
+    public void testTranslate_Suffix(){
+        assertExact("(cn=*123)", translate("123\\z"));
+    }
+
+    @Test
+    public void testTranslate_Contains(){
+        assertExact("(cn=*123*)", translate("123"));
+    }
+
+    @Test
+    public void testTranslate_Equals(){
+        assertExact("(cn=123)", translate("^123\\z"));
+    }
+
+    @Test
+    public void testTranslate_EndOfLine(){
+        //'$' also matches before a final line terminator.
+        RegexFilter rf = translate("^123$");
+        assertApproximated("(cn=123*)", rf);
+        assertTrue(rf.matches(new Entry("cn=x,dc=com", new Attribute("cn", "123\n"))));
+        assertApproximated("(cn=*123*)", translate("123$"));
+    }
+
+    @Test
+    public void testTranslate_Quoted(){
+        assertExact("(cn=1.2*)", translate("^\\Q1.2\\E"));
+        assertExact("(cn=*1.2*)", translate("1\\.2"));
+    }
+
+    @Test
+    public void testTranslate_AnyInBetween(){
+        assertExact("(cn=12*34)", translate("^12.*34\\z", false, true));
+        //Without DOTALL, '.' does not match line terminators.
+        assertApproximated("(cn=12*34)", translate("^12.*34\\z"));
+    }
+
+    @Test
+    public void testTranslate_Letters(){
+        //The matching rule of the attribute may ignore case.
+        assertApproximated("(cn=abc*)", translate("^abc"));
+    }
+
+    @Test
+    public void testTranslate_CaseInsensitive(){
+        assertApproximated("(cn=*)", translate("^abc", true, false));
+        assertApproximated("(cn=*1*2*)", translate("^a1b2", true, false));
+    }
+
+    @Test
+    public void testTranslate_OptionalCharacter(){
+        assertApproximated("(cn=1*3*)", translate("^12?3"));
+        assertApproximated("(cn=1*3*)", translate("^12*3"));
+        assertApproximated("(cn=1*3*)", translate("^12{0,2}3"));
+        assertApproximated("(cn=12*3*)", translate("^12+3"));
+    }
+
+    @Test
+    public void testTranslate_Groups(){
+        assertApproximated("(cn=*34)", translate("^(12)?34\\z"));
+        assertApproximated("(cn=1*4)", translate("^1[23]4\\z"));
+    }
+
+    @Test
+    public void testTranslate_Escapes(){
+        assertApproximated("(cn=1*3*)", translate("^1\\d3"));
+        assertApproximated("(cn=1*3*)", translate("^1\\x323"));
+        assertApproximated("(cn=1*3*)", translate("^1\\u00323"));
+    }
+
+    @Test
+    public void testTranslate_Alternation(){
+        assertApproximated("(cn=*)", translate("^12|34"));
+    }
+
+    @Test
+    public void testTranslate_InlineFlags(){
+        assertApproximated("(cn=*)", translate("(?i)123"));
+    }
+
+    @Test
+    public void testTranslate_EmptyValue(){
+        assertApproximated("(cn=*)", translate("^\\z"));
+    }
+
+    @Test
+    public void testTranslate_InvalidRegex(){
+        try{
+            translate("^(12");
+            fail("Expected an Error");
+        } catch(Error e){
+            assertEquals(LdapErrorCode.ERR_INVALID_REGEX, e.getErrorCode());
+        }
+    }
+
+    @Test
+    public void testMatches(){
+        RegexFilter regexFilter = translate("^ba");
+
+        assertTrue(regexFilter.matches(new Entry("cn=x,dc=com", new Attribute("cn", "Foo", "bar"))));
+        assertFalse(regexFilter.matches(new Entry("cn=x,dc=com", new Attribute("cn", "Foo", "Bar"))));
+        assertFalse(regexFilter.matches(new Entry("cn=x,dc=com")));
+    }
+
+    @Test
+    public void testMatches_CaseInsensitive(){
+        assertTrue(translate("^ba", true, false).matches(new Entry("cn=x,dc=com", new Attribute("cn", "Bar"))));
+    }
+
+}
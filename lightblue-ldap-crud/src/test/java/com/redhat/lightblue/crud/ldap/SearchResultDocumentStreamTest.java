@@ -0,0 +1,224 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.redhat.lightblue.crud.DocCtx;
+import com.redhat.lightblue.util.JsonDoc;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+
+public class SearchResultDocumentStreamTest {
+
+    private static SearchResultEntry createEntry(String uid){
+        return new SearchResultEntry("uid=" + uid + ",dc=example,dc=com", new Attribute[]{new Attribute("uid", uid)});
+    }
+
+    private static SearchResult createSearchResult(ResultCode resultCode){
+        return new SearchResult(1, resultCode, null, null, null, 0, 0, null);
+    }
+
+    @Test
+    public void testStream_ConvertsLazilyAndClosesWhenExhausted() throws Exception{
+        StreamingSearchResultListener listener = new StreamingSearchResultListener(10);
+        listener.searchEntryReturned(createEntry("john"));
+        listener.searchEntryReturned(createEntry("jane"));
+        listener.searchResultReceived(null, createSearchResult(ResultCode.SUCCESS));
+
+        List<String> converted = new ArrayList<>();
+        AtomicInteger closeCount = new AtomicInteger(0);
+
+        SearchResultDocumentStream stream = new SearchResultDocumentStream(listener, (SearchResultEntry entry) -> {
+            converted.add(entry.getDN());
+            return new DocCtx(new JsonDoc(JsonNodeFactory.instance.objectNode()));
+        }, () -> closeCount.incrementAndGet());
+
+        assertTrue(converted.isEmpty());
+
+        assertTrue(stream.hasNext());
+        stream.next();
+        assertEquals(1, converted.size());
+
+        assertTrue(stream.hasNext());
+        stream.next();
+        assertEquals(2, converted.size());
+
+        assertFalse(stream.hasNext());
+        assertEquals(1, closeCount.get());
+        assertEquals(ResultCode.SUCCESS, listener.getSearchResult().getResultCode());
+
+        stream.close();
+        assertEquals(1, closeCount.get());
+    }
+
+    @Test
+    public void testStream_EarlyClose(){
+        StreamingSearchResultListener listener = new StreamingSearchResultListener(10);
+        listener.searchEntryReturned(createEntry("john"));
+        listener.searchEntryReturned(createEntry("jane"));
+
+        AtomicInteger closeCount = new AtomicInteger(0);
+        SearchResultDocumentStream stream = new SearchResultDocumentStream(listener,
+                (SearchResultEntry entry) -> new DocCtx(new JsonDoc(JsonNodeFactory.instance.objectNode())),
+                () -> closeCount.incrementAndGet());
+
+        stream.next();
+        stream.close();
+
+        assertFalse(stream.hasNext());
+        assertEquals(1, closeCount.get());
+        assertNull(listener.getSearchResult());
+    }
+
+    @Test
+    public void testStream_FetchesNextPageOnceCurrentPageIsRead(){
+        StreamingSearchResultListener listener = new StreamingSearchResultListener(10);
+        listener.searchEntryReturned(createEntry("john"));
+        listener.searchResultReceived(null, createSearchResult(ResultCode.SUCCESS));
+
+        AtomicInteger pagesFetched = new AtomicInteger(0);
+        SearchResultDocumentStream stream = new SearchResultDocumentStream(listener,
+                (SearchResultEntry entry) -> new DocCtx(new JsonDoc(JsonNodeFactory.instance.objectNode())),
+                () -> {
+                    if (pagesFetched.incrementAndGet() > 1) {
+                        return false;
+                    }
+                    listener.reset();
+                    listener.searchEntryReturned(createEntry("jane"));
+                    listener.searchResultReceived(null, createSearchResult(ResultCode.SUCCESS));
+                    return true;
+                },
+                () -> {});
+
+        int count = 0;
+        while (stream.hasNext()) {
+            stream.next();
+            count++;
+        }
+
+        assertEquals(2, count);
+        assertEquals(2, pagesFetched.get());
+    }
+
+    @Test
+    public void testStream_WindowSkipsWithoutConvertingAndStopsEarly(){
+        StreamingSearchResultListener listener = new StreamingSearchResultListener(10);
+        listener.searchEntryReturned(createEntry("john"));
+        listener.searchEntryReturned(createEntry("jane"));
+        listener.searchEntryReturned(createEntry("junior"));
+        listener.searchEntryReturned(createEntry("jack"));
+
+        List<String> converted = new ArrayList<>();
+        AtomicInteger closeCount = new AtomicInteger(0);
+        SearchResultDocumentStream stream = new SearchResultDocumentStream(listener, (SearchResultEntry entry) -> {
+            converted.add(entry.getDN());
+            return new DocCtx(new JsonDoc(JsonNodeFactory.instance.objectNode()));
+        }, () -> closeCount.incrementAndGet());
+        stream.setWindow(ResultWindow.fromRange(1L, 2L));
+
+        while (stream.hasNext()) {
+            stream.next();
+        }
+
+        assertEquals(2, converted.size());
+        assertEquals("uid=jane,dc=example,dc=com", converted.get(0));
+        assertEquals("uid=junior,dc=example,dc=com", converted.get(1));
+        assertEquals(1, closeCount.get());
+        //Stream was closed before the search completed.
+        assertNull(listener.getSearchResult());
+    }
+
+    @Test
+    public void testResultWindow_OpenEnded(){
+        ResultWindow window = ResultWindow.fromRange(2L, null);
+
+        assertFalse(window.accept());
+        assertFalse(window.accept());
+        assertTrue(window.accept());
+        assertTrue(window.accept());
+        assertFalse(window.isFull());
+    }
+
+    @Test
+    public void testResultWindow_ToBeforeFrom(){
+        assertTrue(ResultWindow.fromRange(5L, 2L).isEmpty());
+        assertFalse(ResultWindow.fromRange(null, 0L).isEmpty());
+    }
+
+    /**
+     * The reader must block while the buffer is full and resume once the consumer catches up.
+     */
+    @Test(timeout = 10000)
+    public void testListener_Backpressure() throws Exception{
+        StreamingSearchResultListener listener = new StreamingSearchResultListener(1);
+
+        Thread reader = new Thread(() -> {
+            for (int i = 0; i < 5; i++) {
+                listener.searchEntryReturned(createEntry("user" + i));
+            }
+            listener.searchResultReceived(null, createSearchResult(ResultCode.SUCCESS));
+        });
+        reader.start();
+
+        Thread.sleep(200);
+        assertTrue(reader.isAlive());
+
+        int count = 0;
+        while (listener.take() != null) {
+            count++;
+        }
+        reader.join();
+
+        assertEquals(5, count);
+    }
+
+    /**
+     * Closing the listener must release a reader that is blocked on a full buffer.
+     */
+    @Test(timeout = 10000)
+    public void testListener_CloseReleasesReader() throws Exception{
+        StreamingSearchResultListener listener = new StreamingSearchResultListener(1);
+
+        Thread reader = new Thread(() -> {
+            for (int i = 0; i < 5; i++) {
+                listener.searchEntryReturned(createEntry("user" + i));
+            }
+        });
+        reader.start();
+
+        listener.close();
+        reader.join();
+
+        assertNull(listener.take());
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.redhat.lightblue.common.ldap.LdapDataStore;
+import com.redhat.lightblue.common.ldap.LdapSearchScope;
+import com.redhat.lightblue.crud.ldap.model.TrivialLdapFieldNameTranslator;
+import com.redhat.lightblue.query.BinaryComparisonOperator;
+import com.redhat.lightblue.query.NaryLogicalExpression;
+import com.redhat.lightblue.query.NaryLogicalOperator;
+import com.redhat.lightblue.query.NaryRelationalOperator;
+import com.redhat.lightblue.query.NaryValueRelationalExpression;
+import com.redhat.lightblue.query.QueryExpression;
+import com.redhat.lightblue.query.Value;
+import com.redhat.lightblue.query.ValueComparisonExpression;
+import com.redhat.lightblue.util.Path;
+
+public class UniqueAttributeLookupTest {
+
+    private static final LdapDataStore STORE = new LdapDataStore("test", "dc=example,dc=com", "uid");
+
+    private static UniqueAttributeLookup analyze(QueryExpression query){
+        return UniqueAttributeLookup.analyze(STORE, new TrivialLdapFieldNameTranslator(), query);
+    }
+
+    @Test
+    public void testAnalyze_Equals(){
+        UniqueAttributeLookup lookup = analyze(
+                new ValueComparisonExpression(new Path("uid"), BinaryComparisonOperator._eq, new Value("john.doe")));
+
+        assertTrue(lookup.isExactMatch());
+        assertEquals(Arrays.asList("uid=john.doe,dc=example,dc=com"), lookup.getDNs());
+    }
+
+    @Test
+    public void testAnalyze_In_Deduplicated(){
+        UniqueAttributeLookup lookup = analyze(new NaryValueRelationalExpression(
+                new Path("uid"),
+                NaryRelationalOperator._in,
+                Arrays.asList(new Value("john.doe"), new Value("jane.doe"), new Value("john.doe"))));
+
+        assertTrue(lookup.isExactMatch());
+        assertEquals(
+                Arrays.asList("uid=john.doe,dc=example,dc=com", "uid=jane.doe,dc=example,dc=com"),
+                lookup.getDNs());
+    }
+
+    @Test
+    public void testAnalyze_RequiredObjectClasses(){
+        LdapDataStore store = new LdapDataStore("test", "dc=example,dc=com", "uid");
+        store.addObjectClass("inetOrgPerson");
+
+        UniqueAttributeLookup lookup = UniqueAttributeLookup.analyze(store, new TrivialLdapFieldNameTranslator(),
+                new ValueComparisonExpression(new Path("uid"), BinaryComparisonOperator._eq, new Value("john.doe")));
+
+        assertFalse(lookup.isExactMatch());
+        assertEquals(Arrays.asList("uid=john.doe,dc=example,dc=com"), lookup.getDNs());
+    }
+
+    @Test
+    public void testAnalyze_BaseScope(){
+        LdapDataStore store = new LdapDataStore("test", "dc=example,dc=com", "uid");
+        store.setScope(LdapSearchScope.BASE);
+
+        assertNull(UniqueAttributeLookup.analyze(store, new TrivialLdapFieldNameTranslator(),
+                new ValueComparisonExpression(new Path("uid"), BinaryComparisonOperator._eq, new Value("john.doe"))));
+    }
+
+    @Test
+    public void testAnalyze_AndWithUniqueAttribute(){
+        UniqueAttributeLookup lookup = analyze(new NaryLogicalExpression(
+                NaryLogicalOperator._and, new ArrayList<QueryExpression>(Arrays.asList(
+                        new ValueComparisonExpression(new Path("sn"), BinaryComparisonOperator._eq, new Value("Doe")),
+                        new ValueComparisonExpression(new Path("uid"), BinaryComparisonOperator._eq, new Value("john.doe"))))));
+
+        assertFalse(lookup.isExactMatch());
+        assertEquals(Arrays.asList("uid=john.doe,dc=example,dc=com"), lookup.getDNs());
+    }
+
+    @Test
+    public void testAnalyze_OrIsNotApplicable(){
+        assertNull(analyze(new NaryLogicalExpression(
+                NaryLogicalOperator._or, new ArrayList<QueryExpression>(Arrays.asList(
+                        new ValueComparisonExpression(new Path("sn"), BinaryComparisonOperator._eq, new Value("Doe")),
+                        new ValueComparisonExpression(new Path("uid"), BinaryComparisonOperator._eq, new Value("john.doe")))))));
+    }
+
+    @Test
+    public void testAnalyze_OtherAttributeIsNotApplicable(){
+        assertNull(analyze(
+                new ValueComparisonExpression(new Path("sn"), BinaryComparisonOperator._eq, new Value("Doe"))));
+        assertNull(analyze(
+                new ValueComparisonExpression(new Path("uid"), BinaryComparisonOperator._neq, new Value("john.doe"))));
+    }
+
+    @Test
+    public void testAnalyze_ValueNeedingEscapeIsNotApplicable(){
+        assertNull(analyze(
+                new ValueComparisonExpression(new Path("uid"), BinaryComparisonOperator._eq, new Value("doe,john"))));
+    }
+
+}
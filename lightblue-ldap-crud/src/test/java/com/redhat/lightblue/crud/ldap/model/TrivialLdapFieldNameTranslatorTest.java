@@ -19,6 +19,7 @@
 package com.redhat.lightblue.crud.ldap.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 
@@ -38,4 +39,10 @@ public class TrivialLdapFieldNameTranslatorTest {
         assertEquals(attributeName, new TrivialLdapFieldNameTranslator().translateAttributeName(attributeName).toString());
     }
 
+    @Test
+    public void testTranslateAttributeName_ReusesPath(){
+        TrivialLdapFieldNameTranslator translator = new TrivialLdapFieldNameTranslator();
+        assertSame(translator.translateAttributeName("fakeAttributeName"), translator.translateAttributeName("fakeAttributeName"));
+    }
+
 }
@@ -0,0 +1,106 @@
+/*
+ Copyright 2016 Red Hat, Inc. and/or its affiliates.
+
+ This file is part of lightblue.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.redhat.lightblue.crud.ldap.translator;
+
+import static com.redhat.lightblue.util.JsonUtils.json;
+import static com.redhat.lightblue.util.test.AbstractJsonNodeTest.loadResource;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.lightblue.common.ldap.LdapConstant;
+import com.redhat.lightblue.crud.ldap.model.TrivialLdapFieldNameTranslator;
+import com.redhat.lightblue.metadata.EntityMetadata;
+import com.redhat.lightblue.test.MetadataUtil;
+import com.redhat.lightblue.util.JsonDoc;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.ModifyRequest;
+
+public class ModificationTranslatorFromJsonTest {
+
+    private static final String DN = "uid=john.doe,dc=example,dc=com";
+
+    private ModificationTranslatorFromJson translator;
+
+    @Before
+    public void before() throws Exception{
+        EntityMetadata md = MetadataUtil.createEntityMetadata(LdapConstant.BACKEND,
+                json(loadResource("./metadata/modificationBuilderTest-metadata.json"), true), null, null);
+        translator = new ModificationTranslatorFromJson(md, new TrivialLdapFieldNameTranslator());
+    }
+
+    private static JsonDoc document(String json) throws Exception{
+        return new JsonDoc(json(json.replace('\'', '"')));
+    }
+
+    @Test
+    public void testTranslateDelta_Unchanged() throws Exception{
+        Entry existing = new Entry(DN,
+                new Attribute("uid", "john.doe"),
+                new Attribute("cn", "John Doe"),
+                new Attribute("objectClass", "top", "person"));
+
+        assertNull(translator.translateDelta(
+                document("{'uid': 'john.doe', 'cn': 'John Doe', 'objectClass': ['person', 'top']}"), DN, existing));
+    }
+
+    @Test
+    public void testTranslateDelta_OnlyChangedValues() throws Exception{
+        Entry existing = new Entry(DN,
+                new Attribute("uid", "john.doe"),
+                new Attribute("objectClass", "top", "person", "organizationalPerson"));
+
+        ModifyRequest modifyRequest = translator.translateDelta(
+                document("{'uid': 'john.doe', 'objectClass': ['top', 'person', 'inetOrgPerson']}"), DN, existing);
+
+        List<Modification> modifications = modifyRequest.getModifications();
+        assertEquals(2, modifications.size());
+        assertEquals(ModificationType.DELETE, modifications.get(0).getModificationType());
+        assertArrayEquals(new String[]{"organizationalPerson"}, modifications.get(0).getValues());
+        assertEquals(ModificationType.ADD, modifications.get(1).getModificationType());
+        assertArrayEquals(new String[]{"inetOrgPerson"}, modifications.get(1).getValues());
+    }
+
+    @Test
+    public void testTranslateDelta_ReplacedWhenNoValueIsKept() throws Exception{
+        Entry existing = new Entry(DN,
+                new Attribute("uid", "john.doe"),
+                new Attribute("cn", "John Doe"));
+
+        ModifyRequest modifyRequest = translator.translateDelta(
+                document("{'uid': 'john.doe', 'cn': 'john doe', 'description': 'new'}"), DN, existing);
+
+        List<Modification> modifications = modifyRequest.getModifications();
+        assertEquals(2, modifications.size());
+        assertEquals(ModificationType.REPLACE, modifications.get(0).getModificationType());
+        assertEquals("cn", modifications.get(0).getAttributeName());
+        assertArrayEquals(new String[]{"john doe"}, modifications.get(0).getValues());
+        assertEquals(ModificationType.REPLACE, modifications.get(1).getModificationType());
+        assertEquals("description", modifications.get(1).getAttributeName());
+    }
+
+}
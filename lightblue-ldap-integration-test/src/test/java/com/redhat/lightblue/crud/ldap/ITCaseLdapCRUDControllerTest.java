@@ -35,11 +35,13 @@ import org.skyscreamer.jsonassert.JSONAssert;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.redhat.lightblue.Response;
+import com.redhat.lightblue.common.ldap.LdapDataSourceSettings;
 import com.redhat.lightblue.crud.CrudConstants;
 import com.redhat.lightblue.crud.DeleteRequest;
 import com.redhat.lightblue.crud.FindRequest;
 import com.redhat.lightblue.crud.InsertionRequest;
 import com.redhat.lightblue.crud.SaveRequest;
+import com.redhat.lightblue.crud.UpdateRequest;
 import com.redhat.lightblue.ldap.test.LightblueLdapTestHarness;
 import com.redhat.lightblue.test.FakeClientIdentification;
 import com.redhat.lightblue.util.test.AbstractJsonNodeTest;
@@ -189,6 +191,71 @@ public class ITCaseLdapCRUDControllerTest extends LightblueLdapTestHarness {
         assertEquals(2, findResponse.getMatchCount());
     }
 
+    @Test
+    public void testDelete_MoreThanBufferedAndInFlight() throws Exception {
+        //Setup
+        //More than the default stream buffer size and operations in flight combined.
+        int count = LdapDataSourceSettings.DEFAULT_STREAM_BUFFER_SIZE
+                + LdapDataSourceSettings.DEFAULT_MAX_OPERATIONS_IN_FLIGHT + 34;
+        for (int i = 0; i < count; i++) {
+            String uid = "bulk." + i;
+            ldapServer.add("uid=" + uid + "," + BASEDB_USERS, new Attribute[]{
+                    new Attribute("objectClass", "top", "person", "organizationalPerson", "inetOrgPerson"),
+                    new Attribute("uid", uid),
+                    new Attribute("givenName", "Bulk" + i),
+                    new Attribute("sn", "Bulk"),
+                    new Attribute("cn", "Bulk" + i + " Bulk")});
+        }
+
+        //Test
+        Response response = getLightblueFactory().getMediator().delete(
+                createRequest_FromResource(DeleteRequest.class, "./crud/delete/person-delete-many.json"));
+
+        assertValidResponse(response);
+        assertEquals(count, response.getModifiedCount());
+    }
+
+    @Test
+    public void testUpdate_SetValue() throws Exception {
+        //Setup
+        assertValidResponse(getLightblueFactory().getMediator().insert(
+                createRequest_FromResource(InsertionRequest.class, "./crud/insert/person-insert-single.json")));
+
+        //Test
+        Response response = getLightblueFactory().getMediator().update(
+                createRequest_FromResource(UpdateRequest.class, "./crud/update/person-update-set-optional.json"));
+
+        //Asserts
+        assertValidResponse(response);
+        assertEquals(1, response.getModifiedCount());
+
+        JsonNode entityData = response.getEntityData();
+        assertNotNull(entityData);
+        JSONAssert.assertEquals(
+                "[{" + generatePersonDnJson("john.doe") + "}]",
+                entityData.toString(), false);
+
+        assertPersonEntryValues("john.doe", "John Doe", "modified value");
+    }
+
+    /**
+     * optional does not exist on the original record, unsetting it should not be an error.
+     */
+    @Test
+    public void testUpdate_UnsetMissingValue() throws Exception {
+        //Setup
+        assertValidResponse(getLightblueFactory().getMediator().insert(
+                createRequest_FromResource(InsertionRequest.class, "./crud/insert/person-insert-single.json")));
+
+        //Test
+        Response response = getLightblueFactory().getMediator().update(
+                createRequest_FromResource(UpdateRequest.class, "./crud/update/person-update-unset-optional.json"));
+
+        //Asserts
+        assertValidResponse(response);
+        assertPersonEntryValues("john.doe", "John Doe", null);
+    }
+
     /**
      * optional does not exist on the original record, ensure that it has been added.
      */
@@ -333,8 +400,9 @@ public class ITCaseLdapCRUDControllerTest extends LightblueLdapTestHarness {
         JsonNode entityData = response.getEntityData();
         assertNotNull(entityData);
 
+        //Range is 0-based, so [2,2] of junior, john, jane is jane.
         JSONAssert.assertEquals(
-                "[{" + generatePersonDnJson("john.doe") + "}]",
+                "[{" + generatePersonDnJson("jane.doe") + "}]",
                 entityData.toString(), true);
     }
 
@@ -407,6 +475,46 @@ public class ITCaseLdapCRUDControllerTest extends LightblueLdapTestHarness {
         assertEquals(0, findResponse.getMatchCount());
     }
 
+    @Test
+    public void testUpdateWithInvalidRoles() throws Exception {
+        //Setup
+        String insert = AbstractJsonNodeTest.loadResource("./crud/insert/department-insert-template.json")
+                .replaceFirst("#cn", "Marketing")
+                .replaceFirst("#description", "Department devoted to Marketing")
+                .replaceFirst("#members", "cn=John Doe," + BASEDB_USERS);
+
+        InsertionRequest insertRequest = createRequest_FromJsonString(InsertionRequest.class, insert);
+        insertRequest.setClientId(new FakeClientIdentification("fakeUser", "admin"));
+
+        assertValidResponse(getLightblueFactory().getMediator().insert(insertRequest));
+
+        //Test
+        UpdateRequest updateRequest = createRequest_FromJsonString(UpdateRequest.class,
+                "{\"entity\":\"department\",\"entityVersion\":\"1.0.0\","
+                + "\"query\":{\"field\":\"cn\",\"op\":\"$eq\",\"rvalue\":\"Marketing\"},"
+                + "\"update\":{\"$append\":{\"member\":\"cn=Jane Doe," + BASEDB_USERS + "\"}}}");
+        updateRequest.setClientId(new FakeClientIdentification("fakeUser"));
+
+        Response response = getLightblueFactory().getMediator().update(updateRequest);
+
+        //Asserts
+        assertNotNull(response);
+        assertEquals(0, response.getModifiedCount());
+        assertEquals(1, response.getErrors().size());
+        assertEquals(CrudConstants.ERR_NO_FIELD_UPDATE_ACCESS, response.getErrors().get(0).getErrorCode());
+
+        //Ensure entry was not updated
+        FindRequest findRequest = createRequest_FromResource(FindRequest.class, "./crud/find/department-find.json");
+        findRequest.setClientId(new FakeClientIdentification("admin"));
+
+        Response findResponse = getLightblueFactory().getMediator().find(findRequest);
+
+        assertValidResponse(findResponse);
+        JSONAssert.assertEquals(
+                "[{\"member#\":1,\"member\":[\"cn=John Doe," + BASEDB_USERS + "\"]}]",
+                findResponse.getEntityData().toString(), false);
+    }
+
     @Test
     public void testFindWithRoles() throws Exception {
         //Setup
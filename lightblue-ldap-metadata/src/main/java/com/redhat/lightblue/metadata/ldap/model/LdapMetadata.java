@@ -19,11 +19,21 @@
 package com.redhat.lightblue.metadata.ldap.model;
 
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.redhat.lightblue.common.ldap.LdapEntitySettings;
 import com.redhat.lightblue.common.ldap.LdapFieldNameTranslator;
+import com.redhat.lightblue.common.ldap.LdapIndexType;
+import com.redhat.lightblue.common.ldap.LdapSaveStrategy;
+import com.redhat.lightblue.common.ldap.LdapUnindexedQueryPolicy;
 import com.redhat.lightblue.util.Path;
 
 /**
@@ -33,9 +43,19 @@ import com.redhat.lightblue.util.Path;
  *
  * @see com.redhat.lightblue.metadata.ldap.parser.LdapPropertyParser
  */
-public class LdapMetadata implements LdapFieldNameTranslator{
+public class LdapMetadata implements LdapFieldNameTranslator, LdapEntitySettings{
+
+    /** Strategy used unless the metadata specifies otherwise. */
+    public static final LdapSaveStrategy DEFAULT_SAVE_STRATEGY = LdapSaveStrategy.CHECK_EXISTING;
+
+    /** Policy used unless the metadata specifies otherwise. */
+    public static final LdapUnindexedQueryPolicy DEFAULT_UNINDEXED_QUERY_POLICY = LdapUnindexedQueryPolicy.WARN;
 
     private final BiMap<Path, String> fieldsToAttributes = HashBiMap.create();
+    private final Map<String, Set<LdapIndexType>> indexes = new LinkedHashMap<>();
+    private LdapSaveStrategy saveStrategy = DEFAULT_SAVE_STRATEGY;
+    private LdapUnindexedQueryPolicy unindexedQueryPolicy = DEFAULT_UNINDEXED_QUERY_POLICY;
+    private volatile TranslationTable translationTable;
 
     /**
      * Returns an unmodifiable copy of the internal collection of {@link FieldAttributeMapping}s.
@@ -47,29 +67,42 @@ public class LdapMetadata implements LdapFieldNameTranslator{
 
     @Override
     public String translateFieldName(Path path){
-        String attributeName = fieldsToAttributes.get(path);
-        if(attributeName != null){
-            return attributeName;
-        }
+        return getTranslationTable().translateFieldName(path);
+    }
 
-        Path last = path.suffix(1);
-        attributeName = fieldsToAttributes.get(last);
-        if(attributeName != null){
-            return attributeName;
-        }
+    @Override
+    public Path translateAttributeName(String attributeName){
+        return getTranslationTable().translateAttributeName(attributeName);
+    }
 
-        return last.toString();
+    @Override
+    public LdapSaveStrategy getSaveStrategy(){
+        return saveStrategy;
+    }
+
+    public void setSaveStrategy(LdapSaveStrategy saveStrategy){
+        this.saveStrategy = (saveStrategy == null) ? DEFAULT_SAVE_STRATEGY : saveStrategy;
     }
 
     @Override
-    public Path translateAttributeName(String attributeName){
-        Path fieldPath = fieldsToAttributes.inverse().get(attributeName);
+    public Map<String, Set<LdapIndexType>> getIndexes(){
+        return Collections.unmodifiableMap(indexes);
+    }
 
-        if(fieldPath == null){
-            return new Path(attributeName);
-        }
+    /**
+     * Declares that the server maintains an index of the <code>type</code> for the <code>attributeName</code>.
+     */
+    public void addIndex(String attributeName, LdapIndexType type){
+        indexes.computeIfAbsent(attributeName, (String key) -> EnumSet.noneOf(LdapIndexType.class)).add(type);
+    }
+
+    @Override
+    public LdapUnindexedQueryPolicy getUnindexedQueryPolicy(){
+        return unindexedQueryPolicy;
+    }
 
-        return fieldPath;
+    public void setUnindexedQueryPolicy(LdapUnindexedQueryPolicy unindexedQueryPolicy){
+        this.unindexedQueryPolicy = (unindexedQueryPolicy == null) ? DEFAULT_UNINDEXED_QUERY_POLICY : unindexedQueryPolicy;
     }
 
     /**
@@ -78,6 +111,87 @@ public class LdapMetadata implements LdapFieldNameTranslator{
      */
     public void addFieldToAttribute(Path fieldPath, String attributeName){
         fieldsToAttributes.put(fieldPath, attributeName);
+        translationTable = null;
+    }
+
+    /**
+     * Builds the table translations are answered from. This is done by the
+     * {@link com.redhat.lightblue.metadata.ldap.parser.LdapPropertyParser} once all the mappings
+     * have been parsed, otherwise it is built on first use after a mapping was added.
+     */
+    public void buildTranslationTable(){
+        translationTable = new TranslationTable(fieldsToAttributes);
+    }
+
+    private TranslationTable getTranslationTable(){
+        TranslationTable table = translationTable;
+        if(table == null){
+            table = new TranslationTable(fieldsToAttributes);
+            translationTable = table;
+        }
+        return table;
+    }
+
+    /**
+     * Immutable snapshot of the mappings, laid out so that translating does not allocate. Attribute
+     * names are matched case-insensitively, as ldap does, with an exact match tried first.
+     */
+    private static final class TranslationTable{
+
+        /** Upper bound on the number of unmapped attribute names to hold a {@link Path} for. */
+        private static final int MAX_UNMAPPED_PATHS = 1024;
+
+        private final Map<Path, String> pathToAttribute = new HashMap<>();
+        private final Map<String, String> fieldNameToAttribute = new HashMap<>();
+        private final Map<String, Path> attributeToPath = new HashMap<>();
+        private final Map<String, Path> attributeToPathIgnoreCase = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private final Map<String, Path> unmappedPaths = new ConcurrentHashMap<>();
+
+        TranslationTable(Map<Path, String> fieldsToAttributes){
+            for(Map.Entry<Path, String> mapping : fieldsToAttributes.entrySet()){
+                Path path = mapping.getKey().immutableCopy();
+                String attributeName = mapping.getValue().intern();
+
+                pathToAttribute.put(path, attributeName);
+                if(path.numSegments() == 1){
+                    //Also matches the tail of longer paths.
+                    fieldNameToAttribute.put(path.head(0), attributeName);
+                }
+                attributeToPath.put(attributeName, path);
+                attributeToPathIgnoreCase.put(attributeName, path);
+            }
+        }
+
+        String translateFieldName(Path path){
+            String attributeName = pathToAttribute.get(path);
+            if(attributeName != null){
+                return attributeName;
+            }
+
+            String fieldName = path.getLast();
+            attributeName = fieldNameToAttribute.get(fieldName);
+            return (attributeName == null) ? fieldName : attributeName;
+        }
+
+        Path translateAttributeName(String attributeName){
+            Path fieldPath = attributeToPath.get(attributeName);
+            if(fieldPath == null){
+                fieldPath = attributeToPathIgnoreCase.get(attributeName);
+            }
+            if(fieldPath != null){
+                return fieldPath;
+            }
+
+            fieldPath = unmappedPaths.get(attributeName);
+            if(fieldPath == null){
+                fieldPath = new Path(attributeName);
+                if(unmappedPaths.size() < MAX_UNMAPPED_PATHS){
+                    unmappedPaths.put(attributeName, fieldPath);
+                }
+            }
+            return fieldPath;
+        }
+
     }
 
 }
@@ -18,8 +18,11 @@
  */
 package com.redhat.lightblue.metadata.ldap.parser;
 
+import java.util.List;
+
 import com.redhat.lightblue.common.ldap.LdapConstant;
 import com.redhat.lightblue.common.ldap.LdapDataStore;
+import com.redhat.lightblue.common.ldap.LdapSearchScope;
 import com.redhat.lightblue.metadata.DataStore;
 import com.redhat.lightblue.metadata.MetadataConstants;
 import com.redhat.lightblue.metadata.parser.DataStoreParser;
@@ -36,6 +39,8 @@ public class LdapDataStoreParser<T> implements DataStoreParser<T> {
     private final static String DATABASE = "database";
     private final static String BASEDN = "basedn";
     private final static String UNIQUE_FIELD = "uniqueattr";
+    private final static String SCOPE = "scope";
+    private final static String OBJECT_CLASSES = "objectclasses";
 
     @Override
     public LdapDataStore parse(String name, MetadataParser<T> p, T node) {
@@ -48,6 +53,22 @@ public class LdapDataStoreParser<T> implements DataStoreParser<T> {
         dataStore.setBaseDN(p.getRequiredStringProperty(node, BASEDN));
         dataStore.setUniqueAttribute(p.getRequiredStringProperty(node, UNIQUE_FIELD));
 
+        String scopeName = p.getStringProperty(node, SCOPE);
+        if (scopeName != null) {
+            LdapSearchScope scope = LdapSearchScope.fromName(scopeName);
+            if (scope == null) {
+                throw Error.get(MetadataConstants.ERR_ILL_FORMED_METADATA, SCOPE + ": " + scopeName);
+            }
+            dataStore.setScope(scope);
+        }
+
+        List<String> objectClasses = p.getStringList(node, OBJECT_CLASSES);
+        if (objectClasses != null) {
+            for (String objectClass : objectClasses) {
+                dataStore.addObjectClass(objectClass);
+            }
+        }
+
         return dataStore;
     }
 
@@ -61,6 +82,16 @@ public class LdapDataStoreParser<T> implements DataStoreParser<T> {
         p.setMapProperty(emptyNode, DATABASE, p.asRepresentation(ds.getDatabase()));
         p.setMapProperty(emptyNode, BASEDN, p.asRepresentation(ds.getBaseDN()));
         p.setMapProperty(emptyNode, UNIQUE_FIELD, p.asRepresentation(ds.getUniqueAttribute()));
+        if ((ds.getScope() != null) && (ds.getScope() != LdapDataStore.DEFAULT_SCOPE)) {
+            p.setMapProperty(emptyNode, SCOPE, p.asRepresentation(ds.getScope().getName()));
+        }
+        if (!ds.getObjectClasses().isEmpty()) {
+            T objectClassesNode = p.newList();
+            for (String objectClass : ds.getObjectClasses()) {
+                p.addListElement(objectClassesNode, p.asRepresentation(objectClass));
+            }
+            p.setMapProperty(emptyNode, OBJECT_CLASSES, objectClassesNode);
+        }
     }
 
     @Override
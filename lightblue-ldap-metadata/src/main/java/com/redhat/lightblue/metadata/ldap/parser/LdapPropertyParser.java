@@ -18,10 +18,15 @@
  */
 package com.redhat.lightblue.metadata.ldap.parser;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import com.redhat.lightblue.common.ldap.LdapConstant;
+import com.redhat.lightblue.common.ldap.LdapIndexType;
+import com.redhat.lightblue.common.ldap.LdapSaveStrategy;
+import com.redhat.lightblue.common.ldap.LdapUnindexedQueryPolicy;
 import com.redhat.lightblue.metadata.MetadataConstants;
 import com.redhat.lightblue.metadata.ldap.model.LdapMetadata;
 import com.redhat.lightblue.metadata.parser.MetadataParser;
@@ -39,6 +44,10 @@ public class LdapPropertyParser <T> extends PropertyParser<T> {
     private static final String FIELDS_TO_ATTRIBUTES = "fieldsToAttributes";
     private static final String FIELD = "field";
     private static final String ATTRIBUTE = "attribute";
+    private static final String SAVE_STRATEGY = "saveStrategy";
+    private static final String INDEXES = "indexes";
+    private static final String TYPES = "types";
+    private static final String UNINDEXED_QUERIES = "unindexedQueries";
 
     @Override
     public LdapMetadata parseProperty(MetadataParser<T> p, T container, String name) {
@@ -49,7 +58,16 @@ public class LdapPropertyParser <T> extends PropertyParser<T> {
         LdapMetadata ldapMetadata = new LdapMetadata();
 
         T ldapMetadataNode = p.getMapProperty(container, name);
-        
+
+        String saveStrategyName = p.getStringProperty(ldapMetadataNode, SAVE_STRATEGY);
+        if(saveStrategyName != null){
+            LdapSaveStrategy saveStrategy = LdapSaveStrategy.fromName(saveStrategyName);
+            if(saveStrategy == null){
+                throw Error.get(MetadataConstants.ERR_ILL_FORMED_METADATA, SAVE_STRATEGY + ": " + saveStrategyName);
+            }
+            ldapMetadata.setSaveStrategy(saveStrategy);
+        }
+
         T fieldToAttributesNode = p.getMapProperty(ldapMetadataNode, FIELDS_TO_ATTRIBUTES);
         if(fieldToAttributesNode != null){
             int n = p.getListSize(fieldToAttributesNode);
@@ -60,6 +78,36 @@ public class LdapPropertyParser <T> extends PropertyParser<T> {
                         p.getRequiredStringProperty(fieldToAttributeNode, ATTRIBUTE));
             }
         }
+        ldapMetadata.buildTranslationTable();
+
+        T indexesNode = p.getMapProperty(ldapMetadataNode, INDEXES);
+        if(indexesNode != null){
+            int n = p.getListSize(indexesNode);
+            for (int i = 0; i < n; i++) {
+                T indexNode = p.getListElement(indexesNode, i);
+                String attributeName = p.getRequiredStringProperty(indexNode, ATTRIBUTE);
+                List<String> typeNames = p.getStringList(indexNode, TYPES);
+                if(typeNames == null){
+                    throw Error.get(MetadataConstants.ERR_ILL_FORMED_METADATA, INDEXES + ": " + attributeName);
+                }
+                for(String typeName : typeNames){
+                    LdapIndexType type = LdapIndexType.fromName(typeName);
+                    if(type == null){
+                        throw Error.get(MetadataConstants.ERR_ILL_FORMED_METADATA, TYPES + ": " + typeName);
+                    }
+                    ldapMetadata.addIndex(attributeName, type);
+                }
+            }
+        }
+
+        String unindexedQueriesName = p.getStringProperty(ldapMetadataNode, UNINDEXED_QUERIES);
+        if(unindexedQueriesName != null){
+            LdapUnindexedQueryPolicy policy = LdapUnindexedQueryPolicy.fromName(unindexedQueriesName);
+            if(policy == null){
+                throw Error.get(MetadataConstants.ERR_ILL_FORMED_METADATA, UNINDEXED_QUERIES + ": " + unindexedQueriesName);
+            }
+            ldapMetadata.setUnindexedQueryPolicy(policy);
+        }
 
         return ldapMetadata;
     }
@@ -74,6 +122,10 @@ public class LdapPropertyParser <T> extends PropertyParser<T> {
 
         T propertyObject = p.newMap();
 
+        if(ldapMetadata.getSaveStrategy() != LdapMetadata.DEFAULT_SAVE_STRATEGY){
+            p.setMapProperty(propertyObject, SAVE_STRATEGY, p.asRepresentation(ldapMetadata.getSaveStrategy().getName()));
+        }
+
         Map<Path, String> fieldsToAttributes = ldapMetadata.getFieldsToAttributes();
         if(!fieldsToAttributes.isEmpty()){
             T fieldsToAttributesNode = p.newList();
@@ -90,6 +142,30 @@ public class LdapPropertyParser <T> extends PropertyParser<T> {
             p.setMapProperty(propertyObject, FIELDS_TO_ATTRIBUTES, fieldsToAttributesNode);
         }
 
+        Map<String, Set<LdapIndexType>> indexes = ldapMetadata.getIndexes();
+        if(!indexes.isEmpty()){
+            T indexesNode = p.newList();
+
+            for(Entry<String, Set<LdapIndexType>> entry : indexes.entrySet()){
+                T indexNode = p.newMap();
+                p.setMapProperty(indexNode, ATTRIBUTE, p.asRepresentation(entry.getKey()));
+
+                T typesNode = p.newList();
+                for(LdapIndexType type : entry.getValue()){
+                    p.addListElement(typesNode, p.asRepresentation(type.getName()));
+                }
+                p.setMapProperty(indexNode, TYPES, typesNode);
+
+                p.addListElement(indexesNode, indexNode);
+            }
+
+            p.setMapProperty(propertyObject, INDEXES, indexesNode);
+        }
+
+        if(ldapMetadata.getUnindexedQueryPolicy() != LdapMetadata.DEFAULT_UNINDEXED_QUERY_POLICY){
+            p.setMapProperty(propertyObject, UNINDEXED_QUERIES, p.asRepresentation(ldapMetadata.getUnindexedQueryPolicy().getName()));
+        }
+
         return propertyObject;
     }
 
@@ -22,6 +22,7 @@ import static org.hamcrest.Matchers.hasItems;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
 import java.util.HashSet;
@@ -106,6 +107,40 @@ public class LdapMetadataTest {
         assertEquals(attributeName, new LdapMetadata().translateAttributeName(attributeName).toString());
     }
 
+    @Test
+    public void testTranslateAttributeName_IgnoresCase(){
+        Path fieldName = new Path("somePath.fakeFieldName");
+
+        LdapMetadata metadata = new LdapMetadata();
+        metadata.addFieldToAttribute(fieldName, "fakeAttributeName");
+        metadata.buildTranslationTable();
+
+        assertEquals(fieldName, metadata.translateAttributeName("FAKEATTRIBUTENAME"));
+    }
+
+    @Test
+    public void testTranslateAttributeName_ReusesPaths(){
+        LdapMetadata metadata = new LdapMetadata();
+        metadata.addFieldToAttribute(new Path("fakeFieldName"), "fakeAttributeName");
+        metadata.buildTranslationTable();
+
+        assertSame(metadata.translateAttributeName("fakeAttributeName"), metadata.translateAttributeName("fakeAttributeName"));
+        assertSame(metadata.translateAttributeName("unmapped"), metadata.translateAttributeName("unmapped"));
+    }
+
+    @Test
+    public void testTranslate_MappingAddedAfterTranslation(){
+        LdapMetadata metadata = new LdapMetadata();
+        metadata.addFieldToAttribute(new Path("fakeFieldName"), "fakeAttributeName");
+        metadata.buildTranslationTable();
+        assertEquals("anotherField", metadata.translateFieldName(new Path("anotherField")));
+
+        metadata.addFieldToAttribute(new Path("anotherField"), "anotherAttribute");
+
+        assertEquals("anotherAttribute", metadata.translateFieldName(new Path("anotherField")));
+        assertEquals(new Path("anotherField"), metadata.translateAttributeName("anotherAttribute"));
+    }
+
     @Test
     public void testGetFieldsToAttributes_AssertImmutable(){
         LdapMetadata metadata = new LdapMetadata();
@@ -22,8 +22,10 @@ import static com.redhat.lightblue.util.JsonUtils.json;
 import static com.redhat.lightblue.util.test.AbstractJsonNodeTest.loadJsonNode;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.json.JSONException;
 import org.junit.Rule;
@@ -34,6 +36,7 @@ import org.skyscreamer.jsonassert.JSONAssert;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.redhat.lightblue.common.ldap.LdapConstant;
 import com.redhat.lightblue.common.ldap.LdapDataStore;
+import com.redhat.lightblue.common.ldap.LdapSearchScope;
 import com.redhat.lightblue.test.MetadataUtil;
 import com.redhat.lightblue.test.metadata.FakeDataStore;
 
@@ -68,6 +71,31 @@ public class LdapDataStoreParserTest {
         assertEquals(DATABASE, store.getDatabase());
         assertEquals(BASE_DN, store.getBaseDN());
         assertEquals(UNIQUE_ATTRIBUTE, store.getUniqueAttribute());
+        assertEquals(LdapSearchScope.SUB, store.getScope());
+        assertTrue(store.getObjectClasses().isEmpty());
+    }
+
+    @Test
+    public void testParse_ScopeAndObjectClasses() throws IOException{
+        LdapDataStore store = new LdapDataStoreParser<JsonNode>().parse(
+                LdapConstant.BACKEND,
+                MetadataUtil.createJSONMetadataParser(LdapConstant.BACKEND, null),
+                json("{\"database\":\"test\",\"basedn\":\"dc=example,dc=com\",\"uniqueattr\":\"uid\","
+                        + "\"scope\":\"one\",\"objectclasses\":[\"inetOrgPerson\",\"person\"]}"));
+
+        assertEquals(LdapSearchScope.ONE, store.getScope());
+        assertEquals(Arrays.asList("inetOrgPerson", "person"), Arrays.asList(store.getObjectClasses().toArray()));
+    }
+
+    @Test
+    public void testParse_InvalidScope() throws IOException{
+        expectedEx.expect(com.redhat.lightblue.util.Error.class);
+        expectedEx.expectMessage("{\"objectType\":\"error\",\"errorCode\":\"metadata:IllFormedMetadata\",\"msg\":\"scope: everything\"}");
+
+        new LdapDataStoreParser<JsonNode>().parse(
+                LdapConstant.BACKEND,
+                MetadataUtil.createJSONMetadataParser(LdapConstant.BACKEND, null),
+                json("{\"database\":\"test\",\"basedn\":\"dc=example,dc=com\",\"uniqueattr\":\"uid\",\"scope\":\"everything\"}"));
     }
 
     @Test
@@ -96,6 +124,24 @@ public class LdapDataStoreParserTest {
                 node.toString(), true);
     }
 
+    @Test
+    public void testConvert_ScopeAndObjectClasses() throws IOException, JSONException{
+        LdapDataStore store = new LdapDataStore(DATABASE, BASE_DN, UNIQUE_ATTRIBUTE);
+        store.setScope(LdapSearchScope.SUBORDINATE);
+        store.addObjectClass("inetOrgPerson");
+
+        JsonNode node = json("{}");
+
+        new LdapDataStoreParser<JsonNode>().convert(
+                MetadataUtil.createJSONMetadataParser(LdapConstant.BACKEND, null),
+                node,
+                store);
+
+        JSONAssert.assertEquals("{\"database\":\"" + DATABASE + "\",\"basedn\":\"" + BASE_DN + "\",\"uniqueattr\":\"" + UNIQUE_ATTRIBUTE + "\","
+                + "\"scope\":\"subordinate\",\"objectclasses\":[\"inetOrgPerson\"]}",
+                node.toString(), true);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testConvert_wrongStoreType(){
         new LdapDataStoreParser<JsonNode>().convert(null, null, new FakeDataStore("fake"));
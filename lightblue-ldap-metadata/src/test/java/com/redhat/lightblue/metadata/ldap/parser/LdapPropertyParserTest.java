@@ -27,6 +27,7 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -39,6 +40,9 @@ import org.skyscreamer.jsonassert.JSONAssert;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.redhat.lightblue.common.ldap.LdapConstant;
+import com.redhat.lightblue.common.ldap.LdapIndexType;
+import com.redhat.lightblue.common.ldap.LdapSaveStrategy;
+import com.redhat.lightblue.common.ldap.LdapUnindexedQueryPolicy;
 import com.redhat.lightblue.metadata.ldap.model.LdapMetadata;
 import com.redhat.lightblue.test.MetadataUtil;
 import com.redhat.lightblue.util.Path;
@@ -80,6 +84,65 @@ public class LdapPropertyParserTest {
         assertNotNull(ldapMetadata);
 
         assertTrue(ldapMetadata.getFieldsToAttributes().isEmpty());
+        assertEquals(LdapSaveStrategy.CHECK_EXISTING, ldapMetadata.getSaveStrategy());
+        assertTrue(ldapMetadata.getIndexes().isEmpty());
+        assertEquals(LdapUnindexedQueryPolicy.WARN, ldapMetadata.getUnindexedQueryPolicy());
+    }
+
+    @Test
+    public void testParse_Indexes() throws IOException{
+        LdapMetadata ldapMetadata = new LdapPropertyParser<JsonNode>().parseProperty(
+                MetadataUtil.createJSONMetadataParser(LdapConstant.BACKEND, null),
+                json("{\"ldap\": {\"indexes\": [{\"attribute\": \"uid\", \"types\": [\"eq\", \"pres\"]}, "
+                        + "{\"attribute\": \"cn\", \"types\": [\"sub\"]}], \"unindexedQueries\": \"lowPriority\"}}"),
+                LdapConstant.BACKEND);
+
+        assertEquals(EnumSet.of(LdapIndexType.EQUALITY, LdapIndexType.PRESENCE), ldapMetadata.getIndexes().get("uid"));
+        assertEquals(EnumSet.of(LdapIndexType.SUBSTRING), ldapMetadata.getIndexes().get("cn"));
+        assertEquals(LdapUnindexedQueryPolicy.LOW_PRIORITY, ldapMetadata.getUnindexedQueryPolicy());
+    }
+
+    @Test
+    public void testParse_InvalidIndexType() throws IOException{
+        expectedEx.expect(com.redhat.lightblue.util.Error.class);
+        expectedEx.expectMessage("{\"objectType\":\"error\",\"errorCode\":\"metadata:IllFormedMetadata\",\"msg\":\"types: fake\"}");
+
+        new LdapPropertyParser<JsonNode>().parseProperty(
+                MetadataUtil.createJSONMetadataParser(LdapConstant.BACKEND, null),
+                json("{\"ldap\": {\"indexes\": [{\"attribute\": \"uid\", \"types\": [\"fake\"]}]}}"),
+                LdapConstant.BACKEND);
+    }
+
+    @Test
+    public void testParse_InvalidUnindexedQueries() throws IOException{
+        expectedEx.expect(com.redhat.lightblue.util.Error.class);
+        expectedEx.expectMessage("{\"objectType\":\"error\",\"errorCode\":\"metadata:IllFormedMetadata\",\"msg\":\"unindexedQueries: fake\"}");
+
+        new LdapPropertyParser<JsonNode>().parseProperty(
+                MetadataUtil.createJSONMetadataParser(LdapConstant.BACKEND, null),
+                json("{\"ldap\": {\"unindexedQueries\": \"fake\"}}"),
+                LdapConstant.BACKEND);
+    }
+
+    @Test
+    public void testParse_SaveStrategy() throws IOException{
+        LdapMetadata ldapMetadata = new LdapPropertyParser<JsonNode>().parseProperty(
+                MetadataUtil.createJSONMetadataParser(LdapConstant.BACKEND, null),
+                json("{\"ldap\": {\"saveStrategy\": \"insertFirst\"}}"),
+                LdapConstant.BACKEND);
+
+        assertEquals(LdapSaveStrategy.INSERT_FIRST, ldapMetadata.getSaveStrategy());
+    }
+
+    @Test
+    public void testParse_InvalidSaveStrategy() throws IOException{
+        expectedEx.expect(com.redhat.lightblue.util.Error.class);
+        expectedEx.expectMessage("{\"objectType\":\"error\",\"errorCode\":\"metadata:IllFormedMetadata\",\"msg\":\"saveStrategy: fake\"}");
+
+        new LdapPropertyParser<JsonNode>().parseProperty(
+                MetadataUtil.createJSONMetadataParser(LdapConstant.BACKEND, null),
+                json("{\"ldap\": {\"saveStrategy\": \"fake\"}}"),
+                LdapConstant.BACKEND);
     }
 
     @Test
@@ -125,6 +188,43 @@ public class LdapPropertyParserTest {
                 node.toString(), true);
     }
 
+    @Test
+    public void testConvert_SaveStrategy() throws IOException, JSONException{
+        LdapMetadata ldapMetadata = new LdapMetadata();
+        ldapMetadata.setSaveStrategy(LdapSaveStrategy.MODIFY_FIRST);
+
+        JsonNode node = json("{}");
+
+        new LdapPropertyParser<JsonNode>().convertProperty(
+                MetadataUtil.createJSONMetadataParser(LdapConstant.BACKEND, null),
+                node,
+                LdapConstant.BACKEND,
+                ldapMetadata);
+
+        JSONAssert.assertEquals("{\"ldap\":{\"saveStrategy\":\"modifyFirst\"}}",
+                node.toString(), true);
+    }
+
+    @Test
+    public void testConvert_Indexes() throws IOException, JSONException{
+        LdapMetadata ldapMetadata = new LdapMetadata();
+        ldapMetadata.addIndex("uid", LdapIndexType.EQUALITY);
+        ldapMetadata.addIndex("uid", LdapIndexType.ORDERING);
+        ldapMetadata.setUnindexedQueryPolicy(LdapUnindexedQueryPolicy.REJECT);
+
+        JsonNode node = json("{}");
+
+        new LdapPropertyParser<JsonNode>().convertProperty(
+                MetadataUtil.createJSONMetadataParser(LdapConstant.BACKEND, null),
+                node,
+                LdapConstant.BACKEND,
+                ldapMetadata);
+
+        JSONAssert.assertEquals(
+                "{\"ldap\":{\"indexes\":[{\"attribute\":\"uid\",\"types\":[\"eq\",\"ordering\"]}],\"unindexedQueries\":\"reject\"}}",
+                node.toString(), true);
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testConvert_invalidObject(){
         new LdapPropertyParser<JsonNode>().convertProperty(null, null,